@@ -21,6 +21,12 @@ public interface Decoder
 {
     int NO_ERROR = -1;
 
+    /**
+     * Passed as the last tag needed by a flyweight message decoder in order to decode the whole message, no field
+     * has this tag.
+     */
+    int NO_LAST_TAG_NEEDED = Integer.MIN_VALUE;
+
     int decode(AsciiBuffer buffer, int offset, int length);
 
     /**
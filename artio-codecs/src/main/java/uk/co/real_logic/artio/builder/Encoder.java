@@ -48,6 +48,18 @@ public interface Encoder
      */
     long encode(MutableAsciiBuffer buffer, int offset);
 
+    /**
+     * Bounds the length of the message without encoding it. {@link #encode(MutableAsciiBuffer, int)} doesn't
+     * write outside of this many bytes from its offset whilst the message's fields remain unchanged.
+     *
+     * @return the most bytes that encoding the message's current fields writes, or {@link Integer#MAX_VALUE}
+     * if the encoder doesn't bound its length.
+     */
+    default int maxEncodedLength()
+    {
+        return Integer.MAX_VALUE;
+    }
+
     /**
      * Resets the encoder. Sets all the fields back to their uninitialized state.
      */
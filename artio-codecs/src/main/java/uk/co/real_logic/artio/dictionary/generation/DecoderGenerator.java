@@ -29,6 +29,7 @@ import java.util.Collection;
 import java.util.List;
 import java.util.stream.Stream;
 
+import static java.util.Collections.emptyList;
 import static java.util.stream.Collectors.joining;
 import static java.util.stream.Collectors.toList;
 import static uk.co.real_logic.artio.dictionary.generation.AggregateType.*;
@@ -45,7 +46,6 @@ import static uk.co.real_logic.sbe.generation.java.JavaUtil.formatPropertyName;
 // skip decoding of unread header fields - eg: sender/target comp id.
 // optimise the checksum definition to use an int and be calculated or ignored, have optional validation.
 // evaluate utc parsing, adds about 100 nanos
-// remove the REQUIRED_FIELDS validation when there are no required fields
 
 public class DecoderGenerator extends Generator
 {
@@ -80,6 +80,13 @@ public class DecoderGenerator extends Generator
 
     private Aggregate currentAggregate = null;
 
+    // Number of lazily decoded fields in the class being generated, each has a bit in the parsedFields words
+    private int parsedFieldCount = 0;
+
+    // Fields decoded by the class being generated, each has a bit in the visitedFields and missingRequiredFields words
+    private List<Field> visitedFields = emptyList();
+    private List<Field> requiredVisitedFields = emptyList();
+
     private final int initialBufferSize;
 
     public DecoderGenerator(
@@ -125,7 +132,13 @@ public class DecoderGenerator extends Generator
         final Writer out) throws IOException
     {
         final Aggregate parentAggregate = currentAggregate;
+        final int parentParsedFieldCount = parsedFieldCount;
+        final List<Field> parentVisitedFields = visitedFields;
+        final List<Field> parentRequiredVisitedFields = requiredVisitedFields;
         currentAggregate = aggregate;
+        parsedFieldCount = 0;
+        visitedFields = visitedFields(aggregate.entries()).collect(toList());
+        requiredVisitedFields = requiredFields(aggregate.entries()).collect(toList());
 
         final boolean isMessage = type == MESSAGE;
         final boolean isGroup = type == GROUP;
@@ -153,8 +166,12 @@ public class DecoderGenerator extends Generator
         out.append(decodeMethod(aggregate.entries(), aggregate, type));
         out.append(completeResetMethod(isMessage, aggregate.entries(), additionalReset(isGroup)));
         out.append(toString(aggregate, isMessage));
+        out.append(parsedFieldsDeclaration());
         out.append("}\n");
         currentAggregate = parentAggregate;
+        parsedFieldCount = parentParsedFieldCount;
+        visitedFields = parentVisitedFields;
+        requiredVisitedFields = parentRequiredVisitedFields;
     }
 
     private List<Field> compileAllFieldsFor(final Message message)
@@ -271,11 +288,12 @@ public class DecoderGenerator extends Generator
     {
         return
             "        buffer = null;\n" +
+            resetParsedFields() +
             "        if (" + CODEC_VALIDATION_ENABLED + ")\n" +
             "        {\n" +
             "            invalidTagId = NO_ERROR;\n" +
             "            rejectReason = NO_ERROR;\n" +
-            "            missingRequiredFields.clear();\n" +
+            resetVisitedFields(false) +
             (isGroup ? "" :
                 "            unknownFields.clear();\n" +
                 "            alreadyVisitedFields.clear();\n") +
@@ -336,9 +354,10 @@ public class DecoderGenerator extends Generator
 
         out.append(String.format(
             (isGroup ? "" :
-            "    private final IntHashSet alreadyVisitedFields = new IntHashSet(%5$d);\n\n" +
+            // Only unknown fields are hashed, known fields are tracked in the visitedFields words
+            "    private final IntHashSet alreadyVisitedFields = new IntHashSet(10);\n\n" +
             "    private final IntHashSet unknownFields = new IntHashSet(10);\n\n") +
-            "    private final IntHashSet missingRequiredFields = new IntHashSet(%1$d);\n\n" +
+            "%1$s" +
             "    private int invalidTagId = NO_ERROR;\n\n" +
             "    public int invalidTagId()\n" +
             "    {\n" +
@@ -356,24 +375,145 @@ public class DecoderGenerator extends Generator
             "        {\n" +
             "            return false;\n" +
             "        }\n" +
-            "        final IntIterator missingFieldsIterator = missingRequiredFields.iterator();\n" +
             (isMessage ? "        final IntIterator unknownFieldsIterator = unknownFields.iterator();\n" : "") +
             "%2$s" +
-            "        if (missingFieldsIterator.hasNext())\n" +
-            "        {\n" +
-            "            invalidTagId = missingFieldsIterator.nextValue();\n" +
-            "            rejectReason = " + REQUIRED_TAG_MISSING + ";\n" +
-            "            return false;\n" +
-            "        }\n" +
+            "%5$s" +
             "%3$s" +
             "%4$s" +
             "        return true;\n" +
             "    }\n\n",
-            sizeHashSet(requiredFields),
+            visitedFieldsDeclaration(),
             messageValidation,
             enumValidation,
             groupValidation,
-            2 * aggregate.allFieldsIncludingComponents().count()));
+            missingRequiredFieldsValidation()));
+    }
+
+    private Stream<Field> visitedFields(final List<Entry> entries)
+    {
+        return entries.stream().flatMap(this::extractVisitedFields);
+    }
+
+    // The fields that have a case in the decode method's switch
+    private Stream<Field> extractVisitedFields(final Entry entry)
+    {
+        return entry.match(
+            (e, field) -> Stream.of(field),
+            (e, group) -> Stream.of((Field)group.numberField().element()),
+            (e, component) -> visitedFields(component.entries()));
+    }
+
+    private int visitedFieldIndex(final Field field)
+    {
+        final int index = visitedFields.indexOf(field);
+        if (index == -1)
+        {
+            throw new IllegalStateException(
+                "Field " + field.name() + " isn't decoded by " + currentAggregate.name());
+        }
+
+        return index;
+    }
+
+    private static String visitedFieldsWord(final int index)
+    {
+        return "visitedFields" + (index >> 6);
+    }
+
+    private static String missingRequiredFieldsWord(final int index)
+    {
+        return "missingRequiredFields" + (index >> 6);
+    }
+
+    private static String fieldMask(final int index)
+    {
+        return String.format("0x%xL", 1L << (index & 63));
+    }
+
+    private String visitedFieldsDeclaration()
+    {
+        final StringBuilder declaration = new StringBuilder();
+        for (int index = 0; index < visitedFields.size(); index += 64)
+        {
+            declaration.append(String.format(
+                "    private long %s;\n\n" +
+                "    private long %s;\n\n",
+                visitedFieldsWord(index),
+                missingRequiredFieldsWord(index)));
+        }
+
+        return declaration.toString();
+    }
+
+    // Decoding starts with all the required fields missing, resetting leaves none missing.
+    private String resetVisitedFields(final boolean isDecoding)
+    {
+        final long[] requiredMasks = new long[(visitedFields.size() + 63) >> 6];
+        if (isDecoding)
+        {
+            for (final Field field : requiredVisitedFields)
+            {
+                final int index = visitedFieldIndex(field);
+                requiredMasks[index >> 6] |= 1L << (index & 63);
+            }
+        }
+
+        final StringBuilder reset = new StringBuilder();
+        for (int index = 0; index < visitedFields.size(); index += 64)
+        {
+            final long requiredMask = requiredMasks[index >> 6];
+            reset.append(String.format(
+                "            %s = 0;\n" +
+                "            %s = %s;\n",
+                visitedFieldsWord(index),
+                missingRequiredFieldsWord(index),
+                requiredMask == 0 ? "0" : String.format("0x%xL", requiredMask)));
+        }
+
+        return reset.toString();
+    }
+
+    private String missingRequiredFieldsValidation()
+    {
+        return requiredVisitedFields
+            .stream()
+            .map((field) ->
+            {
+                final int index = visitedFieldIndex(field);
+                return String.format(
+                    "        if ((%1$s & %2$s) != 0)\n" +
+                    "        {\n" +
+                    "            invalidTagId = Constants.%3$s;\n" +
+                    "            rejectReason = " + REQUIRED_TAG_MISSING + ";\n" +
+                    "            return false;\n" +
+                    "        }\n",
+                    missingRequiredFieldsWord(index),
+                    fieldMask(index),
+                    constantName(field.name()));
+            })
+            .collect(joining());
+    }
+
+    private String markVisited(final Field field)
+    {
+        final int index = visitedFieldIndex(field);
+        final String visitedWord = visitedFieldsWord(index);
+        final String mask = fieldMask(index);
+        final boolean isGroup = currentAggregate instanceof Group;
+
+        return
+            "                if (" + CODEC_VALIDATION_ENABLED + ")\n" +
+            "                {\n" +
+            (isGroup ? "" :
+            "                    if ((" + visitedWord + " & " + mask + ") != 0)\n" +
+            "                    {\n" +
+            "                        invalidTagId = tag;\n" +
+            "                        rejectReason = " + TAG_APPEARS_MORE_THAN_ONCE + ";\n" +
+            "                    }\n") +
+            "                    " + visitedWord + " |= " + mask + ";\n" +
+            (requiredVisitedFields.contains(field) ?
+            "                    " + missingRequiredFieldsWord(index) + " &= ~" + mask + ";\n" : "") +
+            "                }\n";
     }
 
     private String generateFieldDictionary(final Collection<Field> fields, final String name,
@@ -868,7 +1008,56 @@ public class DecoderGenerator extends Generator
             optionalGetter(entry),
             offsetField,
             enumDecoder,
-            flyweightsEnabled ? lazyInitialisation : "");
+            flyweightsEnabled ? parseOnce(lazyInitialisation) : "");
+    }
+
+    private String parseOnce(final String lazyInitialisation)
+    {
+        if (lazyInitialisation.isEmpty())
+        {
+            return "";
+        }
+
+        final int index = parsedFieldCount++;
+        final String word = parsedFieldsWord(index);
+        final String mask = String.format("0x%xL", 1L << (index & 63));
+
+        return String.format(
+            "        if ((%1$s & %2$s) == 0)\n" +
+            "        {\n" +
+            "%3$s" +
+            "            %1$s |= %2$s;\n" +
+            "        }\n",
+            word,
+            mask,
+            lazyInitialisation.replaceAll("(?m)^", "    "));
+    }
+
+    private static String parsedFieldsWord(final int index)
+    {
+        return "parsedFields" + (index >> 6);
+    }
+
+    private String parsedFieldsDeclaration()
+    {
+        final StringBuilder declaration = new StringBuilder();
+        for (int index = 0; index < parsedFieldCount; index += 64)
+        {
+            declaration.append(String.format("    private long %s;\n\n", parsedFieldsWord(index)));
+        }
+
+        return declaration.toString();
+    }
+
+    private String resetParsedFields()
+    {
+        final StringBuilder reset = new StringBuilder();
+        for (int index = 0; index < parsedFieldCount; index += 64)
+        {
+            reset.append(String.format("        %s = 0;\n", parsedFieldsWord(index)));
+        }
+
+        return reset.toString();
     }
 
     private String generateAsStringBody(final Entry entry, final String name, final String fieldName)
@@ -924,7 +1113,7 @@ public class DecoderGenerator extends Generator
             case EXCHANGE:
             case COUNTRY:
             case LANGUAGE:
-                decodeMethod = String.format("buffer.getChars(%1$s, %1$sOffset, %1$sLength);\n", fieldName);
+                decodeMethod = String.format("buffer.getChars(%1$s, %1$sOffset, %1$sLength)", fieldName);
                 break;
 
             case DATA:
@@ -1111,16 +1300,16 @@ public class DecoderGenerator extends Generator
 
         final String prefix =
             "    private AsciiBuffer buffer;\n\n" +
-            "    public int decode(final AsciiBuffer buffer, final int offset, final int length)\n" +
+            decodeSignature(type) +
             "    {\n" +
             "        // Decode " + aggregate.name() + "\n" +
             "        int seenFieldCount = 0;\n" +
             "        if (" + CODEC_VALIDATION_ENABLED + ")\n" +
             "        {\n" +
-            "            missingRequiredFields.copy(" + REQUIRED_FIELDS + ");\n" +
+            resetVisitedFields(true) +
             (isGroup ? "" : "            alreadyVisitedFields.clear();\n") +
             "        }\n" +
-            "        this.buffer = buffer;\n" +
+            "        this.buffer = buffer;\n" + resetParsedFields() +
             "        final int end = offset + length;\n" +
             "        int position = offset;\n" +
             (hasCommonCompounds ? "        position += header.decode(buffer, position, length);\n" : "") +
@@ -1148,15 +1337,6 @@ public class DecoderGenerator extends Generator
             "                    rejectReason = " + TAG_SPECIFIED_WITHOUT_A_VALUE + ";\n" +
             "                }\n" +
             headerValidation(isHeader) +
-
-            (isGroup ? "" :
-            "                if (!alreadyVisitedFields.add(tag))\n" +
-            "                {\n" +
-            "                    invalidTagId = tag;\n" +
-            "                    rejectReason = " + TAG_APPEARS_MORE_THAN_ONCE + ";\n" +
-            "                }\n") +
-
-            "                missingRequiredFields.remove(tag);\n" +
             "                seenFieldCount++;\n" +
             "            }\n" +
             "            switch (tag)\n" +
@@ -1168,15 +1348,18 @@ public class DecoderGenerator extends Generator
 
         final String suffix =
             "            default:\n" +
+            (isGroup ?
             "                if (!" + CODEC_REJECT_UNKNOWN_FIELD_ENABLED + ")\n" +
             "                {\n" +
-            (isGroup ?
-            "                    seenFields.remove(tag);\n" :
-            "                    alreadyVisitedFields.remove(tag);\n") +
-            "                }\n" +
-            (isGroup ? "" :
-            "                else\n" +
+            "                    seenFields.remove(tag);\n" +
+            "                }\n" :
+            "                if (" + CODEC_REJECT_UNKNOWN_FIELD_ENABLED + ")\n" +
             "                {\n" +
+            "                    if (" + CODEC_VALIDATION_ENABLED + " && !alreadyVisitedFields.add(tag))\n" +
+            "                    {\n" +
+            "                        invalidTagId = tag;\n" +
+            "                        rejectReason = " + TAG_APPEARS_MORE_THAN_ONCE + ";\n" +
+            "                    }\n" +
             "                    if (!" + unknownFieldPredicate(type) + ")\n" +
             "                    {\n" +
             "                        unknownFields.add(tag);\n" +
@@ -1196,6 +1379,7 @@ public class DecoderGenerator extends Generator
             "            {\n" +
             "                position = endOfField + 1;\n" +
             "            }\n" +
+            lastTagNeededCheck(type) +
             "        }\n" +
             decodeTrailerOrReturn(hasCommonCompounds, 2) +
             "    }\n\n";
@@ -1203,6 +1387,39 @@ public class DecoderGenerator extends Generator
         return prefix + body + suffix;
     }
 
+    // Flyweight messages can stop decoding once the fields that the caller needs have been seen.
+    private boolean hasLastTagNeeded(final AggregateType type)
+    {
+        return flyweightsEnabled && type == MESSAGE;
+    }
+
+    private String decodeSignature(final AggregateType type)
+    {
+        if (hasLastTagNeeded(type))
+        {
+            return
+                "    public int decode(final AsciiBuffer buffer, final int offset, final int length)\n" +
+                "    {\n" +
+                "        return decode(buffer, offset, length, NO_LAST_TAG_NEEDED);\n" +
+                "    }\n\n" +
+                "    // Stops after the body field with lastTagNeeded, skipping the rest of the message.\n" +
+                "    public int decode(\n" +
+                "        final AsciiBuffer buffer, final int offset, final int length, final int lastTagNeeded)\n";
+        }
+
+        return "    public int decode(final AsciiBuffer buffer, final int offset, final int length)\n";
+    }
+
+    private String lastTagNeededCheck(final AggregateType type)
+    {
+        return hasLastTagNeeded(type) ?
+            "            if (tag == lastTagNeeded)\n" +
+            "            {\n" +
+            "                return position - offset;\n" +
+            "            }\n" :
+            "";
+    }
+
     private String malformedMessageCheck()
     {
         return "            if (endOfField == AsciiBuffer.UNKNOWN_INDEX || " +
@@ -1361,8 +1578,10 @@ public class DecoderGenerator extends Generator
             "%s" +
             "%s" +
             "%s" +
+            "%s" +
             "                break;\n",
             constantName(name),
+            markVisited(field),
             optionalAssign(entry),
             fieldDecodeMethod(field, fieldName),
             storeOffsetForVariableLengthFields(field.type(), fieldName),
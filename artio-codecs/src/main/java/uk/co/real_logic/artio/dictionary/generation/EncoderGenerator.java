@@ -132,6 +132,37 @@ public class EncoderGenerator extends Generator
         "    {\n" +
         "        int position = offset;\n\n";
 
+    private static final String GROUP_MAX_ENCODED_LENGTH_PREFIX =
+        "    public int maxEncodedLength(final int remainingElements)\n" +
+        "    {\n" +
+        "        if (remainingElements == 0)\n" +
+        "        {\n" +
+        "            return 0;\n" +
+        "        }\n\n" +
+        "        int length = 0;\n\n";
+
+    // Includes the space that startMessage() leaves for BeginString and BodyLength
+    private static final String HEADER_MAX_ENCODED_LENGTH_PREFIX =
+        "    public int maxEncodedLength()\n" +
+        "    {\n" +
+        "        int length = beginStringLength + 16;\n\n";
+
+    private static final String MESSAGE_MAX_ENCODED_LENGTH_PREFIX =
+        "    public int maxEncodedLength()\n" +
+        "    {\n" +
+        "        int length = header.maxEncodedLength() + trailer.maxEncodedLength();\n\n";
+
+    // Includes the |10=...| of the checksum
+    private static final String TRAILER_MAX_ENCODED_LENGTH_PREFIX =
+        "    public int maxEncodedLength()\n" +
+        "    {\n" +
+        "        int length = checkSumHeaderLength + 4;\n\n";
+
+    private static final String OTHER_MAX_ENCODED_LENGTH_PREFIX =
+        "    public int maxEncodedLength()\n" +
+        "    {\n" +
+        "        int length = 0;\n\n";
+
     private static final String RESET_NEXT_GROUP =
         "        if (next != null)" +
         "        {\n" +
@@ -271,6 +302,7 @@ public class EncoderGenerator extends Generator
         precomputedHeaders(out, aggregate.entries());
         generateSetters(out, className, aggregate.entries());
         out.append(encodeMethod(aggregate.entries(), type));
+        out.append(maxEncodedLengthMethod(aggregate.entries(), type));
         out.append(completeResetMethod(aggregate, isMessage, type));
         out.append(toString(aggregate, isMessage));
         out.append("}\n");
@@ -704,6 +736,157 @@ public class EncoderGenerator extends Generator
         return prefix + body + suffix;
     }
 
+    private String maxEncodedLengthMethod(final List<Entry> entries, final AggregateType aggregateType)
+    {
+        final String prefix;
+        switch (aggregateType)
+        {
+            case TRAILER:
+                prefix = TRAILER_MAX_ENCODED_LENGTH_PREFIX;
+                break;
+
+            case GROUP:
+                prefix = GROUP_MAX_ENCODED_LENGTH_PREFIX;
+                break;
+
+            case MESSAGE:
+                prefix = MESSAGE_MAX_ENCODED_LENGTH_PREFIX;
+                break;
+
+            case HEADER:
+                prefix = HEADER_MAX_ENCODED_LENGTH_PREFIX;
+                break;
+
+            default:
+                prefix = OTHER_MAX_ENCODED_LENGTH_PREFIX;
+                break;
+        }
+
+        final String body = entries.stream()
+            .map(this::maxEncodedLengthEntry)
+            .collect(joining());
+
+        String suffix =
+            "        return length;\n" +
+            "    }\n\n";
+
+        if (aggregateType == GROUP)
+        {
+            suffix =
+                "        if (next != null)\n" +
+                "        {\n" +
+                "            length += next.maxEncodedLength(remainingElements - 1);\n" +
+                "        }\n" + suffix;
+        }
+
+        return prefix + body + suffix;
+    }
+
+    private String maxEncodedLengthEntry(final Entry entry)
+    {
+        if (isBodyLength(entry) || isBeginString(entry) || isCheckSum(entry))
+        {
+            return "";
+        }
+        else
+        {
+            return entry.matchEntry(
+                this::maxEncodedLengthField, this::maxEncodedLengthGroup, this::maxEncodedLengthComponent);
+        }
+    }
+
+    // Mirrors encodeField(), bounding the length of each field that would be encoded.
+    private String maxEncodedLengthField(final Entry entry)
+    {
+        final Field field = (Field)entry.element();
+        final String name = field.name();
+        final String fieldName = formatPropertyName(name);
+        final Field.Type type = field.type();
+
+        final String enablingPrefix;
+        final String enablingSuffix;
+        if (hasFlag(entry, field))
+        {
+            enablingPrefix = String.format("        if (has%s) {\n", name);
+            enablingSuffix = "        }\n";
+        }
+        else if (type.hasLengthField(false))
+        {
+            enablingPrefix = String.format("        if (%sLength > 0) {\n", fieldName);
+            enablingSuffix = "        }\n";
+        }
+        else
+        {
+            enablingPrefix = "";
+            enablingSuffix = "";
+        }
+
+        final String valueLength;
+        switch (type)
+        {
+            case INT:
+            case LENGTH:
+            case SEQNUM:
+            case NUMINGROUP:
+            case DAYOFMONTH:
+                valueLength = "MutableAsciiBuffer.LONGEST_INT_LENGTH";
+                break;
+
+            case FLOAT:
+            case PRICE:
+            case PRICEOFFSET:
+            case QTY:
+            case PERCENTAGE:
+            case AMT:
+                valueLength = String.format("MutableAsciiBuffer.longestFloatLength(%s.scale())", fieldName);
+                break;
+
+            case CHAR:
+            case BOOLEAN:
+                valueLength = "1";
+                break;
+
+            case DATA:
+            case XMLDATA:
+                valueLength = fieldName + ".length";
+                break;
+
+            default:
+                valueLength = fieldName + "Length";
+                break;
+        }
+
+        return String.format(
+            "%s" +
+            "        length += %sHeaderLength + %s + 1;\n" +
+            "%s",
+            enablingPrefix,
+            fieldName,
+            valueLength,
+            enablingSuffix);
+    }
+
+    private String maxEncodedLengthGroup(final Entry entry)
+    {
+        final Group group = (Group)entry.element();
+        return String.format(
+            "%1$s" +
+            "        if (%2$s != null)\n" +
+            "        {\n" +
+            "            length += %2$s.maxEncodedLength(%3$s);\n" +
+            "        }\n",
+            maxEncodedLengthField(group.numberField()),
+            formatPropertyName(group.name()),
+            formatPropertyName(group.numberField().name()));
+    }
+
+    private String maxEncodedLengthComponent(final Entry entry)
+    {
+        return String.format(
+            "        length += %1$s.maxEncodedLength();\n",
+            formatPropertyName(entry.name()));
+    }
+
     private String encodeEntry(final Entry entry)
     {
         if (isBodyLength(entry) || isBeginString(entry) || isCheckSum(entry))
@@ -21,7 +21,9 @@ import uk.co.real_logic.artio.fields.*;
 
 import java.nio.ByteBuffer;
 
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
 import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.agrona.BitUtil.SIZE_OF_LONG;
 
 public final class MutableAsciiBuffer extends UnsafeBuffer implements AsciiBuffer
 {
@@ -32,6 +34,12 @@ public final class MutableAsciiBuffer extends UnsafeBuffer implements AsciiBuffe
     private static final byte Y = (byte)'Y';
     private static final byte N = (byte)'N';
 
+    private static final long LOW_BITS = 0x0101010101010101L;
+    private static final long HIGH_BITS = 0x8080808080808080L;
+    private static final long LOW_SEVEN_BITS = 0x7F7F7F7F7F7F7F7FL;
+    private static final long EVEN_BYTES = 0x00FF00FF00FF00FFL;
+    private static final long SHORT_LANES = 0x0001000100010001L;
+
     private static final byte[] MIN_INTEGER_VALUE = String.valueOf(Integer.MIN_VALUE).getBytes(US_ASCII);
     private static final byte[] MIN_LONG_VALUE = String.valueOf(Long.MIN_VALUE).getBytes(US_ASCII);
 
@@ -275,7 +283,23 @@ public final class MutableAsciiBuffer extends UnsafeBuffer implements AsciiBuffe
 
     public int scanBack(final int startInclusive, final int endExclusive, final byte terminator)
     {
-        for (int index = startInclusive; index >= endExclusive; index--)
+        final long pattern = broadcast(terminator);
+        int index = startInclusive;
+
+        // Words are read from (index - 7) to index, so the highest matching byte is the last occurrence.
+        while (index - SIZE_OF_LONG + 1 >= endExclusive)
+        {
+            final int wordStart = index - SIZE_OF_LONG + 1;
+            final long matches = matchingBytes(getLong(wordStart, LITTLE_ENDIAN), pattern);
+            if (matches != 0)
+            {
+                return wordStart + (SIZE_OF_LONG - 1) - (Long.numberOfLeadingZeros(matches) >>> 3);
+            }
+
+            index -= SIZE_OF_LONG;
+        }
+
+        for (; index >= endExclusive; index--)
         {
             final byte value = getByte(index);
             if (value == terminator)
@@ -294,24 +318,49 @@ public final class MutableAsciiBuffer extends UnsafeBuffer implements AsciiBuffe
 
     public int scan(final int startInclusive, final int endInclusive, final byte terminator)
     {
-        int indexValue = UNKNOWN_INDEX;
-        for (int i = startInclusive; i <= endInclusive; i++)
+        final long pattern = broadcast(terminator);
+        // Callers may pass an end index one past their data, so never let a word read run off the buffer.
+        final int lastWordEnd = Math.min(endInclusive, capacity() - 1);
+        int index = startInclusive;
+
+        while (index + SIZE_OF_LONG - 1 <= lastWordEnd)
+        {
+            final long matches = matchingBytes(getLong(index, LITTLE_ENDIAN), pattern);
+            if (matches != 0)
+            {
+                return index + (Long.numberOfTrailingZeros(matches) >>> 3);
+            }
+
+            index += SIZE_OF_LONG;
+        }
+
+        for (; index <= endInclusive; index++)
         {
-            final byte value = getByte(i);
+            final byte value = getByte(index);
             if (value == terminator)
             {
-                indexValue = i;
-                break;
+                return index;
             }
         }
 
-        return indexValue;
+        return UNKNOWN_INDEX;
     }
 
     public int computeChecksum(final int offset, final int end)
     {
+        // Bytes are summed as unsigned values a word at a time, then corrected for the bytes with the top bit set
+        // so that the total matches a sum of signed bytes.
         int total = 0;
-        for (int index = offset; index < end; index++)
+        int index = offset;
+
+        while (index + SIZE_OF_LONG <= end)
+        {
+            final long word = getLong(index, LITTLE_ENDIAN);
+            total += sumOfBytes(word) - (Long.bitCount(word & HIGH_BITS) << 8);
+            index += SIZE_OF_LONG;
+        }
+
+        for (; index < end; index++)
         {
             total += (int)getByte(index);
         }
@@ -319,6 +368,27 @@ public final class MutableAsciiBuffer extends UnsafeBuffer implements AsciiBuffe
         return total % 256;
     }
 
+    private static long broadcast(final byte value)
+    {
+        return (value & 0xFFL) * LOW_BITS;
+    }
+
+    private static long matchingBytes(final long word, final long pattern)
+    {
+        // Sets the top bit of every byte that equals the pattern's byte, all other bits are clear. Unlike the
+        // classic "has zero byte" trick there are no false positives above a match, so this finds the last
+        // matching byte as well as the first.
+        final long diff = word ^ pattern;
+        return ~(((diff & LOW_SEVEN_BITS) + LOW_SEVEN_BITS) | diff | LOW_SEVEN_BITS);
+    }
+
+    private static int sumOfBytes(final long word)
+    {
+        // Add adjacent bytes into four 16 bit lanes, then add the lanes together in the top 16 bits.
+        final long pairs = (word & EVEN_BYTES) + ((word >>> 8) & EVEN_BYTES);
+        return (int)((pairs * SHORT_LANES) >>> 48);
+    }
+
     public int putAscii(final int index, final String string)
     {
         final byte[] bytes = string.getBytes(US_ASCII);
@@ -348,6 +418,19 @@ public final class MutableAsciiBuffer extends UnsafeBuffer implements AsciiBuffe
         return characterCount;
     }
 
+    /**
+     * Bounds the number of bytes that {@link #putFloatAscii(int, long, int)} writes, including the space after
+     * its offset that it uses to encode the digits before moving them into place.
+     *
+     * @param scale the scale of the float to encode.
+     * @return the most bytes written for any value with the given scale.
+     */
+    public static int longestFloatLength(final int scale)
+    {
+        // A minus sign, then the digits are encoded ending LONGEST_LONG_LENGTH bytes further on.
+        return LONGEST_LONG_LENGTH + 2 + Math.abs(scale);
+    }
+
     public int putCharAscii(final int index, final char value)
     {
         putByte(index, (byte)value);
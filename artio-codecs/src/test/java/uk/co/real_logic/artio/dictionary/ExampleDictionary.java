@@ -67,6 +67,7 @@ public final class ExampleDictionary
     public static final String OTHER_MESSAGE_DECODER = TEST_PACKAGE + ".OtherMessageDecoder";
     public static final String OTHER_MESSAGE_ENCODER = TEST_PACKAGE + ".OtherMessageEncoder";
     public static final String ENUM_TEST_MESSAGE_DECODER = TEST_PACKAGE + ".EnumTestMessageDecoder";
+    public static final String MANY_REQ_FIELDS_MESSAGE_DECODER = TEST_PACKAGE + ".ManyReqFieldsMessageDecoder";
 
     public static final String PRINTER = TEST_PACKAGE + ".PrinterImpl";
 
@@ -88,6 +89,10 @@ public final class ExampleDictionary
 
     public static final String ALL_REQ_FIELD_TYPES_MESSAGE_NAME = "AllReqFieldTypesMessage";
     public static final String ALL_REQ_FIELD_TYPES_MESSAGE_TYPE = "RF";
+    public static final String MANY_REQ_FIELDS_MESSAGE_TYPE = "MR";
+    // Enough required fields to need two words of bits when validating, declared in descending order of tag
+    public static final int MANY_REQ_FIELDS_COUNT = 70;
+    public static final int FIRST_MANY_REQ_FIELD_TAG = 2100;
     public static final String STRING_RF = "StringRF";
     public static final String INT_RF = "IntRF";
     public static final String CHAR_RF = "CharRF";
@@ -601,9 +606,15 @@ public final class ExampleDictionary
         allReqFieldTypesMessage.requiredEntry(registerField(messageEgFields, 706, CHAR_ENUM_RF, CHAR)
             .addValue("a", "APPLE").addValue("b", "BANANA"));
 
+        final Message manyReqFieldsMessage = new Message("ManyReqFieldsMessage", MANY_REQ_FIELDS_MESSAGE_TYPE, APP);
+        for (int i = 0; i < MANY_REQ_FIELDS_COUNT; i++)
+        {
+            final int tag = FIRST_MANY_REQ_FIELD_TAG - i;
+            manyReqFieldsMessage.requiredEntry(registerField(messageEgFields, tag, "ManyReqField" + tag, INT));
+        }
 
         final List<Message> messages = asList(heartbeat, otherMessage, fieldsMessage, allReqFieldTypesMessage,
-            enumTestMessage);
+            enumTestMessage, manyReqFieldsMessage);
 
         final Map<String, Component> components = new HashMap<>();
         components.put(EG_COMPONENT, egComponent);
@@ -72,6 +72,7 @@ public abstract class AbstractDecoderGeneratorTest
     private static Class<?> fieldsMessage;
     private static Class<?> allReqFieldTypesMessage;
     private static Class<?> enumTestMessage;
+    private static Class<?> manyReqFieldsMessage;
 
     private MutableAsciiBuffer buffer = new MutableAsciiBuffer(new byte[8 * 1024]);
 
@@ -93,6 +94,7 @@ public abstract class AbstractDecoderGeneratorTest
         compileInMemory(HEADER_DECODER, sourcesWithValidation);
         otherMessage = compileInMemory(OTHER_MESSAGE_DECODER, sourcesWithValidation);
         enumTestMessage = compileInMemory(ENUM_TEST_MESSAGE_DECODER, sourcesWithValidation);
+        manyReqFieldsMessage = compileInMemory(MANY_REQ_FIELDS_MESSAGE_DECODER, sourcesWithValidation);
 
         heartbeatWithoutValidation = compileInMemory(HEARTBEAT_DECODER, sourcesWithoutValidation);
         heartbeatWithRejectingUnknownFields = compileInMemory(HEARTBEAT_DECODER, sourcesRejectingUnknownFields);
@@ -577,6 +579,57 @@ public abstract class AbstractDecoderGeneratorTest
         assertEquals("Wrong reject reason", REQUIRED_TAG_MISSING, decoder.rejectReason());
     }
 
+    @Test
+    public void shouldValidateMessageWithMoreRequiredFieldsThanFitInAWord() throws Exception
+    {
+        final Decoder decoder = decodeManyReqFieldsMessage(manyReqFieldsMessage());
+
+        assertTrue("Failed validation when it should have passed", decoder.validate());
+    }
+
+    @Test
+    public void shouldValidateMissingRequiredFieldInFirstWord() throws Exception
+    {
+        final Decoder decoder = decodeManyReqFieldsMessage(manyReqFieldsMessage(3));
+
+        assertFalse("Passed validation with missing fields", decoder.validate());
+        assertEquals("Wrong tag id", FIRST_MANY_REQ_FIELD_TAG - 3, decoder.invalidTagId());
+        assertEquals("Wrong reject reason", REQUIRED_TAG_MISSING, decoder.rejectReason());
+    }
+
+    @Test
+    public void shouldValidateMissingRequiredFieldInLastWord() throws Exception
+    {
+        final Decoder decoder = decodeManyReqFieldsMessage(manyReqFieldsMessage(MANY_REQ_FIELDS_COUNT - 2));
+
+        assertFalse("Passed validation with missing fields", decoder.validate());
+        assertEquals("Wrong tag id", FIRST_MANY_REQ_FIELD_TAG - (MANY_REQ_FIELDS_COUNT - 2), decoder.invalidTagId());
+        assertEquals("Wrong reject reason", REQUIRED_TAG_MISSING, decoder.rejectReason());
+    }
+
+    @Test
+    public void shouldReportFirstMissingRequiredFieldInDictionaryOrder() throws Exception
+    {
+        // The field missing from the last word has the lower tag, but comes later in the dictionary
+        final Decoder decoder = decodeManyReqFieldsMessage(manyReqFieldsMessage(MANY_REQ_FIELDS_COUNT - 2, 3));
+
+        assertFalse("Passed validation with missing fields", decoder.validate());
+        assertEquals("Wrong tag id", FIRST_MANY_REQ_FIELD_TAG - 3, decoder.invalidTagId());
+        assertEquals("Wrong reject reason", REQUIRED_TAG_MISSING, decoder.rejectReason());
+    }
+
+    @Test
+    public void shouldValidateRepeatedRequiredFieldInLastWord() throws Exception
+    {
+        final int repeatedTag = FIRST_MANY_REQ_FIELD_TAG - (MANY_REQ_FIELDS_COUNT - 1);
+        final String message = manyReqFieldsMessage().replace("10=209\001", repeatedTag + "=1\00110=209\001");
+        final Decoder decoder = decodeManyReqFieldsMessage(message);
+
+        assertFalse("Passed validation with repeated field", decoder.validate());
+        assertEquals("Wrong tag id", repeatedTag, decoder.invalidTagId());
+        assertEquals("Wrong reject reason", TAG_APPEARS_MORE_THAN_ONCE, decoder.rejectReason());
+    }
+
     @Test
     public void shouldValidateIfNoRequiredFieldsMissingInRepeatingGroup() throws Exception
     {
@@ -1522,6 +1575,36 @@ public abstract class AbstractDecoderGeneratorTest
         return decoder;
     }
 
+    private Decoder decodeManyReqFieldsMessage(final String example) throws Exception
+    {
+        final Decoder decoder = (Decoder)manyReqFieldsMessage.getConstructor().newInstance();
+        decode(example, decoder);
+        return decoder;
+    }
+
+    private static String manyReqFieldsMessage(final int... missingFields)
+    {
+        final StringBuilder message = new StringBuilder("8=FIX.4.4\0019=0049\00135=")
+            .append(MANY_REQ_FIELDS_MESSAGE_TYPE)
+            .append('\001');
+
+        final boolean[] isMissing = new boolean[MANY_REQ_FIELDS_COUNT];
+        for (final int missingField : missingFields)
+        {
+            isMissing[missingField] = true;
+        }
+
+        for (int i = 0; i < MANY_REQ_FIELDS_COUNT; i++)
+        {
+            if (!isMissing[i])
+            {
+                message.append(FIRST_MANY_REQ_FIELD_TAG - i).append("=1\001");
+            }
+        }
+
+        return message.append("10=209\001").toString();
+    }
+
     private Decoder decodeHeartbeatWithoutValidation(final String example) throws Exception
     {
         final Decoder decoder = (Decoder)heartbeatWithoutValidation.getConstructor().newInstance();
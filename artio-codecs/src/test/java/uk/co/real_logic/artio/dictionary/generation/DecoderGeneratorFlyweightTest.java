@@ -1,5 +1,5 @@
 /*
- * Copyright 2015-2018 Real Logic Ltd, Adaptive Financial Consulting Ltd.
+ * Copyright 2015-2017 Real Logic Ltd.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,12 +16,67 @@
 package uk.co.real_logic.artio.dictionary.generation;
 
 import org.junit.BeforeClass;
+import org.junit.Test;
+import uk.co.real_logic.artio.builder.Decoder;
+import uk.co.real_logic.artio.util.AsciiBuffer;
+import uk.co.real_logic.artio.util.MutableAsciiBuffer;
+
+import static org.agrona.generation.CompilerUtil.compileInMemory;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static uk.co.real_logic.artio.dictionary.ExampleDictionary.*;
+import static uk.co.real_logic.artio.util.Reflection.get;
+import static uk.co.real_logic.artio.util.Reflection.getField;
 
 public class DecoderGeneratorFlyweightTest extends AbstractDecoderGeneratorTest
 {
+    private static final int INT_FIELD_TAG = 116;
+
+    private static Class<?> heartbeatDecoder;
+
+    private final MutableAsciiBuffer buffer = new MutableAsciiBuffer(new byte[8 * 1024]);
+
     @BeforeClass
     public static void generate() throws Exception
     {
         generate(true);
+
+        heartbeatDecoder = compileInMemory(HEARTBEAT_DECODER, generateSources(true, false, true));
+    }
+
+    @Test
+    public void shouldParseFieldValueOnlyOnce() throws Exception
+    {
+        final Decoder decoder = (Decoder)heartbeatDecoder.getConstructor().newInstance();
+        final int length = putMessage(ENCODED_MESSAGE);
+        decoder.decode(buffer, 1, length);
+        assertEquals(2, get(decoder, INT_FIELD));
+
+        buffer.putAscii(1 + ENCODED_MESSAGE.indexOf("116=") + 4, "3");
+        assertEquals(2, get(decoder, INT_FIELD));
+
+        decoder.decode(buffer, 1, length);
+        assertEquals(3, get(decoder, INT_FIELD));
+    }
+
+    @Test
+    public void shouldStopDecodingAfterLastTagNeeded() throws Exception
+    {
+        final Decoder decoder = (Decoder)heartbeatDecoder.getConstructor().newInstance();
+        final int length = putMessage(ENCODED_MESSAGE);
+
+        final int decodedLength = (int)heartbeatDecoder
+            .getMethod("decode", AsciiBuffer.class, int.class, int.class, int.class)
+            .invoke(decoder, buffer, 1, length, INT_FIELD_TAG);
+
+        assertEquals(ENCODED_MESSAGE.indexOf("117="), decodedLength);
+        assertEquals(2, get(decoder, INT_FIELD));
+        assertFalse((boolean)getField(decoder, HAS_BOOLEAN_FIELD));
+    }
+
+    private int putMessage(final String example)
+    {
+        buffer.putAscii(1, example);
+        return example.length();
     }
 }
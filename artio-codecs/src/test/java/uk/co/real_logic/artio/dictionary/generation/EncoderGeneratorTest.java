@@ -756,6 +756,40 @@ public class EncoderGeneratorTest
         assertThat(encoder.toString(), containsString(COMPONENT_TO_STRING));
     }
 
+    @Test
+    public void shouldBoundEncodedLengthOfValues() throws Exception
+    {
+        final Encoder encoder = newHeartbeat();
+        setRequiredFields(encoder);
+        setupHeader(encoder, "FIXT.1.1");
+        setupTrailer(encoder, "Good to go!");
+        setOptionalFields(encoder);
+        setDataFieldLength(encoder);
+
+        assertEncodesWithinMaxEncodedLength(encoder);
+    }
+
+    @Test
+    public void shouldBoundEncodedLengthOfFloatsWithLargeScales() throws Exception
+    {
+        final Encoder encoder = newHeartbeat();
+        setRequiredFields(encoder);
+        setFloat(encoder, FLOAT_FIELD, -1, 30);
+
+        assertEncodesWithinMaxEncodedLength(encoder);
+    }
+
+    @Test
+    public void shouldBoundEncodedLengthOfGroupsAndComponents() throws Exception
+    {
+        final Encoder encoder = newHeartbeat();
+        setRequiredFields(encoder);
+        setEgGroupToTwoElements(encoder);
+        setupComponent(encoder);
+
+        assertEncodesWithinMaxEncodedLength(encoder);
+    }
+
     @Test
     public void shouldGenerateHasMethodsForFields() throws Exception
     {
@@ -918,6 +952,22 @@ public class EncoderGeneratorTest
         assertEquals(expectedValue.length(), length);
     }
 
+    private void assertEncodesWithinMaxEncodedLength(final Encoder encoder)
+    {
+        final byte unwritten = (byte)0xFF;
+        buffer.setMemory(0, buffer.capacity(), unwritten);
+
+        final int maxEncodedLength = encoder.maxEncodedLength();
+        final long result = encoder.encode(buffer, 1);
+
+        assertThat(Encoder.offset(result) + Encoder.length(result), lessThanOrEqualTo(1 + maxEncodedLength));
+        assertEquals(unwritten, buffer.getByte(0));
+        for (int i = 1 + maxEncodedLength; i < buffer.capacity(); i++)
+        {
+            assertEquals("Wrote past maxEncodedLength at " + i, unwritten, buffer.getByte(i));
+        }
+    }
+
     private void assertTestReqIsValue(final Object encoder) throws Exception
     {
         assertArrayEquals(VALUE_IN_BYTES, getTestReqIdBytes(encoder));
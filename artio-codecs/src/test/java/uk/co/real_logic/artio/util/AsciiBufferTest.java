@@ -142,6 +142,84 @@ public class AsciiBufferTest
         assertEquals(-1, value);
     }
 
+    @Test
+    public void shouldFindFirstCharacterWhenScanningForwardsAcrossWords()
+    {
+        putAscii("8=FIX.4.4\0019=0103\00135=A\00149=ABC_DEFG01\001");
+
+        assertEquals(1, buffer.scan(0, 40, '='));
+        assertEquals(9, buffer.scan(0, 40, '\001'));
+        assertEquals(24, buffer.scan(21, 40, '='));
+        assertEquals(UNKNOWN_INDEX, buffer.scan(0, 40, 'Z'));
+    }
+
+    @Test
+    public void shouldNotFindCharactersBeyondEndWhenScanningForwards()
+    {
+        putAscii("0123456789ABCDEF=");
+
+        assertEquals(UNKNOWN_INDEX, buffer.scan(0, 15, '='));
+        assertEquals(16, buffer.scan(0, 16, '='));
+    }
+
+    @Test
+    public void shouldFindLastCharacterWhenScanningBackwardsAcrossWords()
+    {
+        putAscii("8=FIX.4.4\0019=0103\00135=A\00149=ABC_DEFG01\001");
+
+        assertEquals(24, buffer.scanBack(40, 0, '='));
+        assertEquals(21, buffer.scanBack(23, 0, '\001'));
+        assertEquals(1, buffer.scanBack(10, 0, '='));
+        assertEquals(UNKNOWN_INDEX, buffer.scanBack(40, 2, 'Z'));
+    }
+
+    @Test
+    public void shouldScanForwardsUpToTheEndOfTheBuffer()
+    {
+        final MutableAsciiBuffer small = new MutableAsciiBuffer("0123456789=".getBytes(US_ASCII));
+
+        assertEquals(10, small.scan(3, 10, '='));
+        assertEquals(UNKNOWN_INDEX, small.scan(0, 10, 'Z'));
+    }
+
+    @Test
+    public void shouldComputeChecksumAcrossWords()
+    {
+        final byte[] message = ("8=FIX.4.2\0019=145\00135=D\00134=4\00149=ABC_DEFG01\001" +
+            "52=20090323-15:40:29\00156=CCG\001115=XYZ\00111=NF 0542/03232009\00154=1\00138=100\00155=CVS\00140=1" +
+            "\00159=0\00147=A\00160=20090323-15:40:29\00121=1\001207=N\001").getBytes(US_ASCII);
+        buffer.putBytes(OFFSET, message);
+
+        assertEquals(194, buffer.computeChecksum(OFFSET, OFFSET + message.length));
+
+        for (int end = OFFSET; end < OFFSET + message.length; end++)
+        {
+            int expected = 0;
+            for (int i = OFFSET; i < end; i++)
+            {
+                expected += buffer.getByte(i);
+            }
+            assertEquals("Wrong checksum up to " + end, expected % 256, buffer.computeChecksum(OFFSET, end));
+        }
+    }
+
+    @Test
+    public void shouldComputeChecksumOfBytesWithTopBitSet()
+    {
+        for (int i = 0; i < 32; i++)
+        {
+            buffer.putByte(i, (byte)(0x70 + i * 5));
+        }
+
+        int expected = 0;
+        for (int i = 0; i < 32; i++)
+        {
+            expected += buffer.getByte(i);
+        }
+
+        assertEquals(expected % 256, buffer.computeChecksum(0, 32));
+    }
+
     private void putAscii(final String value)
     {
         buffer.putBytes(0, value.getBytes(US_ASCII));
@@ -87,6 +87,12 @@ public class CommonConfiguration
      * Property name for the flag to enable or disable message timing
      */
     public static final String TIME_MESSAGES_PROPERTY = "fix.core.timing";
+    /**
+     * Property name for the flag to enable the session layer to decode the headers of non-session level messages
+     * using flyweight decoders. This only takes effect if codec validation is disabled, since message validation
+     * strategies validate the copying header decoder.
+     */
+    public static final String FLYWEIGHT_SESSION_HEADERS_PROPERTY = "fix.core.flyweight_session_headers";
     /**
      * Property name for the file to log debug messages to, default is standard output
      */
@@ -105,6 +111,11 @@ public class CommonConfiguration
      */
     public static final String LOGGING_SEPARATOR_PROPERTY = "fix.core.debug.separator";
 
+    /**
+     * Property name for the flag to give each library its own publication on the inbound library stream
+     */
+    public static final String INBOUND_PUBLICATION_PER_LIBRARY_PROPERTY = "fix.core.inbound_publication_per_library";
+
     public static void validateTimeout(final long timeoutInMs)
     {
         if (timeoutInMs <= 0)
@@ -171,6 +182,7 @@ public class CommonConfiguration
     public static final String DEBUG_FILE = System.getProperty(DEBUG_FILE_PROPERTY);
     public static final boolean TIME_MESSAGES = Boolean.getBoolean(TIME_MESSAGES_PROPERTY);
     public static final boolean FORCE_WRITES = Boolean.getBoolean(FORCE_WRITES_MESSAGES_PROPERTY);
+    public static final boolean FLYWEIGHT_SESSION_HEADERS = Boolean.getBoolean(FLYWEIGHT_SESSION_HEADERS_PROPERTY);
 
     public static final int BACKOFF_SPINS = Integer.getInteger("fix.core.spins", 100);
     public static final int BACKOFF_YIELDS = Integer.getInteger("fix.core.yields", 100);
@@ -230,6 +242,7 @@ public class CommonConfiguration
     private String agentNamePrefix = DEFAULT_NAME_PREFIX;
     private int inboundLibraryStream = DEFAULT_INBOUND_LIBRARY_STREAM;
     private int outboundLibraryStream = DEFAULT_OUTBOUND_LIBRARY_STREAM;
+    private boolean inboundPublicationPerLibrary = Boolean.getBoolean(INBOUND_PUBLICATION_PER_LIBRARY_PROPERTY);
 
     private final AtomicBoolean isConcluded = new AtomicBoolean(false);
 
@@ -487,6 +500,24 @@ public class CommonConfiguration
         return this;
     }
 
+    /**
+     * Sets whether the engine publishes the messages for each library on a publication of its own, rather than on
+     * a single publication that every library reads and filters. Each library's publication is on the inbound
+     * library stream and uses the library id as its Aeron session id, so libraries only receive their own messages
+     * and those broadcast by the engine, whilst the archive still records the whole stream.
+     *
+     * This must be set to the same value on the engine and all of its libraries.
+     *
+     * @param inboundPublicationPerLibrary true to give each library its own inbound publication.
+     * @return this
+     * @see CommonConfiguration#INBOUND_PUBLICATION_PER_LIBRARY_PROPERTY
+     */
+    public CommonConfiguration inboundPublicationPerLibrary(final boolean inboundPublicationPerLibrary)
+    {
+        this.inboundPublicationPerLibrary = inboundPublicationPerLibrary;
+        return this;
+    }
+
     public Aeron.Context aeronContext()
     {
         return aeronContext;
@@ -640,4 +671,9 @@ public class CommonConfiguration
     {
         return outboundLibraryStream;
     }
+
+    public boolean inboundPublicationPerLibrary()
+    {
+        return inboundPublicationPerLibrary;
+    }
 }
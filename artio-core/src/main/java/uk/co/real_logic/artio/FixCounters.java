@@ -17,12 +17,19 @@ package uk.co.real_logic.artio;
 
 import io.aeron.Aeron;
 import io.aeron.Counter;
+import org.agrona.concurrent.AtomicBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
 import org.agrona.concurrent.status.AtomicCounter;
+import org.agrona.concurrent.status.CountersReader;
 import uk.co.real_logic.artio.dictionary.generation.Exceptions;
 
 import java.util.ArrayList;
 import java.util.List;
 
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.agrona.BitUtil.SIZE_OF_LONG;
+import static org.agrona.concurrent.status.CountersReader.*;
+
 public class FixCounters implements AutoCloseable
 {
 
@@ -35,6 +42,15 @@ public class FixCounters implements AutoCloseable
     private static final int INVALID_LIBRARY_ATTEMPTS_TYPE_ID = 10_005;
     private static final int SENT_MSG_SEQ_NO_TYPE_ID = 10_006;
     private static final int RECV_MSG_SEQ_NO_TYPE_ID = 10_007;
+    private static final int RESEND_CACHE_HITS_TYPE_ID = 10_008;
+    private static final int RESEND_CACHE_MISSES_TYPE_ID = 10_009;
+    private static final int INDEX_BYTES_FLUSHED_TYPE_ID = 10_010;
+    private static final int INDEX_FLUSH_TIME_TYPE_ID = 10_011;
+    private static final int REPLAYER_QUEUE_DEPTH_TYPE_ID = 10_012;
+    private static final int REPLAY_BACKLOG_TYPE_ID = 10_013;
+    private static final int LIBRARY_SESSIONS_TYPE_ID = 10_014;
+    private static final int REPLAY_BACKLOG_TOP_SESSION_ID_TYPE_ID = 10_015;
+    private static final int REPLAY_BACKLOG_TOP_MESSAGES_TYPE_ID = 10_016;
 
     private final List<Counter> counters = new ArrayList<>();
     private final AtomicCounter failedInboundPublications;
@@ -65,6 +81,11 @@ public class FixCounters implements AutoCloseable
         return failedReplayPublications;
     }
 
+    public CountersReader countersReader()
+    {
+        return aeron.countersReader();
+    }
+
     public AtomicCounter messagesRead(final long connectionId, final String address)
     {
         return newCounter(MESSAGES_READ_TYPE_ID, "Messages Read from " + address + " id = " + connectionId);
@@ -83,7 +104,32 @@ public class FixCounters implements AutoCloseable
 
     public AtomicCounter sentMsgSeqNo(final long connectionId)
     {
-        return newCounter(SENT_MSG_SEQ_NO_TYPE_ID, "Last Sent MsgSeqNo for " + connectionId);
+        // Keyed by the connection id so that the engine can check the counter that a library delegates to it.
+        return newCounter(SENT_MSG_SEQ_NO_TYPE_ID, connectionId, "Last Sent MsgSeqNo for " + connectionId);
+    }
+
+    /**
+     * Check whether a counter is the allocated sent MsgSeqNo counter of a connection, for example one that has been
+     * created by a library using the same media driver.
+     *
+     * @param countersReader the reader for the media driver's counters.
+     * @param counterId the id of the counter to check.
+     * @param connectionId the id of the connection that the counter should belong to.
+     * @return true if the counter is the sent MsgSeqNo counter for the connection, false otherwise.
+     */
+    public static boolean isSentMsgSeqNo(
+        final CountersReader countersReader, final int counterId, final long connectionId)
+    {
+        if (counterId < 0 || counterId > countersReader.maxCounterId() ||
+            countersReader.getCounterState(counterId) != RECORD_ALLOCATED)
+        {
+            return false;
+        }
+
+        final int metaDataOffset = metaDataOffset(counterId);
+        final AtomicBuffer metaDataBuffer = countersReader.metaDataBuffer();
+        return metaDataBuffer.getInt(metaDataOffset + TYPE_ID_OFFSET) == SENT_MSG_SEQ_NO_TYPE_ID &&
+            metaDataBuffer.getLong(metaDataOffset + KEY_OFFSET) == connectionId;
     }
 
     public AtomicCounter receivedMsgSeqNo(final long connectionId)
@@ -91,14 +137,74 @@ public class FixCounters implements AutoCloseable
         return newCounter(RECV_MSG_SEQ_NO_TYPE_ID, "Last Received MsgSeqNo for " + connectionId);
     }
 
-    private AtomicCounter newCounter(final int typeId, final String label)
+    public AtomicCounter resendCacheHits()
+    {
+        return newCounter(RESEND_CACHE_HITS_TYPE_ID, "Resend requests replayed from the resend cache");
+    }
+
+    public AtomicCounter resendCacheMisses()
+    {
+        return newCounter(RESEND_CACHE_MISSES_TYPE_ID, "Resend requests replayed from the archive");
+    }
+
+    public AtomicCounter indexBytesFlushed(final String indexName)
+    {
+        return newCounter(INDEX_BYTES_FLUSHED_TYPE_ID, "Bytes flushed to disk by " + indexName);
+    }
+
+    public AtomicCounter indexFlushTimeInNs(final String indexName)
+    {
+        return newCounter(INDEX_FLUSH_TIME_TYPE_ID, "Last flush time in ns of " + indexName);
+    }
+
+    public AtomicCounter replayerQueueDepth(final int replayerIndex)
+    {
+        return newCounter(REPLAYER_QUEUE_DEPTH_TYPE_ID, "Resend requests in progress on replayer " + replayerIndex);
+    }
+
+    public AtomicCounter replayBacklog(final int replayerIndex)
+    {
+        return newCounter(REPLAY_BACKLOG_TYPE_ID, "Messages waiting to be replayed on replayer " + replayerIndex);
+    }
+
+    public AtomicCounter replayBacklogTopSessionId(final int replayerIndex, final int rank)
+    {
+        return newCounter(REPLAY_BACKLOG_TOP_SESSION_ID_TYPE_ID,
+            "Session id of replay backlog #" + rank + " on replayer " + replayerIndex);
+    }
+
+    public AtomicCounter replayBacklogTopMessages(final int replayerIndex, final int rank)
+    {
+        return newCounter(REPLAY_BACKLOG_TOP_MESSAGES_TYPE_ID,
+            "Messages in replay backlog #" + rank + " on replayer " + replayerIndex);
+    }
+
+    public AtomicCounter librarySessions(final int libraryId)
+    {
+        return newCounter(LIBRARY_SESSIONS_TYPE_ID, "Sessions owned by library " + libraryId);
+    }
+
+    // Synchronized as counters are added by replayers as well as the framer
+    private synchronized AtomicCounter newCounter(final int typeId, final String label)
     {
         final Counter counter = aeron.addCounter(typeId, label);
         counters.add(counter);
         return counter;
     }
 
-    public void close()
+    private synchronized AtomicCounter newCounter(final int typeId, final long key, final String label)
+    {
+        final UnsafeBuffer keyBuffer = new UnsafeBuffer(new byte[SIZE_OF_LONG]);
+        keyBuffer.putLong(0, key);
+        final UnsafeBuffer labelBuffer = new UnsafeBuffer(label.getBytes(US_ASCII));
+
+        final Counter counter = aeron.addCounter(
+            typeId, keyBuffer, 0, SIZE_OF_LONG, labelBuffer, 0, labelBuffer.capacity());
+        counters.add(counter);
+        return counter;
+    }
+
+    public synchronized void close()
     {
         Exceptions.closeAll(counters);
     }
@@ -21,7 +21,6 @@ import org.agrona.concurrent.AtomicBuffer;
 import java.nio.ByteBuffer;
 import java.util.zip.CRC32;
 
-// TODO: optimisation: write and checksum only needed bytes
 public class ChecksumFramer extends SectorFramer
 {
     private final CRC32 crc32 = new CRC32();
@@ -50,12 +49,24 @@ public class ChecksumFramer extends SectorFramer
 
     public void validateCheckSums()
     {
-        withChecksums(validateChecksumFunc);
+        withChecksums(validateChecksumFunc, 0, capacity);
     }
 
     public void updateChecksums()
     {
-        withChecksums(saveChecksumFunc);
+        withChecksums(saveChecksumFunc, 0, capacity);
+    }
+
+    /**
+     * Update the checksums of only the sectors that overlap a range of the buffer, for when the rest of the buffer
+     * is known not to have changed since its checksums were last updated.
+     *
+     * @param from the start of the range.
+     * @param to the end of the range, exclusive.
+     */
+    public void updateChecksums(final int from, final int to)
+    {
+        withChecksums(saveChecksumFunc, from, Math.min(to, capacity));
     }
 
     private void validateChecksum(final int checksumOffset, final int calculatedChecksum)
@@ -66,14 +77,15 @@ public class ChecksumFramer extends SectorFramer
         validateCheckSum(fileName, start, end, savedChecksum, calculatedChecksum, errorHandler);
     }
 
-    private void withChecksums(final ChecksumConsumer consumer)
+    private void withChecksums(final ChecksumConsumer consumer, final int from, final int to)
     {
         final byte[] inMemoryBytes = buffer.byteArray();
         final ByteBuffer inMemoryByteBuffer = buffer.byteBuffer();
         final int wrapAdjustment = buffer.wrapAdjustment();
         final int capacity = this.capacity;
 
-        for (int sectorEnd = SECTOR_SIZE; sectorEnd <= capacity; sectorEnd += SECTOR_SIZE)
+        for (int sectorEnd = nextSectorStart(from); sectorEnd <= capacity && sectorEnd - SECTOR_SIZE < to;
+            sectorEnd += SECTOR_SIZE)
         {
             final int sectorStart = sectorEnd - SECTOR_SIZE + wrapAdjustment;
             final int checksumOffset = sectorEnd - CHECKSUM_SIZE;
@@ -21,6 +21,9 @@ import org.agrona.concurrent.Agent;
 import org.agrona.concurrent.AgentRunner;
 import uk.co.real_logic.artio.dictionary.generation.Exceptions;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.ThreadFactory;
 
 import static org.agrona.concurrent.AgentRunner.startOnThread;
@@ -31,6 +34,9 @@ import static uk.co.real_logic.artio.CommonConfiguration.backoffIdleStrategy;
  */
 public class DefaultEngineScheduler implements EngineScheduler
 {
+    private final List<AgentRunner> framerShardRunners = new ArrayList<>();
+    private final List<AgentRunner> replayerRunners = new ArrayList<>();
+
     private AgentRunner framerRunner;
     private AgentRunner archivingRunner;
     private AgentRunner monitoringRunner;
@@ -44,6 +50,50 @@ public class DefaultEngineScheduler implements EngineScheduler
         final Agent monitoringAgent,
         final Agent conductorAgent,
         final RecordingCoordinator recordingCoordinator)
+    {
+        launch(
+            configuration,
+            errorHandler,
+            framer,
+            Collections.emptyList(),
+            indexingAgent,
+            monitoringAgent,
+            conductorAgent,
+            recordingCoordinator);
+    }
+
+    public void launch(
+        final EngineConfiguration configuration,
+        final ErrorHandler errorHandler,
+        final Agent framer,
+        final List<Agent> framerShards,
+        final Agent indexingAgent,
+        final Agent monitoringAgent,
+        final Agent conductorAgent,
+        final RecordingCoordinator recordingCoordinator)
+    {
+        launch(
+            configuration,
+            errorHandler,
+            framer,
+            framerShards,
+            indexingAgent,
+            Collections.emptyList(),
+            monitoringAgent,
+            conductorAgent,
+            recordingCoordinator);
+    }
+
+    public void launch(
+        final EngineConfiguration configuration,
+        final ErrorHandler errorHandler,
+        final Agent framer,
+        final List<Agent> framerShards,
+        final Agent indexingAgent,
+        final List<Agent> replayers,
+        final Agent monitoringAgent,
+        final Agent conductorAgent,
+        final RecordingCoordinator recordingCoordinator)
     {
         this.recordingCoordinator = recordingCoordinator;
         if (framerRunner != null)
@@ -60,6 +110,22 @@ public class DefaultEngineScheduler implements EngineScheduler
         startOnThread(framerRunner, threadFactory);
         startOnThread(archivingRunner, threadFactory);
 
+        for (final Agent framerShard : framerShards)
+        {
+            final AgentRunner framerShardRunner = new AgentRunner(
+                configuration.framerIdleStrategy(), errorHandler, null, framerShard);
+            framerShardRunners.add(framerShardRunner);
+            startOnThread(framerShardRunner, threadFactory);
+        }
+
+        for (final Agent replayer : replayers)
+        {
+            final AgentRunner replayerRunner = new AgentRunner(
+                configuration.archiverIdleStrategy(), errorHandler, null, replayer);
+            replayerRunners.add(replayerRunner);
+            startOnThread(replayerRunner, threadFactory);
+        }
+
         if (monitoringAgent != null)
         {
             monitoringRunner = new AgentRunner(
@@ -73,8 +139,17 @@ public class DefaultEngineScheduler implements EngineScheduler
         EngineScheduler.awaitRunnerStart(framerRunner);
         EngineScheduler.awaitRunnerStart(archivingRunner);
         EngineScheduler.awaitRunnerStart(monitoringRunner);
+        framerShardRunners.forEach(EngineScheduler::awaitRunnerStart);
+        replayerRunners.forEach(EngineScheduler::awaitRunnerStart);
 
-        Exceptions.closeAll(framerRunner, archivingRunner, recordingCoordinator, monitoringRunner);
+        // Framer shards are closed after the framer, which reclaims their connections when it closes.
+        final List<AutoCloseable> closeables = new ArrayList<>();
+        closeables.add(framerRunner);
+        closeables.addAll(framerShardRunners);
+        closeables.add(archivingRunner);
+        closeables.addAll(replayerRunners);
+        Collections.addAll(closeables, recordingCoordinator, monitoringRunner);
+        Exceptions.closeAll(closeables);
     }
 
     public void configure(final Aeron.Context aeronContext)
@@ -68,6 +68,14 @@ public final class EngineConfiguration extends CommonConfiguration implements Au
      * Property name for size of logging index files
      */
     public static final String REPLAY_INDEX_FILE_SIZE_PROP = "logging.index.size";
+    /**
+     * Property name for the maximum number of sealed segments of each replay index that are retained
+     */
+    public static final String REPLAY_INDEX_MAX_SEGMENTS_PROP = "logging.index.max_segments";
+    /**
+     * Property name for the number of sessions whose replay indices are stored in each shared index file
+     */
+    public static final String REPLAY_INDEX_SHARED_FILE_SESSIONS_PROP = "logging.index.shared_file_sessions";
 
     // Care needs to be taken when setting the fragment limits, and buffer sizes
     // The inbound bytes received and buffer sizes should always be set low enough
@@ -114,6 +122,50 @@ public final class EngineConfiguration extends CommonConfiguration implements Au
      * Property name for the timeout before a connection that hasn't sent a logon is disconnected
      */
     public static final String NO_LOGON_DISCONNECT_TIMEOUT_PROP = "fix.core.no_logon_disconnect";
+    /**
+     * Property name for whether the messages framed from a single TCP read are published inbound as one batch
+     */
+    public static final String BATCH_INBOUND_MESSAGES_PROP = "fix.core.batch_inbound_messages";
+    /**
+     * Property name for the number of framer shards that poll the TCP connections of library owned sessions
+     */
+    public static final String FRAMER_SHARD_COUNT_PROP = "fix.core.framer_shard_count";
+    /**
+     * Property name for whether inbound messages carry an index of the offsets of their standard header fields
+     */
+    public static final String INDEX_TAG_OFFSETS_PROP = "fix.core.index_tag_offsets";
+    /**
+     * Property name for the maximum number of outbound bytes gathered per connection into a single TCP write
+     */
+    public static final String SENDER_MAX_GATHERED_BYTES_PROP = "fix.core.sender_max_gathered_bytes";
+    /**
+     * Property name for the maximum number of outbound messages gathered per connection into a single TCP write
+     */
+    public static final String SENDER_MAX_GATHERED_MESSAGES_PROP = "fix.core.sender_max_gathered_messages";
+    /**
+     * Property name for the maximum number of recently sent messages cached per session to serve resend requests
+     */
+    public static final String RESEND_CACHE_MAX_MESSAGES_PROP = "fix.core.resend_cache_max_messages";
+    /**
+     * Property name for the size in bytes of the off-heap buffer that caches each session's recently sent messages
+     */
+    public static final String RESEND_CACHE_MAX_BYTES_PROP = "fix.core.resend_cache_max_bytes";
+    /**
+     * Property name for the number of replayer agents that resend requests are partitioned between
+     */
+    public static final String REPLAYER_COUNT_PROP = "fix.core.replayer_count";
+    /**
+     * Property name for the maximum number of bytes that a replay sends before the replayer moves on to the next one
+     */
+    public static final String REPLAY_QUANTUM_BYTES_PROP = "fix.core.replay_quantum_bytes";
+    /**
+     * Property name for the maximum rate in bytes per second that a single replay is sent at, 0 for no limit
+     */
+    public static final String REPLAY_MAX_BYTES_PER_SECOND_PROP = "fix.core.replay_max_bytes_per_second";
+    /**
+     * Property name for the number of replays with the largest backlogs that each replayer publishes counters for
+     */
+    public static final String REPLAY_BACKLOG_TOP_SESSIONS_PROP = "fix.core.replay_backlog_top_sessions";
 
     // ------------------------------------------------
     //          Configuration Defaults
@@ -121,6 +173,8 @@ public final class EngineConfiguration extends CommonConfiguration implements Au
 
     public static final String DEFAULT_LOG_FILE_DIR = "logs";
     public static final int DEFAULT_REPLAY_INDEX_FILE_SIZE = 2 * 1024 * 1024 + INITIAL_RECORD_OFFSET;
+    public static final int DEFAULT_REPLAY_INDEX_MAX_SEGMENTS = 0;
+    public static final int DEFAULT_REPLAY_INDEX_SHARED_FILE_SESSIONS = 0;
     public static final int DEFAULT_LOGGER_CACHE_NUM_SETS = 8;
     public static final int DEFAULT_LOGGER_CACHE_SET_SIZE = 4;
 
@@ -134,6 +188,15 @@ public final class EngineConfiguration extends CommonConfiguration implements Au
     public static final int DEFAULT_SESSION_ID_BUFFER_SIZE = 4 * 1024 * 1024;
     public static final int DEFAULT_SENDER_MAX_BYTES_IN_BUFFER = 4 * 1024 * 1024;
     public static final int DEFAULT_NO_LOGON_DISCONNECT_TIMEOUT = (int)SECONDS.toMillis(5);
+    public static final int DEFAULT_FRAMER_SHARD_COUNT = 0;
+    public static final int DEFAULT_SENDER_MAX_GATHERED_BYTES = 0;
+    public static final int DEFAULT_SENDER_MAX_GATHERED_MESSAGES = 64;
+    public static final int DEFAULT_RESEND_CACHE_MAX_MESSAGES = 0;
+    public static final int DEFAULT_RESEND_CACHE_MAX_BYTES = 64 * 1024;
+    public static final int DEFAULT_REPLAYER_COUNT = 1;
+    public static final int DEFAULT_REPLAY_QUANTUM_BYTES = 64 * 1024;
+    public static final int DEFAULT_REPLAY_MAX_BYTES_PER_SECOND = 0;
+    public static final int DEFAULT_REPLAY_BACKLOG_TOP_SESSIONS = 4;
     public static final String DEFAULT_SESSION_ID_FILE = "session_id_buffer";
     public static final String DEFAULT_SEQUENCE_NUMBERS_SENT_FILE = "sequence_numbers_sent";
     public static final String DEFAULT_SEQUENCE_NUMBERS_RECEIVED_FILE = "sequence_numbers_received";
@@ -166,6 +229,10 @@ public final class EngineConfiguration extends CommonConfiguration implements Au
     private String host = null;
     private int port;
     private int replayIndexFileSize = getInteger(REPLAY_INDEX_FILE_SIZE_PROP, DEFAULT_REPLAY_INDEX_FILE_SIZE);
+    private int replayIndexMaxSegments =
+        getInteger(REPLAY_INDEX_MAX_SEGMENTS_PROP, DEFAULT_REPLAY_INDEX_MAX_SEGMENTS);
+    private int replayIndexSharedFileSessions =
+        getInteger(REPLAY_INDEX_SHARED_FILE_SESSIONS_PROP, DEFAULT_REPLAY_INDEX_SHARED_FILE_SESSIONS);
     private String logFileDir = getProperty(LOG_FILE_DIR_PROP, DEFAULT_LOG_FILE_DIR);
     private int loggerCacheNumSets = DEFAULT_LOGGER_CACHE_NUM_SETS;
     private int loggerCacheSetSize = DEFAULT_LOGGER_CACHE_SET_SIZE;
@@ -203,6 +270,22 @@ public final class EngineConfiguration extends CommonConfiguration implements Au
         getInteger(SENDER_MAX_BYTES_IN_BUFFER_PROP, DEFAULT_SENDER_MAX_BYTES_IN_BUFFER);
     private int noLogonDisconnectTimeoutInMs =
         getInteger(NO_LOGON_DISCONNECT_TIMEOUT_PROP, DEFAULT_NO_LOGON_DISCONNECT_TIMEOUT);
+    private boolean batchInboundMessages = Boolean.getBoolean(BATCH_INBOUND_MESSAGES_PROP);
+    private boolean indexTagOffsets = Boolean.getBoolean(INDEX_TAG_OFFSETS_PROP);
+    private int framerShardCount = getInteger(FRAMER_SHARD_COUNT_PROP, DEFAULT_FRAMER_SHARD_COUNT);
+    private int senderMaxGatheredBytes =
+        getInteger(SENDER_MAX_GATHERED_BYTES_PROP, DEFAULT_SENDER_MAX_GATHERED_BYTES);
+    private int senderMaxGatheredMessages =
+        getInteger(SENDER_MAX_GATHERED_MESSAGES_PROP, DEFAULT_SENDER_MAX_GATHERED_MESSAGES);
+    private int resendCacheMaxMessages =
+        getInteger(RESEND_CACHE_MAX_MESSAGES_PROP, DEFAULT_RESEND_CACHE_MAX_MESSAGES);
+    private int resendCacheMaxBytes = getInteger(RESEND_CACHE_MAX_BYTES_PROP, DEFAULT_RESEND_CACHE_MAX_BYTES);
+    private int replayerCount = getInteger(REPLAYER_COUNT_PROP, DEFAULT_REPLAYER_COUNT);
+    private int replayQuantumBytes = getInteger(REPLAY_QUANTUM_BYTES_PROP, DEFAULT_REPLAY_QUANTUM_BYTES);
+    private int replayMaxBytesPerSecond =
+        getInteger(REPLAY_MAX_BYTES_PER_SECOND_PROP, DEFAULT_REPLAY_MAX_BYTES_PER_SECOND);
+    private int replayBacklogTopSessions =
+        getInteger(REPLAY_BACKLOG_TOP_SESSIONS_PROP, DEFAULT_REPLAY_BACKLOG_TOP_SESSIONS);
 
     private String libraryAeronChannel = null;
     private Function<EngineConfiguration, TcpChannelSupplier> channelSupplierFactory = TcpChannelSupplier::new;
@@ -307,6 +390,50 @@ public final class EngineConfiguration extends CommonConfiguration implements Au
         return this;
     }
 
+    /**
+     * Sets the maximum number of segments retained for each session's replay index. Before a session's index file
+     * wraps around and overwrites its oldest records, they're sealed into a segment file of the same size so that
+     * older messages can still be replayed. Once there are more segments than this the oldest are deleted, which
+     * bounds the disk space used per session at (1 + maxSegments) * the size of index files. Sessions that never
+     * wrap their index never create segments. Set to 0, the default, to never seal segments.
+     *
+     * Segments are sealed, and old ones deleted, synchronously on the indexing thread, so that queries always find
+     * a lap's records either in the index file or in its segment. Indexing stalls while a segment is written, for a
+     * time that grows with the size of index files, so large index files with segments may delay indexing.
+     *
+     * @param replayIndexMaxSegments the maximum number of segments retained for each session's replay index.
+     * @return this
+     * @see EngineConfiguration#REPLAY_INDEX_MAX_SEGMENTS_PROP
+     * @see EngineConfiguration#DEFAULT_REPLAY_INDEX_MAX_SEGMENTS
+     */
+    public EngineConfiguration replayIndexMaxSegments(final int replayIndexMaxSegments)
+    {
+        this.replayIndexMaxSegments = replayIndexMaxSegments;
+        return this;
+    }
+
+    /**
+     * Stores the replay indices of many sessions in shared index files, rather than a file per session. Each shared
+     * file has a slot of {@link #replayIndexFileSize(int)} bytes for each of this many sessions, and is mapped for as
+     * long as the engine runs, so indexing and querying large numbers of sessions doesn't keep mapping and unmapping
+     * their files. New shared files are created as sessions fill them. A shared file has to be smaller than 2GB, so
+     * you may want to reduce the size of index files when using this.
+     *
+     * Once enabled, sessions that already have their own index file are given a slot in a shared file, and the
+     * messages indexed in their own file are no longer replayed. Set to 0, the default, to use a file per session.
+     *
+     * @param replayIndexSharedFileSessions the number of sessions whose replay indices are stored in each shared
+     *                                      index file.
+     * @return this
+     * @see EngineConfiguration#REPLAY_INDEX_SHARED_FILE_SESSIONS_PROP
+     * @see EngineConfiguration#DEFAULT_REPLAY_INDEX_SHARED_FILE_SESSIONS
+     */
+    public EngineConfiguration replayIndexSharedFileSessions(final int replayIndexSharedFileSessions)
+    {
+        this.replayIndexSharedFileSessions = replayIndexSharedFileSessions;
+        return this;
+    }
+
     /**
      * Sets the set size of the logger's caches.
      * <p>
@@ -598,6 +725,178 @@ public final class EngineConfiguration extends CommonConfiguration implements Au
         return this;
     }
 
+    /**
+     * Sets whether all the messages framed from a single TCP read of a connection are published on the inbound
+     * stream as a single batch, rather than one fragment per message. This reduces the cost of framing bursts of
+     * small messages. Subscribers within Artio unpack batches transparently.
+     *
+     * @param batchInboundMessages true to batch inbound messages or false (the default) to publish them individually.
+     * @return this
+     * @see EngineConfiguration#BATCH_INBOUND_MESSAGES_PROP
+     */
+    public EngineConfiguration batchInboundMessages(final boolean batchInboundMessages)
+    {
+        this.batchInboundMessages = batchInboundMessages;
+        return this;
+    }
+
+    /**
+     * Sets whether inbound messages are published with a {@link uk.co.real_logic.artio.protocol.TagOffsetIndex}
+     * of their standard header fields. The engine's indexers then read the header fields they need from the index
+     * rather than decoding the message. Messages that are batched or fragmented aren't indexed.
+     *
+     * @param indexTagOffsets true to index inbound messages or false (the default) otherwise.
+     * @return this
+     * @see EngineConfiguration#INDEX_TAG_OFFSETS_PROP
+     */
+    public EngineConfiguration indexTagOffsets(final boolean indexTagOffsets)
+    {
+        this.indexTagOffsets = indexTagOffsets;
+        return this;
+    }
+
+    /**
+     * Sets the number of framer shards. Each shard is an agent that reads from, and frames the messages of, the
+     * TCP connections of a subset of the library owned sessions, picked by connection id. The framer coordinates
+     * the shards and keeps ownership of libraries, sessions and outbound TCP writes. 0, the default, means that the
+     * framer reads from every connection itself.
+     *
+     * NB: This is an experimental API and is subject to change or potentially removal.
+     *
+     * @param framerShardCount the number of framer shards.
+     * @return this
+     * @see EngineConfiguration#FRAMER_SHARD_COUNT_PROP
+     */
+    public EngineConfiguration framerShardCount(final int framerShardCount)
+    {
+        this.framerShardCount = framerShardCount;
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of bytes of outbound messages that are gathered for each connection. Messages that
+     * a connection is sent whilst the framer polls the outbound stream are gathered and written to its TCP
+     * connection with a single write at the end of the poll, or as soon as this limit would be exceeded. 0, the
+     * default, disables gathering so that each message is written as soon as it is polled.
+     *
+     * @param senderMaxGatheredBytes the maximum number of bytes gathered for each connection.
+     * @return this
+     * @see EngineConfiguration#SENDER_MAX_GATHERED_BYTES_PROP
+     */
+    public EngineConfiguration senderMaxGatheredBytes(final int senderMaxGatheredBytes)
+    {
+        this.senderMaxGatheredBytes = senderMaxGatheredBytes;
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of outbound messages that are gathered for each connection before they're written
+     * to its TCP connection. Only used when {@link #senderMaxGatheredBytes(int)} is set.
+     *
+     * @param senderMaxGatheredMessages the maximum number of messages gathered for each connection.
+     * @return this
+     * @see EngineConfiguration#SENDER_MAX_GATHERED_MESSAGES_PROP
+     */
+    public EngineConfiguration senderMaxGatheredMessages(final int senderMaxGatheredMessages)
+    {
+        this.senderMaxGatheredMessages = senderMaxGatheredMessages;
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of recently sent messages that are cached for each session. Resend requests whose
+     * range is entirely cached are replayed from memory rather than from the archive. 0, the default, disables
+     * the cache. Only used when outbound messages are logged.
+     *
+     * @param resendCacheMaxMessages the maximum number of messages cached for each session.
+     * @return this
+     * @see EngineConfiguration#RESEND_CACHE_MAX_MESSAGES_PROP
+     */
+    public EngineConfiguration resendCacheMaxMessages(final int resendCacheMaxMessages)
+    {
+        this.resendCacheMaxMessages = resendCacheMaxMessages;
+        return this;
+    }
+
+    /**
+     * Sets the size of the off-heap buffer that each session's cached messages are stored in, the oldest messages
+     * being evicted to make space for new ones. Only used when {@link #resendCacheMaxMessages(int)} is set.
+     *
+     * @param resendCacheMaxBytes the size in bytes of each session's cache.
+     * @return this
+     * @see EngineConfiguration#RESEND_CACHE_MAX_BYTES_PROP
+     */
+    public EngineConfiguration resendCacheMaxBytes(final int resendCacheMaxBytes)
+    {
+        this.resendCacheMaxBytes = resendCacheMaxBytes;
+        return this;
+    }
+
+    /**
+     * Sets the number of replayer agents that serve resend requests. Each replayer has its own replay publication
+     * and runs on its own thread, when the scheduler supports it, so that a large resend to one session doesn't
+     * delay the resends of sessions on other replayers. Sessions are assigned to replayers by a hash of their
+     * session id. The resend cache is indexed on the archiving thread, so can only be used with a single replayer.
+     *
+     * @param replayerCount the number of replayers, 1 by default.
+     * @return this
+     * @see EngineConfiguration#REPLAYER_COUNT_PROP
+     */
+    public EngineConfiguration replayerCount(final int replayerCount)
+    {
+        this.replayerCount = replayerCount;
+        return this;
+    }
+
+    /**
+     * Sets the number of bytes that each in progress replay can send in one duty cycle of its replayer, before it
+     * moves on to the next replay. Replays take turns so that one large resend can't starve the others. The quantum
+     * is shrunk when the replay publication has little space left, which happens when a connection isn't draining
+     * its replayed messages, so that the replayer backs off rather than flooding the publication.
+     *
+     * A replay always sends at least one message in a duty cycle that it has any space for.
+     *
+     * @param replayQuantumBytes the number of bytes that each replay can send per duty cycle.
+     * @return this
+     * @see EngineConfiguration#REPLAY_QUANTUM_BYTES_PROP
+     */
+    public EngineConfiguration replayQuantumBytes(final int replayQuantumBytes)
+    {
+        this.replayQuantumBytes = replayQuantumBytes;
+        return this;
+    }
+
+    /**
+     * Sets the maximum rate at which a single replay is sent, in order to stop a large resend from filling up the
+     * TCP buffers of its connection. Replays can burst up to a second's worth of bytes.
+     *
+     * @param replayMaxBytesPerSecond the maximum number of bytes per second of each replay, or 0 for no limit,
+     *                                which is the default.
+     * @return this
+     * @see EngineConfiguration#REPLAY_MAX_BYTES_PER_SECOND_PROP
+     */
+    public EngineConfiguration replayMaxBytesPerSecond(final int replayMaxBytesPerSecond)
+    {
+        this.replayMaxBytesPerSecond = replayMaxBytesPerSecond;
+        return this;
+    }
+
+    /**
+     * Sets the number of in progress replays that each replayer reports the backlog of. Each replayer publishes the
+     * total number of messages waiting to be replayed, and a pair of counters for each of its largest backlogs that
+     * hold the session id and the number of messages waiting. The counters are added when the engine starts, so
+     * there's a fixed number of them however many sessions resend.
+     *
+     * @param replayBacklogTopSessions the number of largest backlogs to publish, 4 by default.
+     * @return this
+     * @see EngineConfiguration#REPLAY_BACKLOG_TOP_SESSIONS_PROP
+     */
+    public EngineConfiguration replayBacklogTopSessions(final int replayBacklogTopSessions)
+    {
+        this.replayBacklogTopSessions = replayBacklogTopSessions;
+        return this;
+    }
+
     /**
      * Sets the aeron channel that libraries will use to communicate with this FixEngine instance.
      *
@@ -665,6 +964,16 @@ public final class EngineConfiguration extends CommonConfiguration implements Au
         return replayIndexFileSize;
     }
 
+    public int replayIndexMaxSegments()
+    {
+        return replayIndexMaxSegments;
+    }
+
+    public int replayIndexSharedFileSessions()
+    {
+        return replayIndexSharedFileSessions;
+    }
+
     public int loggerCacheSetSize()
     {
         return loggerCacheSetSize;
@@ -790,6 +1099,61 @@ public final class EngineConfiguration extends CommonConfiguration implements Au
         return soleLibraryMode;
     }
 
+    public boolean batchInboundMessages()
+    {
+        return batchInboundMessages;
+    }
+
+    public boolean indexTagOffsets()
+    {
+        return indexTagOffsets;
+    }
+
+    public int framerShardCount()
+    {
+        return framerShardCount;
+    }
+
+    public int senderMaxGatheredBytes()
+    {
+        return senderMaxGatheredBytes;
+    }
+
+    public int senderMaxGatheredMessages()
+    {
+        return senderMaxGatheredMessages;
+    }
+
+    public int resendCacheMaxMessages()
+    {
+        return resendCacheMaxMessages;
+    }
+
+    public int resendCacheMaxBytes()
+    {
+        return resendCacheMaxBytes;
+    }
+
+    public int replayerCount()
+    {
+        return replayerCount;
+    }
+
+    public int replayQuantumBytes()
+    {
+        return replayQuantumBytes;
+    }
+
+    public int replayMaxBytesPerSecond()
+    {
+        return replayMaxBytesPerSecond;
+    }
+
+    public int replayBacklogTopSessions()
+    {
+        return replayBacklogTopSessions;
+    }
+
     public AuthenticationStrategy authenticationStrategy()
     {
         return authenticationStrategy;
@@ -872,6 +1236,15 @@ public final class EngineConfiguration extends CommonConfiguration implements Au
         return this;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public EngineConfiguration inboundPublicationPerLibrary(final boolean inboundPublicationPerLibrary)
+    {
+        super.inboundPublicationPerLibrary(inboundPublicationPerLibrary);
+        return this;
+    }
+
     /**
      * Sets factory for threads such as framer, archivingRunner, etc in EngineScheduler
      * @param threadFactory factory for custom thread creating
@@ -932,6 +1305,52 @@ public final class EngineConfiguration extends CommonConfiguration implements Au
             throw new IllegalArgumentException("Missing required configuration: library aeron channel");
         }
 
+        if (framerShardCount() < 0)
+        {
+            throw new IllegalArgumentException("framerShardCount must not be negative: " + framerShardCount());
+        }
+
+        if (inboundPublicationPerLibrary() && framerShardCount() > 0)
+        {
+            throw new IllegalArgumentException(
+                "Framer shards can't be used with an inbound publication per library, framerShardCount = " +
+                framerShardCount());
+        }
+
+        if (replayerCount() <= 0)
+        {
+            throw new IllegalArgumentException("replayerCount must be positive: " + replayerCount());
+        }
+
+        if (replayerCount() > 1 && resendCacheMaxMessages() > 0)
+        {
+            throw new IllegalArgumentException(
+                "The resend cache can't be used with more than one replayer, replayerCount = " + replayerCount());
+        }
+
+        if (replayQuantumBytes() <= 0)
+        {
+            throw new IllegalArgumentException("replayQuantumBytes must be positive: " + replayQuantumBytes());
+        }
+
+        if (replayMaxBytesPerSecond() < 0)
+        {
+            throw new IllegalArgumentException(
+                "replayMaxBytesPerSecond must not be negative: " + replayMaxBytesPerSecond());
+        }
+
+        if (replayBacklogTopSessions() < 0)
+        {
+            throw new IllegalArgumentException(
+                "replayBacklogTopSessions must not be negative: " + replayBacklogTopSessions());
+        }
+
+        if (senderMaxGatheredBytes() > 0 && senderMaxGatheredMessages() <= 0)
+        {
+            throw new IllegalArgumentException(
+                "senderMaxGatheredMessages must be positive: " + senderMaxGatheredMessages());
+        }
+
         if (receiverBufferSize() < sessionBufferSize())
         {
             throw new IllegalArgumentException(String.format(
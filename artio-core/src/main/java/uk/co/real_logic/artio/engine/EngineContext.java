@@ -16,6 +16,7 @@
 package uk.co.real_logic.artio.engine;
 
 import io.aeron.Aeron;
+import io.aeron.CommonContext;
 import io.aeron.ExclusivePublication;
 import io.aeron.Subscription;
 import io.aeron.UnavailableImageHandler;
@@ -47,7 +48,8 @@ public class EngineContext implements AutoCloseable
     private final SenderSequenceNumbers senderSequenceNumbers;
     private final AeronArchive aeronArchive;
     private final RecordingCoordinator recordingCoordinator;
-    private final ExclusivePublication replayPublication;
+    private final List<ExclusivePublication> replayPublications;
+    private final List<Agent> replayers = new ArrayList<>();
     private final SequenceNumberIndexWriter sentSequenceNumberIndex;
     private final SequenceNumberIndexWriter receivedSequenceNumberIndex;
     private final CompletionPosition inboundCompletionPosition = new CompletionPosition();
@@ -60,12 +62,16 @@ public class EngineContext implements AutoCloseable
     // Indexers are owned by the archivingAgent
     private Indexer inboundIndexer;
     private Indexer outboundIndexer;
+    private ResendCache resendCache;
+    // Null unless each library has its own inbound publication and outbound messages are logged
+    private SentPositionRelay sentPositionRelay;
     private Agent archivingAgent;
+    private Subscription archiveReplaySubscription;
 
     EngineContext(
         final EngineConfiguration configuration,
         final ErrorHandler errorHandler,
-        final ExclusivePublication replayPublication,
+        final List<ExclusivePublication> replayPublications,
         final FixCounters fixCounters,
         final Aeron aeron,
         final AeronArchive aeronArchive,
@@ -76,7 +82,7 @@ public class EngineContext implements AutoCloseable
         this.fixCounters = fixCounters;
         this.aeron = aeron;
         this.clock = configuration.clock();
-        this.replayPublication = replayPublication;
+        this.replayPublications = replayPublications;
         this.aeronArchive = aeronArchive;
         this.recordingCoordinator = recordingCoordinator;
 
@@ -92,7 +98,9 @@ public class EngineContext implements AutoCloseable
                 configuration.outboundLibraryStream(),
                 recordingCoordinator.outboundRecordingIdLookup(),
                 configuration.indexFileStateFlushTimeoutInMs(),
-                epochClock);
+                epochClock,
+                fixCounters.indexBytesFlushed("sent sequence number index"),
+                fixCounters.indexFlushTimeInNs("sent sequence number index"));
             receivedSequenceNumberIndex = new SequenceNumberIndexWriter(
                 configuration.receivedSequenceNumberBuffer(),
                 configuration.receivedSequenceNumberIndex(),
@@ -100,7 +108,9 @@ public class EngineContext implements AutoCloseable
                 configuration.inboundLibraryStream(),
                 recordingCoordinator.inboundRecordingIdLookup(),
                 configuration.indexFileStateFlushTimeoutInMs(),
-                epochClock);
+                epochClock,
+                fixCounters.indexBytesFlushed("received sequence number index"),
+                fixCounters.indexFlushTimeInNs("received sequence number index"));
 
             newStreams();
             newArchivingAgent();
@@ -151,6 +161,8 @@ public class EngineContext implements AutoCloseable
             logFileDir,
             streamId,
             configuration.replayIndexFileSize(),
+            configuration.replayIndexMaxSegments(),
+            configuration.replayIndexSharedFileSessions(),
             cacheNumSets,
             cacheSetSize,
             LoggerUtil::map,
@@ -159,7 +171,7 @@ public class EngineContext implements AutoCloseable
             recordingIdLookup);
     }
 
-    private ReplayQuery newReplayQuery(final IdleStrategy idleStrategy, final int streamId)
+    private ReplayQuery newReplayQuery(final int streamId, final Subscription replaySubscription)
     {
         final String logFileDir = configuration.logFileDir();
         final int cacheSetSize = configuration.loggerCacheSetSize();
@@ -172,17 +184,19 @@ public class EngineContext implements AutoCloseable
             cacheSetSize,
             LoggerUtil::mapExistingFile,
             streamId,
-            idleStrategy,
             aeronArchive,
             errorHandler,
-            archiveReplayStream);
+            archiveReplayStream,
+            replaySubscription);
     }
 
     private Replayer newReplayer(
-        final ExclusivePublication replayPublication)
+        final ExclusivePublication replayPublication,
+        final int replayerIndex,
+        final SenderSequenceNumbers senderSequenceNumbers)
     {
         return new Replayer(
-            newReplayQuery(configuration.archiverIdleStrategy(), configuration.outboundLibraryStream()),
+            newReplayQuery(configuration.outboundLibraryStream(), archiveReplaySubscription),
             replayPublication,
             new BufferClaim(),
             configuration.archiverIdleStrategy(),
@@ -193,7 +207,15 @@ public class EngineContext implements AutoCloseable
             new SystemEpochClock(),
             configuration.gapfillOnReplayMessageTypes(),
             configuration.replayHandler(),
-            senderSequenceNumbers);
+            senderSequenceNumbers,
+            resendCache,
+            replayerIndex,
+            replayPublications.size(),
+            fixCounters.replayerQueueDepth(replayerIndex),
+            configuration.replayQuantumBytes(),
+            configuration.replayMaxBytesPerSecond(),
+            configuration.replayBacklogTopSessions(),
+            fixCounters);
     }
 
     private void newIndexers()
@@ -226,7 +248,25 @@ public class EngineContext implements AutoCloseable
             configuration.outboundLibraryStream(),
             recordingCoordinator.outboundRecordingIdLookup()));
         outboundIndices.add(sentSequenceNumberIndex);
-        outboundIndices.add(new PositionSender(inboundPublication()));
+        if (configuration.inboundPublicationPerLibrary())
+        {
+            sentPositionRelay = new SentPositionRelay();
+            outboundIndices.add(new PositionSender(sentPositionRelay::saveNewSentPosition));
+        }
+        else
+        {
+            outboundIndices.add(new PositionSender(inboundPublication()));
+        }
+        if (configuration.resendCacheMaxMessages() > 0)
+        {
+            resendCache = new ResendCache(
+                configuration.outboundLibraryStream(),
+                configuration.resendCacheMaxMessages(),
+                configuration.resendCacheMaxBytes(),
+                fixCounters.resendCacheHits(),
+                fixCounters.resendCacheMisses());
+            outboundIndices.add(resendCache);
+        }
 
         outboundIndexer = new Indexer(
             outboundIndices,
@@ -244,19 +284,35 @@ public class EngineContext implements AutoCloseable
         {
             newIndexers();
 
-            final Replayer replayer = newReplayer(replayPublication);
-
             final List<Agent> agents = new ArrayList<>();
             agents.add(inboundIndexer);
             agents.add(outboundIndexer);
-            agents.add(replayer);
+
+            // Replayers share a subscription so that they don't hold back each other's replays from the archive.
+            archiveReplaySubscription = aeron.addSubscription(
+                CommonContext.IPC_CHANNEL, configuration.archiveReplayStream());
+
+            final int replayerCount = replayPublications.size();
+            if (replayerCount == 1)
+            {
+                agents.add(newReplayer(replayPublications.get(0), 0, senderSequenceNumbers));
+            }
+            else
+            {
+                for (int i = 0; i < replayerCount; i++)
+                {
+                    final SenderSequenceNumbers replayerSenderSequenceNumbers = i == 0 ?
+                        senderSequenceNumbers : senderSequenceNumbers.newConsumer();
+                    replayers.add(newReplayer(replayPublications.get(i), i, replayerSenderSequenceNumbers));
+                }
+            }
 
             archivingAgent = new CompositeAgent(agents);
         }
         else
         {
             final GatewayPublication replayGatewayPublication = new GatewayPublication(
-                replayPublication,
+                replayPublications.get(0),
                 fixCounters.failedReplayPublications(),
                 configuration.archiverIdleStrategy(),
                 clock,
@@ -295,13 +351,32 @@ public class EngineContext implements AutoCloseable
             return null;
         }
 
-        return newReplayQuery(configuration.framerIdleStrategy(), configuration.inboundLibraryStream());
+        return newReplayQuery(configuration.inboundLibraryStream(), null);
     }
 
     public GatewayPublication inboundPublication()
+    {
+        return inboundPublication("inboundPublication");
+    }
+
+    // Framer shards publish inbound messages on the same Aeron publication as the framer, so that they are
+    // never reordered with respect to the framer's session management messages.
+    public GatewayPublication inboundPublication(final String name)
+    {
+        final IdleStrategy idleStrategy = configuration.framerIdleStrategy();
+        if (configuration.framerShardCount() > 0)
+        {
+            return inboundLibraryStreams.sharedGatewayPublication(idleStrategy, name);
+        }
+
+        return inboundLibraryStreams.gatewayPublication(idleStrategy, name);
+    }
+
+    // Only called on the Framer thread, when a library first connects.
+    public GatewayPublication libraryInboundPublication(final int libraryId)
     {
         return inboundLibraryStreams.gatewayPublication(
-            configuration.framerIdleStrategy(), "inboundPublication");
+            configuration.framerIdleStrategy(), "library " + libraryId + " inboundPublication", libraryId);
     }
 
     public CompletionPosition inboundCompletionPosition()
@@ -314,6 +389,11 @@ public class EngineContext implements AutoCloseable
         return outboundLibraryCompletionPosition;
     }
 
+    public SentPositionRelay sentPositionRelay()
+    {
+        return sentPositionRelay;
+    }
+
     void completeDuringStartup()
     {
         inboundCompletionPosition.completeDuringStartup();
@@ -326,6 +406,12 @@ public class EngineContext implements AutoCloseable
         return archivingAgent;
     }
 
+    // Replayers that are scheduled separately from the archiving agent, empty when there is a single replayer.
+    List<Agent> replayers()
+    {
+        return replayers;
+    }
+
     public SenderSequenceNumbers senderSequenceNumbers()
     {
         return senderSequenceNumbers;
@@ -334,6 +420,6 @@ public class EngineContext implements AutoCloseable
     public void close()
     {
         Exceptions.closeAll(
-            sentSequenceNumberIndex, receivedSequenceNumberIndex);
+            sentSequenceNumberIndex, receivedSequenceNumberIndex, archiveReplaySubscription);
     }
 }
@@ -19,6 +19,10 @@ import io.aeron.Aeron;
 import org.agrona.ErrorHandler;
 import org.agrona.concurrent.Agent;
 import org.agrona.concurrent.AgentRunner;
+import org.agrona.concurrent.CompositeAgent;
+
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Interface for determining how an Engine's Agents are allocated to threads.
@@ -45,6 +49,101 @@ public interface EngineScheduler extends AutoCloseable
         Agent conductorAgent,
         RecordingCoordinator recordingCoordinator);
 
+    /**
+     * Invoked by the FIX Engine to start the threads when it may have framer shards, see
+     * {@link EngineConfiguration#framerShardCount(int)}. Should only return once they are started.
+     *
+     * The default implementation schedules the framer shards onto the same thread as the framer, so schedulers
+     * should override it in order to poll connections in parallel.
+     *
+     * @param configuration the engine's configuration object.
+     * @param errorHandler the ErrorHandler used by the engine.
+     * @param framer the framer agent to schedule.
+     * @param framerShards the framer shard agents to schedule, empty if there are no framer shards. Must be
+     *                     closed after the framer.
+     * @param indexingAgent the archiver agent to schedule.
+     * @param monitoringAgent the monitoring agent to schedule.
+     * @param conductorAgent if aeron has useConductorInvoker enable it
+     * @param recordingCoordinator must be shut down after the Framer but before the conductorAgent.
+     */
+    default void launch(
+        EngineConfiguration configuration,
+        ErrorHandler errorHandler,
+        Agent framer,
+        List<Agent> framerShards,
+        Agent indexingAgent,
+        Agent monitoringAgent,
+        Agent conductorAgent,
+        RecordingCoordinator recordingCoordinator)
+    {
+        Agent framerAgent = framer;
+        if (!framerShards.isEmpty())
+        {
+            final List<Agent> framerAgents = new ArrayList<>();
+            framerAgents.add(framer);
+            framerAgents.addAll(framerShards);
+            framerAgent = new CompositeAgent(framerAgents);
+        }
+
+        launch(
+            configuration,
+            errorHandler,
+            framerAgent,
+            indexingAgent,
+            monitoringAgent,
+            conductorAgent,
+            recordingCoordinator);
+    }
+
+    /**
+     * Invoked by the FIX Engine to start the threads when it may have framer shards or several replayers, see
+     * {@link EngineConfiguration#replayerCount(int)}. Should only return once they are started.
+     *
+     * The default implementation schedules the replayers onto the same thread as the archiver, so schedulers
+     * should override it in order to serve resend requests in parallel.
+     *
+     * @param configuration the engine's configuration object.
+     * @param errorHandler the ErrorHandler used by the engine.
+     * @param framer the framer agent to schedule.
+     * @param framerShards the framer shard agents to schedule, empty if there are no framer shards. Must be
+     *                     closed after the framer.
+     * @param indexingAgent the archiver agent to schedule.
+     * @param replayers the replayer agents to schedule, empty if the archiver agent includes the only replayer.
+     * @param monitoringAgent the monitoring agent to schedule.
+     * @param conductorAgent if aeron has useConductorInvoker enable it
+     * @param recordingCoordinator must be shut down after the Framer but before the conductorAgent.
+     */
+    default void launch(
+        EngineConfiguration configuration,
+        ErrorHandler errorHandler,
+        Agent framer,
+        List<Agent> framerShards,
+        Agent indexingAgent,
+        List<Agent> replayers,
+        Agent monitoringAgent,
+        Agent conductorAgent,
+        RecordingCoordinator recordingCoordinator)
+    {
+        Agent archivingAgent = indexingAgent;
+        if (!replayers.isEmpty())
+        {
+            final List<Agent> archivingAgents = new ArrayList<>();
+            archivingAgents.add(indexingAgent);
+            archivingAgents.addAll(replayers);
+            archivingAgent = new CompositeAgent(archivingAgents);
+        }
+
+        launch(
+            configuration,
+            errorHandler,
+            framer,
+            framerShards,
+            archivingAgent,
+            monitoringAgent,
+            conductorAgent,
+            recordingCoordinator);
+    }
+
     /**
      * Invoked by the FIX Engine to stop the threads. Should only return once they are completed stopped.
      */
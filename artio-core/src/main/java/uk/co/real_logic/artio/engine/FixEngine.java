@@ -30,6 +30,7 @@ import uk.co.real_logic.artio.engine.framer.LibraryInfo;
 import uk.co.real_logic.artio.timing.EngineTimers;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.List;
 
 import static io.aeron.CommonContext.IPC_CHANNEL;
@@ -165,16 +166,16 @@ public final class FixEngine extends GatewayProcess
                 configuration,
                 configuration.archiverIdleStrategy());
 
-            final ExclusivePublication replayPublication = replayPublication();
+            final List<ExclusivePublication> replayPublications = replayPublications();
             engineContext = new EngineContext(
                 configuration,
                 errorHandler,
-                replayPublication,
+                replayPublications,
                 fixCounters,
                 aeron,
                 aeronArchive,
                 recordingCoordinator);
-            initFramer(configuration, fixCounters, replayPublication.sessionId());
+            initFramer(configuration, fixCounters, replayPublications);
             initMonitoringAgent(timers.all(), configuration);
             recordingCoordinator.awaitReady();
         }
@@ -191,48 +192,59 @@ public final class FixEngine extends GatewayProcess
         }
     }
 
-    private ExclusivePublication replayPublication()
+    // One publication for each replayer, the gap filler that's used when outbound messages aren't logged needs one.
+    private List<ExclusivePublication> replayPublications()
     {
-        final ExclusivePublication publication = aeron.addExclusivePublication(
-            IPC_CHANNEL, configuration.outboundReplayStream());
-        StreamInformation.print("replayPublication", publication, configuration);
-        return publication;
+        final int replayerCount = configuration.logOutboundMessages() ? configuration.replayerCount() : 1;
+        final List<ExclusivePublication> publications = new ArrayList<>();
+        for (int i = 0; i < replayerCount; i++)
+        {
+            final ExclusivePublication publication = aeron.addExclusivePublication(
+                IPC_CHANNEL, configuration.outboundReplayStream());
+            StreamInformation.print("replayPublication" + i, publication, configuration);
+            publications.add(publication);
+        }
+        return publications;
     }
 
     private void initFramer(
-        final EngineConfiguration configuration, final FixCounters fixCounters, final int replaySessionId)
+        final EngineConfiguration configuration,
+        final FixCounters fixCounters,
+        final List<ExclusivePublication> replayPublications)
     {
         framerContext = new FramerContext(
             configuration,
             fixCounters,
             engineContext,
             errorHandler,
-            replayImage("replay", replaySessionId),
-            replayImage("slow-replay", replaySessionId),
+            replayImages("replay", replayPublications),
+            replayImages("slow-replay", replayPublications),
             timers,
             aeron.conductorAgentInvoker(),
             recordingCoordinator);
     }
 
-    private Image replayImage(final String name, final int replaySessionId)
+    private Image[] replayImages(final String name, final List<ExclusivePublication> replayPublications)
     {
         final Subscription subscription = aeron.addSubscription(
             IPC_CHANNEL, configuration.outboundReplayStream());
         StreamInformation.print(name, subscription, configuration);
 
-        // Await replay publication
-        while (true)
+        final Image[] images = new Image[replayPublications.size()];
+        for (int i = 0; i < images.length; i++)
         {
-            final Image image = subscription.imageBySessionId(replaySessionId);
-            if (image != null)
-            {
-                return image;
-            }
+            final int replaySessionId = replayPublications.get(i).sessionId();
 
-            invokeAeronConductor();
+            // Await replay publication
+            while ((images[i] = subscription.imageBySessionId(replaySessionId)) == null)
+            {
+                invokeAeronConductor();
 
-            Thread.yield();
+                Thread.yield();
+            }
         }
+
+        return images;
     }
 
     // To be invoked by called called before a scheduler has launched
@@ -251,7 +263,9 @@ public final class FixEngine extends GatewayProcess
             configuration,
             errorHandler,
             framerContext.framer(),
+            framerContext.framerShards(),
             engineContext.archivingAgent(),
+            engineContext.replayers(),
             monitoringAgent,
             conductorAgent(),
             recordingCoordinator);
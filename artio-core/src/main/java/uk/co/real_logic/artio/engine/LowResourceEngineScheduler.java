@@ -51,6 +51,27 @@ public class LowResourceEngineScheduler implements EngineScheduler
         final Agent monitoringAgent,
         final Agent conductorAgent,
         final RecordingCoordinator recordingCoordinator)
+    {
+        launch(
+            configuration,
+            errorHandler,
+            framer,
+            Collections.emptyList(),
+            indexingAgent,
+            monitoringAgent,
+            conductorAgent,
+            recordingCoordinator);
+    }
+
+    public void launch(
+        final EngineConfiguration configuration,
+        final ErrorHandler errorHandler,
+        final Agent framer,
+        final List<Agent> framerShards,
+        final Agent indexingAgent,
+        final Agent monitoringAgent,
+        final Agent conductorAgent,
+        final RecordingCoordinator recordingCoordinator)
     {
         this.recordingCoordinator = recordingCoordinator;
 
@@ -60,8 +81,9 @@ public class LowResourceEngineScheduler implements EngineScheduler
         }
 
         final List<Agent> agents = new ArrayList<>();
-        Collections.addAll(agents,
-            monitoringAgent, framer, indexingAgent, new RecordingCoordinatorAgent(), conductorAgent);
+        Collections.addAll(agents, monitoringAgent, framer);
+        agents.addAll(framerShards);
+        Collections.addAll(agents, indexingAgent, new RecordingCoordinatorAgent(), conductorAgent);
 
         agents.removeIf(Objects::isNull);
 
@@ -35,13 +35,18 @@ public class PositionSender implements Index
     private final Long2LongHashMap libraryIdToPosition = new Long2LongHashMap(MISSING_LIBRARY);
     private final LongLongConsumer resendPositionFunc = this::endPosition;
 
-    private final GatewayPublication publication;
+    private final SentPositionPublisher publisher;
 
     private int resendCount;
 
     public PositionSender(final GatewayPublication publication)
     {
-        this.publication = publication;
+        this(publication::saveNewSentPosition);
+    }
+
+    public PositionSender(final SentPositionPublisher publisher)
+    {
+        this.publisher = publisher;
     }
 
     @SuppressWarnings("FinalParameters")
@@ -86,7 +91,7 @@ public class PositionSender implements Index
 
     private boolean saveNewSentPosition(final int libraryId, final long endPosition)
     {
-        return !Pressure.isBackPressured(publication.saveNewSentPosition(libraryId, endPosition));
+        return !Pressure.isBackPressured(publisher.saveNewSentPosition(libraryId, endPosition));
     }
 
     public void close()
@@ -96,4 +101,17 @@ public class PositionSender implements Index
     public void readLastPosition(final IndexedPositionConsumer consumer)
     {
     }
+
+    @FunctionalInterface
+    public interface SentPositionPublisher
+    {
+        /**
+         * Publish a library's new sent position.
+         *
+         * @param libraryId the library whose messages have been sent.
+         * @param position the position up to which they have been sent.
+         * @return the new position of the publication, or a negative value if it was back pressured.
+         */
+        long saveNewSentPosition(int libraryId, long position);
+    }
 }
@@ -28,6 +28,8 @@ import uk.co.real_logic.artio.fields.UtcTimestampEncoder;
 import uk.co.real_logic.artio.messages.FixMessageDecoder;
 import uk.co.real_logic.artio.messages.MessageHeaderDecoder;
 import uk.co.real_logic.artio.otf.OtfParser;
+import uk.co.real_logic.artio.protocol.TagOffsetIndex;
+import uk.co.real_logic.artio.util.AsciiBuffer;
 import uk.co.real_logic.artio.util.MutableAsciiBuffer;
 
 import java.util.function.Consumer;
@@ -58,10 +60,13 @@ public class PossDupEnabler
     private final PossDupFinder possDupFinder = new PossDupFinder();
     private final OtfParser parser = new OtfParser(possDupFinder, new IntDictionary());
     private final MutableAsciiBuffer mutableAsciiFlyweight = new MutableAsciiBuffer();
+    private final AsciiBuffer srcAsciiFlyweight = new MutableAsciiBuffer();
+    private final TagOffsetIndex tagOffsetIndex = new TagOffsetIndex();
     private final UtcTimestampEncoder utcTimestampEncoder = new UtcTimestampEncoder();
 
     private final BufferClaim bufferClaim;
     private final IntPredicate claimer;
+    private final FragmentedMessageOffer fragmentedMessageOffer;
     private final PreCommit onPreCommit;
     private final Consumer<String> onIllegalStateFunc;
     private final ErrorHandler errorHandler;
@@ -78,9 +83,36 @@ public class PossDupEnabler
         final ErrorHandler errorHandler,
         final EpochClock clock,
         final int maxPayloadLength)
+    {
+        this(bufferClaim, claimer, null, onPreCommit, onIllegalStateFunc, errorHandler, clock, maxPayloadLength);
+    }
+
+    /**
+     * Create a PossDupEnabler that publishes messages which are too large for a single claim through a
+     * {@link FragmentedMessageOffer} rather than a sequence of claims.
+     *
+     * @param bufferClaim the buffer claim that the claimer claims into.
+     * @param claimer claims a given length into the buffer claim, returning false if back pressured.
+     * @param fragmentedMessageOffer publishes a whole fragmented message, or null to use a sequence of claims.
+     * @param onPreCommit called before a message is committed or offered.
+     * @param onIllegalStateFunc called if a message can't have its possDup flag enabled.
+     * @param errorHandler the handler for errors.
+     * @param clock the clock used to update the sending time.
+     * @param maxPayloadLength the maximum length of a single claim.
+     */
+    public PossDupEnabler(
+        final BufferClaim bufferClaim,
+        final IntPredicate claimer,
+        final FragmentedMessageOffer fragmentedMessageOffer,
+        final PreCommit onPreCommit,
+        final Consumer<String> onIllegalStateFunc,
+        final ErrorHandler errorHandler,
+        final EpochClock clock,
+        final int maxPayloadLength)
     {
         this.bufferClaim = bufferClaim;
         this.claimer = claimer;
+        this.fragmentedMessageOffer = fragmentedMessageOffer;
         this.onPreCommit = onPreCommit;
         this.onIllegalStateFunc = onIllegalStateFunc;
         this.errorHandler = errorHandler;
@@ -96,7 +128,8 @@ public class PossDupEnabler
         final int srcOffset,
         final int srcLength)
     {
-        parser.onMessage(srcBuffer, messageOffset, messageLength);
+        final boolean carriesIndex = findHeaderFields(
+            srcBuffer, srcOffset, messageOffset, messageLength, srcOffset + srcLength);
         final int possDupSrcOffset = possDupFinder.possDupOffset();
         if (possDupSrcOffset == NO_ENTRY)
         {
@@ -130,6 +163,11 @@ public class PossDupEnabler
                     newBodyLength,
                     newLength))
                 {
+                    if (carriesIndex)
+                    {
+                        clearIndex();
+                    }
+
                     return commit(true);
                 }
                 else
@@ -171,6 +209,41 @@ public class PossDupEnabler
         return CONTINUE;
     }
 
+    // Only the fields of the standard header are needed. They're looked up in the index carried by the frame, if it
+    // has one, and otherwise found by scanning the header rather than parsing the whole message. Messages whose header
+    // can't be indexed, for example due to a data field, are parsed.
+    private boolean findHeaderFields(
+        final DirectBuffer srcBuffer,
+        final int srcOffset,
+        final int messageOffset,
+        final int messageLength,
+        final int frameEnd)
+    {
+        final AsciiBuffer srcAsciiFlyweight = this.srcAsciiFlyweight;
+        final TagOffsetIndex tagOffsetIndex = this.tagOffsetIndex;
+        srcAsciiFlyweight.wrap(srcBuffer);
+
+        final boolean carriesIndex = tagOffsetIndex.wrapFrame(
+            srcBuffer, srcOffset, messageOffset, messageLength, frameEnd);
+        if (!carriesIndex)
+        {
+            tagOffsetIndex.index(srcAsciiFlyweight, messageOffset, messageLength);
+        }
+
+        if (!possDupFinder.onHeader(tagOffsetIndex, srcAsciiFlyweight, messageOffset + messageLength))
+        {
+            parser.onMessage(srcBuffer, messageOffset, messageLength);
+        }
+
+        return carriesIndex;
+    }
+
+    // The added fields move the rest of the header, so a copied index would no longer match it.
+    private void clearIndex()
+    {
+        TagOffsetIndex.clear(writeBuffer(), writeOffset());
+    }
+
     private void abort()
     {
         if (isProcessingFragmentedMessage())
@@ -212,6 +285,14 @@ public class PossDupEnabler
                 fragmentOffset + logLengthOffset,
                 fragmentedMessageLength - logLengthOffset);
 
+            if (fragmentedMessageOffer != null)
+            {
+                final int length = fragmentedMessageLength;
+                fragmentedMessageLength = 0;
+                return fragmentedMessageOffer.offer(fragmentedMessageBuffer, fragmentOffset, length) ?
+                    CONTINUE : ABORT;
+            }
+
             while (fragmentedMessageLength > 0)
             {
                 final int fragmentLength = Math.min(maxPayloadLength, fragmentedMessageLength);
@@ -423,4 +504,9 @@ public class PossDupEnabler
     {
         void onPreCommit(MutableDirectBuffer buffer, int offset);
     }
+
+    public interface FragmentedMessageOffer
+    {
+        boolean offer(DirectBuffer buffer, int offset, int length);
+    }
 }
@@ -20,12 +20,20 @@ import uk.co.real_logic.artio.ValidationError;
 import uk.co.real_logic.artio.fields.AsciiFieldFlyweight;
 import uk.co.real_logic.artio.otf.MessageControl;
 import uk.co.real_logic.artio.otf.OtfMessageAcceptor;
+import uk.co.real_logic.artio.protocol.TagOffsetIndex;
 import uk.co.real_logic.artio.util.AsciiBuffer;
 
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static uk.co.real_logic.artio.util.AsciiBuffer.SEPARATOR;
+import static uk.co.real_logic.artio.util.AsciiBuffer.UNKNOWN_INDEX;
+
 class PossDupFinder implements OtfMessageAcceptor
 {
     static final int NO_ENTRY = -1;
 
+    private static final byte[] POSS_DUP_FIELD_START = "\00143=".getBytes(US_ASCII);
+    private static final byte[] ORIG_SENDING_TIME_FIELD_START = "\001122=".getBytes(US_ASCII);
+
     private int possDupOffset;
     private int sendingTimeOffset;
     private int sendingTimeLength;
@@ -47,6 +55,91 @@ class PossDupFinder implements OtfMessageAcceptor
         return MessageControl.CONTINUE;
     }
 
+    /**
+     * Find the fields from an index of the message's standard header rather than by parsing the message.
+     *
+     * The index stops at the first field that it doesn't list, such as a data field or a custom header field, so a
+     * PossDupFlag or OrigSendingTime that isn't indexed is only known to be missing if the rest of the message
+     * doesn't contain it.
+     *
+     * @param index the index of the message's header.
+     * @param buffer the buffer containing the message.
+     * @param messageEnd the end of the message within the buffer.
+     * @return true if the index covers the fields of the header that are needed, false if the message has to be
+     * parsed.
+     */
+    boolean onHeader(final TagOffsetIndex index, final AsciiBuffer buffer, final int messageEnd)
+    {
+        onNext();
+
+        final int bodyLengthOffset = index.valueOffset(Constants.BODY_LENGTH);
+        final int sendingTimeOffset = index.valueOffset(Constants.SENDING_TIME);
+        if (bodyLengthOffset == TagOffsetIndex.MISSING_TAG || sendingTimeOffset == TagOffsetIndex.MISSING_TAG)
+        {
+            return false;
+        }
+
+        final int possDupOffset = index.valueOffset(Constants.POSS_DUP_FLAG);
+        final int origSendingTimeOffset = index.valueOffset(Constants.ORIG_SENDING_TIME);
+        final int indexedEnd = index.indexedEnd();
+        if ((possDupOffset == TagOffsetIndex.MISSING_TAG &&
+            containsField(buffer, indexedEnd, messageEnd, POSS_DUP_FIELD_START)) ||
+            (origSendingTimeOffset == TagOffsetIndex.MISSING_TAG &&
+            containsField(buffer, indexedEnd, messageEnd, ORIG_SENDING_TIME_FIELD_START)))
+        {
+            return false;
+        }
+
+        this.bodyLengthOffset = bodyLengthOffset;
+        lengthOfBodyLength = index.valueLength(Constants.BODY_LENGTH);
+        bodyLength = buffer.getInt(bodyLengthOffset, bodyLengthOffset + lengthOfBodyLength);
+        this.sendingTimeOffset = sendingTimeOffset;
+        sendingTimeLength = index.valueLength(Constants.SENDING_TIME);
+        this.possDupOffset = possDupOffset;
+        this.origSendingTimeOffset = origSendingTimeOffset;
+        origSendingTimeLength = index.valueLength(Constants.ORIG_SENDING_TIME);
+        return true;
+    }
+
+    // Every field after the first starts after a separator, so matching the separator as well as the tag means that
+    // a data field's value can only cause a false match, which just falls back to parsing.
+    private static boolean containsField(
+        final AsciiBuffer buffer, final int separatorOffset, final int end, final byte[] fieldStart)
+    {
+        final int lastStart = end - fieldStart.length;
+        int offset = separatorOffset;
+        while (offset <= lastStart)
+        {
+            offset = buffer.scan(offset, lastStart, SEPARATOR);
+            if (offset == UNKNOWN_INDEX)
+            {
+                return false;
+            }
+
+            if (startsWith(buffer, offset, fieldStart))
+            {
+                return true;
+            }
+
+            offset++;
+        }
+
+        return false;
+    }
+
+    private static boolean startsWith(final AsciiBuffer buffer, final int offset, final byte[] fieldStart)
+    {
+        for (int i = 0; i < fieldStart.length; i++)
+        {
+            if (buffer.getByte(offset + i) != fieldStart[i])
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
     public MessageControl onField(final int tag, final AsciiBuffer buffer, final int offset, final int length)
     {
         switch (tag)
@@ -19,10 +19,15 @@ import org.agrona.collections.Long2ObjectHashMap;
 import org.agrona.concurrent.IdleStrategy;
 import org.agrona.concurrent.OneToOneConcurrentArrayQueue;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.function.Consumer;
 
 /**
  * For publishing the last sent sequence number to the replay system.
+ *
+ * Each replayer polls its own instance, see {@link #newConsumer()}, and the framer notifies all of them of
+ * new and closed senders through the first.
  */
 public class SenderSequenceNumbers
 {
@@ -32,6 +37,7 @@ public class SenderSequenceNumbers
 
     // Framer state
     private final IdleStrategy framerIdleStrategy;
+    private final List<SenderSequenceNumbers> otherConsumers = new ArrayList<>();
 
     // Written on Framer, Read on Indexer
     private final OneToOneConcurrentArrayQueue<SenderSequenceNumber> queue
@@ -48,6 +54,19 @@ public class SenderSequenceNumbers
         this.framerIdleStrategy = framerIdleStrategy;
     }
 
+    /**
+     * Create another instance that is notified of the same senders, for a replayer that runs on another thread.
+     * Must be called before the framer starts.
+     *
+     * @return the new instance, which is polled by that replayer.
+     */
+    public SenderSequenceNumbers newConsumer()
+    {
+        final SenderSequenceNumbers consumer = new SenderSequenceNumbers(framerIdleStrategy);
+        otherConsumers.add(consumer);
+        return consumer;
+    }
+
     // Called on Framer Thread
     public SenderSequenceNumber onNewSender(final long connectionId)
     {
@@ -64,6 +83,17 @@ public class SenderSequenceNumbers
 
     // We receive the object to either add or remove it.
     private void enqueue(final SenderSequenceNumber senderSequenceNumber)
+    {
+        offer(senderSequenceNumber);
+
+        final List<SenderSequenceNumbers> otherConsumers = this.otherConsumers;
+        for (int i = 0, size = otherConsumers.size(); i < size; i++)
+        {
+            otherConsumers.get(i).offer(senderSequenceNumber);
+        }
+    }
+
+    private void offer(final SenderSequenceNumber senderSequenceNumber)
     {
         while (!queue.offer(senderSequenceNumber))
         {
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2015-2018 Real Logic Ltd, Adaptive Financial Consulting Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio.engine;
+
+import org.agrona.MutableDirectBuffer;
+import org.agrona.concurrent.MessageHandler;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.agrona.concurrent.ringbuffer.OneToOneRingBuffer;
+import org.agrona.concurrent.ringbuffer.RingBuffer;
+
+import java.nio.ByteBuffer;
+
+import static io.aeron.Publication.BACK_PRESSURED;
+import static org.agrona.BitUtil.SIZE_OF_INT;
+import static org.agrona.BitUtil.SIZE_OF_LONG;
+import static org.agrona.concurrent.ringbuffer.RingBufferDescriptor.TRAILER_LENGTH;
+
+/**
+ * Relays the sent positions of libraries from the position sender on the archiving agent's thread to the framer
+ * when each library has its own inbound publication, since those publications are exclusive to the framer.
+ */
+public class SentPositionRelay
+{
+    private static final int CAPACITY = 64 * 1024;
+    private static final int MSG_TYPE_ID = 1;
+    private static final int LIBRARY_ID_OFFSET = 0;
+    private static final int POSITION_OFFSET = LIBRARY_ID_OFFSET + SIZE_OF_INT;
+    private static final int LENGTH = POSITION_OFFSET + SIZE_OF_LONG;
+
+    private final RingBuffer positions = new OneToOneRingBuffer(
+        new UnsafeBuffer(ByteBuffer.allocateDirect(CAPACITY + TRAILER_LENGTH)));
+
+    // Archiving agent state
+    private final UnsafeBuffer writeBuffer = new UnsafeBuffer(new byte[LENGTH]);
+
+    // Framer state
+    private final MessageHandler onPositionFunc = this::onPosition;
+    private PositionSender positionSender;
+
+    // Called on the archiving agent's thread, as the position sender's publisher.
+    public long saveNewSentPosition(final int libraryId, final long position)
+    {
+        writeBuffer.putInt(LIBRARY_ID_OFFSET, libraryId);
+        writeBuffer.putLong(POSITION_OFFSET, position);
+        return positions.write(MSG_TYPE_ID, writeBuffer, 0, LENGTH) ? position : BACK_PRESSURED;
+    }
+
+    /**
+     * Called on the framer thread to pass the relayed positions to a position sender that publishes them on the
+     * libraries' inbound publications.
+     *
+     * @param positionSender the position sender to pass the relayed positions to.
+     * @return the number of positions read.
+     */
+    public int poll(final PositionSender positionSender)
+    {
+        this.positionSender = positionSender;
+        return positions.read(onPositionFunc);
+    }
+
+    private void onPosition(final int msgTypeId, final MutableDirectBuffer buffer, final int index, final int length)
+    {
+        positionSender.newPosition(buffer.getInt(index + LIBRARY_ID_OFFSET), buffer.getLong(index + POSITION_OFFSET));
+    }
+}
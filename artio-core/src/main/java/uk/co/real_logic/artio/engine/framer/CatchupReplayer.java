@@ -129,6 +129,7 @@ public class CatchupReplayer implements ControlledFragmentHandler, Continuation
         possDupEnabler = new PossDupEnabler(
             bufferClaim,
             this::claimBuffer,
+            inboundPublication.isExclusive() ? null : this::offerFragmentedMessage,
             this::onPreCommit,
             this::onIllegalState,
             errorHandler,
@@ -156,13 +157,18 @@ public class CatchupReplayer implements ControlledFragmentHandler, Continuation
         return inboundPublication.claim(length, bufferClaim) > 0;
     }
 
+    private boolean offerFragmentedMessage(final DirectBuffer buffer, final int offset, final int length)
+    {
+        return inboundPublication.offer(
+            buffer, offset, FRAME_LENGTH, buffer, offset + FRAME_LENGTH, length - FRAME_LENGTH) > 0;
+    }
+
     public Action onFragment(
         final DirectBuffer srcBuffer,
         final int srcOffset,
         final int srcLength,
         final Header header)
     {
-        final int messageLength = srcLength - FRAME_LENGTH;
         final int messageOffset = srcOffset + FRAME_LENGTH;
 
         messageHeaderDecoder.wrap(srcBuffer, srcOffset);
@@ -173,6 +179,10 @@ public class CatchupReplayer implements ControlledFragmentHandler, Continuation
             messageHeaderDecoder.blockLength(),
             messageHeaderDecoder.version());
 
+        // Replays the frame up to the end of the body, dropping any tag offset index after it
+        final int messageLength = messageDecoder.bodyLength();
+        final int frameLength = FRAME_LENGTH + messageLength;
+
         asciiBuffer.wrap(srcBuffer, messageOffset, messageLength);
         headerDecoder.decode(asciiBuffer, 0, messageLength);
 
@@ -195,7 +205,7 @@ public class CatchupReplayer implements ControlledFragmentHandler, Continuation
                 }
             }
 
-            return processNormalMessage(srcBuffer, srcOffset, srcLength, messageLength, messageOffset);
+            return processNormalMessage(srcBuffer, srcOffset, frameLength, messageLength, messageOffset);
         }
     }
 
@@ -312,6 +322,9 @@ public class CatchupReplayer implements ControlledFragmentHandler, Continuation
 
                 if (replayOperation.attemptReplay())
                 {
+                    inboundMessages.release(replayOperation);
+                    replayOperation = null;
+
                     if (hasMissingMessages())
                     {
                         return switchToMissingMessages();
@@ -0,0 +1,365 @@
+/*
+ * Copyright 2015-2018 Real Logic Ltd, Adaptive Financial Consulting Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio.engine.framer;
+
+import io.aeron.logbuffer.ControlledFragmentHandler.Action;
+import org.agrona.DeadlineTimerWheel;
+import org.agrona.collections.Long2ObjectHashMap;
+import org.agrona.concurrent.status.AtomicCounter;
+import org.agrona.concurrent.status.CountersReader;
+import uk.co.real_logic.artio.FixCounters;
+import uk.co.real_logic.artio.builder.Encoder;
+import uk.co.real_logic.artio.builder.HeaderEncoder;
+import uk.co.real_logic.artio.builder.HeartbeatEncoder;
+import uk.co.real_logic.artio.decoder.HeartbeatDecoder;
+import uk.co.real_logic.artio.decoder.LogoutDecoder;
+import uk.co.real_logic.artio.fields.UtcTimestampEncoder;
+import uk.co.real_logic.artio.protocol.GatewayPublication;
+import uk.co.real_logic.artio.session.CompositeKey;
+import uk.co.real_logic.artio.session.SessionIdStrategy;
+import uk.co.real_logic.artio.util.MutableAsciiBuffer;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+import static io.aeron.logbuffer.ControlledFragmentHandler.Action.ABORT;
+import static io.aeron.logbuffer.ControlledFragmentHandler.Action.CONTINUE;
+import static org.agrona.DeadlineTimerWheel.NULL_TIMER;
+import static uk.co.real_logic.artio.engine.FixEngine.ENGINE_LIBRARY_ID;
+import static uk.co.real_logic.artio.messages.MessageStatus.OK;
+
+/**
+ * Heartbeats idle sessions on behalf of the libraries that own them, when a library has delegated its heartbeats
+ * to the engine, see {@link uk.co.real_logic.artio.library.LibraryConfiguration#engineHeartbeats(boolean)}.
+ *
+ * The library and the engine share the session's sent MsgSeqNo counter, and a sequence number is claimed by a
+ * compare-and-set of the counter before it's sent, so each sequence number is only sent by one of them. The engine
+ * only claims a sequence number when every message up to the counter's value has already been sent. Library messages
+ * sequenced after an engine heartbeat are held back until that heartbeat, which is published to the outbound stream
+ * so that it's archived and indexed, has been sent.
+ *
+ * Not thread safe, used on the Framer thread.
+ */
+class DelegatedHeartbeats implements DeadlineTimerWheel.TimerHandler
+{
+    private static final int TICK_RESOLUTION_IN_MS = 8;
+    private static final int TICKS_PER_WHEEL = 1024;
+    private static final int NO_PENDING_HEARTBEAT = 0;
+
+    private final Long2ObjectHashMap<DelegatedSession> connectionIdToSession = new Long2ObjectHashMap<>();
+    private final Long2ObjectHashMap<DelegatedSession> timerIdToSession = new Long2ObjectHashMap<>();
+    private final ArrayList<DelegatedSession> dueSessions = new ArrayList<>();
+    private final HeartbeatEncoder heartbeat = new HeartbeatEncoder();
+    private final UtcTimestampEncoder timestampEncoder = new UtcTimestampEncoder();
+    private final DeadlineTimerWheel timerWheel;
+    private final MutableAsciiBuffer buffer;
+    private final CountersReader countersReader;
+    private final GatewayPublication outboundPublication;
+    private final SessionIdStrategy sessionIdStrategy;
+
+    private long timeInMs;
+
+    DelegatedHeartbeats(
+        final int sessionBufferSize,
+        final CountersReader countersReader,
+        final GatewayPublication outboundPublication,
+        final SessionIdStrategy sessionIdStrategy,
+        final long timeInMs)
+    {
+        this.countersReader = countersReader;
+        this.outboundPublication = outboundPublication;
+        this.sessionIdStrategy = sessionIdStrategy;
+        this.timeInMs = timeInMs;
+        buffer = new MutableAsciiBuffer(new byte[sessionBufferSize]);
+        timerWheel = new DeadlineTimerWheel(TimeUnit.MILLISECONDS, timeInMs, TICK_RESOLUTION_IN_MS, TICKS_PER_WHEEL);
+        timestampEncoder.initialise(timeInMs);
+    }
+
+    // Start, or update, heartbeating a session on behalf of the library that owns it. Returns false if the counter
+    // isn't the sent MsgSeqNo counter of the connection, for example if the library uses a different media driver.
+    boolean delegate(
+        final int libraryId,
+        final long connectionId,
+        final long sessionId,
+        final CompositeKey sessionKey,
+        final int sentSequenceNumberCounterId,
+        final int lastSentSequenceNumber,
+        final int sequenceIndex,
+        final long heartbeatIntervalInMs)
+    {
+        if (!FixCounters.isSentMsgSeqNo(countersReader, sentSequenceNumberCounterId, connectionId))
+        {
+            return false;
+        }
+
+        DelegatedSession session = connectionIdToSession.get(connectionId);
+        if (session == null || session.libraryId != libraryId)
+        {
+            remove(connectionId);
+
+            session = new DelegatedSession(
+                libraryId,
+                connectionId,
+                sessionId,
+                sessionKey,
+                sentSequenceNumberCounterId,
+                new AtomicCounter(countersReader.valuesBuffer(), sentSequenceNumberCounterId));
+            session.lastSequenceNumber = lastSentSequenceNumber;
+            session.sequenceIndex = sequenceIndex;
+            session.lastSentTimeInMs = timeInMs;
+            connectionIdToSession.put(connectionId, session);
+        }
+        else
+        {
+            cancelTimer(session);
+        }
+
+        session.heartbeatIntervalInMs = heartbeatIntervalInMs;
+        schedule(session, session.lastSentTimeInMs + heartbeatIntervalInMs);
+
+        return true;
+    }
+
+    void remove(final long connectionId)
+    {
+        final DelegatedSession session = connectionIdToSession.remove(connectionId);
+        if (session != null)
+        {
+            cancelTimer(session);
+        }
+    }
+
+    void removeLibrary(final int libraryId)
+    {
+        final Iterator<DelegatedSession> it = connectionIdToSession.values().iterator();
+        while (it.hasNext())
+        {
+            final DelegatedSession session = it.next();
+            if (session.libraryId == libraryId)
+            {
+                it.remove();
+                cancelTimer(session);
+            }
+        }
+    }
+
+    // Called before an outbound message is sent, aborts library messages that are sequenced after a heartbeat
+    // that the engine hasn't yet sent.
+    Action onMessage(
+        final int libraryId,
+        final long connectionId,
+        final int messageType,
+        final int sequenceIndex,
+        final int sequenceNumber)
+    {
+        final DelegatedSession session = connectionIdToSession.get(connectionId);
+        if (session == null)
+        {
+            return CONTINUE;
+        }
+
+        final int pendingSequenceNumber = session.pendingSequenceNumber;
+        if (pendingSequenceNumber != NO_PENDING_HEARTBEAT)
+        {
+            if (libraryId != ENGINE_LIBRARY_ID)
+            {
+                return ABORT;
+            }
+
+            if (sequenceNumber == pendingSequenceNumber)
+            {
+                session.pendingSequenceNumber = NO_PENDING_HEARTBEAT;
+                session.heartbeatPublished = false;
+            }
+        }
+
+        session.lastSequenceNumber = sequenceNumber;
+        session.sequenceIndex = sequenceIndex;
+        session.lastSentTimeInMs = timeInMs;
+
+        if (messageType == LogoutDecoder.MESSAGE_TYPE)
+        {
+            remove(connectionId);
+        }
+
+        return CONTINUE;
+    }
+
+    int poll(final long timeInMs)
+    {
+        this.timeInMs = timeInMs;
+
+        final DeadlineTimerWheel timerWheel = this.timerWheel;
+        if (timerWheel.timerCount() == 0)
+        {
+            timerWheel.resetStartTime(timeInMs);
+            return 0;
+        }
+
+        // Each poll of the wheel only expires the timers of its current tick before advancing it by one tick.
+        long tickTime;
+        do
+        {
+            tickTime = timerWheel.currentTickTime();
+            timerWheel.poll(timeInMs, this, Integer.MAX_VALUE);
+        }
+        while (tickTime != timerWheel.currentTickTime());
+
+        final ArrayList<DelegatedSession> dueSessions = this.dueSessions;
+        final int size = dueSessions.size();
+        for (int i = 0; i < size; i++)
+        {
+            heartbeat(dueSessions.get(i));
+        }
+        dueSessions.clear();
+
+        return size;
+    }
+
+    public boolean onTimerExpiry(final TimeUnit timeUnit, final long now, final long timerId)
+    {
+        final DelegatedSession session = timerIdToSession.remove(timerId);
+        if (session != null)
+        {
+            session.timerId = NULL_TIMER;
+            dueSessions.add(session);
+        }
+
+        return true;
+    }
+
+    private void heartbeat(final DelegatedSession session)
+    {
+        final long timeInMs = this.timeInMs;
+        final long heartbeatIntervalInMs = session.heartbeatIntervalInMs;
+
+        if (session.pendingSequenceNumber == NO_PENDING_HEARTBEAT)
+        {
+            // A message has been sent since this session was scheduled.
+            final long heartbeatTimeInMs = session.lastSentTimeInMs + heartbeatIntervalInMs;
+            if (heartbeatTimeInMs > timeInMs)
+            {
+                schedule(session, heartbeatTimeInMs);
+                return;
+            }
+
+            // The library has closed the counter, eg after its session has disconnected.
+            if (!FixCounters.isSentMsgSeqNo(countersReader, session.counterId, session.connectionId))
+            {
+                connectionIdToSession.remove(session.connectionId);
+                return;
+            }
+
+            // Fails if the library has claimed a sequence number that it hasn't sent yet.
+            final int lastSequenceNumber = session.lastSequenceNumber;
+            final int sequenceNumber = lastSequenceNumber + 1;
+            if (!session.sentMsgSeqNo.compareAndSet(lastSequenceNumber, sequenceNumber))
+            {
+                schedule(session, timeInMs + heartbeatIntervalInMs);
+                return;
+            }
+
+            session.pendingSequenceNumber = sequenceNumber;
+        }
+
+        if (!session.heartbeatPublished)
+        {
+            session.heartbeatPublished = saveHeartbeat(session) > 0;
+        }
+
+        // Retried on the next duty cycle if back pressured, library messages are held back until then.
+        schedule(session, session.heartbeatPublished ? timeInMs + heartbeatIntervalInMs : timeInMs);
+    }
+
+    private long saveHeartbeat(final DelegatedSession session)
+    {
+        final HeartbeatEncoder heartbeat = this.heartbeat;
+        final int sequenceNumber = session.pendingSequenceNumber;
+
+        heartbeat.reset();
+        final HeaderEncoder header = heartbeat.header();
+        sessionIdStrategy.setupSession(session.sessionKey, header);
+        header
+            .sendingTime(timestampEncoder.buffer(), timestampEncoder.update(timeInMs))
+            .msgSeqNum(sequenceNumber);
+
+        final long result = heartbeat.encode(buffer, 0);
+        return outboundPublication.saveMessage(
+            buffer,
+            Encoder.offset(result),
+            Encoder.length(result),
+            ENGINE_LIBRARY_ID,
+            HeartbeatDecoder.MESSAGE_TYPE,
+            session.sessionId,
+            session.sequenceIndex,
+            session.connectionId,
+            OK,
+            sequenceNumber);
+    }
+
+    private void schedule(final DelegatedSession session, final long deadlineInMs)
+    {
+        final long timerId = timerWheel.scheduleTimer(deadlineInMs);
+        session.timerId = timerId;
+        timerIdToSession.put(timerId, session);
+    }
+
+    private void cancelTimer(final DelegatedSession session)
+    {
+        final long timerId = session.timerId;
+        if (timerId != NULL_TIMER)
+        {
+            timerWheel.cancelTimer(timerId);
+            timerIdToSession.remove(timerId);
+            session.timerId = NULL_TIMER;
+        }
+    }
+
+    private static final class DelegatedSession
+    {
+        private final int libraryId;
+        private final long connectionId;
+        private final long sessionId;
+        private final CompositeKey sessionKey;
+        private final int counterId;
+        private final AtomicCounter sentMsgSeqNo;
+
+        private long heartbeatIntervalInMs;
+        private long lastSentTimeInMs;
+        private int lastSequenceNumber;
+        private int sequenceIndex;
+        private int pendingSequenceNumber = NO_PENDING_HEARTBEAT;
+        private boolean heartbeatPublished;
+        private long timerId = NULL_TIMER;
+
+        DelegatedSession(
+            final int libraryId,
+            final long connectionId,
+            final long sessionId,
+            final CompositeKey sessionKey,
+            final int counterId,
+            final AtomicCounter sentMsgSeqNo)
+        {
+            this.libraryId = libraryId;
+            this.connectionId = connectionId;
+            this.sessionId = sessionId;
+            this.sessionKey = sessionKey;
+            this.counterId = counterId;
+            this.sentMsgSeqNo = sentMsgSeqNo;
+        }
+    }
+}
@@ -31,7 +31,7 @@ class EndPointFactory
     private final GatewaySessions gatewaySessions;
     private final SenderSequenceNumbers senderSequenceNumbers;
 
-    private SlowPeeker replaySlowPeeker;
+    private SlowPeeker[] replaySlowPeekers;
 
     EndPointFactory(
         final EngineConfiguration configuration,
@@ -71,7 +71,9 @@ class EndPointFactory
             framer,
             errorHandler,
             libraryId,
-            gatewaySessions
+            gatewaySessions,
+            configuration.batchInboundMessages(),
+            configuration.indexTagOffsets()
         );
     }
 
@@ -87,7 +89,7 @@ class EndPointFactory
             connectionId,
             libraryId,
             libraryBlockablePosition,
-            replaySlowPeeker,
+            replaySlowPeekers,
             channel,
             fixCounters.bytesInBuffer(connectionId, remoteAddress),
             fixCounters.invalidLibraryAttempts(connectionId, remoteAddress),
@@ -96,11 +98,13 @@ class EndPointFactory
             configuration.senderMaxBytesInBuffer(),
             configuration.slowConsumerTimeoutInMs(),
             System.currentTimeMillis(),
-            senderSequenceNumbers.onNewSender(connectionId));
+            senderSequenceNumbers.onNewSender(connectionId),
+            configuration.senderMaxGatheredBytes(),
+            configuration.senderMaxGatheredMessages());
     }
 
-    void replaySlowPeeker(final SlowPeeker replaySlowPeeker)
+    void replaySlowPeekers(final SlowPeeker[] replaySlowPeekers)
     {
-        this.replaySlowPeeker = replaySlowPeeker;
+        this.replaySlowPeekers = replaySlowPeekers;
     }
 }
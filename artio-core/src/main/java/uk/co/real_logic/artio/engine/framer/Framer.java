@@ -39,6 +39,7 @@ import uk.co.real_logic.artio.dictionary.generation.Exceptions;
 import uk.co.real_logic.artio.engine.CompletionPosition;
 import uk.co.real_logic.artio.engine.EngineConfiguration;
 import uk.co.real_logic.artio.engine.PositionSender;
+import uk.co.real_logic.artio.engine.SentPositionRelay;
 import uk.co.real_logic.artio.engine.RecordingCoordinator;
 import uk.co.real_logic.artio.engine.framer.SubscriptionSlowPeeker.LibrarySlowPeeker;
 import uk.co.real_logic.artio.engine.framer.TcpChannelSupplier.NewChannelHandler;
@@ -61,7 +62,9 @@ import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.function.Consumer;
+import java.util.function.IntFunction;
 import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
 
 import static io.aeron.Publication.BACK_PRESSURED;
 import static io.aeron.logbuffer.ControlledFragmentHandler.Action.ABORT;
@@ -97,6 +100,9 @@ class Framer implements Agent, EngineEndPointHandler, ProtocolHandler
     private final RetryManager retryManager = new RetryManager();
     private final List<ResetSequenceNumberCommand> replies = new ArrayList<>();
     private final Int2ObjectHashMap<LiveLibraryInfo> idToLibrary = new Int2ObjectHashMap<>();
+    // Kept for the lifetime of the engine, since a library that reconnects reuses its library id as the Aeron
+    // session id of its inbound publication.
+    private final Int2ObjectHashMap<GatewayPublication> idToLibraryInboundPublication = new Int2ObjectHashMap<>();
     private final List<LiveLibraryInfo> librariesBeingAcquired = new ArrayList<>();
     private final Consumer<AdminCommand> onAdminCommand = command -> command.execute(this);
     private final NewChannelHandler onNewConnectionFunc = this::onNewConnection;
@@ -111,7 +117,7 @@ class Framer implements Agent, EngineEndPointHandler, ProtocolHandler
     private final ControlledFragmentHandler replaySubscriber;
     private final ControlledFragmentHandler replaySlowSubscriber;
 
-    private final ReceiverEndPoints receiverEndPoints = new ReceiverEndPoints();
+    private final ReceiverEndPoints receiverEndPoints;
     private final ControlledFragmentAssembler senderEndPointAssembler;
     private final SenderEndPoints senderEndPoints;
 
@@ -119,10 +125,19 @@ class Framer implements Agent, EngineEndPointHandler, ProtocolHandler
     private final EndPointFactory endPointFactory;
     private final Subscription librarySubscription;
     private final SubscriptionSlowPeeker librarySlowPeeker;
-    private final Image replayImage;
-    private final SlowPeeker replaySlowPeeker;
+    private final Image[] replayImages;
+    private final SlowPeeker[] replaySlowPeekers;
     private final BlockablePosition engineBlockablePosition;
     private final GatewayPublication inboundPublication;
+    /**
+     * Null unless each library has its own inbound publication
+     */
+    private final IntFunction<GatewayPublication> newLibraryInboundPublication;
+    /**
+     * Null unless each library has its own inbound publication and the archiving agent sends sent positions
+     */
+    private final SentPositionRelay sentPositionRelay;
+    private final DelegatedHeartbeats delegatedHeartbeats;
     private final String agentNamePrefix;
     private final CompletionPosition inboundCompletionPosition;
     private final CompletionPosition outboundLibraryCompletionPosition;
@@ -150,6 +165,7 @@ class Framer implements Agent, EngineEndPointHandler, ProtocolHandler
     private final AgentInvoker conductorAgentInvoker;
     private final RecordingCoordinator recordingCoordinator;
     private final PositionSender nonLoggingPositionSender;
+    private final PositionSender relayedPositionSender;
 
     private final HeaderDecoder headerDecoder = new HeaderDecoder();
     private final AsciiBuffer asciiBuffer = new MutableAsciiBuffer();
@@ -162,13 +178,17 @@ class Framer implements Agent, EngineEndPointHandler, ProtocolHandler
         final Timer sendTimer,
         final EngineConfiguration configuration,
         final EndPointFactory endPointFactory,
+        final ReceiverEndPoints receiverEndPoints,
         final Subscription librarySubscription,
         final Subscription slowSubscription,
-        final Image replayImage,
-        final Image replaySlowImage,
+        final Image[] replayImages,
+        final Image[] replaySlowImages,
         final ReplayQuery inboundMessages,
         final GatewayPublication outboundPublication,
         final GatewayPublication inboundPublication,
+        final IntFunction<GatewayPublication> newLibraryInboundPublication,
+        final SentPositionRelay sentPositionRelay,
+        final DelegatedHeartbeats delegatedHeartbeats,
         final QueuedPipe<AdminCommand> adminCommands,
         final SessionIdStrategy sessionIdStrategy,
         final SessionContexts sessionContexts,
@@ -188,13 +208,17 @@ class Framer implements Agent, EngineEndPointHandler, ProtocolHandler
         this.sendTimer = sendTimer;
         this.configuration = configuration;
         this.endPointFactory = endPointFactory;
+        this.receiverEndPoints = receiverEndPoints;
         this.librarySubscription = librarySubscription;
-        this.replayImage = replayImage;
+        this.replayImages = replayImages;
         this.gatewaySessions = gatewaySessions;
         this.inboundMessages = inboundMessages;
         this.errorHandler = errorHandler;
         this.outboundPublication = outboundPublication;
         this.inboundPublication = inboundPublication;
+        this.newLibraryInboundPublication = newLibraryInboundPublication;
+        this.sentPositionRelay = sentPositionRelay;
+        this.delegatedHeartbeats = delegatedHeartbeats;
         this.agentNamePrefix = agentNamePrefix;
         this.inboundCompletionPosition = inboundCompletionPosition;
         this.outboundLibraryCompletionPosition = outboundLibraryCompletionPosition;
@@ -215,8 +239,13 @@ class Framer implements Agent, EngineEndPointHandler, ProtocolHandler
         this.replayFragmentLimit = configuration.replayFragmentLimit();
         this.inboundBytesReceivedLimit = configuration.inboundBytesReceivedLimit();
 
-        this.replaySlowPeeker = new SlowPeeker(replaySlowImage, replayImage);
-        endPointFactory.replaySlowPeeker(replaySlowPeeker);
+        // There's an image for each replayer, which replays to a subset of the sessions.
+        this.replaySlowPeekers = new SlowPeeker[replayImages.length];
+        for (int i = 0; i < replayImages.length; i++)
+        {
+            replaySlowPeekers[i] = new SlowPeeker(replaySlowImages[i], replayImages[i]);
+        }
+        endPointFactory.replaySlowPeekers(replaySlowPeekers);
 
 
         engineBlockablePosition = getOutboundSlowPeeker(outboundPublication);
@@ -225,7 +254,8 @@ class Framer implements Agent, EngineEndPointHandler, ProtocolHandler
             0,
             true);
         nonLoggingPositionSender = configuration.logOutboundMessages() ?
-            null : new PositionSender(inboundPublication);
+            null : new PositionSender(this::saveNewSentPosition);
+        relayedPositionSender = sentPositionRelay == null ? null : new PositionSender(this::saveNewSentPosition);
 
         // We lookup replayed message by session id, since the connection id may have changed
         // if it's a persistent session.
@@ -316,6 +346,7 @@ class Framer implements Agent, EngineEndPointHandler, ProtocolHandler
             pollNewConnections(timeInMs) +
             pollLibraries(timeInMs) +
             gatewaySessions.pollSessions(timeInMs) +
+            delegatedHeartbeats.poll(timeInMs) +
             senderEndPoints.checkTimeouts(timeInMs) +
             adminCommands.drain(onAdminCommand) +
             checkDutyCycle();
@@ -338,7 +369,7 @@ class Framer implements Agent, EngineEndPointHandler, ProtocolHandler
             {
                 final long connectionId = keyIterator.nextValue();
                 final int libraryId = (int)resend.get(connectionId);
-                final long position = inboundPublication.saveSlowStatusNotification(
+                final long position = inboundPublication(libraryId).saveSlowStatusNotification(
                     libraryId, connectionId, status);
                 if (position > 0)
                 {
@@ -353,13 +384,22 @@ class Framer implements Agent, EngineEndPointHandler, ProtocolHandler
 
     private int sendReplayMessages()
     {
-        return replayImage.controlledPoll(replaySubscriber, replayFragmentLimit) +
-            replaySlowPeeker.peek(replaySlowSubscriber);
+        final Image[] replayImages = this.replayImages;
+        final SlowPeeker[] replaySlowPeekers = this.replaySlowPeekers;
+        int messagesRead = 0;
+        for (int i = 0; i < replayImages.length; i++)
+        {
+            messagesRead += replayImages[i].controlledPoll(replaySubscriber, replayFragmentLimit) +
+                replaySlowPeekers[i].peek(replaySlowSubscriber);
+        }
+        return messagesRead;
     }
 
     private int sendOutboundMessages()
     {
         int messagesRead = librarySubscription.controlledPoll(librarySubscriber, outboundLibraryFragmentLimit);
+        // Gathered messages are written before the slow peeker so that it sees any new slow consumers.
+        senderEndPoints.flushGatheredMessages();
         messagesRead += librarySlowPeeker.peek(senderEndPointAssembler);
 
         if (nonLoggingPositionSender != null)
@@ -367,6 +407,12 @@ class Framer implements Agent, EngineEndPointHandler, ProtocolHandler
             nonLoggingPositionSender.doWork();
         }
 
+        if (relayedPositionSender != null)
+        {
+            sentPositionRelay.poll(relayedPositionSender);
+            relayedPositionSender.doWork();
+        }
+
         return messagesRead;
     }
 
@@ -384,6 +430,7 @@ class Framer implements Agent, EngineEndPointHandler, ProtocolHandler
 
                 iterator.remove();
                 library.releaseSlowPeeker();
+                delegatedHeartbeats.removeLibrary(library.libraryId());
                 tryAcquireLibrarySessions(library);
                 saveLibraryTimeout(library);
             }
@@ -435,7 +482,7 @@ class Framer implements Agent, EngineEndPointHandler, ProtocolHandler
     private void saveLibraryTimeout(final LibraryInfo library)
     {
         final int libraryId = library.libraryId();
-        schedule(() -> inboundPublication.saveLibraryTimeout(libraryId, 0));
+        schedule(() -> inboundPublication(libraryId).saveLibraryTimeout(libraryId, 0));
         schedule(() -> outboundPublication.saveLibraryTimeout(libraryId, 0));
     }
 
@@ -466,7 +513,8 @@ class Framer implements Agent, EngineEndPointHandler, ProtocolHandler
                 session.password(),
                 engineBlockablePosition);
 
-            schedule(() -> saveManageSession(
+            scheduleForAllLibraries(publication -> saveManageSession(
+                publication,
                 ENGINE_LIBRARY_ID,
                 session,
                 sentSequenceNumber,
@@ -877,7 +925,7 @@ class Framer implements Agent, EngineEndPointHandler, ProtocolHandler
 
             private long saveManageSession()
             {
-                final long position = inboundPublication.saveManageSession(
+                final long position = inboundPublication(libraryId).saveManageSession(
                     libraryId,
                     connectionId,
                     sessionId,
@@ -919,7 +967,7 @@ class Framer implements Agent, EngineEndPointHandler, ProtocolHandler
 
     private void saveError(final GatewayError error, final int libraryId, final long replyToId, final String message)
     {
-        schedule(() -> inboundPublication.saveError(error, libraryId, replyToId, message));
+        schedule(() -> inboundPublication(libraryId).saveError(error, libraryId, replyToId, message));
     }
 
     private void saveError(final GatewayError error, final int libraryId, final long replyToId, final Exception e)
@@ -942,6 +990,12 @@ class Framer implements Agent, EngineEndPointHandler, ProtocolHandler
         final int sequenceNumber,
         final long position)
     {
+        if (delegatedHeartbeats.onMessage(libraryId, connectionId, messageType, sequenceIndex, sequenceNumber) == ABORT)
+        {
+            // Sequenced after a heartbeat that the engine has claimed for this session, but not yet sent.
+            return ABORT;
+        }
+
         final long now = outboundTimer.recordSince(timestamp);
 
         sessionContexts.onSentFollowerMessage(sessionId, sequenceIndex, messageType, buffer, offset, length);
@@ -977,6 +1031,10 @@ class Framer implements Agent, EngineEndPointHandler, ProtocolHandler
             context.sequenceIndex(),
             libraryId,
             this);
+        if (libraryId != ENGINE_LIBRARY_ID)
+        {
+            receiverEndPoint.libraryId(libraryId, inboundPublication(libraryId));
+        }
         receiverEndPoints.add(receiverEndPoint);
 
         final BlockablePosition libraryBlockablePosition = getLibraryBlockablePosition(libraryId);
@@ -1017,13 +1075,57 @@ class Framer implements Agent, EngineEndPointHandler, ProtocolHandler
 
     public Action onRequestDisconnect(final int libraryId, final long connectionId, final DisconnectReason reason)
     {
+        // Messages that the library sent before requesting the disconnect, eg a logout, are still written.
+        senderEndPoints.flushGatheredMessages(connectionId);
         return onDisconnect(libraryId, connectionId, reason);
     }
 
+    public Action onDelegateHeartbeats(
+        final int libraryId,
+        final long connectionId,
+        final int sentSequenceNumberCounterId,
+        final int lastSentSequenceNumber,
+        final int sequenceIndex,
+        final long heartbeatIntervalInMs)
+    {
+        final LiveLibraryInfo library = idToLibrary.get(libraryId);
+        if (library == null)
+        {
+            return CONTINUE;
+        }
+
+        final GatewaySession session = library.lookupSession(connectionId);
+        if (session == null)
+        {
+            return CONTINUE;
+        }
+
+        if (!delegatedHeartbeats.delegate(
+            libraryId,
+            connectionId,
+            session.sessionId(),
+            session.sessionKey(),
+            sentSequenceNumberCounterId,
+            lastSentSequenceNumber,
+            sequenceIndex,
+            heartbeatIntervalInMs))
+        {
+            errorHandler.onError(new IllegalArgumentException(String.format(
+                "Library %d can't delegate heartbeats of connection %d to the engine, counter %d isn't its sent " +
+                "sequence number counter, do the library and engine use the same media driver?",
+                libraryId,
+                connectionId,
+                sentSequenceNumberCounterId)));
+        }
+
+        return CONTINUE;
+    }
+
     public Action onDisconnect(final int libraryId, final long connectionId, final DisconnectReason reason)
     {
         receiverEndPoints.removeConnection(connectionId, reason);
         senderEndPoints.removeConnection(connectionId);
+        delegatedHeartbeats.remove(connectionId);
         final LiveLibraryInfo library = idToLibrary.get(libraryId);
         if (library != null)
         {
@@ -1049,24 +1151,32 @@ class Framer implements Agent, EngineEndPointHandler, ProtocolHandler
             return action;
         }
 
+        final GatewayPublication libraryInboundPublication = newLibraryInboundPublication(libraryId);
+        if (libraryInboundPublication == null)
+        {
+            // The library's subscription hasn't yet connected to its new publication.
+            return ABORT;
+        }
+
         final LiveLibraryInfo existingLibrary = idToLibrary.get(libraryId);
         if (existingLibrary != null)
         {
             existingLibrary.onHeartbeat(clock.time());
 
-            return Pressure.apply(inboundPublication.saveControlNotification(libraryId, existingLibrary.sessions()));
+            return Pressure.apply(
+                libraryInboundPublication.saveControlNotification(libraryId, existingLibrary.sessions()));
         }
 
         // Send an empty control notification if you've never seen this library before
         // Since it may have connected to another gateway node if you're clustered.
         if (Pressure.isBackPressured(
-            inboundPublication.saveControlNotification(libraryId, Collections.emptyList())))
+            libraryInboundPublication.saveControlNotification(libraryId, Collections.emptyList())))
         {
             return ABORT;
         }
 
         final LivenessDetector livenessDetector = LivenessDetector.forEngine(
-            inboundPublication,
+            libraryInboundPublication,
             libraryId,
             configuration.replyTimeoutInMs(),
             clock.time());
@@ -1081,7 +1191,7 @@ class Framer implements Agent, EngineEndPointHandler, ProtocolHandler
             }
 
             final LiveLibraryInfo library = new LiveLibraryInfo(
-                libraryId, libraryName, livenessDetector, aeronSessionId, librarySlowPeeker);
+                libraryId, libraryName, livenessDetector, aeronSessionId, librarySlowPeeker, libraryInboundPublication);
             idToLibrary.put(libraryId, library);
 
             DebugLogger.log(LIBRARY_MANAGEMENT, "Library %s - %s connected %n", libraryId, libraryName);
@@ -1093,12 +1203,39 @@ class Framer implements Agent, EngineEndPointHandler, ProtocolHandler
         {
             unitsOfWork.add(
                 // TODO(Nick): UNK_SESSION is the wrong constant to use?
-                () -> saveManageSession(libraryId, gatewaySession, UNK_SESSION, UNK_SESSION, LIBRARY_NOTIFICATION));
+                () -> saveManageSession(
+                libraryInboundPublication, libraryId, gatewaySession, UNK_SESSION, UNK_SESSION, LIBRARY_NOTIFICATION));
         }
 
         return retryManager.firstAttempt(correlationId, new UnitOfWork(unitsOfWork));
     }
 
+    // Returns the engine's inbound publication unless each library has its own, or null if the library's own
+    // publication isn't yet connected.
+    private GatewayPublication newLibraryInboundPublication(final int libraryId)
+    {
+        if (newLibraryInboundPublication == null)
+        {
+            return inboundPublication;
+        }
+
+        final GatewayPublication publication = idToLibraryInboundPublication.computeIfAbsent(
+            libraryId, newLibraryInboundPublication);
+
+        return publication.isConnected() ? publication : null;
+    }
+
+    private GatewayPublication inboundPublication(final int libraryId)
+    {
+        final GatewayPublication publication = idToLibraryInboundPublication.get(libraryId);
+        return publication == null ? inboundPublication : publication;
+    }
+
+    private long saveNewSentPosition(final int libraryId, final long position)
+    {
+        return inboundPublication(libraryId).saveNewSentPosition(libraryId, position);
+    }
+
     public Action onApplicationHeartbeat(final int libraryId, final int aeronSessionId)
     {
         final LiveLibraryInfo library = idToLibrary.get(libraryId);
@@ -1138,7 +1275,7 @@ class Framer implements Agent, EngineEndPointHandler, ProtocolHandler
         final LiveLibraryInfo libraryInfo = idToLibrary.get(libraryId);
         if (libraryInfo == null)
         {
-            return Pressure.apply(inboundPublication.saveReleaseSessionReply(
+            return Pressure.apply(inboundPublication(libraryId).saveReleaseSessionReply(
                 libraryId, SessionReplyStatus.UNKNOWN_LIBRARY, correlationId));
         }
 
@@ -1153,11 +1290,14 @@ class Framer implements Agent, EngineEndPointHandler, ProtocolHandler
 
         if (session == null)
         {
-            return Pressure.apply(inboundPublication.saveReleaseSessionReply(
+            return Pressure.apply(inboundPublication(libraryId).saveReleaseSessionReply(
                 libraryId, SessionReplyStatus.UNKNOWN_SESSION, correlationId));
         }
 
-        final Action action = Pressure.apply(inboundPublication.saveReleaseSessionReply(libraryId, OK, correlationId));
+        delegatedHeartbeats.remove(connectionId);
+
+        final Action action = Pressure.apply(
+            inboundPublication(libraryId).saveReleaseSessionReply(libraryId, OK, correlationId));
         if (action == ABORT)
         {
             libraryInfo.addSession(session);
@@ -1175,7 +1315,8 @@ class Framer implements Agent, EngineEndPointHandler, ProtocolHandler
                 password,
                 engineBlockablePosition);
 
-            schedule(() -> saveManageSession(
+            scheduleForAllLibraries(publication -> saveManageSession(
+                publication,
                 ENGINE_LIBRARY_ID,
                 session,
                 lastSentSequenceNumber,
@@ -1205,21 +1346,21 @@ class Framer implements Agent, EngineEndPointHandler, ProtocolHandler
         final LiveLibraryInfo libraryInfo = idToLibrary.get(libraryId);
         if (libraryInfo == null)
         {
-            return Pressure.apply(inboundPublication.saveRequestSessionReply(
+            return Pressure.apply(inboundPublication(libraryId).saveRequestSessionReply(
                 libraryId, SessionReplyStatus.UNKNOWN_LIBRARY, correlationId));
         }
 
         final GatewaySession gatewaySession = gatewaySessions.releaseBySessionId(sessionId);
         if (gatewaySession == null)
         {
-            return Pressure.apply(inboundPublication.saveRequestSessionReply(
+            return Pressure.apply(inboundPublication(libraryId).saveRequestSessionReply(
                 libraryId, SessionReplyStatus.UNKNOWN_SESSION, correlationId));
         }
 
         final Session session = gatewaySession.session();
         if (!session.isActive())
         {
-            return Pressure.apply(inboundPublication.saveRequestSessionReply(
+            return Pressure.apply(inboundPublication(libraryId).saveRequestSessionReply(
                 libraryId, SESSION_NOT_LOGGED_IN, correlationId));
         }
 
@@ -1227,7 +1368,8 @@ class Framer implements Agent, EngineEndPointHandler, ProtocolHandler
         final int lastSentSeqNum = session.lastSentMsgSeqNum();
         final int lastRecvSeqNum = session.lastReceivedMsgSeqNum();
 
-        gatewaySession.handoverManagementTo(libraryId, libraryInfo.librarySlowPeeker());
+        gatewaySession.handoverManagementTo(
+            libraryId, libraryInfo.inboundPublication(), libraryInfo.librarySlowPeeker());
         libraryInfo.addSession(gatewaySession);
 
         DebugLogger.log(LIBRARY_MANAGEMENT, "Handing control for session %s to library %s%n", sessionId, libraryId);
@@ -1246,6 +1388,7 @@ class Framer implements Agent, EngineEndPointHandler, ProtocolHandler
         }
 
         continuations.add(() -> saveManageSession(
+            libraryInfo.inboundPublication(),
             libraryId,
             gatewaySession,
             lastSentSeqNum,
@@ -1283,7 +1426,7 @@ class Framer implements Agent, EngineEndPointHandler, ProtocolHandler
         final SessionContext sessionContext = sessionContexts.newSessionContext(compositeKey);
         final long sessionId = sessionContext.sessionId();
 
-        final long position = inboundPublication.saveFollowerSessionReply(
+        final long position = inboundPublication(libraryId).saveFollowerSessionReply(
             libraryId,
             correlationId,
             sessionId);
@@ -1294,6 +1437,7 @@ class Framer implements Agent, EngineEndPointHandler, ProtocolHandler
     }
 
     private long saveManageSession(
+        final GatewayPublication publication,
         final int libraryId,
         final GatewaySession gatewaySession,
         final int lastSentSeqNum,
@@ -1307,6 +1451,7 @@ class Framer implements Agent, EngineEndPointHandler, ProtocolHandler
 
             final Session session = gatewaySession.session();
             return saveManageSession(
+                publication,
                 libraryId,
                 gatewaySession,
                 lastSentSeqNum,
@@ -1322,6 +1467,7 @@ class Framer implements Agent, EngineEndPointHandler, ProtocolHandler
     }
 
     private long saveManageSession(
+        final GatewayPublication publication,
         final int libraryId,
         final GatewaySession gatewaySession,
         final int lastSentSeqNum,
@@ -1332,7 +1478,7 @@ class Framer implements Agent, EngineEndPointHandler, ProtocolHandler
         final Session session,
         final long correlationId)
     {
-        return inboundPublication.saveManageSession(
+        return publication.saveManageSession(
             libraryId,
             connectionId,
             gatewaySession.sessionId(),
@@ -1378,7 +1524,7 @@ class Framer implements Agent, EngineEndPointHandler, ProtocolHandler
             {
                 continuations.add(() ->
                 {
-                    final long position = inboundPublication.saveRequestSessionReply(
+                    final long position = inboundPublication(libraryId).saveRequestSessionReply(
                         libraryId, INVALID_CONFIGURATION_NOT_LOGGING_MESSAGES, correlationId);
                     if (position > 0)
                     {
@@ -1399,7 +1545,7 @@ class Framer implements Agent, EngineEndPointHandler, ProtocolHandler
 
             continuations.add(new CatchupReplayer(
                 inboundMessages,
-                inboundPublication,
+                inboundPublication(libraryId),
                 errorHandler,
                 correlationId,
                 connectionId,
@@ -1414,7 +1560,8 @@ class Framer implements Agent, EngineEndPointHandler, ProtocolHandler
         }
         else
         {
-            continuations.add(() -> CatchupReplayer.sendOk(inboundPublication, correlationId, session, libraryId));
+            continuations.add(() ->
+                CatchupReplayer.sendOk(inboundPublication(libraryId), correlationId, session, libraryId));
         }
     }
 
@@ -1425,7 +1572,7 @@ class Framer implements Agent, EngineEndPointHandler, ProtocolHandler
 
     private long sequenceNumberTooHigh(final int libraryId, final long correlationId, final GatewaySession session)
     {
-        final long position = inboundPublication.saveRequestSessionReply(
+        final long position = inboundPublication(libraryId).saveRequestSessionReply(
             libraryId, SEQUENCE_NUMBER_TOO_HIGH, correlationId);
         if (!Pressure.isBackPressured(position))
         {
@@ -1439,7 +1586,7 @@ class Framer implements Agent, EngineEndPointHandler, ProtocolHandler
         if (!configuration.soleLibraryMode())
         {
             // Notify libraries of the existence of this logged on session.
-            schedule(() ->
+            scheduleForAllLibraries(publication ->
             {
                 final Session session = gatewaySession.session();
                 if (null == session)
@@ -1450,6 +1597,7 @@ class Framer implements Agent, EngineEndPointHandler, ProtocolHandler
 
                 final CompositeKey key = gatewaySession.sessionKey();
                 return saveManageSession(
+                    publication,
                     ENGINE_LIBRARY_ID,
                     gatewaySession,
                     session.lastSentMsgSeqNum(),
@@ -1479,7 +1627,8 @@ class Framer implements Agent, EngineEndPointHandler, ProtocolHandler
             final long requiredPosition = librarySubscription.imageBySessionId(libraryAeronSessionId).position();
 
             final int libraryId = libraryInfo.libraryId();
-            gatewaySession.setManagementTo(libraryId, libraryInfo.librarySlowPeeker());
+            gatewaySession.setManagementTo(
+                libraryId, libraryInfo.inboundPublication(), libraryInfo.librarySlowPeeker());
             libraryInfo.addSession(gatewaySession);
 
             handoverNewConnectionToLibrary(
@@ -1557,7 +1706,7 @@ class Framer implements Agent, EngineEndPointHandler, ProtocolHandler
 
     void onResetSequenceNumber(final ResetSequenceNumberCommand reply)
     {
-        reply.libraryLookup(senderEndPoints.libraryLookup());
+        reply.libraryLookup(senderEndPoints.libraryLookup(), this::inboundPublication);
 
         if (!reply.poll())
         {
@@ -1607,6 +1756,8 @@ class Framer implements Agent, EngineEndPointHandler, ProtocolHandler
     {
         final Long2LongHashMap inboundPositions = new Long2LongHashMap(CompletionPosition.MISSING_VALUE);
         inboundPositions.put(inboundPublication.id(), inboundPublication.position());
+        idToLibraryInboundPublication.values().forEach(libraryInboundPublication ->
+            inboundPositions.put(libraryInboundPublication.id(), libraryInboundPublication.position()));
         inboundCompletionPosition.complete(inboundPositions);
 
         final Long2LongHashMap outboundPositions = new Long2LongHashMap(CompletionPosition.MISSING_VALUE);
@@ -1631,6 +1782,23 @@ class Framer implements Agent, EngineEndPointHandler, ProtocolHandler
         return agentNamePrefix + "Framer";
     }
 
+    // Messages for every library are published on each library's own inbound publication if it has one.
+    private void scheduleForAllLibraries(final ToLongFunction<GatewayPublication> save)
+    {
+        if (newLibraryInboundPublication == null)
+        {
+            schedule(() -> save.applyAsLong(inboundPublication));
+        }
+        else
+        {
+            for (final LiveLibraryInfo library : idToLibrary.values())
+            {
+                final GatewayPublication publication = library.inboundPublication();
+                schedule(() -> save.applyAsLong(publication));
+            }
+        }
+    }
+
     void schedule(final Continuation continuation)
     {
         if (continuation.attemptToAction() != CONTINUE)
@@ -1659,7 +1827,8 @@ class Framer implements Agent, EngineEndPointHandler, ProtocolHandler
         final SlowStatus status)
     {
         toNotResend.remove(connectionId);
-        final long position = inboundPublication.saveSlowStatusNotification(libraryId, connectionId, status);
+        final long position = inboundPublication(libraryId).saveSlowStatusNotification(
+            libraryId, connectionId, status);
 
         if (Pressure.isBackPressured(position))
         {
@@ -32,6 +32,8 @@ import uk.co.real_logic.artio.timing.EngineTimers;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -47,6 +49,7 @@ public class FramerContext
     private final QueuedPipe<AdminCommand> adminCommands = new ManyToOneConcurrentArrayQueue<>(ADMIN_COMMAND_CAPACITY);
 
     private final Framer framer;
+    private final FramerShard[] framerShards;
 
     private final GatewaySessions gatewaySessions;
     private final SequenceNumberIndexReader sentSequenceNumberIndex;
@@ -60,8 +63,8 @@ public class FramerContext
         final FixCounters fixCounters,
         final EngineContext engineContext,
         final ErrorHandler errorHandler,
-        final Image replayImage,
-        final Image slowReplayImage,
+        final Image[] replayImages,
+        final Image[] slowReplayImages,
         final EngineTimers timers,
         final AgentInvoker conductorAgentInvoker,
         final RecordingCoordinator recordingCoordinator)
@@ -109,21 +112,40 @@ public class FramerContext
 
         final FinalImagePositions finalImagePositions = new FinalImagePositions();
 
+        final int framerShardCount = configuration.framerShardCount();
+        framerShards = new FramerShard[framerShardCount];
+        for (int i = 0; i < framerShardCount; i++)
+        {
+            framerShards[i] = new FramerShard(
+                engineContext.inboundPublication("framerShard" + i + "InboundPublication"),
+                configuration.inboundBytesReceivedLimit(),
+                configuration.agentNamePrefix() + "FramerShard" + i);
+        }
+
         framer = new Framer(
             clock,
             timers.outboundTimer(),
             timers.sendTimer(),
             configuration,
             endPointFactory,
+            new ReceiverEndPoints(framerShards),
             engineContext.outboundLibrarySubscription(
                 "outboundLibrarySubscription", finalImagePositions),
             engineContext.outboundLibrarySubscription(
                 "outboundSlowSubscription", null),
-            replayImage,
-            slowReplayImage,
+            replayImages,
+            slowReplayImages,
             engineContext.inboundReplayQuery(),
             outboundPublication,
             inboundPublication,
+            configuration.inboundPublicationPerLibrary() ? engineContext::libraryInboundPublication : null,
+            engineContext.sentPositionRelay(),
+            new DelegatedHeartbeats(
+                configuration.sessionBufferSize(),
+                fixCounters.countersReader(),
+                outboundPublication,
+                sessionIdStrategy,
+                clock.time()),
             adminCommands,
             sessionIdStrategy,
             sessionContexts,
@@ -144,6 +166,13 @@ public class FramerContext
         return framer;
     }
 
+    public List<Agent> framerShards()
+    {
+        final List<Agent> framerShards = new ArrayList<>();
+        Collections.addAll(framerShards, this.framerShards);
+        return framerShards;
+    }
+
     public Reply<List<LibraryInfo>> libraries()
     {
         final QueryLibrariesCommand reply = new QueryLibrariesCommand();
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2015-2019 Real Logic Ltd, Adaptive Financial Consulting Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio.engine.framer;
+
+import org.agrona.concurrent.Agent;
+import org.agrona.concurrent.ManyToOneConcurrentLinkedQueue;
+import uk.co.real_logic.artio.protocol.GatewayPublication;
+
+import java.util.Queue;
+
+/**
+ * Polls the TCP connections of a subset of library owned sessions on its own thread, framing their messages
+ * onto the inbound publication.
+ *
+ * The {@link Framer} remains the owner of every {@link ReceiverEndPoint}. It hands an end point over to a shard
+ * once the end point's session is owned by a library and is playing, and reclaims it before changing its
+ * ownership, pausing it or closing it. A shard that detects a disconnect releases the end point and leaves
+ * the framer to complete the disconnect.
+ *
+ * Handovers and reclaims are passed to the shard through queues and every end point that the shard releases is
+ * passed back to the framer through another, so neither thread ever waits for the other. The framer defers any
+ * change that it makes to an end point whilst a reclaim is in progress until it has polled the end point's release
+ * on a later duty cycle. This works whether or not the shard is scheduled on the same thread as the framer.
+ */
+class FramerShard implements Agent
+{
+    private final Queue<ReceiverEndPoint> handovers = new ManyToOneConcurrentLinkedQueue<>();
+    private final Queue<ReceiverEndPoint> reclaims = new ManyToOneConcurrentLinkedQueue<>();
+    private final Queue<ReceiverEndPoint> releasedEndPoints = new ManyToOneConcurrentLinkedQueue<>();
+    private final ReceiverEndPoints receiverEndPoints = new ReceiverEndPoints();
+
+    private final GatewayPublication inboundPublication;
+    private final int inboundBytesReceivedLimit;
+    private final String roleName;
+
+    private boolean closed = false;
+
+    FramerShard(
+        final GatewayPublication inboundPublication,
+        final int inboundBytesReceivedLimit,
+        final String roleName)
+    {
+        this.inboundPublication = inboundPublication;
+        this.inboundBytesReceivedLimit = inboundBytesReceivedLimit;
+        this.roleName = roleName;
+    }
+
+    public int doWork()
+    {
+        return pollHandovers() + pollReclaims() + pollEndPoints();
+    }
+
+    private int pollHandovers()
+    {
+        int work = 0;
+        ReceiverEndPoint endPoint;
+        while ((endPoint = handovers.poll()) != null)
+        {
+            if (closed)
+            {
+                releasedEndPoints.offer(endPoint);
+            }
+            else
+            {
+                receiverEndPoints.add(endPoint);
+            }
+            work++;
+        }
+
+        return work;
+    }
+
+    private int pollReclaims()
+    {
+        int work = 0;
+        ReceiverEndPoint endPoint;
+        while ((endPoint = reclaims.poll()) != null)
+        {
+            // The end point was handed over before it was reclaimed, so its handover is visible by now.
+            pollHandovers();
+
+            if (endPoint.isRegisteredWithShard())
+            {
+                release(endPoint);
+            }
+            else
+            {
+                // Released already due to a disconnect or the shard closing, the framer ignores the extra release.
+                releasedEndPoints.offer(endPoint);
+            }
+            work++;
+        }
+
+        return work;
+    }
+
+    private int pollEndPoints()
+    {
+        final int inboundBytesReceivedLimit = this.inboundBytesReceivedLimit;
+
+        int totalBytesReceived = 0;
+        int bytesReceived;
+        do
+        {
+            bytesReceived = receiverEndPoints.pollEndPoints();
+            totalBytesReceived += bytesReceived;
+        }
+        while (bytesReceived > 0 && totalBytesReceived < inboundBytesReceivedLimit);
+
+        return totalBytesReceived;
+    }
+
+    public void onClose()
+    {
+        // The framer closes the end points themselves, normally before the shards are closed.
+        pollHandovers();
+        receiverEndPoints.releaseAll(this::release);
+        receiverEndPoints.close();
+        inboundPublication.close();
+        closed = true;
+    }
+
+    public String roleName()
+    {
+        return roleName;
+    }
+
+    GatewayPublication inboundPublication()
+    {
+        return inboundPublication;
+    }
+
+    // Called on the framer thread
+    void add(final ReceiverEndPoint endPoint)
+    {
+        handovers.offer(endPoint);
+    }
+
+    // Called on the framer thread, the end point is passed back by pollReleasedEndPoints() once the shard has
+    // stopped polling it.
+    void reclaim(final ReceiverEndPoint endPoint)
+    {
+        reclaims.offer(endPoint);
+    }
+
+    // Called by the end point whilst the shard is polling it
+    void onDisconnectDetected(final ReceiverEndPoint endPoint)
+    {
+        release(endPoint);
+    }
+
+    // Called on the framer thread
+    int pollReleasedEndPoints()
+    {
+        int work = 0;
+        ReceiverEndPoint endPoint;
+        while ((endPoint = releasedEndPoints.poll()) != null)
+        {
+            endPoint.onReleasedByShard();
+            work++;
+        }
+
+        return work;
+    }
+
+    private void release(final ReceiverEndPoint endPoint)
+    {
+        // Cancels the shard's selection key before it's removed from the selector.
+        endPoint.onRemovedFromShard();
+        receiverEndPoints.remove(endPoint);
+        releasedEndPoints.offer(endPoint);
+    }
+}
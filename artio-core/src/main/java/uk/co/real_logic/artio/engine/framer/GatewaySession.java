@@ -19,6 +19,7 @@ import uk.co.real_logic.artio.DebugLogger;
 import uk.co.real_logic.artio.engine.SessionInfo;
 import uk.co.real_logic.artio.messages.ConnectionType;
 import uk.co.real_logic.artio.messages.SlowStatus;
+import uk.co.real_logic.artio.protocol.GatewayPublication;
 import uk.co.real_logic.artio.session.*;
 import uk.co.real_logic.artio.util.MutableAsciiBuffer;
 
@@ -111,19 +112,21 @@ class GatewaySession implements SessionInfo
         final InternalSession session,
         final BlockablePosition blockablePosition)
     {
+        // Reclaims the receiver end point from any framer shard before the engine starts parsing its messages.
+        receiverEndPoint.libraryId(ENGINE_LIBRARY_ID);
         this.sessionParser = sessionParser;
         this.session = session;
         this.session.logonListener(logonListener);
-        receiverEndPoint.libraryId(ENGINE_LIBRARY_ID);
         senderEndPoint.libraryId(ENGINE_LIBRARY_ID, blockablePosition);
     }
 
     // sets management to a library and also cleans up locally associated session.
     void handoverManagementTo(
         final int libraryId,
+        final GatewayPublication libraryPublication,
         final BlockablePosition blockablePosition)
     {
-        setManagementTo(libraryId, blockablePosition);
+        setManagementTo(libraryId, libraryPublication, blockablePosition);
 
         sessionParser = null;
         session.logonListener(null);
@@ -132,9 +135,10 @@ class GatewaySession implements SessionInfo
         session = null;
     }
 
-    void setManagementTo(final int libraryId, final BlockablePosition blockablePosition)
+    void setManagementTo(
+        final int libraryId, final GatewayPublication libraryPublication, final BlockablePosition blockablePosition)
     {
-        receiverEndPoint.libraryId(libraryId);
+        receiverEndPoint.libraryId(libraryId, libraryPublication);
         receiverEndPoint.pause();
         senderEndPoint.libraryId(libraryId, blockablePosition);
     }
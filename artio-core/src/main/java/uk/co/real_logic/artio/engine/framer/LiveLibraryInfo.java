@@ -19,6 +19,7 @@ import org.agrona.collections.Long2ObjectHashMap;
 import uk.co.real_logic.artio.LivenessDetector;
 import uk.co.real_logic.artio.engine.SessionInfo;
 import uk.co.real_logic.artio.engine.framer.SubscriptionSlowPeeker.LibrarySlowPeeker;
+import uk.co.real_logic.artio.protocol.GatewayPublication;
 
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
@@ -32,6 +33,7 @@ final class LiveLibraryInfo implements LibraryInfo
     private final LivenessDetector livenessDetector;
     private final int aeronSessionId;
     private final LibrarySlowPeeker librarySlowPeeker;
+    private final GatewayPublication inboundPublication;
     private final List<GatewaySession> allSessions = new CopyOnWriteArrayList<>();
     private final List<SessionInfo> unmodifiableAllSessions = unmodifiableList(allSessions);
     private final Long2ObjectHashMap<ConnectingSession> correlationIdToConnectingSession = new Long2ObjectHashMap<>();
@@ -43,13 +45,15 @@ final class LiveLibraryInfo implements LibraryInfo
         final String libraryName,
         final LivenessDetector livenessDetector,
         final int aeronSessionId,
-        final LibrarySlowPeeker librarySlowPeeker)
+        final LibrarySlowPeeker librarySlowPeeker,
+        final GatewayPublication inboundPublication)
     {
         this.libraryId = libraryId;
         this.libraryName = libraryName;
         this.livenessDetector = livenessDetector;
         this.aeronSessionId = aeronSessionId;
         this.librarySlowPeeker = librarySlowPeeker;
+        this.inboundPublication = inboundPublication;
     }
 
     public int libraryId()
@@ -80,6 +84,12 @@ final class LiveLibraryInfo implements LibraryInfo
         return aeronSessionId;
     }
 
+    // The publication that messages for this library's sessions are published on.
+    GatewayPublication inboundPublication()
+    {
+        return inboundPublication;
+    }
+
     List<GatewaySession> gatewaySessions()
     {
         return allSessions;
@@ -110,6 +120,21 @@ final class LiveLibraryInfo implements LibraryInfo
         return GatewaySessions.removeSessionByConnectionId(connectionId, allSessions);
     }
 
+    GatewaySession lookupSession(final long connectionId)
+    {
+        final List<GatewaySession> sessions = this.allSessions;
+        for (int i = 0, size = sessions.size(); i < size; i++)
+        {
+            final GatewaySession session = sessions.get(i);
+            if (session.connectionId() == connectionId)
+            {
+                return session;
+            }
+        }
+
+        return null;
+    }
+
     void acquireAtPosition(final long libraryPosition)
     {
         acquireAtPosition = libraryPosition;
@@ -25,6 +25,7 @@ import uk.co.real_logic.artio.dictionary.generation.Exceptions;
 import uk.co.real_logic.artio.engine.ByteBufferUtil;
 import uk.co.real_logic.artio.messages.DisconnectReason;
 import uk.co.real_logic.artio.protocol.GatewayPublication;
+import uk.co.real_logic.artio.protocol.TagOffsetIndex;
 import uk.co.real_logic.artio.util.MutableAsciiBuffer;
 
 import java.io.IOException;
@@ -38,9 +39,12 @@ import static java.nio.channels.SelectionKey.OP_READ;
 import static uk.co.real_logic.artio.LogTag.FIX_MESSAGE;
 import static uk.co.real_logic.artio.dictionary.StandardFixConstants.MIN_MESSAGE_SIZE;
 import static uk.co.real_logic.artio.dictionary.StandardFixConstants.START_OF_HEADER;
+import static uk.co.real_logic.artio.engine.FixEngine.ENGINE_LIBRARY_ID;
 import static uk.co.real_logic.artio.messages.DisconnectReason.NO_LOGON;
 import static uk.co.real_logic.artio.messages.DisconnectReason.REMOTE_DISCONNECT;
 import static uk.co.real_logic.artio.messages.MessageStatus.*;
+import static uk.co.real_logic.artio.protocol.FixMessageBatchReader.BATCH_HEADER_LENGTH;
+import static uk.co.real_logic.artio.protocol.GatewayPublication.batchedMessageLength;
 import static uk.co.real_logic.artio.session.Session.UNKNOWN;
 import static uk.co.real_logic.artio.util.AsciiBuffer.SEPARATOR;
 import static uk.co.real_logic.artio.util.AsciiBuffer.UNKNOWN_INDEX;
@@ -51,6 +55,22 @@ import static uk.co.real_logic.artio.util.AsciiBuffer.UNKNOWN_INDEX;
  * The receiver end point frames the TCP FIX messages into Aeron fragments.
  * It also handles backpressure coming from the Aeron stream and applies it to
  * its own TCP connections.
+ * <p>
+ * Framing is incremental: the header of a partially received message is only parsed once and its checksum is
+ * accumulated as its data arrives. Unframed data is only moved to the start of the buffer when the buffer has
+ * no room left to read into.
+ * <p>
+ * When batching is enabled, valid messages framed from a single read are published together as one
+ * FixMessageBatch fragment. Any pending batch is published before an invalid message so that the order of
+ * the inbound stream is preserved.
+ * <p>
+ * When tag offset indexing is enabled, valid messages that are published on their own carry a
+ * {@link TagOffsetIndex} of their standard header fields.
+ * <p>
+ * When the engine has framer shards, the framer hands the end point of a library owned session over to a
+ * {@link FramerShard} whilst it's playing. The framer reclaims it before any change of ownership, pause or close,
+ * and a shard leaves the completion of a disconnect to the framer. A reclaim completes once the framer polls the
+ * shard's release of the end point, so a change of ownership is deferred until then.
  */
 class ReceiverEndPoint
 {
@@ -73,7 +93,7 @@ class ReceiverEndPoint
     private final LogonDecoder logon = new LogonDecoder();
 
     private final TcpChannel channel;
-    private final GatewayPublication publication;
+    private final GatewayPublication framerPublication;
     private final long connectionId;
     private final SessionContexts sessionContexts;
     private final AtomicCounter messagesRead;
@@ -82,12 +102,18 @@ class ReceiverEndPoint
     private final MutableAsciiBuffer buffer;
     private final ByteBuffer byteBuffer;
     private final GatewaySessions gatewaySessions;
+    private final int maxBatchLength;
+    private final int[] batchOffsets;
+    private final int[] batchLengths;
+    private final int[] batchMessageTypes;
+    private final TagOffsetIndex tagOffsetIndex;
 
     private int libraryId;
     private GatewaySession gatewaySession;
     private long sessionId;
     private int sequenceIndex;
     private int usedBufferData = 0;
+    private int dataOffset = 0;
     private boolean hasDisconnected = false;
     private SelectionKey selectionKey;
     private boolean isPaused = false;
@@ -96,6 +122,31 @@ class ReceiverEndPoint
     private int pendingAcceptorLogonMsgOffset;
     private int pendingAcceptorLogonMsgLength;
 
+    // Framing state of a message that was only partially received, kept so that only new data is scanned
+    private int pendingMessageOffset = UNKNOWN_INDEX;
+    private int pendingEndOfBodyLength;
+    private int pendingStartOfChecksumTag;
+    private int checksumOffset;
+    private int checksum;
+
+    private int batchCount = 0;
+    private int batchLength;
+
+    // The inbound publication of the library that owns the end point, which may be the framer's.
+    private GatewayPublication libraryPublication;
+    private GatewayPublication publication;
+    private volatile FramerShard shard;
+    private volatile boolean reclaimRequested;
+    private SelectionKey shardSelectionKey;
+    private DisconnectReason shardDisconnectReason;
+
+    // Changes made by the framer whilst a reclaim from a shard is in progress
+    private boolean hasDeferredLibraryId;
+    private int deferredLibraryId;
+    private GatewayPublication deferredLibraryPublication;
+    private boolean hasDeferredClose;
+    private DisconnectReason deferredDisconnectReason;
+
     ReceiverEndPoint(
         final TcpChannel channel,
         final int bufferSize,
@@ -108,13 +159,17 @@ class ReceiverEndPoint
         final Framer framer,
         final ErrorHandler errorHandler,
         final int libraryId,
-        final GatewaySessions gatewaySessions)
+        final GatewaySessions gatewaySessions,
+        final boolean batchInboundMessages,
+        final boolean indexTagOffsets)
     {
         Objects.requireNonNull(publication, "publication");
         Objects.requireNonNull(sessionContexts, "sessionContexts");
         Objects.requireNonNull(gatewaySessions, "gatewaySessions");
 
         this.channel = channel;
+        this.framerPublication = publication;
+        this.libraryPublication = publication;
         this.publication = publication;
         this.connectionId = connectionId;
         this.sessionId = sessionId;
@@ -128,6 +183,23 @@ class ReceiverEndPoint
 
         byteBuffer = ByteBuffer.allocateDirect(bufferSize);
         buffer = new MutableAsciiBuffer(byteBuffer);
+        tagOffsetIndex = indexTagOffsets ? new TagOffsetIndex() : null;
+
+        if (batchInboundMessages)
+        {
+            maxBatchLength = publication.maxPayloadLength();
+            final int maxBatchSize = maxBatchLength / batchedMessageLength(MIN_MESSAGE_SIZE);
+            batchOffsets = new int[maxBatchSize];
+            batchLengths = new int[maxBatchSize];
+            batchMessageTypes = new int[maxBatchSize];
+        }
+        else
+        {
+            maxBatchLength = 0;
+            batchOffsets = null;
+            batchLengths = null;
+            batchMessageTypes = null;
+        }
     }
 
     public long connectionId()
@@ -137,7 +209,7 @@ class ReceiverEndPoint
 
     int poll()
     {
-        if (isPaused || hasDisconnected())
+        if (isPaused || reclaimRequested || hasDisconnected())
         {
             return 0;
         }
@@ -149,7 +221,9 @@ class ReceiverEndPoint
 
         try
         {
-            return readData() + frameMessages();
+            final int dataRead = readData();
+            final int startOfData = dataOffset;
+            return dataRead + frameMessages() - startOfData;
         }
         catch (final ClosedChannelException ex)
         {
@@ -189,7 +263,7 @@ class ReceiverEndPoint
                 // the new session in soleLibraryMode
                 if (isPaused)
                 {
-                    moveRemainingDataToBufferStart(offset);
+                    consumeUpTo(offset);
                     return offset;
                 }
 
@@ -200,7 +274,7 @@ class ReceiverEndPoint
                 else
                 {
                     offset += length;
-                    moveRemainingDataToBufferStart(offset);
+                    consumeUpTo(offset);
                     return offset;
                 }
             }
@@ -215,12 +289,17 @@ class ReceiverEndPoint
 
     private int readData() throws IOException
     {
+        if (!byteBuffer.hasRemaining() && dataOffset > 0)
+        {
+            compact();
+        }
+
         final int dataRead = channel.read(byteBuffer);
         if (dataRead != SOCKET_DISCONNECTED)
         {
             if (dataRead > 0)
             {
-                DebugLogger.log(FIX_MESSAGE, "Read     %s%n", buffer, 0, dataRead);
+                DebugLogger.log(FIX_MESSAGE, "Read     %s%n", buffer, usedBufferData, dataRead);
             }
             usedBufferData += dataRead;
         }
@@ -235,7 +314,7 @@ class ReceiverEndPoint
 
     private int frameMessages()
     {
-        int offset = 0;
+        int offset = dataOffset;
         while (true)
         {
             if (usedBufferData < offset + StandardFixConstants.MIN_MESSAGE_SIZE) // Need more data
@@ -245,23 +324,26 @@ class ReceiverEndPoint
             }
             try
             {
-                final int startOfBodyLength = scanForBodyLength(offset);
-                if (startOfBodyLength == UNKNOWN_INDEX)
+                if (offset != pendingMessageOffset)
                 {
-                    return offset;
-                }
+                    final int startOfBodyLength = scanForBodyLength(offset);
+                    if (startOfBodyLength == UNKNOWN_INDEX)
+                    {
+                        return offset;
+                    }
 
-                final int endOfBodyLength = scanEndOfBodyLength(startOfBodyLength);
-                if (endOfBodyLength == UNKNOWN_INDEX) // Need more data
-                {
-                    break;
+                    if (!startPendingMessage(offset, startOfBodyLength)) // Need more data
+                    {
+                        break;
+                    }
                 }
 
-                final int startOfChecksumTag = endOfBodyLength + getBodyLength(startOfBodyLength, endOfBodyLength);
-
+                final int endOfBodyLength = pendingEndOfBodyLength;
+                final int startOfChecksumTag = pendingStartOfChecksumTag;
                 final int endOfChecksumTag = startOfChecksumTag + MIN_CHECKSUM_SIZE;
                 if (endOfChecksumTag >= usedBufferData)
                 {
+                    accumulateChecksum(startOfChecksumTag + 1);
                     break;
                 }
 
@@ -285,7 +367,7 @@ class ReceiverEndPoint
 
                 final int messageType = getMessageType(endOfBodyLength, endOfMessage);
                 final int length = (endOfMessage + 1) - offset;
-                if (!validateChecksum(endOfMessage, startOfChecksumValue, offset, startOfChecksumTag))
+                if (!validateChecksum(endOfMessage, startOfChecksumValue, startOfChecksumTag))
                 {
                     if (saveInvalidChecksumMessage(offset, messageType, length))
                     {
@@ -301,7 +383,9 @@ class ReceiverEndPoint
                     }
 
                     messagesRead.incrementOrdered();
-                    if (!saveMessage(offset, messageType, length))
+                    final boolean saved = batchOffsets != null ?
+                        batchMessage(offset, messageType, length) : saveMessage(offset, messageType, length);
+                    if (!saved)
                     {
                         return offset;
                     }
@@ -321,7 +405,12 @@ class ReceiverEndPoint
             }
         }
 
-        moveRemainingDataToBufferStart(offset);
+        if (!flushBatch())
+        {
+            return offset;
+        }
+
+        consumeUpTo(offset);
         return offset;
     }
 
@@ -346,12 +435,13 @@ class ReceiverEndPoint
             return BREAK;
         }
 
-        if (saveInvalidMessage(offset, endOfMessage))
+        if (saveInvalidMessage(offset, endOfMessage - offset))
         {
             return offset;
         }
 
-        moveRemainingDataToBufferStart(endOfMessage);
+        pendingMessageOffset = UNKNOWN_INDEX;
+        consumeUpTo(endOfMessage);
         return offset;
     }
 
@@ -363,12 +453,41 @@ class ReceiverEndPoint
     private boolean validateChecksum(
         final int endOfMessage,
         final int startOfChecksumValue,
-        final int offset,
         final int startOfChecksumTag)
     {
         final int expectedChecksum = buffer.getInt(startOfChecksumValue - 1, endOfMessage);
-        final int computedChecksum = buffer.computeChecksum(offset, startOfChecksumTag + 1);
-        return expectedChecksum == computedChecksum;
+        accumulateChecksum(startOfChecksumTag + 1);
+        // The message has been completely received, so its framing state is no longer needed.
+        pendingMessageOffset = UNKNOWN_INDEX;
+        return expectedChecksum == checksum;
+    }
+
+    private boolean startPendingMessage(final int offset, final int startOfBodyLength)
+    {
+        final int endOfBodyLength = scanEndOfBodyLength(startOfBodyLength);
+        if (endOfBodyLength == UNKNOWN_INDEX)
+        {
+            return false;
+        }
+
+        pendingMessageOffset = offset;
+        pendingEndOfBodyLength = endOfBodyLength;
+        pendingStartOfChecksumTag = endOfBodyLength + getBodyLength(startOfBodyLength, endOfBodyLength);
+        checksumOffset = offset;
+        checksum = 0;
+        return true;
+    }
+
+    // Sums the bytes of the pending message that have been received since the last call, modulo 256.
+    private void accumulateChecksum(final int endOfChecksumRange)
+    {
+        final int end = Math.min(usedBufferData, endOfChecksumRange);
+        final int checksumOffset = this.checksumOffset;
+        if (end > checksumOffset)
+        {
+            checksum = (checksum + buffer.computeChecksum(checksumOffset, end)) & 0xFF;
+            this.checksumOffset = end;
+        }
     }
 
     private int scanEndOfMessage(final int startOfChecksumValue)
@@ -436,7 +555,7 @@ class ReceiverEndPoint
         final boolean backPressured = Pressure.isBackPressured(position);
         if (backPressured)
         {
-            moveRemainingDataToBufferStart(offset);
+            consumeUpTo(offset);
         }
 
         return backPressured;
@@ -444,6 +563,12 @@ class ReceiverEndPoint
 
     private boolean saveMessage(final int offset, final int messageType, final int length)
     {
+        final TagOffsetIndex tagOffsetIndex = this.tagOffsetIndex;
+        if (tagOffsetIndex != null)
+        {
+            tagOffsetIndex.index(buffer, offset, length);
+        }
+
         final long position = publication.saveMessage(
             buffer,
             offset,
@@ -454,11 +579,12 @@ class ReceiverEndPoint
             sequenceIndex,
             connectionId,
             OK,
-            0);
+            0,
+            tagOffsetIndex);
 
         if (Pressure.isBackPressured(position))
         {
-            moveRemainingDataToBufferStart(offset);
+            consumeUpTo(offset);
             return false;
         }
         else
@@ -468,6 +594,82 @@ class ReceiverEndPoint
         }
     }
 
+    private boolean batchMessage(final int offset, final int messageType, final int length)
+    {
+        final int messageLength = batchedMessageLength(length);
+        if (batchCount > 0 && (batchLength + messageLength > maxBatchLength || batchCount == batchOffsets.length))
+        {
+            if (!flushBatch())
+            {
+                return false;
+            }
+        }
+
+        if (batchCount == 0)
+        {
+            // Too large to be batched, or a fragmented message.
+            if (BATCH_HEADER_LENGTH + messageLength > maxBatchLength)
+            {
+                return saveMessage(offset, messageType, length);
+            }
+
+            batchLength = BATCH_HEADER_LENGTH;
+        }
+
+        batchOffsets[batchCount] = offset;
+        batchLengths[batchCount] = length;
+        batchMessageTypes[batchCount] = messageType;
+        batchLength += messageLength;
+        batchCount++;
+
+        return true;
+    }
+
+    // returns false if back pressured, in which case the data is stashed from the start of the batch.
+    private boolean flushBatch()
+    {
+        final int batchCount = this.batchCount;
+        if (batchCount == 0)
+        {
+            return true;
+        }
+
+        this.batchCount = 0;
+
+        final int[] batchOffsets = this.batchOffsets;
+        final int[] batchLengths = this.batchLengths;
+        final int[] batchMessageTypes = this.batchMessageTypes;
+        if (batchCount == 1)
+        {
+            return saveMessage(batchOffsets[0], batchMessageTypes[0], batchLengths[0]);
+        }
+
+        final long position = publication.saveMessageBatch(
+            buffer,
+            batchOffsets,
+            batchLengths,
+            batchMessageTypes,
+            batchCount,
+            batchLength,
+            libraryId,
+            sessionId,
+            sequenceIndex,
+            connectionId);
+
+        if (Pressure.isBackPressured(position))
+        {
+            consumeUpTo(batchOffsets[0]);
+            return false;
+        }
+
+        for (int i = 0; i < batchCount; i++)
+        {
+            gatewaySession.onMessage(buffer, batchOffsets[i], batchLengths[i], batchMessageTypes[i], sessionId);
+        }
+
+        return true;
+    }
+
     private boolean validateBodyLength(final int startOfChecksumTag)
     {
         return isStartOfChecksum(startOfChecksumTag);
@@ -509,12 +711,38 @@ class ReceiverEndPoint
         }
     }
 
-    private void moveRemainingDataToBufferStart(final int offset)
+    // Data is only copied to the start of the buffer when the buffer is full, see compact().
+    private void consumeUpTo(final int offset)
+    {
+        if (offset == usedBufferData)
+        {
+            dataOffset = 0;
+            usedBufferData = 0;
+            pendingMessageOffset = UNKNOWN_INDEX;
+            ByteBufferUtil.position(byteBuffer, 0);
+        }
+        else
+        {
+            dataOffset = offset;
+        }
+    }
+
+    private void compact()
     {
-        usedBufferData -= offset;
-        buffer.putBytes(0, buffer, offset, usedBufferData);
+        final int dataOffset = this.dataOffset;
+        usedBufferData -= dataOffset;
+        buffer.putBytes(0, buffer, dataOffset, usedBufferData);
         // position set to ensure that back pressure is applied to TCP when read(byteBuffer) called.
         ByteBufferUtil.position(byteBuffer, usedBufferData);
+        this.dataOffset = 0;
+
+        if (pendingMessageOffset != UNKNOWN_INDEX)
+        {
+            pendingMessageOffset -= dataOffset;
+            pendingEndOfBodyLength -= dataOffset;
+            pendingStartOfChecksumTag -= dataOffset;
+            checksumOffset -= dataOffset;
+        }
     }
 
     private void invalidateMessage(final int offset)
@@ -523,12 +751,17 @@ class ReceiverEndPoint
         saveInvalidMessage(offset);
     }
 
-    private boolean saveInvalidMessage(final int offset, final int startOfChecksumTag)
+    private boolean saveInvalidMessage(final int offset, final int length)
     {
+        if (!flushBatch())
+        {
+            return true;
+        }
+
         final long position = publication.saveMessage(
             buffer,
             offset,
-            startOfChecksumTag,
+            length,
             libraryId,
             UNKNOWN_MESSAGE_TYPE,
             sessionId,
@@ -542,10 +775,15 @@ class ReceiverEndPoint
 
     private void saveInvalidMessage(final int offset)
     {
+        if (!flushBatch())
+        {
+            return;
+        }
+
         final long position = publication.saveMessage(
             buffer,
             offset,
-            usedBufferData,
+            usedBufferData - offset,
             libraryId,
             INVALID_MESSAGE_TYPE,
             sessionId,
@@ -564,11 +802,16 @@ class ReceiverEndPoint
 
     private void clearBuffer()
     {
-        moveRemainingDataToBufferStart(usedBufferData);
+        consumeUpTo(usedBufferData);
     }
 
     private boolean saveInvalidChecksumMessage(final int offset, final int messageType, final int length)
     {
+        if (!flushBatch())
+        {
+            return true;
+        }
+
         final long position = publication.saveMessage(
             buffer,
             offset,
@@ -586,7 +829,17 @@ class ReceiverEndPoint
 
     public void close(final DisconnectReason reason)
     {
-        closeResources();
+        if (reclaimFromShard())
+        {
+            // Closing the channel stops the shard reading from it, the messages read counter that it increments is
+            // closed once the shard has released the end point.
+            closeChannel();
+            hasDeferredClose = true;
+        }
+        else
+        {
+            closeResources();
+        }
 
         if (!hasDisconnected)
         {
@@ -594,6 +847,18 @@ class ReceiverEndPoint
         }
     }
 
+    private void closeChannel()
+    {
+        try
+        {
+            channel.close();
+        }
+        catch (final Exception ex)
+        {
+            errorHandler.onError(ex);
+        }
+    }
+
     private void closeResources()
     {
         try
@@ -619,17 +884,33 @@ class ReceiverEndPoint
 
     void onNoLogonDisconnect()
     {
+        if (reclaimFromShard())
+        {
+            deferredDisconnectReason = NO_LOGON;
+            return;
+        }
+
         completeDisconnect(NO_LOGON);
     }
 
     private void completeDisconnect(final DisconnectReason reason)
     {
+        final FramerShard shard = this.shard;
+        if (shard != null)
+        {
+            shardDisconnectReason = reason;
+            shard.onDisconnectDetected(this);
+            return;
+        }
+
         disconnectEndpoint(reason);
         removeEndpointFromFramer();
     }
 
     private void disconnectEndpoint(final DisconnectReason reason)
     {
+        // The library's publication rather than a shard's, since this may be called whilst a shard still polls.
+        final GatewayPublication publication = libraryPublication;
         framer.schedule(() -> publication.saveDisconnect(libraryId, connectionId, reason));
 
         sessionContexts.onDisconnect(sessionId);
@@ -648,7 +929,15 @@ class ReceiverEndPoint
 
     public void register(final Selector selector) throws IOException
     {
-        selectionKey = channel.register(selector, OP_READ, this);
+        final SelectionKey selectionKey = channel.register(selector, OP_READ, this);
+        if (shard == null)
+        {
+            this.selectionKey = selectionKey;
+        }
+        else
+        {
+            shardSelectionKey = selectionKey;
+        }
     }
 
     public int libraryId()
@@ -658,7 +947,22 @@ class ReceiverEndPoint
 
     public void libraryId(final int libraryId)
     {
+        libraryId(libraryId, framerPublication);
+    }
+
+    void libraryId(final int libraryId, final GatewayPublication libraryPublication)
+    {
+        if (reclaimFromShard())
+        {
+            hasDeferredLibraryId = true;
+            deferredLibraryId = libraryId;
+            deferredLibraryPublication = libraryPublication;
+            return;
+        }
+
         this.libraryId = libraryId;
+        this.libraryPublication = libraryPublication;
+        publication = libraryPublication;
     }
 
     void gatewaySession(final GatewaySession gatewaySession)
@@ -668,6 +972,8 @@ class ReceiverEndPoint
 
     void pause()
     {
+        // A shard stops polling the end point once the reclaim is requested, so this doesn't need to be deferred.
+        reclaimFromShard();
         isPaused = true;
     }
 
@@ -675,4 +981,109 @@ class ReceiverEndPoint
     {
         isPaused = false;
     }
+
+    // Called on the framer thread after the end point has been polled.
+    boolean canMoveToShard()
+    {
+        return libraryId != ENGINE_LIBRARY_ID && !isPaused && !hasDisconnected && pendingAcceptorLogon == null &&
+            sessionId != UNKNOWN && batchCount == 0;
+    }
+
+    // Called on the framer thread, the framer's selector no longer selects the end point whilst on the shard.
+    void moveToShard(final FramerShard shard)
+    {
+        if (selectionKey != null)
+        {
+            selectionKey.interestOps(0);
+        }
+
+        publication = shard.inboundPublication();
+        this.shard = shard;
+        shard.add(this);
+    }
+
+    // Called on the framer thread, an end point stays with its shard until the framer has polled its release.
+    boolean isPolledByShard()
+    {
+        return shard != null;
+    }
+
+    boolean isRegisteredWithShard()
+    {
+        return shardSelectionKey != null;
+    }
+
+    // Called on the shard thread once it has stopped polling the end point.
+    void onRemovedFromShard()
+    {
+        if (shardSelectionKey != null)
+        {
+            shardSelectionKey.cancel();
+            shardSelectionKey = null;
+        }
+    }
+
+    // Called on the framer thread once a shard has released the end point, either because the framer reclaimed it
+    // or because the shard detected a disconnect.
+    void onReleasedByShard()
+    {
+        if (shard == null)
+        {
+            // A reclaim that was requested after a shard had already released the end point due to a disconnect.
+            return;
+        }
+
+        shard = null;
+        reclaimRequested = false;
+        publication = libraryPublication;
+
+        if (hasDeferredLibraryId)
+        {
+            hasDeferredLibraryId = false;
+            libraryId(deferredLibraryId, deferredLibraryPublication);
+            deferredLibraryPublication = null;
+        }
+
+        if (hasDeferredClose)
+        {
+            hasDeferredClose = false;
+            closeResources();
+        }
+
+        final DisconnectReason reason =
+            shardDisconnectReason != null ? shardDisconnectReason : deferredDisconnectReason;
+        shardDisconnectReason = null;
+        deferredDisconnectReason = null;
+
+        if (reason != null)
+        {
+            if (!hasDisconnected)
+            {
+                completeDisconnect(reason);
+            }
+        }
+        else if (!hasDisconnected && selectionKey != null && selectionKey.isValid())
+        {
+            selectionKey.interestOps(OP_READ);
+        }
+    }
+
+    // Returns true if the end point is still owned by a shard, in which case the caller defers its change until the
+    // shard has released it.
+    private boolean reclaimFromShard()
+    {
+        final FramerShard shard = this.shard;
+        if (shard == null)
+        {
+            return false;
+        }
+
+        if (!reclaimRequested)
+        {
+            reclaimRequested = true;
+            shard.reclaim(this);
+        }
+
+        return true;
+    }
 }
@@ -22,6 +22,7 @@ import uk.co.real_logic.artio.messages.DisconnectReason;
 
 import java.io.IOException;
 import java.nio.channels.SelectionKey;
+import java.util.function.Consumer;
 import java.util.stream.Stream;
 
 import static org.agrona.collections.ArrayUtil.UNKNOWN_INDEX;
@@ -29,8 +30,28 @@ import static uk.co.real_logic.artio.messages.DisconnectReason.ENGINE_SHUTDOWN;
 
 class ReceiverEndPoints extends TransportPoller
 {
+    private static final FramerShard[] NO_SHARDS = new FramerShard[0];
+
+    private final FramerShard[] shards;
+
     private ReceiverEndPoint[] endPoints = new ReceiverEndPoint[0];
 
+    ReceiverEndPoints()
+    {
+        this(NO_SHARDS);
+    }
+
+    /**
+     * Create the framer's receiver end points, handing any end points that can be polled by a shard over to
+     * a shard picked by their connection id.
+     *
+     * @param shards the framer shards, or an empty array if the framer polls every end point itself.
+     */
+    ReceiverEndPoints(final FramerShard[] shards)
+    {
+        this.shards = shards.length == 0 ? NO_SHARDS : shards;
+    }
+
     void add(final ReceiverEndPoint endPoint)
     {
         try
@@ -65,6 +86,19 @@ class ReceiverEndPoints extends TransportPoller
         selectNowToForceProcessing();
     }
 
+    // Removes an end point without closing it, used by shards when they release an end point.
+    void remove(final ReceiverEndPoint endPoint)
+    {
+        endPoints = ArrayUtil.remove(endPoints, endPoint);
+
+        selectNowToForceProcessing();
+    }
+
+    void releaseAll(final Consumer<ReceiverEndPoint> release)
+    {
+        Stream.of(endPoints).forEach(release);
+    }
+
     private void selectNowToForceProcessing()
     {
         try
@@ -79,7 +113,7 @@ class ReceiverEndPoints extends TransportPoller
 
     int pollEndPoints()
     {
-        int bytesReceived = 0;
+        int bytesReceived = pollReleasedEndPoints();
         try
         {
             final ReceiverEndPoint[] endPoints = this.endPoints;
@@ -88,7 +122,7 @@ class ReceiverEndPoints extends TransportPoller
             {
                 for (int i = numEndPoints - 1; i >= 0; i--)
                 {
-                    bytesReceived += endPoints[i].poll();
+                    bytesReceived += poll(endPoints[i]);
                 }
             }
             else
@@ -98,7 +132,7 @@ class ReceiverEndPoints extends TransportPoller
                 final SelectionKey[] keys = selectedKeySet.keys();
                 for (int i = selectedKeySet.size() - 1; i >= 0; i--)
                 {
-                    bytesReceived += ((ReceiverEndPoint)keys[i].attachment()).poll();
+                    bytesReceived += poll((ReceiverEndPoint)keys[i].attachment());
                 }
 
                 selectedKeySet.reset();
@@ -112,6 +146,40 @@ class ReceiverEndPoints extends TransportPoller
         return bytesReceived;
     }
 
+    private int pollReleasedEndPoints()
+    {
+        final FramerShard[] shards = this.shards;
+        int work = 0;
+        for (int i = 0; i < shards.length; i++)
+        {
+            work += shards[i].pollReleasedEndPoints();
+        }
+
+        return work;
+    }
+
+    private int poll(final ReceiverEndPoint endPoint)
+    {
+        final FramerShard[] shards = this.shards;
+        if (shards == NO_SHARDS)
+        {
+            return endPoint.poll();
+        }
+
+        if (endPoint.isPolledByShard())
+        {
+            return 0;
+        }
+
+        final int bytesReceived = endPoint.poll();
+        if (endPoint.canMoveToShard())
+        {
+            endPoint.moveToShard(shards[(int)Math.floorMod(endPoint.connectionId(), (long)shards.length)]);
+        }
+
+        return bytesReceived;
+    }
+
     public void close()
     {
         Stream.of(endPoints).forEach(receiverEndPoint -> receiverEndPoint.close(ENGINE_SHUTDOWN));
@@ -21,6 +21,7 @@ import uk.co.real_logic.artio.engine.logger.SequenceNumberIndexReader;
 import uk.co.real_logic.artio.protocol.GatewayPublication;
 import uk.co.real_logic.artio.session.Session;
 
+import java.util.function.IntFunction;
 import java.util.function.LongToIntFunction;
 
 import static uk.co.real_logic.artio.Reply.State.COMPLETED;
@@ -43,11 +44,15 @@ class ResetSequenceNumberCommand implements Reply<Void>, AdminCommand
     private final GatewayPublication outboundPublication;
     private Session session;
     private LongToIntFunction libraryLookup;
+    private IntFunction<GatewayPublication> libraryInboundPublicationLookup;
     private long waitSequence = 1;
 
-    void libraryLookup(final LongToIntFunction libraryLookup)
+    void libraryLookup(
+        final LongToIntFunction libraryLookup,
+        final IntFunction<GatewayPublication> libraryInboundPublicationLookup)
     {
         this.libraryLookup = libraryLookup;
+        this.libraryInboundPublicationLookup = libraryInboundPublicationLookup;
     }
 
     private enum Step
@@ -177,8 +182,10 @@ class ResetSequenceNumberCommand implements Reply<Void>, AdminCommand
                 if (isAuthenticated())
                 {
                     final int libraryId = libraryLookup.applyAsInt(sessionId);
+                    final GatewayPublication libraryInboundPublication =
+                        libraryInboundPublicationLookup.apply(libraryId);
                     if (!Pressure.isBackPressured(
-                        inboundPublication.saveResetLibrarySequenceNumber(libraryId, sessionId)))
+                        libraryInboundPublication.saveResetLibrarySequenceNumber(libraryId, sessionId)))
                     {
                         waitSequence = 1;
                         step = Step.AWAIT_RECV;
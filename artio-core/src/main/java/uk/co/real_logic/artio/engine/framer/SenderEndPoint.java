@@ -19,11 +19,13 @@ import io.aeron.logbuffer.ControlledFragmentHandler.Action;
 import io.aeron.protocol.DataHeaderFlyweight;
 import org.agrona.DirectBuffer;
 import org.agrona.ErrorHandler;
+import org.agrona.concurrent.UnsafeBuffer;
 import org.agrona.concurrent.status.AtomicCounter;
 import uk.co.real_logic.artio.DebugLogger;
 import uk.co.real_logic.artio.engine.ByteBufferUtil;
 import uk.co.real_logic.artio.engine.SenderSequenceNumber;
 import uk.co.real_logic.artio.engine.logger.ArchiveDescriptor;
+import uk.co.real_logic.artio.engine.logger.Replayer;
 import uk.co.real_logic.artio.messages.DisconnectReason;
 
 import java.io.IOException;
@@ -49,17 +51,29 @@ class SenderEndPoint
     private final StreamTracker outboundTracker;
     private final StreamTracker replayTracker;
     private final SenderSequenceNumber senderSequenceNumber;
+    private final BlockablePosition[] replayBlockablePositions;
+
+    // Outbound messages gathered into a single write, null buffers when gathering is disabled
+    private final ByteBuffer gatheredByteBuffer;
+    private final UnsafeBuffer gatheredBuffer;
+    private final long[] gatheredPositions;
+    private final int[] gatheredLengths;
+    private final int maxGatheredMessages;
 
     private int libraryId;
     private long sessionId;
     private long sendingTimeoutTimeInMs;
     private boolean replayPaused;
+    private boolean closed;
+    private int gatheredMessages;
+    private int gatheredBytes;
+    private long gatheredTimeInMs;
 
     SenderEndPoint(
         final long connectionId,
         final int libraryId,
         final BlockablePosition outboundBlockablePosition,
-        final BlockablePosition replayBlockablePosition,
+        final BlockablePosition[] replayBlockablePositions,
         final TcpChannel channel,
         final AtomicCounter bytesInBuffer,
         final AtomicCounter invalidLibraryAttempts,
@@ -68,7 +82,9 @@ class SenderEndPoint
         final int maxBytesInBuffer,
         final long slowConsumerTimeoutInMs,
         final long timeInMs,
-        final SenderSequenceNumber senderSequenceNumber)
+        final SenderSequenceNumber senderSequenceNumber,
+        final int maxGatheredBytes,
+        final int maxGatheredMessages)
     {
         this.connectionId = connectionId;
         this.libraryId = libraryId;
@@ -80,10 +96,27 @@ class SenderEndPoint
         this.maxBytesInBuffer = maxBytesInBuffer;
         this.slowConsumerTimeoutInMs = slowConsumerTimeoutInMs;
         this.senderSequenceNumber = senderSequenceNumber;
+        this.replayBlockablePositions = replayBlockablePositions;
 
         outboundTracker = new StreamTracker(outboundBlockablePosition);
-        replayTracker = new StreamTracker(replayBlockablePosition);
+        replayTracker = new StreamTracker(replayBlockablePositions[0]);
         sendingTimeoutTimeInMs = timeInMs + slowConsumerTimeoutInMs;
+
+        if (maxGatheredBytes > 0)
+        {
+            gatheredByteBuffer = ByteBuffer.allocateDirect(maxGatheredBytes);
+            gatheredBuffer = new UnsafeBuffer(gatheredByteBuffer);
+            gatheredPositions = new long[maxGatheredMessages];
+            gatheredLengths = new int[maxGatheredMessages];
+        }
+        else
+        {
+            gatheredByteBuffer = null;
+            gatheredBuffer = null;
+            gatheredPositions = null;
+            gatheredLengths = null;
+        }
+        this.maxGatheredMessages = maxGatheredMessages;
     }
 
     void onOutboundMessage(
@@ -108,7 +141,14 @@ class SenderEndPoint
             return;
         }
 
-        attemptFramedMessage(directBuffer, offset, bodyLength, timeInMs, position, outboundTracker);
+        if (gatheredBuffer != null)
+        {
+            gatherFramedMessage(directBuffer, offset, bodyLength, timeInMs, position);
+        }
+        else
+        {
+            attemptFramedMessage(directBuffer, offset, bodyLength, timeInMs, position, outboundTracker);
+        }
 
         senderSequenceNumber.onNewMessage(sequenceNumber);
     }
@@ -182,6 +222,108 @@ class SenderEndPoint
         }
     }
 
+    private void gatherFramedMessage(
+        final DirectBuffer directBuffer,
+        final int offset,
+        final int bodyLength,
+        final long timeInMs,
+        final long position)
+    {
+        if (gatheredBytes + bodyLength > gatheredBuffer.capacity())
+        {
+            flushGatheredMessages();
+            if (closed)
+            {
+                return;
+            }
+
+            if (bodyLength > gatheredBuffer.capacity())
+            {
+                attemptFramedMessage(directBuffer, offset, bodyLength, timeInMs, position, outboundTracker);
+                return;
+            }
+        }
+
+        if (isSlowConsumer())
+        {
+            dropFurtherBehind(bodyLength);
+
+            return;
+        }
+
+        final int gatheredMessages = this.gatheredMessages;
+        gatheredBuffer.putBytes(gatheredBytes, directBuffer, offset, bodyLength);
+        gatheredPositions[gatheredMessages] = position;
+        gatheredLengths[gatheredMessages] = bodyLength;
+        gatheredBytes += bodyLength;
+        gatheredTimeInMs = timeInMs;
+        this.gatheredMessages = gatheredMessages + 1;
+
+        if (this.gatheredMessages == maxGatheredMessages)
+        {
+            flushGatheredMessages();
+        }
+    }
+
+    /**
+     * Writes any outbound messages that have been gathered since the last flush to the TCP connection. If only
+     * some of them can be written then this end point becomes a slow consumer, exactly as if the messages had
+     * been written one at a time.
+     */
+    void flushGatheredMessages()
+    {
+        final int gatheredMessages = this.gatheredMessages;
+        if (gatheredMessages == 0)
+        {
+            return;
+        }
+
+        final int gatheredBytes = this.gatheredBytes;
+        this.gatheredMessages = 0;
+        this.gatheredBytes = 0;
+
+        try
+        {
+            final ByteBuffer buffer = gatheredByteBuffer;
+            ByteBufferUtil.limit(buffer, gatheredBytes);
+            ByteBufferUtil.position(buffer, 0);
+
+            int written = channel.write(buffer);
+            DebugLogger.log(FIX_MESSAGE, "Written  %s%n", buffer, written);
+            updateSendingTimeoutTimeInMs(gatheredTimeInMs, written);
+
+            final long[] gatheredPositions = this.gatheredPositions;
+            final int[] gatheredLengths = this.gatheredLengths;
+            int index = 0;
+            while (index < gatheredMessages && written >= gatheredLengths[index])
+            {
+                written -= gatheredLengths[index];
+                outboundTracker.sentPosition = gatheredPositions[index];
+                index++;
+            }
+
+            if (index < gatheredMessages)
+            {
+                becomeSlowConsumer(written, gatheredLengths[index], gatheredPositions[index], outboundTracker);
+
+                int unsentBytes = 0;
+                for (index++; index < gatheredMessages; index++)
+                {
+                    unsentBytes += gatheredLengths[index];
+                }
+
+                if (unsentBytes > 0)
+                {
+                    dropFurtherBehind(unsentBytes);
+                }
+            }
+        }
+        catch (final IOException ex)
+        {
+            onError(ex);
+        }
+    }
+
     private void dropFurtherBehind(final int bodyLength)
     {
         final long bytesInBuffer = bytesInBufferWeak() + bodyLength;
@@ -258,6 +400,9 @@ class SenderEndPoint
 
     public void libraryId(final int libraryId, final BlockablePosition blockablePosition)
     {
+        // Messages gathered from the previous owner are written before it can block the new owner's stream.
+        flushGatheredMessages();
+
         this.libraryId = libraryId;
         this.outboundTracker.blockablePosition = blockablePosition;
     }
@@ -269,6 +414,9 @@ class SenderEndPoint
 
     public void close()
     {
+        closed = true;
+        gatheredMessages = 0;
+        gatheredBytes = 0;
         bytesInBuffer.close();
         invalidLibraryAttempts.close();
     }
@@ -429,6 +577,10 @@ class SenderEndPoint
     void sessionId(final long sessionId)
     {
         this.sessionId = sessionId;
+
+        // Replays are only sent once the session has logged on, by the replayer that serves it.
+        replayTracker.blockablePosition =
+            replayBlockablePositions[Replayer.replayerIndex(sessionId, replayBlockablePositions.length)];
     }
 
     long sessionId()
@@ -487,4 +639,9 @@ class SenderEndPoint
     {
         return replayPaused;
     }
+
+    boolean hasGatheredMessages()
+    {
+        return gatheredMessages > 0;
+    }
 }
\ No newline at end of file
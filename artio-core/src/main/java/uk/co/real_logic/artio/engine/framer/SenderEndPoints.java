@@ -24,6 +24,7 @@ import uk.co.real_logic.artio.engine.FixEngine;
 import uk.co.real_logic.artio.messages.FixMessageDecoder;
 import uk.co.real_logic.artio.messages.MessageHeaderDecoder;
 
+import java.util.ArrayList;
 import java.util.function.LongToIntFunction;
 
 import static io.aeron.logbuffer.ControlledFragmentHandler.Action.CONTINUE;
@@ -35,6 +36,7 @@ class SenderEndPoints implements AutoCloseable, ControlledFragmentHandler
     private final MessageHeaderDecoder messageHeader = new MessageHeaderDecoder();
     private final FixMessageDecoder fixMessage = new FixMessageDecoder();
     private final Long2ObjectHashMap<SenderEndPoint> connectionIdToSenderEndpoint = new Long2ObjectHashMap<>();
+    private final ArrayList<SenderEndPoint> gatheringEndPoints = new ArrayList<>();
     private final ErrorHandler errorHandler;
     private final LongToIntFunction libraryLookup = this::libraryLookup;
 
@@ -84,7 +86,32 @@ class SenderEndPoints implements AutoCloseable, ControlledFragmentHandler
         final SenderEndPoint endPoint = connectionIdToSenderEndpoint.get(connectionId);
         if (endPoint != null)
         {
+            final boolean hadGatheredMessages = endPoint.hasGatheredMessages();
             endPoint.onOutboundMessage(libraryId, buffer, offset, length, sequenceNumber, position, timeInMs);
+            if (!hadGatheredMessages && endPoint.hasGatheredMessages())
+            {
+                gatheringEndPoints.add(endPoint);
+            }
+        }
+    }
+
+    void flushGatheredMessages()
+    {
+        final ArrayList<SenderEndPoint> gatheringEndPoints = this.gatheringEndPoints;
+        final int size = gatheringEndPoints.size();
+        for (int i = 0; i < size; i++)
+        {
+            gatheringEndPoints.get(i).flushGatheredMessages();
+        }
+        gatheringEndPoints.clear();
+    }
+
+    void flushGatheredMessages(final long connectionId)
+    {
+        final SenderEndPoint endPoint = connectionIdToSenderEndpoint.get(connectionId);
+        if (endPoint != null)
+        {
+            endPoint.flushGatheredMessages();
         }
     }
 
@@ -36,10 +36,13 @@ import static uk.co.real_logic.artio.engine.logger.FixMessagePredicates.*;
  */
 public final class FixArchivePrinter
 {
+    @SuppressWarnings("MethodLength")
     public static void main(final String[] args)
     {
         String aeronDirectoryName = null;
         String aeronChannel = null;
+        String logFileDir = null;
+        int workerCount = 1;
         int queryStreamId = DEFAULT_OUTBOUND_LIBRARY_STREAM;
         int archiveScannerStreamId = DEFAULT_ARCHIVE_SCANNER_STREAM;
         FixMessagePredicate predicate = FixMessagePredicates.alwaysTrue();
@@ -108,6 +111,10 @@ public final class FixArchivePrinter
                     headerPredicate = safeAnd(headerPredicate, targetLocationIdOf(optionValue));
                     break;
 
+                case "session-id":
+                    predicate = sessionOf(parseLong(optionValue)).and(predicate);
+                    break;
+
                 case "query-stream-id":
                     queryStreamId = Integer.parseInt(optionValue);
                     break;
@@ -123,6 +130,14 @@ public final class FixArchivePrinter
                 case "aeron-channel":
                     aeronChannel = optionValue;
                     break;
+
+                case "log-file-dir":
+                    logFileDir = optionValue;
+                    break;
+
+                case "worker-count":
+                    workerCount = Integer.parseInt(optionValue);
+                    break;
             }
         }
 
@@ -130,7 +145,7 @@ public final class FixArchivePrinter
         requiredArgument(aeronChannel, "aeron-channel");
 
         scanArchive(aeronDirectoryName, aeronChannel, queryStreamId, predicate, follow, headerPredicate,
-            archiveScannerStreamId);
+            archiveScannerStreamId, logFileDir, workerCount);
     }
 
     private static void requiredArgument(final int eqIndex)
@@ -150,7 +165,9 @@ public final class FixArchivePrinter
         final FixMessagePredicate otherPredicate,
         final boolean follow,
         final Predicate<HeaderDecoder> headerPredicate,
-        final int archiveScannerStreamId)
+        final int archiveScannerStreamId,
+        final String logFileDir,
+        final int workerCount)
     {
         FixMessagePredicate predicate = otherPredicate;
         if (headerPredicate != null)
@@ -160,13 +177,16 @@ public final class FixArchivePrinter
 
         final FixArchiveScanner.Context context = new FixArchiveScanner.Context()
             .aeronDirectoryName(aeronDirectoryName)
-            .idleStrategy(CommonConfiguration.backoffIdleStrategy());
+            .idleStrategy(CommonConfiguration.backoffIdleStrategy())
+            .logFileDir(logFileDir)
+            .workerCount(workerCount);
 
         final FixArchiveScanner scanner = new FixArchiveScanner(context);
         scanner.scan(
             aeronChannel,
             queryStreamId,
-            filterBy(FixArchivePrinter::print, predicate),
+            predicate,
+            FixArchivePrinter::print,
             follow,
             archiveScannerStreamId);
     }
@@ -232,6 +252,20 @@ public final class FixArchivePrinter
             "target-location-id",
             "Only print messages where the header's sender comp id field matches this",
             false);
+        printOption(
+            "session-id",
+            "Only print messages where the surrogate session id matches this",
+            false);
+        printOption(
+            "log-file-dir",
+            "Specifies the engine's log file directory, so that --session-id only scans the parts of the archive " +
+            "that the replay index says contain the session's messages",
+            false);
+        printOption(
+            "worker-count",
+            "The number of recordings to scan in parallel, whose messages are merged in timestamp order. " +
+            "defaults to 1",
+            false);
         printOption(
             "query-stream-id",
             "Only print messages where the query-stream-id matches this." +
@@ -22,43 +22,87 @@ import io.aeron.Subscription;
 import io.aeron.archive.client.AeronArchive;
 import io.aeron.logbuffer.FragmentHandler;
 import io.aeron.logbuffer.Header;
+import org.agrona.BitUtil;
 import org.agrona.DirectBuffer;
+import org.agrona.ErrorHandler;
+import org.agrona.ExpandableArrayBuffer;
+import org.agrona.LangUtil;
+import org.agrona.MutableDirectBuffer;
+import org.agrona.collections.Long2ObjectHashMap;
+import org.agrona.collections.LongHashSet;
 import org.agrona.concurrent.IdleStrategy;
+import org.agrona.concurrent.MessageHandler;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.agrona.concurrent.ringbuffer.OneToOneRingBuffer;
+import org.agrona.concurrent.ringbuffer.RingBuffer;
+import org.agrona.concurrent.ringbuffer.RingBufferDescriptor;
+import uk.co.real_logic.artio.CommonConfiguration;
+import uk.co.real_logic.artio.messages.FixMessageBatchDecoder;
 import uk.co.real_logic.artio.messages.FixMessageDecoder;
 import uk.co.real_logic.artio.messages.MessageHeaderDecoder;
+import uk.co.real_logic.artio.protocol.FixMessageBatchReader;
 
+import java.io.File;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static io.aeron.CommonContext.IPC_CHANNEL;
 import static io.aeron.archive.client.AeronArchive.NULL_LENGTH;
 import static io.aeron.archive.client.AeronArchive.NULL_POSITION;
 import static java.util.Comparator.comparingLong;
+import static uk.co.real_logic.artio.engine.logger.FixMessagePredicates.filterBy;
+import static uk.co.real_logic.artio.engine.logger.ReplayIndexDescriptor.INITIAL_RECORD_OFFSET;
+import static uk.co.real_logic.artio.engine.logger.ReplayIndexDescriptor.RECORD_LENGTH;
+import static uk.co.real_logic.artio.engine.logger.Replayer.MOST_RECENT_MESSAGE;
 
 /**
  * Scan the archive for fix messages. Can be combined with predicates to create rich queries.
  *
+ * If the scanner is given the engine's log file directory then scanning with a predicate built from
+ * {@link FixMessagePredicates#sessionOf(long)} only replays the ranges of each recording that the replay index says
+ * contain the sessions' messages. Messages whose index records have been overwritten, and not sealed into a
+ * segment, aren't found by such a scan.
+ *
+ * Recordings can also be scanned by several workers in parallel, unless following the archive. The recordings are
+ * shared out between the workers in recording id order, and each worker scans its recordings one after another.
+ * Workers test messages against the predicate and copy the ones that pass into a bounded buffer, from which the
+ * calling thread hands them to the consumer in timestamp order, and in position order within a recording. The
+ * recordings scanned by one worker are assumed not to overlap in time, as recordings that are written concurrently
+ * have consecutive ids. Messages handed on from a parallel scan don't have an Aeron header, so the consumer is passed
+ * null, and predicates are tested on the worker threads, so have to be thread safe.
+ *
  * @see FixMessageConsumer
  * @see FixMessagePredicate
  * @see FixMessagePredicates
  */
 public class FixArchiveScanner implements AutoCloseable
 {
+    public static final int DEFAULT_WORKER_BUFFER_CAPACITY = 4 * 1024 * 1024;
+
     private final MessageHeaderDecoder messageHeader = new MessageHeaderDecoder();
     private final FixMessageDecoder fixMessage = new FixMessageDecoder();
-    private final LogEntryHandler logEntryHandler = new LogEntryHandler();
-    private final FragmentAssembler fragmentAssembler = new FragmentAssembler(logEntryHandler);
 
     private final Aeron aeron;
     private final AeronArchive aeronArchive;
     private final IdleStrategy idleStrategy;
-
-    private FixMessageConsumer handler;
+    private final String logFileDir;
+    private final int workerCount;
+    private final int workerBufferCapacity;
+    private final ErrorHandler errorHandler;
 
     public static class Context
     {
         private String aeronDirectoryName;
         private IdleStrategy idleStrategy;
+        private String logFileDir;
+        private int workerCount = 1;
+        private int workerBufferCapacity = DEFAULT_WORKER_BUFFER_CAPACITY;
+        private ErrorHandler errorHandler = LangUtil::rethrowUnchecked;
 
         public Context()
         {
@@ -85,11 +129,100 @@ public class FixArchiveScanner implements AutoCloseable
         {
             return idleStrategy;
         }
+
+        /**
+         * Sets the directory that the engine writes its replay index files to, which lets scans for the messages
+         * of particular sessions only replay the parts of the archive that contain them. Defaults to null, in which
+         * case whole recordings are always scanned.
+         *
+         * @param logFileDir the engine's log file directory.
+         * @return this
+         * @see uk.co.real_logic.artio.engine.EngineConfiguration#logFileDir()
+         */
+        public Context logFileDir(final String logFileDir)
+        {
+            this.logFileDir = logFileDir;
+            return this;
+        }
+
+        public String logFileDir()
+        {
+            return logFileDir;
+        }
+
+        /**
+         * Sets the number of workers that scan recordings in parallel. Workers idle with a backoff idle strategy
+         * rather than the context's idle strategy, which is used by the thread calling the scanner.
+         *
+         * @param workerCount the number of workers, defaults to 1 which scans recordings on the calling thread.
+         * @return this
+         */
+        public Context workerCount(final int workerCount)
+        {
+            this.workerCount = workerCount;
+            return this;
+        }
+
+        public int workerCount()
+        {
+            return workerCount;
+        }
+
+        /**
+         * Sets the capacity of the buffer that each worker of a parallel scan copies its messages into, which bounds
+         * how far a worker can get ahead of the consumer. Messages longer than an eighth of the capacity can't be
+         * scanned in parallel.
+         *
+         * @param workerBufferCapacity the capacity in bytes, which must be a power of two, defaults to 4MB.
+         * @return this
+         */
+        public Context workerBufferCapacity(final int workerBufferCapacity)
+        {
+            this.workerBufferCapacity = workerBufferCapacity;
+            return this;
+        }
+
+        public int workerBufferCapacity()
+        {
+            return workerBufferCapacity;
+        }
+
+        /**
+         * Sets the handler for errors in reading the replay index, see {@link #logFileDir(String)}.
+         *
+         * @param errorHandler the handler for errors, defaults to rethrowing them, which stops the scan.
+         * @return this
+         */
+        public Context errorHandler(final ErrorHandler errorHandler)
+        {
+            this.errorHandler = errorHandler;
+            return this;
+        }
+
+        public ErrorHandler errorHandler()
+        {
+            return errorHandler;
+        }
     }
 
     public FixArchiveScanner(final Context context)
     {
+        if (context.workerCount() < 1)
+        {
+            throw new IllegalArgumentException("workerCount must be at least 1: " + context.workerCount());
+        }
+
+        if (context.workerCount() > 1 && !BitUtil.isPowerOfTwo(context.workerBufferCapacity()))
+        {
+            throw new IllegalArgumentException(
+                "workerBufferCapacity must be a power of two: " + context.workerBufferCapacity());
+        }
+
         this.idleStrategy = context.idleStrategy();
+        this.logFileDir = context.logFileDir();
+        this.workerCount = context.workerCount();
+        this.workerBufferCapacity = context.workerBufferCapacity();
+        this.errorHandler = context.errorHandler();
 
         final Aeron.Context aeronContext = new Aeron.Context().aeronDirectoryName(context.aeronDirectoryName());
         aeron = Aeron.connect(aeronContext);
@@ -103,73 +236,305 @@ public class FixArchiveScanner implements AutoCloseable
         final boolean follow,
         final int archiveScannerStreamId)
     {
-        this.handler = handler;
+        scan(aeronChannel, queryStreamId, null, handler, follow, archiveScannerStreamId, null);
+    }
+
+    /**
+     * Scan the archive for the messages that pass a predicate.
+     *
+     * @param aeronChannel the channel that the engine's library streams were recorded from.
+     * @param queryStreamId the library stream to scan.
+     * @param predicate the predicate to filter messages.
+     * @param handler the consumer to receive filtered messages.
+     * @param follow true to continue scanning recordings that are still in flight.
+     * @param archiveScannerStreamId the stream that the archive replays messages to the scanner on.
+     */
+    public void scan(
+        final String aeronChannel,
+        final int queryStreamId,
+        final FixMessagePredicate predicate,
+        final FixMessageConsumer handler,
+        final boolean follow,
+        final int archiveScannerStreamId)
+    {
+        final LongHashSet sessionIds = predicate instanceof SessionPredicate ?
+            ((SessionPredicate)predicate).sessionIds() : null;
+
+        scan(aeronChannel, queryStreamId, predicate, handler, follow, archiveScannerStreamId, sessionIds);
+    }
 
-        final List<ArchiveLocation> archiveLocations = lookupArchiveLocations(aeronChannel, queryStreamId);
+    private void scan(
+        final String aeronChannel,
+        final int queryStreamId,
+        final FixMessagePredicate predicate,
+        final FixMessageConsumer handler,
+        final boolean follow,
+        final int archiveScannerStreamId,
+        final LongHashSet sessionIds)
+    {
+        List<ArchiveLocation> archiveLocations = lookupArchiveLocations(aeronChannel, queryStreamId, follow);
 
         try (Subscription replaySubscription = aeron.addSubscription(IPC_CHANNEL, archiveScannerStreamId))
         {
-            archiveLocations.forEach(archiveLocation ->
+            // The index only covers the messages that have already been archived, so can't be followed.
+            if (sessionIds != null && logFileDir != null && !follow)
             {
-                final long recordingId = archiveLocation.recordingId;
-                final boolean stillArchiving = archiveLocation.stopPosition == NULL_POSITION;
+                archiveLocations = lookupIndexedLocations(
+                    archiveLocations, queryStreamId, sessionIds, replaySubscription, archiveScannerStreamId);
+            }
 
-                final long stopPosition;
-                final long length;
-                if (stillArchiving)
+            if (workerCount > 1 && !follow)
+            {
+                scanInParallel(archiveLocations, predicate, handler, replaySubscription, archiveScannerStreamId);
+            }
+            else
+            {
+                new LocationScanner(filter(handler, predicate), idleStrategy).scan(
+                    archiveLocations, replaySubscription, archiveScannerStreamId);
+            }
+        }
+    }
+
+    private static FixMessageConsumer filter(final FixMessageConsumer handler, final FixMessagePredicate predicate)
+    {
+        return predicate == null ? handler : filterBy(handler, predicate);
+    }
+
+    private void scanInParallel(
+        final List<ArchiveLocation> archiveLocations,
+        final FixMessagePredicate predicate,
+        final FixMessageConsumer handler,
+        final Subscription replaySubscription,
+        final int archiveScannerStreamId)
+    {
+        // Locations in the same recording are next to each other, in position order.
+        final List<List<ArchiveLocation>> recordings = new ArrayList<>();
+        List<ArchiveLocation> recording = null;
+        for (final ArchiveLocation archiveLocation : archiveLocations)
+        {
+            if (recording == null || recording.get(0).recordingId != archiveLocation.recordingId)
+            {
+                recording = new ArrayList<>();
+                recordings.add(recording);
+            }
+            recording.add(archiveLocation);
+        }
+        if (recordings.isEmpty())
+        {
+            return;
+        }
+        recordings.sort(comparingLong(recordingLocations -> recordingLocations.get(0).recordingId));
+
+        // Concurrently written recordings have consecutive ids, so are given to different workers.
+        final int workers = Math.min(workerCount, recordings.size());
+        final List<List<ArchiveLocation>> workerLocations = new ArrayList<>();
+        for (int i = 0; i < workers; i++)
+        {
+            workerLocations.add(new ArrayList<>());
+        }
+        for (int i = 0; i < recordings.size(); i++)
+        {
+            workerLocations.get(i % workers).addAll(recordings.get(i));
+        }
+
+        final WorkerBuffer[] workerBuffers = new WorkerBuffer[workers];
+        final List<Future<?>> futures = new ArrayList<>();
+        final ExecutorService executor = Executors.newFixedThreadPool(workers);
+        try
+        {
+            for (int i = 0; i < workers; i++)
+            {
+                final WorkerBuffer workerBuffer = new WorkerBuffer(workerBufferCapacity);
+                final List<ArchiveLocation> locations = workerLocations.get(i);
+                workerBuffers[i] = workerBuffer;
+                futures.add(executor.submit(() ->
                 {
-                    if (follow)
-                    {
-                        length = NULL_LENGTH;
-                        stopPosition = NULL_POSITION;
-                    }
-                    else
+                    new LocationScanner(filter(workerBuffer, predicate), CommonConfiguration.backoffIdleStrategy())
+                        .scan(locations, replaySubscription, archiveScannerStreamId);
+                    workerBuffer.onEndOfScan();
+                }));
+            }
+
+            mergeByTimestamp(workerBuffers, futures, handler);
+        }
+        catch (final ExecutionException e)
+        {
+            LangUtil.rethrowUnchecked(e.getCause());
+        }
+        catch (final InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            LangUtil.rethrowUnchecked(e);
+        }
+        finally
+        {
+            for (final WorkerBuffer workerBuffer : workerBuffers)
+            {
+                if (workerBuffer != null)
+                {
+                    workerBuffer.close();
+                }
+            }
+            executor.shutdownNow();
+        }
+    }
+
+    // Repeatedly hands on the earliest of the next messages of each worker, so each recording stays in position order
+    // even if its timestamps aren't monotonic. A worker's next message has to be known before any message can be
+    // handed on, but a worker only waits for space in its buffer, so the merge never waits on a blocked worker.
+    private void mergeByTimestamp(
+        final WorkerBuffer[] workerBuffers, final List<Future<?>> futures, final FixMessageConsumer handler)
+        throws ExecutionException, InterruptedException
+    {
+        final IdleStrategy idleStrategy = this.idleStrategy;
+        while (true)
+        {
+            int earliestWorker = -1;
+            long earliestTimestamp = Long.MAX_VALUE;
+            for (int i = 0; i < workerBuffers.length; i++)
+            {
+                final WorkerBuffer workerBuffer = workerBuffers[i];
+                while (!workerBuffer.pollNextMessage())
+                {
+                    // A worker that has failed never marks the end of its scan.
+                    final Future<?> future = futures.get(i);
+                    if (future.isDone())
                     {
-                        stopPosition = aeronArchive.getRecordingPosition(recordingId);
-                        length = stopPosition - archiveLocation.startPosition;
+                        future.get();
                     }
+                    idleStrategy.idle();
                 }
-                else
+                idleStrategy.reset();
+
+                if (!workerBuffer.isEndOfScan())
                 {
-                    stopPosition = archiveLocation.stopPosition;
-                    length = stopPosition - archiveLocation.startPosition;
+                    final long timestamp = workerBuffer.nextTimestamp();
+                    if (earliestWorker == -1 || timestamp < earliestTimestamp)
+                    {
+                        earliestWorker = i;
+                        earliestTimestamp = timestamp;
+                    }
                 }
+            }
 
-                if (length != 0)
-                {
-                    final int sessionId = (int)aeronArchive.startReplay(
-                        recordingId,
-                        archiveLocation.startPosition,
-                        length,
-                        IPC_CHANNEL,
-                        archiveScannerStreamId);
+            if (earliestWorker == -1)
+            {
+                return;
+            }
 
-                    final Image image = lookupImage(replaySubscription, sessionId);
+            final WorkerBuffer workerBuffer = workerBuffers[earliestWorker];
+            final ExpandableArrayBuffer buffer = workerBuffer.nextFrame;
+            final int offset = MessageHeaderDecoder.ENCODED_LENGTH;
 
-                    while (stopPosition == NULL_POSITION || image.position() < stopPosition)
-                    {
-                        idleStrategy.idle(image.poll(fragmentAssembler, 10));
-                    }
+            messageHeader.wrap(buffer, 0);
+            fixMessage.wrap(buffer, offset, messageHeader.blockLength(), messageHeader.version());
+            handler.onMessage(fixMessage, buffer, offset, workerBuffer.nextLength, null);
+            workerBuffer.consumeNextMessage();
+        }
+    }
+
+    // Only replays the parts of recordings that the index has records of the sessions' messages in. A session's
+    // messages in a recording are replayed as a single range, from its first to its last message, so the messages
+    // of other sessions in between are still filtered out by the predicate.
+    private List<ArchiveLocation> lookupIndexedLocations(
+        final List<ArchiveLocation> archiveLocations,
+        final int queryStreamId,
+        final LongHashSet sessionIds,
+        final Subscription replaySubscription,
+        final int archiveScannerStreamId)
+    {
+        final Long2ObjectHashMap<List<ArchiveLocation>> recordingIdToRanges = new Long2ObjectHashMap<>();
+        try (ReplayQuery replayQuery = new ReplayQuery(
+            logFileDir,
+            1,
+            1,
+            FixArchiveScanner::mapIndexFile,
+            queryStreamId,
+            aeronArchive,
+            errorHandler,
+            archiveScannerStreamId,
+            replaySubscription))
+        {
+            final LongHashSet.LongIterator sessionIdIterator = sessionIds.iterator();
+            while (sessionIdIterator.hasNext())
+            {
+                final ReplayOperation operation = replayQuery.query(
+                    null, sessionIdIterator.nextValue(), 0, 0, MOST_RECENT_MESSAGE, 0);
+
+                for (final RecordingRange range : operation.ranges())
+                {
+                    recordingIdToRanges
+                        .computeIfAbsent(range.recordingId, recordingId -> new ArrayList<>())
+                        .add(new ArchiveLocation(range.recordingId, range.position, range.position + range.length));
                 }
-            });
+
+                replayQuery.release(operation);
+            }
         }
+
+        final List<ArchiveLocation> indexedLocations = new ArrayList<>();
+        for (final ArchiveLocation archiveLocation : archiveLocations)
+        {
+            final List<ArchiveLocation> ranges = recordingIdToRanges.get(archiveLocation.recordingId);
+            if (ranges != null)
+            {
+                addMergedRanges(archiveLocation, ranges, indexedLocations);
+            }
+        }
+
+        return indexedLocations;
     }
 
-    private Image lookupImage(final Subscription replaySubscription, final int sessionId)
+    // Different sessions' ranges can overlap, and mustn't be replayed twice.
+    private static void addMergedRanges(
+        final ArchiveLocation archiveLocation,
+        final List<ArchiveLocation> ranges,
+        final List<ArchiveLocation> indexedLocations)
     {
-        Image image = null;
+        ranges.sort(comparingLong(ArchiveLocation::startPosition));
 
-        while (image == null)
+        final long recordingId = archiveLocation.recordingId;
+        long mergedStartPosition = NULL_POSITION;
+        long mergedStopPosition = NULL_POSITION;
+        for (final ArchiveLocation range : ranges)
         {
-            idleStrategy.idle();
-            image = replaySubscription.imageBySessionId(sessionId);
+            final long startPosition = Math.max(range.startPosition, archiveLocation.startPosition);
+            final long stopPosition = Math.min(range.stopPosition, archiveLocation.stopPosition);
+            if (startPosition >= stopPosition)
+            {
+                continue;
+            }
+
+            if (mergedStartPosition != NULL_POSITION && startPosition <= mergedStopPosition)
+            {
+                mergedStopPosition = Math.max(mergedStopPosition, stopPosition);
+            }
+            else
+            {
+                if (mergedStartPosition != NULL_POSITION)
+                {
+                    indexedLocations.add(new ArchiveLocation(recordingId, mergedStartPosition, mergedStopPosition));
+                }
+                mergedStartPosition = startPosition;
+                mergedStopPosition = stopPosition;
+            }
         }
-        idleStrategy.reset();
 
-        return image;
+        if (mergedStartPosition != NULL_POSITION)
+        {
+            indexedLocations.add(new ArchiveLocation(recordingId, mergedStartPosition, mergedStopPosition));
+        }
     }
 
-    private List<ArchiveLocation> lookupArchiveLocations(final String aeronChannel, final int queryStreamId)
+    // A session that hasn't been indexed on the stream has no index file, so is treated as having an empty one.
+    private static ByteBuffer mapIndexFile(final File file)
+    {
+        return file.exists() ?
+            LoggerUtil.mapExistingFile(file) : ByteBuffer.allocate(INITIAL_RECORD_OFFSET + RECORD_LENGTH);
+    }
+
+    private List<ArchiveLocation> lookupArchiveLocations(
+        final String aeronChannel, final int queryStreamId, final boolean follow)
     {
         final List<ArchiveLocation> archiveLocations = new ArrayList<>();
         aeronArchive.listRecordingsForUri(
@@ -197,11 +562,75 @@ public class FixArchiveScanner implements AutoCloseable
         // Any uncompleted recording is at the end
         archiveLocations.sort(comparingLong(ArchiveLocation::stopPosition).reversed());
 
+        // Recordings that are still archiving are scanned up to their current position, unless followed.
+        if (!follow)
+        {
+            archiveLocations.replaceAll(archiveLocation -> archiveLocation.stopPosition != NULL_POSITION ?
+                archiveLocation : new ArchiveLocation(
+                archiveLocation.recordingId,
+                archiveLocation.startPosition,
+                aeronArchive.getRecordingPosition(archiveLocation.recordingId)));
+        }
+        archiveLocations.removeIf(archiveLocation -> archiveLocation.length() == 0);
+
         return archiveLocations;
     }
 
-    class LogEntryHandler implements FragmentHandler
+    // Replays locations to a consumer. Each scanner is only used on one thread.
+    private final class LocationScanner implements FragmentHandler
     {
+        private final MessageHeaderDecoder messageHeader = new MessageHeaderDecoder();
+        private final FixMessageDecoder fixMessage = new FixMessageDecoder();
+        private final FixMessageBatchReader batchReader = new FixMessageBatchReader();
+        private final FragmentAssembler fragmentAssembler = new FragmentAssembler(this);
+
+        private final FixMessageConsumer handler;
+        private final IdleStrategy idleStrategy;
+
+        LocationScanner(final FixMessageConsumer handler, final IdleStrategy idleStrategy)
+        {
+            this.handler = handler;
+            this.idleStrategy = idleStrategy;
+        }
+
+        void scan(
+            final List<ArchiveLocation> archiveLocations,
+            final Subscription replaySubscription,
+            final int archiveScannerStreamId)
+        {
+            for (final ArchiveLocation archiveLocation : archiveLocations)
+            {
+                final long stopPosition = archiveLocation.stopPosition;
+                final int sessionId = (int)aeronArchive.startReplay(
+                    archiveLocation.recordingId,
+                    archiveLocation.startPosition,
+                    archiveLocation.length(),
+                    IPC_CHANNEL,
+                    archiveScannerStreamId);
+
+                final Image image = lookupImage(replaySubscription, sessionId);
+
+                while ((stopPosition == NULL_POSITION || image.position() < stopPosition) && !image.isEndOfStream())
+                {
+                    idleStrategy.idle(image.poll(fragmentAssembler, 10));
+                }
+            }
+        }
+
+        private Image lookupImage(final Subscription replaySubscription, final int sessionId)
+        {
+            Image image = null;
+
+            while (image == null)
+            {
+                idleStrategy.idle();
+                image = replaySubscription.imageBySessionId(sessionId);
+            }
+            idleStrategy.reset();
+
+            return image;
+        }
+
         @SuppressWarnings("FinalParameters")
         public void onFragment(
             final DirectBuffer buffer, int offset, final int length, final Header header)
@@ -215,10 +644,119 @@ public class FixArchiveScanner implements AutoCloseable
 
                 handler.onMessage(fixMessage, buffer, offset, length, header);
             }
+            else if (messageHeader.templateId() == FixMessageBatchDecoder.TEMPLATE_ID)
+            {
+                batchReader.forEachMessage(buffer, offset, header, this);
+            }
         }
     }
 
-    class ArchiveLocation
+    // Copies of the messages scanned by a worker, in scan order, each stored as its frame. The worker writes into a
+    // ring buffer, waiting for space when the consumer falls behind, and the scanning thread takes the next message
+    // off the ring buffer once the previous one has been handed on.
+    static final class WorkerBuffer implements FixMessageConsumer
+    {
+        private static final int MESSAGE_TYPE_ID = 1;
+        private static final int END_OF_SCAN_TYPE_ID = 2;
+        private static final DirectBuffer END_OF_SCAN = new UnsafeBuffer(new byte[0]);
+
+        private final MessageHeaderDecoder messageHeader = new MessageHeaderDecoder();
+        private final FixMessageDecoder fixMessage = new FixMessageDecoder();
+        private final IdleStrategy idleStrategy = CommonConfiguration.backoffIdleStrategy();
+        private final MessageHandler nextMessageHandler = this::onNextMessage;
+        private final RingBuffer ringBuffer;
+
+        private final ExpandableArrayBuffer nextFrame = new ExpandableArrayBuffer();
+        private int nextLength;
+        private long nextTimestamp;
+        private boolean hasNextMessage;
+        private boolean endOfScan;
+
+        private volatile boolean closed;
+
+        WorkerBuffer(final int capacity)
+        {
+            ringBuffer = new OneToOneRingBuffer(
+                new UnsafeBuffer(ByteBuffer.allocateDirect(capacity + RingBufferDescriptor.TRAILER_LENGTH)));
+        }
+
+        // Called by the worker
+        public void onMessage(
+            final FixMessageDecoder message,
+            final DirectBuffer buffer,
+            final int offset,
+            final int length,
+            final Header header)
+        {
+            write(MESSAGE_TYPE_ID, buffer, offset - MessageHeaderDecoder.ENCODED_LENGTH, length);
+        }
+
+        void onEndOfScan()
+        {
+            write(END_OF_SCAN_TYPE_ID, END_OF_SCAN, 0, 0);
+        }
+
+        private void write(final int msgTypeId, final DirectBuffer buffer, final int offset, final int length)
+        {
+            final IdleStrategy idleStrategy = this.idleStrategy;
+            while (!ringBuffer.write(msgTypeId, buffer, offset, length))
+            {
+                // The consumer has stopped, for example because it threw an exception, so won't make space.
+                if (closed)
+                {
+                    throw new IllegalStateException("Parallel scan was stopped");
+                }
+                idleStrategy.idle();
+            }
+            idleStrategy.reset();
+        }
+
+        // Called by the scanning thread
+        boolean pollNextMessage()
+        {
+            return hasNextMessage || endOfScan || ringBuffer.read(nextMessageHandler, 1) > 0;
+        }
+
+        private void onNextMessage(
+            final int msgTypeId, final MutableDirectBuffer buffer, final int index, final int length)
+        {
+            if (msgTypeId == END_OF_SCAN_TYPE_ID)
+            {
+                endOfScan = true;
+                return;
+            }
+
+            nextFrame.putBytes(0, buffer, index, length);
+            nextLength = length;
+            messageHeader.wrap(nextFrame, 0);
+            fixMessage.wrap(
+                nextFrame, MessageHeaderDecoder.ENCODED_LENGTH, messageHeader.blockLength(), messageHeader.version());
+            nextTimestamp = fixMessage.timestamp();
+            hasNextMessage = true;
+        }
+
+        boolean isEndOfScan()
+        {
+            return endOfScan;
+        }
+
+        long nextTimestamp()
+        {
+            return nextTimestamp;
+        }
+
+        void consumeNextMessage()
+        {
+            hasNextMessage = false;
+        }
+
+        void close()
+        {
+            closed = true;
+        }
+    }
+
+    static final class ArchiveLocation
     {
         final long recordingId;
         final long startPosition;
@@ -231,11 +769,21 @@ public class FixArchiveScanner implements AutoCloseable
             this.stopPosition = stopPosition;
         }
 
+        public long startPosition()
+        {
+            return startPosition;
+        }
+
         public long stopPosition()
         {
             return stopPosition;
         }
 
+        long length()
+        {
+            return stopPosition == NULL_POSITION ? NULL_LENGTH : stopPosition - startPosition;
+        }
+
         public String toString()
         {
             return "ArchiveReplayInfo{" +
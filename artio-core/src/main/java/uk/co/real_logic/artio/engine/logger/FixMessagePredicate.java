@@ -29,6 +29,12 @@ public interface FixMessagePredicate
 
     default FixMessagePredicate and(final FixMessagePredicate other)
     {
+        // Keeps the sessions of the combined predicate known to the scanner, whichever side they're on.
+        if (other instanceof SessionPredicate)
+        {
+            return other.and(this);
+        }
+
         return (message) -> test(message) && other.test(message);
     }
 
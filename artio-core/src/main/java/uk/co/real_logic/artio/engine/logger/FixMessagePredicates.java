@@ -17,6 +17,7 @@ package uk.co.real_logic.artio.engine.logger;
 
 import org.agrona.ExpandableArrayBuffer;
 import org.agrona.collections.IntHashSet;
+import org.agrona.collections.LongHashSet;
 import uk.co.real_logic.artio.decoder.HeaderDecoder;
 import uk.co.real_logic.artio.dictionary.generation.CodecUtil;
 import uk.co.real_logic.artio.dictionary.generation.GenerationUtil;
@@ -201,11 +202,16 @@ public final class FixMessagePredicates
     public static FixMessagePredicate whereHeader(
         final Predicate<HeaderDecoder> matches)
     {
-        final HeaderDecoder header = new HeaderDecoder();
-        final ExpandableArrayBuffer buffer = new ExpandableArrayBuffer(1024);
-        final AsciiBuffer asciiBuffer = new MutableAsciiBuffer();
+        // Predicates are tested on several threads by a parallel scan.
+        final ThreadLocal<HeaderDecoder> headers = ThreadLocal.withInitial(HeaderDecoder::new);
+        final ThreadLocal<ExpandableArrayBuffer> buffers =
+            ThreadLocal.withInitial(() -> new ExpandableArrayBuffer(1024));
+        final ThreadLocal<AsciiBuffer> asciiBuffers = ThreadLocal.withInitial(MutableAsciiBuffer::new);
         return message ->
         {
+            final HeaderDecoder header = headers.get();
+            final ExpandableArrayBuffer buffer = buffers.get();
+            final AsciiBuffer asciiBuffer = asciiBuffers.get();
             final int length = message.bodyLength();
             buffer.checkLimit(length);
             message.getBody(buffer, 0, length);
@@ -218,20 +224,29 @@ public final class FixMessagePredicates
     /**
      * Filter the fix message by checking the assigned session id field is equal to the given parameter.
      *
+     * A {@link FixArchiveScanner} that has been given the engine's log file directory only replays the parts of
+     * the archive that the replay index says contain the session's messages when scanning with this predicate.
+     *
      * @param sessionId the surrogate session id key.
      * @return the resulting predicate.
      */
     public static FixMessagePredicate sessionOf(final long sessionId)
     {
-        return (message) -> message.session() == sessionId;
+        final LongHashSet sessionIds = new LongHashSet();
+        sessionIds.add(sessionId);
+        return new SessionPredicate(sessionIds, null);
     }
 
     public static FixMessagePredicate bodyMatches(final Pattern pattern)
     {
-        final ExpandableArrayBuffer buffer = new ExpandableArrayBuffer(1024);
-        final BufferAsciiSequence sequence = new BufferAsciiSequence();
+        // Predicates are tested on several threads by a parallel scan.
+        final ThreadLocal<ExpandableArrayBuffer> buffers =
+            ThreadLocal.withInitial(() -> new ExpandableArrayBuffer(1024));
+        final ThreadLocal<BufferAsciiSequence> sequences = ThreadLocal.withInitial(BufferAsciiSequence::new);
         return message ->
         {
+            final ExpandableArrayBuffer buffer = buffers.get();
+            final BufferAsciiSequence sequence = sequences.get();
             final int length = message.bodyLength();
             buffer.checkLimit(length);
             message.getBody(buffer, 0, length);
@@ -30,6 +30,7 @@ class GapFillEncoder
         return sequenceResetEncoder.encode(buffer, 0);
     }
 
+    // Encoders are reused between requests, so fields that aren't in this request are reset.
     void setupMessage(final HeaderDecoder reqHeader)
     {
         final HeaderEncoder respHeader = sequenceResetEncoder.header();
@@ -39,18 +40,34 @@ class GapFillEncoder
         {
             respHeader.targetLocationID(reqHeader.senderLocationID(), reqHeader.senderLocationIDLength());
         }
+        else
+        {
+            respHeader.resetTargetLocationID();
+        }
         if (reqHeader.hasSenderSubID())
         {
             respHeader.targetSubID(reqHeader.senderSubID(), reqHeader.senderSubIDLength());
         }
+        else
+        {
+            respHeader.resetTargetSubID();
+        }
         if (reqHeader.hasTargetLocationID())
         {
             respHeader.senderLocationID(reqHeader.targetLocationID(), reqHeader.targetLocationIDLength());
         }
+        else
+        {
+            respHeader.resetSenderLocationID();
+        }
         if (reqHeader.hasTargetSubID())
         {
             respHeader.senderSubID(reqHeader.targetSubID(), reqHeader.targetSubIDLength());
         }
+        else
+        {
+            respHeader.resetSenderSubID();
+        }
     }
 
     MutableAsciiBuffer buffer()
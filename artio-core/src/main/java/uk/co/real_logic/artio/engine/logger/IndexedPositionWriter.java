@@ -47,6 +47,9 @@ class IndexedPositionWriter
     private final ErrorHandler errorHandler;
     private final ChecksumFramer checksumFramer;
 
+    // Records are only written below this offset, so only their sectors' checksums can change.
+    private int recordsEnd = HEADER_LENGTH;
+
     IndexedPositionWriter(
         final AtomicBuffer buffer,
         final ErrorHandler errorHandler,
@@ -116,6 +119,7 @@ class IndexedPositionWriter
                         .recordingId(recordingId);
 
                     recordOffsets.put(aeronSessionId, offset);
+                    recordsEnd = Math.max(recordsEnd, offset + RECORD_LENGTH);
                     putPosition(position, buffer, offset);
                     return;
                 }
@@ -136,7 +140,12 @@ class IndexedPositionWriter
 
     void updateChecksums()
     {
-        checksumFramer.updateChecksums();
+        checksumFramer.updateChecksums(0, recordsEnd);
+    }
+
+    int recordsEnd()
+    {
+        return recordsEnd;
     }
 
     AtomicBuffer buffer()
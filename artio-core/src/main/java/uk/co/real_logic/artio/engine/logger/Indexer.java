@@ -99,19 +99,23 @@ public class Indexer implements Agent, ControlledFragmentHandler
                             indexStoppedPosition);
 
                         final long length = recordingStoppedPosition - indexStoppedPosition;
-                        try (Subscription subscription = aeronArchive.replay(
-                            recordingId, indexStoppedPosition, length, IPC_CHANNEL, archiveReplayStream))
+                        // Subscribe before starting the replay: other engines' replay subscriptions on this
+                        // stream would otherwise let the archive start replaying before we have joined.
+                        try (Subscription subscription = aeronArchive.context().aeron().addSubscription(
+                            IPC_CHANNEL, archiveReplayStream))
                         {
+                            final int replaySessionId = (int)aeronArchive.startReplay(
+                                recordingId, indexStoppedPosition, length, IPC_CHANNEL, archiveReplayStream);
+
                             // Only do 1 replay at a time
-                            while (subscription.imageCount() != 1)
+                            Image replayImage;
+                            while ((replayImage = subscription.imageBySessionId(replaySessionId)) == null)
                             {
                                 idle(idleStrategy, aeronInvoker);
                                 aeronArchive.checkForErrorResponse();
                             }
                             idleStrategy.reset();
 
-                            final Image replayImage = subscription.imageAtIndex(0);
-
                             while (replayImage.position() < recordingStoppedPosition)
                             {
                                 replayImage.poll(index, LIMIT);
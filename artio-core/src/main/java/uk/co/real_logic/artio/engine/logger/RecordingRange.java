@@ -17,25 +17,24 @@ package uk.co.real_logic.artio.engine.logger;
 
 import uk.co.real_logic.artio.DebugLogger;
 import uk.co.real_logic.artio.LogTag;
-import uk.co.real_logic.artio.messages.FixMessageDecoder;
-
-import java.util.function.Predicate;
 
 import static uk.co.real_logic.artio.dictionary.generation.CodecUtil.MISSING_LONG;
 
 public final class RecordingRange
 {
-    final long recordingId;
-    final Predicate<FixMessageDecoder> msgPredicate;
+    long recordingId;
     long position = MISSING_LONG;
     int length;
     int count;
 
-    RecordingRange(final long recordingId, final Predicate<FixMessageDecoder> msgPredicate)
+    // Ranges are pooled by the ReplayQuery, so are reset rather than constructed for each query.
+    RecordingRange reset(final long recordingId)
     {
         this.recordingId = recordingId;
-        this.msgPredicate = msgPredicate;
+        this.position = MISSING_LONG;
+        this.length = 0;
         this.count = 0;
+        return this;
     }
 
     void add(final long addPosition, final int addLength)
@@ -15,28 +15,42 @@
  */
 package uk.co.real_logic.artio.engine.logger;
 
+import io.aeron.logbuffer.FragmentHandler;
 import io.aeron.logbuffer.Header;
 import org.agrona.BitUtil;
 import org.agrona.DirectBuffer;
 import org.agrona.ErrorHandler;
 import org.agrona.IoUtil;
+import org.agrona.collections.Long2LongHashMap;
 import org.agrona.collections.Long2ObjectCache;
 import org.agrona.concurrent.AtomicBuffer;
 import org.agrona.concurrent.UnsafeBuffer;
 import uk.co.real_logic.artio.decoder.HeaderDecoder;
+import uk.co.real_logic.artio.messages.FixMessageBatchDecoder;
 import uk.co.real_logic.artio.messages.FixMessageDecoder;
 import uk.co.real_logic.artio.messages.FixMessageEncoder;
 import uk.co.real_logic.artio.messages.MessageHeaderDecoder;
 import uk.co.real_logic.artio.messages.MessageHeaderEncoder;
+import uk.co.real_logic.artio.protocol.FixMessageBatchReader;
+import uk.co.real_logic.artio.protocol.TagOffsetIndex;
 import uk.co.real_logic.artio.storage.messages.ReplayIndexRecordEncoder;
 import uk.co.real_logic.artio.util.AsciiBuffer;
 import uk.co.real_logic.artio.util.MutableAsciiBuffer;
 
 import java.io.File;
+import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.function.LongFunction;
 
 import static io.aeron.logbuffer.FrameDescriptor.*;
+import static java.nio.ByteOrder.nativeOrder;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static org.agrona.BitUtil.SIZE_OF_LONG;
 import static org.agrona.UnsafeAccess.UNSAFE;
 import static uk.co.real_logic.artio.engine.logger.ReplayIndexDescriptor.*;
 import static uk.co.real_logic.artio.messages.MessageStatus.OK;
@@ -46,6 +60,13 @@ import static uk.co.real_logic.artio.messages.MessageStatus.OK;
  *
  * Written Positions are stored in a separate file at {@link ReplayIndexDescriptor#replayPositionPath(String, int)}.
  *
+ * Each session's index is a ring buffer. When segments are enabled, a copy of each lap of the ring is sealed into a
+ * segment file before the ring starts to overwrite it, so older messages can still be replayed. Only the most recent
+ * segments are retained, and they're only mapped by queries that need them.
+ *
+ * Session's rings are either stored in their own files, or in slots of large shared files that are mapped for the
+ * lifetime of the index, so that indexing many sessions doesn't keep mapping and unmapping their files.
+ *
  * Buffer Consists of:
  *
  * MessageHeader
@@ -55,13 +76,20 @@ import static uk.co.real_logic.artio.messages.MessageStatus.OK;
  */
 public class ReplayIndex implements Index
 {
+    private static final String SEALING_SUFFIX = ".sealing";
+    private static final long NO_SHARED_SLOT = -1;
+
     private final LongFunction<SessionIndex> newSessionIndex = SessionIndex::new;
     private final AsciiBuffer asciiBuffer = new MutableAsciiBuffer();
     private final MessageHeaderDecoder frameHeaderDecoder = new MessageHeaderDecoder();
     private final FixMessageDecoder messageFrame = new FixMessageDecoder();
     private final HeaderDecoder fixHeader = new HeaderDecoder();
+    private final TagOffsetIndex tagOffsetIndex = new TagOffsetIndex();
+    private final FixMessageBatchReader batchReader = new FixMessageBatchReader();
+    private final FragmentHandler onBatchedMessage = this::onBatchedMessage;
     private final ReplayIndexRecordEncoder replayIndexRecord = new ReplayIndexRecordEncoder();
     private final MessageHeaderEncoder indexHeaderEncoder = new MessageHeaderEncoder();
+    private final ByteBuffer segmentChangePositions = ByteBuffer.allocate(2 * SIZE_OF_LONG).order(nativeOrder());
     private final IndexedPositionWriter positionWriter;
     private final IndexedPositionReader positionReader;
 
@@ -70,14 +98,24 @@ public class ReplayIndex implements Index
     private final String logFileDir;
     private final int requiredStreamId;
     private final int indexFileSize;
+    private final int maxSegments;
+    private final int sharedFileSessions;
     private final BufferFactory bufferFactory;
     private final AtomicBuffer positionBuffer;
+    private final ErrorHandler errorHandler;
     private final RecordingIdLookup recordingIdLookup;
 
+    private final List<ByteBuffer> sharedFiles = new ArrayList<>();
+    private final List<AtomicBuffer> sharedFileBuffers = new ArrayList<>();
+    private final Long2LongHashMap fixSessionIdToSharedSlot = new Long2LongHashMap(NO_SHARED_SLOT);
+    private int nextFreeSharedSlot;
+
     public ReplayIndex(
         final String logFileDir,
         final int requiredStreamId,
         final int indexFileSize,
+        final int maxSegments,
+        final int sharedFileSessions,
         final int cacheNumSets,
         final int cacheSetSize,
         final BufferFactory bufferFactory,
@@ -88,8 +126,11 @@ public class ReplayIndex implements Index
         this.logFileDir = logFileDir;
         this.requiredStreamId = requiredStreamId;
         this.indexFileSize = indexFileSize;
+        this.maxSegments = maxSegments;
+        this.sharedFileSessions = sharedFileSessions;
         this.bufferFactory = bufferFactory;
         this.positionBuffer = positionBuffer;
+        this.errorHandler = errorHandler;
         this.recordingIdLookup = recordingIdLookup;
 
         checkIndexFileSize(indexFileSize);
@@ -98,11 +139,77 @@ public class ReplayIndex implements Index
         positionWriter = new IndexedPositionWriter(
             positionBuffer, errorHandler, 0, replayPositionPath);
         positionReader = new IndexedPositionReader(positionBuffer);
+
+        if (sharedFileSessions > 0)
+        {
+            loadSharedFiles();
+        }
+    }
+
+    private void loadSharedFiles()
+    {
+        File file;
+        while ((file = sharedReplayIndexFile(logFileDir, requiredStreamId, sharedFiles.size())).exists())
+        {
+            final int fileNumber = sharedFiles.size();
+            final AtomicBuffer buffer = mapSharedFile(file);
+            final int slotCount = sharedSlotCount(buffer);
+            nextFreeSharedSlot = slotCount;
+            for (int slot = 0; slot < slotCount; slot++)
+            {
+                final long fixSessionId = sharedSlotSessionIdVolatile(buffer, slot);
+                if (fixSessionId == FREE_SLOT)
+                {
+                    nextFreeSharedSlot = slot;
+                    break;
+                }
+
+                fixSessionIdToSharedSlot.put(fixSessionId, sharedSlot(fileNumber, slot));
+            }
+        }
+    }
+
+    // Slots are assigned in order, filling each shared file before the next is created.
+    private long allocateSharedSlot(final long fixSessionId)
+    {
+        int fileNumber = sharedFiles.size() - 1;
+        if (fileNumber < 0 || nextFreeSharedSlot == sharedSlotCount(sharedFileBuffers.get(fileNumber)))
+        {
+            fileNumber++;
+            mapSharedFile(sharedReplayIndexFile(logFileDir, requiredStreamId, fileNumber));
+            nextFreeSharedSlot = 0;
+        }
+
+        final long sharedSlot = sharedSlot(fileNumber, nextFreeSharedSlot++);
+        fixSessionIdToSharedSlot.put(fixSessionId, sharedSlot);
+        return sharedSlot;
+    }
+
+    private AtomicBuffer mapSharedFile(final File file)
+    {
+        final ByteBuffer sharedFile = bufferFactory.map(
+            file, sharedIndexFileSize(sharedFileSessions, indexFileSize));
+        final AtomicBuffer buffer = new UnsafeBuffer(sharedFile);
+        if (sharedSlotCount(buffer) == 0)
+        {
+            initialiseSharedIndexFile(buffer, sharedFileSessions, indexFileSize);
+        }
+
+        sharedFiles.add(sharedFile);
+        sharedFileBuffers.add(buffer);
+        return buffer;
+    }
+
+    private static long sharedSlot(final int fileNumber, final int slot)
+    {
+        return ((long)fileNumber << 32) | slot;
     }
 
     private long continuedFixSessionId;
     private int continuedSequenceNumber;
     private int continuedSequenceIndex;
+    private long batchEndPosition;
+    private int batchLength;
 
     public void onFragment(
         final DirectBuffer srcBuffer,
@@ -123,36 +230,18 @@ public class ReplayIndex implements Index
         final boolean beginMessage = (flags & BEGIN_FRAG_FLAG) == BEGIN_FRAG_FLAG;
         if ((flags & UNFRAGMENTED) == UNFRAGMENTED || beginMessage)
         {
-            int offset = srcOffset;
-            frameHeaderDecoder.wrap(srcBuffer, offset);
-            if (frameHeaderDecoder.templateId() == FixMessageEncoder.TEMPLATE_ID)
+            frameHeaderDecoder.wrap(srcBuffer, srcOffset);
+            final int templateId = frameHeaderDecoder.templateId();
+            if (templateId == FixMessageEncoder.TEMPLATE_ID)
             {
-                final int actingBlockLength = frameHeaderDecoder.blockLength();
-                offset += frameHeaderDecoder.encodedLength();
-
-                messageFrame.wrap(srcBuffer, offset, actingBlockLength, frameHeaderDecoder.version());
-                if (messageFrame.status() == OK)
-                {
-                    offset += actingBlockLength + 2;
-
-                    asciiBuffer.wrap(srcBuffer);
-                    fixHeader.decode(asciiBuffer, offset, messageFrame.bodyLength());
-
-                    final long fixSessionId = messageFrame.session();
-                    final int sequenceNumber = fixHeader.msgSeqNum();
-                    final int sequenceIndex = messageFrame.sequenceIndex();
-
-                    if (beginMessage)
-                    {
-                        continuedFixSessionId = fixSessionId;
-                        continuedSequenceNumber = sequenceNumber;
-                        continuedSequenceIndex = sequenceIndex;
-                    }
-
-                    fixSessionIdToIndex
-                        .computeIfAbsent(fixSessionId, newSessionIndex)
-                        .onRecord(endPosition, length, sequenceNumber, sequenceIndex, header);
-                }
+                onFixMessage(srcBuffer, srcOffset, srcOffset + srcLength, endPosition, length, beginMessage, header);
+            }
+            else if (templateId == FixMessageBatchDecoder.TEMPLATE_ID)
+            {
+                // Every message in the batch is indexed as the whole batch fragment
+                batchEndPosition = endPosition;
+                batchLength = length;
+                batchReader.forEachMessage(srcBuffer, srcOffset, header, onBatchedMessage);
             }
         }
         else
@@ -168,10 +257,69 @@ public class ReplayIndex implements Index
         positionWriter.updateChecksums();
     }
 
+    private void onBatchedMessage(
+        final DirectBuffer srcBuffer, final int srcOffset, final int srcLength, final Header header)
+    {
+        onFixMessage(
+            srcBuffer, srcOffset, srcOffset + srcLength, batchEndPosition, batchLength, false, header);
+    }
+
+    private void onFixMessage(
+        final DirectBuffer srcBuffer,
+        final int srcOffset,
+        final int frameEnd,
+        final long endPosition,
+        final int length,
+        final boolean beginMessage,
+        final Header header)
+    {
+        int offset = srcOffset;
+        frameHeaderDecoder.wrap(srcBuffer, offset);
+        final int actingBlockLength = frameHeaderDecoder.blockLength();
+        offset += frameHeaderDecoder.encodedLength();
+
+        messageFrame.wrap(srcBuffer, offset, actingBlockLength, frameHeaderDecoder.version());
+        if (messageFrame.status() == OK)
+        {
+            offset += actingBlockLength + 2;
+            final int bodyLength = messageFrame.bodyLength();
+
+            final AsciiBuffer asciiBuffer = this.asciiBuffer;
+            asciiBuffer.wrap(srcBuffer);
+
+            int sequenceNumber = TagOffsetIndex.MISSING_TAG;
+            if (tagOffsetIndex.wrap(messageFrame.tagOffsetCount(), srcBuffer, offset, bodyLength, frameEnd))
+            {
+                sequenceNumber = tagOffsetIndex.msgSeqNum(asciiBuffer);
+            }
+
+            if (sequenceNumber == TagOffsetIndex.MISSING_TAG)
+            {
+                fixHeader.decode(asciiBuffer, offset, bodyLength);
+                sequenceNumber = fixHeader.msgSeqNum();
+            }
+
+            final long fixSessionId = messageFrame.session();
+            final int sequenceIndex = messageFrame.sequenceIndex();
+
+            if (beginMessage)
+            {
+                continuedFixSessionId = fixSessionId;
+                continuedSequenceNumber = sequenceNumber;
+                continuedSequenceIndex = sequenceIndex;
+            }
+
+            fixSessionIdToIndex
+                .computeIfAbsent(fixSessionId, newSessionIndex)
+                .onRecord(endPosition, length, sequenceNumber, sequenceIndex, header);
+        }
+    }
+
     public void close()
     {
         positionWriter.close();
         fixSessionIdToIndex.clear();
+        sharedFiles.forEach(IoUtil::unmap);
         IoUtil.unmap(positionBuffer.byteBuffer());
     }
 
@@ -182,18 +330,47 @@ public class ReplayIndex implements Index
 
     private final class SessionIndex implements AutoCloseable
     {
+        private final long fixSessionId;
         private final ByteBuffer wrappedBuffer;
+        private final ByteBuffer segmentRing;
         private final AtomicBuffer buffer;
         private final int recordCapacity;
+        private final boolean shared;
+
+        private long nextSegmentEndPosition;
 
         SessionIndex(final long fixSessionId)
         {
-            final File logFile = replayIndexFile(logFileDir, fixSessionId, requiredStreamId);
-            final boolean exists = logFile.exists();
-            this.wrappedBuffer = bufferFactory.map(logFile, indexFileSize);
+            this.fixSessionId = fixSessionId;
+            shared = sharedFileSessions > 0;
+            final boolean exists;
+            int fileNumber = 0;
+            int slot = 0;
+            if (shared)
+            {
+                long sharedSlot = fixSessionIdToSharedSlot.get(fixSessionId);
+                exists = sharedSlot != NO_SHARED_SLOT;
+                if (!exists)
+                {
+                    sharedSlot = allocateSharedSlot(fixSessionId);
+                }
+
+                fileNumber = (int)(sharedSlot >>> 32);
+                slot = (int)sharedSlot;
+                this.wrappedBuffer = ReplayIndexDescriptor.sharedSlot(
+                    sharedFiles.get(fileNumber), sharedFileBuffers.get(fileNumber), slot);
+            }
+            else
+            {
+                final File logFile = replayIndexFile(logFileDir, fixSessionId, requiredStreamId);
+                exists = logFile.exists();
+                this.wrappedBuffer = bufferFactory.map(logFile, indexFileSize);
+            }
             this.buffer = new UnsafeBuffer(wrappedBuffer);
+            segmentRing = maxSegments > 0 ? wrappedBuffer.duplicate() : null;
 
             recordCapacity = recordCapacity(buffer.capacity());
+            long closedPosition = 0;
             if (!exists)
             {
                 indexHeaderEncoder
@@ -202,14 +379,24 @@ public class ReplayIndex implements Index
                     .templateId(replayIndexRecord.sbeTemplateId())
                     .schemaId(replayIndexRecord.sbeSchemaId())
                     .version(replayIndexRecord.sbeSchemaVersion());
+
+                if (shared)
+                {
+                    sharedSlotSessionIdOrdered(sharedFileBuffers.get(fileNumber), slot, fixSessionId);
+                }
             }
             else
             {
                 // Reset the positions in order to avoid wraps at the start.
-                final long resetPosition = beginChange(buffer) + RECORD_LENGTH;
+                closedPosition = beginChange(buffer);
+                final long resetPosition = closedPosition + RECORD_LENGTH;
                 beginChangeOrdered(buffer, resetPosition);
                 endChangeOrdered(buffer, resetPosition);
             }
+
+            // Laps that ended before the position that the index was closed at have already been sealed.
+            nextSegmentEndPosition = Math.max(
+                recordCapacity, ((closedPosition + recordCapacity - 1) / recordCapacity) * recordCapacity);
         }
 
         void onRecord(
@@ -225,6 +412,12 @@ public class ReplayIndex implements Index
             final long recordingId = recordingIdLookup.getRecordingId(aeronSessionId);
             final long beginPosition = endPosition - length;
 
+            if (maxSegments > 0 && beginChangePosition >= nextSegmentEndPosition)
+            {
+                sealSegment(nextSegmentEndPosition);
+                nextSegmentEndPosition += recordCapacity;
+            }
+
             beginChangeOrdered(buffer, changePosition);
             UNSAFE.storeFence();
 
@@ -241,9 +434,58 @@ public class ReplayIndex implements Index
             endChangeOrdered(buffer, changePosition);
         }
 
+        // Copies the lap of the ring that ends at the given position into a segment, which looks like a ring that has
+        // stopped at that position, before the lap starts to be overwritten.
+        private void sealSegment(final long endPosition)
+        {
+            final long startPosition = endPosition - recordCapacity;
+            final File segmentFile = replayIndexSegmentFile(logFileDir, fixSessionId, requiredStreamId, startPosition);
+            final File sealingFile = new File(segmentFile.getPath() + SEALING_SUFFIX);
+            try (FileChannel channel = FileChannel.open(sealingFile.toPath(), CREATE, TRUNCATE_EXISTING, WRITE))
+            {
+                final ByteBuffer ring = segmentRing;
+                ring.clear();
+                while (ring.hasRemaining())
+                {
+                    channel.write(ring);
+                }
+
+                final ByteBuffer changePositions = segmentChangePositions;
+                changePositions.clear();
+                changePositions.putLong(0, endPosition).putLong(SIZE_OF_LONG, endPosition);
+                while (changePositions.hasRemaining())
+                {
+                    channel.write(changePositions, BEGIN_CHANGE_OFFSET + changePositions.position());
+                }
+            }
+            catch (final IOException ex)
+            {
+                errorHandler.onError(ex);
+                return;
+            }
+
+            if (!sealingFile.renameTo(segmentFile))
+            {
+                errorHandler.onError(new IllegalStateException("Unable to seal replay index segment: " + segmentFile));
+                return;
+            }
+
+            // Retire segments beyond the retention limit, oldest last
+            long retiredPosition = startPosition - (long)maxSegments * recordCapacity;
+            while (retiredPosition >= 0 &&
+                replayIndexSegmentFile(logFileDir, fixSessionId, requiredStreamId, retiredPosition).delete())
+            {
+                retiredPosition -= recordCapacity;
+            }
+        }
+
         public void close()
         {
-            IoUtil.unmap(wrappedBuffer);
+            // Shared files stay mapped until the index is closed
+            if (!shared)
+            {
+                IoUtil.unmap(wrappedBuffer);
+            }
         }
     }
 }
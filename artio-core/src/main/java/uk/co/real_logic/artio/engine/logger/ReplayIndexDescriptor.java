@@ -22,16 +22,24 @@ import uk.co.real_logic.artio.messages.MessageHeaderEncoder;
 import uk.co.real_logic.artio.storage.messages.ReplayIndexRecordDecoder;
 
 import java.io.File;
+import java.nio.ByteBuffer;
 
 public final class ReplayIndexDescriptor
 {
     static final int REPLAY_POSITION_BUFFER_SIZE = 128 * 1024;
 
-    private static final int BEGIN_CHANGE_OFFSET = MessageHeaderEncoder.ENCODED_LENGTH;
+    static final int BEGIN_CHANGE_OFFSET = MessageHeaderEncoder.ENCODED_LENGTH;
     private static final int END_CHANGE_OFFSET = BEGIN_CHANGE_OFFSET + BitUtil.SIZE_OF_LONG;
 
     public static final int INITIAL_RECORD_OFFSET = END_CHANGE_OFFSET + BitUtil.SIZE_OF_LONG;
 
+    // Shared index files start with a table of the session ids that their slots are assigned to.
+    private static final int SHARED_SLOT_SIZE_OFFSET = 0;
+    private static final int SHARED_SLOT_COUNT_OFFSET = SHARED_SLOT_SIZE_OFFSET + BitUtil.SIZE_OF_INT;
+    private static final int SHARED_SESSION_IDS_OFFSET = SHARED_SLOT_COUNT_OFFSET + BitUtil.SIZE_OF_INT;
+
+    static final long FREE_SLOT = 0;
+
     static final int RECORD_LENGTH = 32;
     static
     {
@@ -47,6 +55,19 @@ public final class ReplayIndexDescriptor
         return new File(String.format(logFileDir + File.separator + "replay-index-%d-%d", fixSessionId, streamId));
     }
 
+    static File replayIndexSegmentFile(
+        final String logFileDir, final long fixSessionId, final int streamId, final long startPosition)
+    {
+        return new File(String.format(
+            logFileDir + File.separator + "replay-index-%d-%d-%d", fixSessionId, streamId, startPosition));
+    }
+
+    static File sharedReplayIndexFile(final String logFileDir, final int streamId, final int fileNumber)
+    {
+        return new File(String.format(
+            logFileDir + File.separator + "replay-index-shared-%d-%d", streamId, fileNumber));
+    }
+
     public static UnsafeBuffer replayPositionBuffer(final String logFileDir, final int streamId)
     {
         final String pathname = replayPositionPath(logFileDir, streamId);
@@ -83,6 +104,60 @@ public final class ReplayIndexDescriptor
         return buffer.getLong(BEGIN_CHANGE_OFFSET);
     }
 
+    static int sharedIndexFileSize(final int slotCount, final int slotSize)
+    {
+        final long fileSize = sharedSlotsOffset(slotCount) + (long)slotCount * slotSize;
+        if (fileSize > Integer.MAX_VALUE)
+        {
+            throw new IllegalStateException(String.format(
+                "Shared index files can't be mapped: slotCount=%d, indexFileSize=%d", slotCount, slotSize));
+        }
+
+        return (int)fileSize;
+    }
+
+    static void initialiseSharedIndexFile(final AtomicBuffer buffer, final int slotCount, final int slotSize)
+    {
+        buffer.putInt(SHARED_SLOT_SIZE_OFFSET, slotSize);
+        buffer.putIntOrdered(SHARED_SLOT_COUNT_OFFSET, slotCount);
+    }
+
+    static int sharedSlotCount(final AtomicBuffer buffer)
+    {
+        return buffer.getIntVolatile(SHARED_SLOT_COUNT_OFFSET);
+    }
+
+    static int sharedSlotSize(final AtomicBuffer buffer)
+    {
+        return buffer.getInt(SHARED_SLOT_SIZE_OFFSET);
+    }
+
+    static long sharedSlotSessionIdVolatile(final AtomicBuffer buffer, final int slot)
+    {
+        return buffer.getLongVolatile(SHARED_SESSION_IDS_OFFSET + slot * BitUtil.SIZE_OF_LONG);
+    }
+
+    // Published once the slot's index has been initialised
+    static void sharedSlotSessionIdOrdered(final AtomicBuffer buffer, final int slot, final long fixSessionId)
+    {
+        buffer.putLongOrdered(SHARED_SESSION_IDS_OFFSET + slot * BitUtil.SIZE_OF_LONG, fixSessionId);
+    }
+
+    // A view of a slot of a shared index file, which has the same layout as a session's own index file
+    static ByteBuffer sharedSlot(final ByteBuffer sharedFile, final AtomicBuffer buffer, final int slot)
+    {
+        final int slotSize = sharedSlotSize(buffer);
+        final int offset = sharedSlotsOffset(sharedSlotCount(buffer)) + slot * slotSize;
+        final ByteBuffer slotBuffer = sharedFile.duplicate();
+        slotBuffer.limit(offset + slotSize).position(offset);
+        return slotBuffer.slice();
+    }
+
+    private static int sharedSlotsOffset(final int slotCount)
+    {
+        return BitUtil.align(SHARED_SESSION_IDS_OFFSET + slotCount * BitUtil.SIZE_OF_LONG, BitUtil.CACHE_LINE_LENGTH);
+    }
+
     static int recordCapacity(final int indexFileSize)
     {
         return indexFileSize - INITIAL_RECORD_OFFSET;
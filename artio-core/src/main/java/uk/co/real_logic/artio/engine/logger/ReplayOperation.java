@@ -26,59 +26,90 @@ import io.aeron.logbuffer.Header;
 import org.agrona.DirectBuffer;
 import org.agrona.ErrorHandler;
 import org.agrona.concurrent.status.CountersReader;
+import uk.co.real_logic.artio.decoder.HeaderDecoder;
+import uk.co.real_logic.artio.messages.FixMessageBatchDecoder;
 import uk.co.real_logic.artio.messages.FixMessageDecoder;
 import uk.co.real_logic.artio.messages.MessageHeaderDecoder;
+import uk.co.real_logic.artio.protocol.FixMessageBatchReader;
+import uk.co.real_logic.artio.util.MutableAsciiBuffer;
 
+import java.util.ArrayList;
 import java.util.List;
-import java.util.function.Predicate;
 
 import static io.aeron.CommonContext.IPC_CHANNEL;
 import static io.aeron.logbuffer.ControlledFragmentHandler.Action.ABORT;
 import static io.aeron.logbuffer.ControlledFragmentHandler.Action.CONTINUE;
+import static uk.co.real_logic.artio.engine.logger.Replayer.MOST_RECENT_MESSAGE;
+import static uk.co.real_logic.artio.protocol.GatewayPublication.FRAME_SIZE;
 
 /**
  * A continuable replay operation that can retried.
  *
- * Each object is single threaded, but different objects used on different threads.
+ * Each object is single threaded, but different objects used on different threads. Operations are pooled by the
+ * {@link ReplayQuery} that creates them, so shouldn't be used after being released back to it.
  */
 public class ReplayOperation
 {
     private final MessageTracker messageTracker = new MessageTracker();
     private final ControlledFragmentAssembler assembler = new ControlledFragmentAssembler(messageTracker);
 
-    private final List<RecordingRange> ranges;
+    private final List<RecordingRange> ranges = new ArrayList<>();
     private final AeronArchive aeronArchive;
     private final ErrorHandler errorHandler;
     private final int archiveReplayStream;
     private final CountersReader countersReader;
     private final Subscription subscription;
 
+    // fields reset for each query
+    private int replayedMessages;
+    private int rangeIndex;
+    private int fragmentsToPoll;
+
     // fields reset for each recordingRange
-    private int replayedMessages = 0;
     private RecordingRange recordingRange;
     private int aeronSessionId;
     private Image image;
-    private int fragmentsToPoll = Integer.MAX_VALUE;
 
     ReplayOperation(
-        final ControlledFragmentHandler handler,
-        final List<RecordingRange> ranges,
         final AeronArchive aeronArchive,
         final ErrorHandler errorHandler,
         final Subscription subscription,
         final int archiveReplayStream)
     {
-        this.ranges = ranges;
         this.aeronArchive = aeronArchive;
         this.errorHandler = errorHandler;
         this.archiveReplayStream = archiveReplayStream;
 
         final Aeron aeron = aeronArchive.context().aeron();
         countersReader = aeron.countersReader();
-        messageTracker.wrap(handler);
         this.subscription = subscription;
     }
 
+    void init(
+        final ControlledFragmentHandler handler,
+        final long sessionId,
+        final int beginSequenceNumber,
+        final int beginSequenceIndex,
+        final int endSequenceNumber,
+        final int endSequenceIndex)
+    {
+        replayedMessages = 0;
+        rangeIndex = 0;
+        fragmentsToPoll = Integer.MAX_VALUE;
+        recordingRange = null;
+        image = null;
+
+        messageTracker.wrap(handler);
+        messageTracker.sessionId = sessionId;
+        messageTracker.sequenceRange(beginSequenceNumber, beginSequenceIndex, endSequenceNumber, endSequenceIndex);
+    }
+
+    // The ranges to replay, in order, which are filled in by the query.
+    List<RecordingRange> ranges()
+    {
+        return ranges;
+    }
+
     public boolean attemptReplay()
     {
         return attemptReplayStep();
@@ -88,13 +119,12 @@ public class ReplayOperation
     {
         if (recordingRange == null)
         {
-            if (ranges.isEmpty())
+            if (rangeIndex == ranges.size())
             {
                 return true;
             }
 
-            recordingRange = ranges.get(0);
-            messageTracker.msgPredicate = recordingRange.msgPredicate;
+            recordingRange = ranges.get(rangeIndex);
 
             final long beginPosition = recordingRange.position;
             final long length = recordingRange.length;
@@ -109,7 +139,7 @@ public class ReplayOperation
             }
             else
             {
-                ranges.remove(0);
+                rangeIndex++;
             }
 
             try
@@ -157,7 +187,7 @@ public class ReplayOperation
                 replayedMessages += recordingRange.count;
                 recordingRange = null;
 
-                return ranges.isEmpty();
+                return rangeIndex == ranges.size();
             }
         }
     }
@@ -189,10 +219,19 @@ public class ReplayOperation
     {
         private final MessageHeaderDecoder messageHeaderDecoder = new MessageHeaderDecoder();
         private final FixMessageDecoder messageDecoder = new FixMessageDecoder();
+        private final FixMessageBatchReader batchReader = new FixMessageBatchReader();
+        private final ControlledFragmentHandler onBatchedMessage = this::onBatchedMessage;
+        private final MutableAsciiBuffer asciiBuffer = new MutableAsciiBuffer();
+        private final HeaderDecoder fixHeader = new HeaderDecoder();
 
         ControlledFragmentHandler messageHandler;
         int count;
-        Predicate<FixMessageDecoder> msgPredicate;
+        long sessionId;
+
+        private int beginSequenceNumber;
+        private int beginSequenceIndex;
+        private int endSequenceNumber;
+        private int endSequenceIndex;
 
         @Override
         public Action onFragment(
@@ -200,20 +239,23 @@ public class ReplayOperation
         {
             messageHeaderDecoder.wrap(buffer, offset);
 
-            if (messageHeaderDecoder.templateId() == FixMessageDecoder.TEMPLATE_ID)
+            final int templateId = messageHeaderDecoder.templateId();
+            if (templateId == FixMessageBatchDecoder.TEMPLATE_ID)
             {
-                if (msgPredicate != null)
+                return batchReader.forEachMessage(buffer, offset, header, onBatchedMessage);
+            }
+
+            if (templateId == FixMessageDecoder.TEMPLATE_ID)
+            {
+                messageDecoder.wrap(
+                    buffer,
+                    offset + MessageHeaderDecoder.ENCODED_LENGTH,
+                    messageHeaderDecoder.blockLength(),
+                    messageHeaderDecoder.version()
+                );
+                if (messageDecoder.session() != sessionId)
                 {
-                    messageDecoder.wrap(
-                        buffer,
-                        offset + MessageHeaderDecoder.ENCODED_LENGTH,
-                        messageHeaderDecoder.blockLength(),
-                        messageHeaderDecoder.version()
-                    );
-                    if (!msgPredicate.test(messageDecoder))
-                    {
-                        return CONTINUE;
-                    }
+                    return CONTINUE;
                 }
 
                 final Action action = messageHandler.onFragment(buffer, offset, length, header);
@@ -227,11 +269,62 @@ public class ReplayOperation
             return CONTINUE;
         }
 
+        // The index points at the whole of a batch, so the messages within it need to be checked against the query
+        private Action onBatchedMessage(
+            final DirectBuffer buffer, final int offset, final int length, final Header header)
+        {
+            messageHeaderDecoder.wrap(buffer, offset);
+            messageDecoder.wrap(
+                buffer,
+                offset + MessageHeaderDecoder.ENCODED_LENGTH,
+                messageHeaderDecoder.blockLength(),
+                messageHeaderDecoder.version());
+
+            if (messageDecoder.session() != sessionId)
+            {
+                return CONTINUE;
+            }
+
+            final int sequenceIndex = messageDecoder.sequenceIndex();
+            final int bodyLength = messageDecoder.bodyLength();
+            asciiBuffer.wrap(buffer, offset + MessageHeaderDecoder.ENCODED_LENGTH + FRAME_SIZE, bodyLength);
+            fixHeader.decode(asciiBuffer, 0, bodyLength);
+            final int sequenceNumber = fixHeader.msgSeqNum();
+
+            final boolean beforeStart = sequenceIndex < beginSequenceIndex ||
+                (sequenceIndex == beginSequenceIndex && sequenceNumber < beginSequenceNumber);
+            final boolean afterEnd = endSequenceNumber != MOST_RECENT_MESSAGE && (sequenceIndex > endSequenceIndex ||
+                (sequenceIndex == endSequenceIndex && sequenceNumber > endSequenceNumber));
+            if (beforeStart || afterEnd)
+            {
+                return CONTINUE;
+            }
+
+            final Action action = messageHandler.onFragment(buffer, offset, length, header);
+            if (action != ABORT)
+            {
+                count++;
+            }
+            return action;
+        }
+
         void wrap(final ControlledFragmentHandler handler)
         {
             this.messageHandler = handler;
         }
 
+        void sequenceRange(
+            final int beginSequenceNumber,
+            final int beginSequenceIndex,
+            final int endSequenceNumber,
+            final int endSequenceIndex)
+        {
+            this.beginSequenceNumber = beginSequenceNumber;
+            this.beginSequenceIndex = beginSequenceIndex;
+            this.endSequenceNumber = endSequenceNumber;
+            this.endSequenceIndex = endSequenceIndex;
+        }
+
         void reset()
         {
             count = 0;
@@ -22,18 +22,16 @@ import org.agrona.CloseHelper;
 import org.agrona.ErrorHandler;
 import org.agrona.IoUtil;
 import org.agrona.collections.Long2ObjectCache;
-import org.agrona.concurrent.IdleStrategy;
 import org.agrona.concurrent.UnsafeBuffer;
-import uk.co.real_logic.artio.messages.FixMessageDecoder;
 import uk.co.real_logic.artio.messages.MessageHeaderDecoder;
 import uk.co.real_logic.artio.storage.messages.ReplayIndexRecordDecoder;
 
+import java.io.File;
 import java.nio.ByteBuffer;
 import java.nio.MappedByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.function.LongFunction;
-import java.util.function.Predicate;
 
 import static io.aeron.CommonContext.IPC_CHANNEL;
 import static io.aeron.logbuffer.FrameDescriptor.FRAME_ALIGNMENT;
@@ -45,9 +43,16 @@ import static uk.co.real_logic.artio.engine.logger.Replayer.MOST_RECENT_MESSAGE;
  * Queries an index of a composite key of session id and sequence number.
  *
  * This object isn't thread-safe, but the underlying replay index is a single-writer, multiple-reader threadsafe index.
+ *
+ * The operations returned by queries, and the ranges of recordings that they replay, are pooled so that querying
+ * doesn't allocate in the steady state. Operations should be released back to the query once they have completed.
  */
 public class ReplayQuery implements AutoCloseable
 {
+    private static final long LAPPED = Long.MIN_VALUE;
+    private static final long NO_SEGMENT = -1;
+    private static final int MAPPED_SEGMENTS_PER_SESSION = 4;
+
     private final MessageHeaderDecoder messageFrameHeader = new MessageHeaderDecoder();
     private final ReplayIndexRecordDecoder indexRecord = new ReplayIndexRecordDecoder();
 
@@ -56,10 +61,15 @@ public class ReplayQuery implements AutoCloseable
     private final String logFileDir;
     private final ExistingBufferFactory indexBufferFactory;
     private final int requiredStreamId;
-    private final IdleStrategy idleStrategy;
     private final AeronArchive aeronArchive;
     private final ErrorHandler errorHandler;
     private final int archiveReplayStream;
+    private final boolean ownsReplaySubscription;
+
+    private final List<ByteBuffer> sharedFiles = new ArrayList<>();
+    private final List<UnsafeBuffer> sharedFileBuffers = new ArrayList<>();
+    private final List<ReplayOperation> freeOperations = new ArrayList<>();
+    private final List<RecordingRange> freeRanges = new ArrayList<>();
 
     private Subscription replaySubscription;
 
@@ -69,18 +79,57 @@ public class ReplayQuery implements AutoCloseable
         final int cacheSetSize,
         final ExistingBufferFactory indexBufferFactory,
         final int requiredStreamId,
-        final IdleStrategy idleStrategy,
         final AeronArchive aeronArchive,
         final ErrorHandler errorHandler,
         final int archiveReplayStream)
+    {
+        this(
+            logFileDir,
+            cacheNumSets,
+            cacheSetSize,
+            indexBufferFactory,
+            requiredStreamId,
+            aeronArchive,
+            errorHandler,
+            archiveReplayStream,
+            null);
+    }
+
+    /**
+     * Create a query whose replays are received on a subscription that is shared with the queries of other
+     * replayers, so that they don't hold back each other's replays. Each query only polls the images of its own
+     * replays, so the queries can be used on different threads.
+     *
+     * @param logFileDir the directory that the replay index files are in.
+     * @param cacheNumSets the number of sets in the cache of sessions' index files.
+     * @param cacheSetSize the size of the sets in the cache of sessions' index files.
+     * @param indexBufferFactory maps the index files.
+     * @param requiredStreamId the stream that is indexed.
+     * @param aeronArchive the archive that messages are replayed from.
+     * @param errorHandler the handler for errors.
+     * @param archiveReplayStream the stream that the archive replays messages on.
+     * @param replaySubscription the subscription to the archive replay stream, or null for the query to add, and
+     *                           close, its own.
+     */
+    public ReplayQuery(
+        final String logFileDir,
+        final int cacheNumSets,
+        final int cacheSetSize,
+        final ExistingBufferFactory indexBufferFactory,
+        final int requiredStreamId,
+        final AeronArchive aeronArchive,
+        final ErrorHandler errorHandler,
+        final int archiveReplayStream,
+        final Subscription replaySubscription)
     {
         this.logFileDir = logFileDir;
         this.indexBufferFactory = indexBufferFactory;
         this.requiredStreamId = requiredStreamId;
-        this.idleStrategy = idleStrategy;
         this.aeronArchive = aeronArchive;
         this.errorHandler = errorHandler;
         this.archiveReplayStream = archiveReplayStream;
+        this.replaySubscription = replaySubscription;
+        this.ownsReplaySubscription = replaySubscription == null;
 
         fixSessionToIndex = new Long2ObjectCache<>(cacheNumSets, cacheSetSize, SessionQuery::close);
     }
@@ -108,24 +157,114 @@ public class ReplayQuery implements AutoCloseable
             .query(handler, beginSequenceNumber, beginSequenceIndex, endSequenceNumber, endSequenceIndex);
     }
 
+    /**
+     * Release an operation returned by {@link #query} back to the pool, once it has completed or been abandoned.
+     *
+     * @param operation the operation to release.
+     */
+    public void release(final ReplayOperation operation)
+    {
+        final List<RecordingRange> ranges = operation.ranges();
+        for (int i = 0, size = ranges.size(); i < size; i++)
+        {
+            freeRanges.add(ranges.get(i));
+        }
+        ranges.clear();
+
+        freeOperations.add(operation);
+    }
+
     public void close()
     {
         fixSessionToIndex.clear();
+        sharedFiles.forEach(IoUtil::unmap);
+        if (ownsReplaySubscription)
+        {
+            CloseHelper.close(replaySubscription);
+        }
+    }
+
+    private ReplayOperation newReplayOperation()
+    {
+        final List<ReplayOperation> freeOperations = this.freeOperations;
+        if (!freeOperations.isEmpty())
+        {
+            return freeOperations.remove(freeOperations.size() - 1);
+        }
+
+        if (replaySubscription == null)
+        {
+            replaySubscription = aeronArchive.context().aeron().addSubscription(
+                IPC_CHANNEL, archiveReplayStream);
+        }
+
+        return new ReplayOperation(aeronArchive, errorHandler, replaySubscription, archiveReplayStream);
+    }
+
+    private RecordingRange newRange(final long recordingId)
+    {
+        final List<RecordingRange> freeRanges = this.freeRanges;
+        final RecordingRange range = freeRanges.isEmpty() ?
+            new RecordingRange() : freeRanges.remove(freeRanges.size() - 1);
+
+        return range.reset(recordingId);
+    }
+
+    // Sessions indexed into shared files take precedence over their own files.
+    private IndexFile mapRing(final long sessionId)
+    {
+        for (int fileNumber = 0; ; fileNumber++)
+        {
+            if (fileNumber == sharedFiles.size())
+            {
+                final File file = sharedReplayIndexFile(logFileDir, requiredStreamId, fileNumber);
+                if (!file.exists())
+                {
+                    break;
+                }
+
+                final ByteBuffer sharedFile = indexBufferFactory.map(file);
+                sharedFiles.add(sharedFile);
+                sharedFileBuffers.add(new UnsafeBuffer(sharedFile));
+            }
+
+            final UnsafeBuffer buffer = sharedFileBuffers.get(fileNumber);
+            final int slotCount = sharedSlotCount(buffer);
+            for (int slot = 0; slot < slotCount; slot++)
+            {
+                final long slotSessionId = sharedSlotSessionIdVolatile(buffer, slot);
+                if (slotSessionId == sessionId)
+                {
+                    return new IndexFile(sharedSlot(sharedFiles.get(fileNumber), buffer, slot), false);
+                }
+                else if (slotSessionId == FREE_SLOT)
+                {
+                    break;
+                }
+            }
+        }
+
+        return new IndexFile(indexBufferFactory.map(replayIndexFile(logFileDir, sessionId, requiredStreamId)), true);
     }
 
     private final class SessionQuery implements AutoCloseable
     {
-        private final ByteBuffer wrappedBuffer;
-        private final UnsafeBuffer buffer;
-        private final int capacity;
-        private final Predicate<FixMessageDecoder> msgPredicate;
+        private final long sessionId;
+        private final IndexFile ring;
+        private final Long2ObjectCache<IndexFile> segments =
+            new Long2ObjectCache<>(1, MAPPED_SEGMENTS_PER_SESSION, IndexFile::close);
+
+        // State of the query in progress
+        private List<RecordingRange> ranges;
+        private RecordingRange currentRange;
+        private int lastSequenceNumber;
+        private long beginKey;
+        private long endKey;
 
         SessionQuery(final long sessionId)
         {
-            wrappedBuffer = indexBufferFactory.map(replayIndexFile(logFileDir, sessionId, requiredStreamId));
-            buffer = new UnsafeBuffer(wrappedBuffer);
-            capacity = recordCapacity(buffer.capacity());
-            msgPredicate = decoder -> decoder.session() == sessionId;
+            this.sessionId = sessionId;
+            ring = mapRing(sessionId);
         }
 
         ReplayOperation query(
@@ -135,125 +274,159 @@ public class ReplayQuery implements AutoCloseable
             final int endSequenceNumber,
             final int endSequenceIndex)
         {
-            messageFrameHeader.wrap(buffer, 0);
-
-            final int actingBlockLength = messageFrameHeader.blockLength();
-            final int actingVersion = messageFrameHeader.version();
-            final boolean upToMostRecentMessage = endSequenceNumber == MOST_RECENT_MESSAGE;
-
             // LOOKUP THE RANGE FROM THE INDEX
             // NB: this is a List as we are looking up recordings in the correct order to replay them.
-            final List<RecordingRange> ranges = new ArrayList<>();
-            RecordingRange currentRange = null;
-
-            long iteratorPosition = getIteratorPosition();
-            long stopIteratingPosition = iteratorPosition + capacity;
-
-            int lastSequenceNumber = -1;
-            while (iteratorPosition != stopIteratingPosition)
+            final ReplayOperation operation = newReplayOperation();
+            ranges = operation.ranges();
+            currentRange = null;
+            lastSequenceNumber = -1;
+            beginKey = sequenceKey(beginSequenceIndex, beginSequenceNumber);
+            endKey = endSequenceNumber == MOST_RECENT_MESSAGE ?
+                Long.MAX_VALUE : sequenceKey(endSequenceIndex, endSequenceNumber);
+
+            final long oldestPosition = ring.oldestPosition();
+            final long startPosition = ring.searchStartPosition(oldestPosition, Long.MAX_VALUE, beginKey);
+
+            // The start of the query may have been lapped and sealed into segments
+            final boolean reachedEnd = startPosition == oldestPosition && oldestPosition > 0 &&
+                querySegments(oldestPosition);
+            if (!reachedEnd)
             {
-                final long changePosition = endChangeVolatile(buffer);
+                scan(ring, startPosition, Long.MAX_VALUE);
+            }
 
-                // Lapped by writer
-                if (changePosition > iteratorPosition && (iteratorPosition + capacity) <= beginChangeVolatile(buffer))
-                {
-                    iteratorPosition = changePosition;
-                    stopIteratingPosition = iteratorPosition + capacity;
-                }
+            if (currentRange != null)
+            {
+                ranges.add(currentRange);
+            }
 
-                final int offset = offset(iteratorPosition, capacity);
-                indexRecord.wrap(buffer, offset, actingBlockLength, actingVersion);
-                final long beginPosition = indexRecord.position();
-                final int sequenceIndex = indexRecord.sequenceIndex();
-                final int sequenceNumber = indexRecord.sequenceNumber();
-                final long recordingId = indexRecord.recordingId();
-                final int readLength = indexRecord.length();
+            ranges = null;
+            currentRange = null;
 
-                UNSAFE.loadFence(); // LoadLoad required so previous loads don't move past version check below.
+            operation.init(
+                handler, sessionId, beginSequenceNumber, beginSequenceIndex, endSequenceNumber, endSequenceIndex);
 
-                // if the block was read atomically with no updates
-                if (changePosition == beginChangeVolatile(buffer))
-                {
-                    idleStrategy.reset();
+            return operation;
+        }
 
-                    final boolean afterEnd = !upToMostRecentMessage && (sequenceIndex > endSequenceIndex ||
-                        (sequenceIndex == endSequenceIndex && sequenceNumber > endSequenceNumber));
-                    if (beginPosition == 0 || afterEnd)
-                    {
-                        break;
-                    }
+        // Segments are laps of the ring, so they start at multiples of its capacity. Returns true if the end of the
+        // query has been reached.
+        private boolean querySegments(final long ringOldestPosition)
+        {
+            final int capacity = ring.capacity;
 
-                    final boolean withinQueryRange = sequenceIndex > beginSequenceIndex ||
-                        (sequenceIndex == beginSequenceIndex && sequenceNumber >= beginSequenceNumber);
-                    if (withinQueryRange)
-                    {
-                        currentRange = addRange(
-                            ranges,
-                            currentRange,
-                            lastSequenceNumber,
-                            beginPosition,
-                            sequenceNumber,
-                            recordingId,
-                            readLength);
-                        lastSequenceNumber = sequenceNumber;
-                        iteratorPosition += RECORD_LENGTH;
-                    }
-                    else // before start of query
-                    {
-                        iteratorPosition = skipToStart(beginSequenceNumber, iteratorPosition, sequenceNumber);
-                    }
+            // Search back for the segment containing the start of the query
+            long firstStartPosition = NO_SEGMENT;
+            for (long startPosition = ((ringOldestPosition - 1) / capacity) * capacity;
+                startPosition >= 0;
+                startPosition -= capacity)
+            {
+                final IndexFile segment = segment(startPosition);
+                if (segment == null)
+                {
+                    break;
                 }
-                else
+
+                firstStartPosition = startPosition;
+                if (segment.readKey(startPosition) <= beginKey)
                 {
-                    idleStrategy.idle();
+                    break;
                 }
             }
 
-            if (currentRange != null)
+            if (firstStartPosition == NO_SEGMENT)
             {
-                ranges.add(currentRange);
+                return false;
+            }
+
+            // Scan forwards through the segments up to the oldest record of the ring
+            for (long startPosition = firstStartPosition; startPosition < ringOldestPosition; startPosition += capacity)
+            {
+                final IndexFile segment = segment(startPosition);
+                if (segment != null)
+                {
+                    final long endPosition = Math.min(startPosition + capacity, ringOldestPosition);
+                    final long fromPosition = startPosition == firstStartPosition ?
+                        segment.searchStartPosition(startPosition, endPosition, beginKey) : startPosition;
+                    if (scan(segment, fromPosition, endPosition))
+                    {
+                        return true;
+                    }
+                }
             }
 
-            return newReplayOperation(handler, ranges);
+            return false;
         }
 
-        private long skipToStart(final int beginSequenceNumber, final long iteratorPosition, final int sequenceNumber)
+        private IndexFile segment(final long startPosition)
         {
-            if (sequenceNumber < beginSequenceNumber)
+            IndexFile segment = segments.get(startPosition);
+            if (segment == null)
             {
-                // Pre: sequenceIndex <= beginSequenceIndex
-                return jumpPosition(beginSequenceNumber, sequenceNumber, iteratorPosition);
-            }
-            else
-            {
-                // Pre: sequenceIndex < beginSequenceIndex
-                // Don't have a good way to estimate the jump, so just scan forward.
-                return iteratorPosition + RECORD_LENGTH;
+                final File file = replayIndexSegmentFile(logFileDir, sessionId, requiredStreamId, startPosition);
+                if (!file.exists())
+                {
+                    return null;
+                }
+
+                segment = new IndexFile(indexBufferFactory.map(file), true);
+                segments.put(startPosition, segment);
             }
-        }
 
-        private long jumpPosition(final int beginSequenceNumber, final int sequenceNumber, final long iteratorPosition)
-        {
-            final int sequenceNumberJump = beginSequenceNumber - sequenceNumber;
-            return iteratorPosition + sequenceNumberJump * RECORD_LENGTH;
+            return segment;
         }
 
-        private ReplayOperation newReplayOperation(
-            final ControlledFragmentHandler handler, final List<RecordingRange> ranges)
+        // Adds records in the query range to the ranges being built. Returns true if the end of the query has been
+        // reached.
+        private boolean scan(final IndexFile file, final long fromPosition, final long toPosition)
         {
-            if (replaySubscription == null)
+            final ReplayIndexRecordDecoder indexRecord = ReplayQuery.this.indexRecord;
+            final UnsafeBuffer buffer = file.buffer;
+
+            long iteratorPosition = fromPosition;
+            while (iteratorPosition < Math.min(toPosition, endChangeVolatile(buffer)))
             {
-                replaySubscription = aeronArchive.context().aeron().addSubscription(
-                    IPC_CHANNEL, archiveReplayStream);
+                file.wrapRecord(iteratorPosition);
+                final long beginPosition = indexRecord.position();
+                final int sequenceIndex = indexRecord.sequenceIndex();
+                final int sequenceNumber = indexRecord.sequenceNumber();
+                final long recordingId = indexRecord.recordingId();
+                final int readLength = indexRecord.length();
+
+                UNSAFE.loadFence(); // LoadLoad required so previous loads don't move past lap check below.
+
+                // Lapped by writer, so skip to the oldest record that hasn't been overwritten.
+                final long oldestPosition = file.oldestPosition();
+                if (iteratorPosition < oldestPosition)
+                {
+                    iteratorPosition = oldestPosition;
+                    continue;
+                }
+
+                final long key = sequenceKey(sequenceIndex, sequenceNumber);
+                if (key > endKey)
+                {
+                    return true;
+                }
+
+                // Slots skipped by restarting the engine on its first lap are empty.
+                if (beginPosition != 0 && key >= beginKey)
+                {
+                    currentRange = addRange(
+                        ranges,
+                        currentRange,
+                        lastSequenceNumber,
+                        beginPosition,
+                        sequenceNumber,
+                        recordingId,
+                        readLength);
+                    lastSequenceNumber = sequenceNumber;
+                }
+
+                iteratorPosition += RECORD_LENGTH;
             }
 
-            return new ReplayOperation(
-                handler,
-                ranges,
-                aeronArchive,
-                errorHandler,
-                replaySubscription,
-                archiveReplayStream);
+            return false;
         }
 
         private RecordingRange addRange(
@@ -268,12 +441,12 @@ public class ReplayQuery implements AutoCloseable
             RecordingRange range = currentRange;
             if (range == null)
             {
-                range = new RecordingRange(recordingId, msgPredicate);
+                range = newRange(recordingId);
             }
             else if (range.recordingId != recordingId)
             {
                 ranges.add(range);
-                range = new RecordingRange(recordingId, msgPredicate);
+                range = newRange(recordingId);
             }
 
             range.add(
@@ -288,27 +461,114 @@ public class ReplayQuery implements AutoCloseable
             return range;
         }
 
-        private long getIteratorPosition()
+        public void close()
         {
-            // positions on a monotonically increasing scale
-            long iteratorPosition = beginChangeVolatile(buffer);
-            // First iteration around you need to start at 0
-            if (iteratorPosition < capacity)
+            ring.close();
+            segments.clear();
+        }
+    }
+
+    // A mapped index file, either a session's ring or a segment sealed from one of its laps. Rings in shared files
+    // are a view of a slot of the file.
+    private final class IndexFile implements AutoCloseable
+    {
+        private final ByteBuffer wrappedBuffer;
+        private final boolean unmapOnClose;
+        private final UnsafeBuffer buffer;
+        private final int capacity;
+
+        IndexFile(final ByteBuffer wrappedBuffer, final boolean unmapOnClose)
+        {
+            this.wrappedBuffer = wrappedBuffer;
+            this.unmapOnClose = unmapOnClose;
+            buffer = new UnsafeBuffer(wrappedBuffer);
+            capacity = recordCapacity(buffer.capacity());
+        }
+
+        // Records are appended in (sequenceIndex, sequenceNumber) order and have a fixed length, so the ring of
+        // records can itself be binary searched for the first record of the query, rather than scanned up to it.
+        long searchStartPosition(final long oldestPosition, final long toPosition, final long beginKey)
+        {
+            // Only search records that have been completely written.
+            long low = oldestPosition;
+            long high = Math.min(toPosition, endChangeVolatile(buffer));
+            while (low < high)
             {
-                iteratorPosition = 0;
+                final long middle = low + ((high - low) / (2 * RECORD_LENGTH)) * RECORD_LENGTH;
+                final long key = readKey(middle);
+
+                // A lapped record has been overwritten, as have all of the records before it.
+                if (key == LAPPED || key < beginKey)
+                {
+                    low = middle + RECORD_LENGTH;
+                }
+                else
+                {
+                    high = middle;
+                }
             }
-            return iteratorPosition;
+
+            // Restarting the engine skips the record that was being written, which can leave a stale record out of
+            // order. Step back over it, and over any records of the query that the search missed as a result.
+            long startPosition = low;
+            while (startPosition > oldestPosition)
+            {
+                final long previousPosition = startPosition - RECORD_LENGTH;
+                final long previousKey = readKey(previousPosition);
+                final boolean outOfOrder = previousPosition > oldestPosition && previousKey != LAPPED &&
+                    previousKey < readKey(previousPosition - RECORD_LENGTH);
+                if (previousKey == LAPPED || (previousKey < beginKey && !outOfOrder))
+                {
+                    break;
+                }
+
+                startPosition = previousPosition;
+            }
+
+            return startPosition;
+        }
+
+        long readKey(final long position)
+        {
+            wrapRecord(position);
+            final long key = indexRecord.position() == 0 ?
+                0 : sequenceKey(indexRecord.sequenceIndex(), indexRecord.sequenceNumber());
+
+            UNSAFE.loadFence(); // LoadLoad required so previous loads don't move past lap check below.
+
+            if (position < oldestPosition())
+            {
+                return LAPPED;
+            }
+
+            return key;
+        }
+
+        void wrapRecord(final long position)
+        {
+            messageFrameHeader.wrap(buffer, 0);
+            indexRecord.wrap(
+                buffer, offset(position, capacity), messageFrameHeader.blockLength(), messageFrameHeader.version());
+        }
+
+        // Positions are on a monotonically increasing scale, of which the ring holds the last lap. The writer starts
+        // to overwrite a record once it has wrapped around the whole ring since writing it.
+        long oldestPosition()
+        {
+            return Math.max(0, beginChangeVolatile(buffer) - capacity);
         }
 
         public void close()
         {
-            if (wrappedBuffer instanceof MappedByteBuffer)
+            if (unmapOnClose && wrappedBuffer instanceof MappedByteBuffer)
             {
                 IoUtil.unmap((MappedByteBuffer)wrappedBuffer);
             }
-
-            CloseHelper.close(replaySubscription);
         }
     }
 
+    private static long sequenceKey(final int sequenceIndex, final int sequenceNumber)
+    {
+        return ((long)sequenceIndex << 32) | (sequenceNumber & 0xFFFF_FFFFL);
+    }
 }
@@ -25,6 +25,8 @@ import org.agrona.collections.IntHashSet;
 import org.agrona.concurrent.Agent;
 import org.agrona.concurrent.EpochClock;
 import org.agrona.concurrent.IdleStrategy;
+import org.agrona.concurrent.status.AtomicCounter;
+import uk.co.real_logic.artio.FixCounters;
 import uk.co.real_logic.artio.decoder.ResendRequestDecoder;
 import uk.co.real_logic.artio.dictionary.generation.GenerationUtil;
 import uk.co.real_logic.artio.engine.ReplayHandler;
@@ -51,7 +53,19 @@ import static uk.co.real_logic.artio.messages.MessageStatus.OK;
  *
  * This agent subscribes to the stream of incoming fix data messages. It parses
  * Resend Request messages and searches the log, using the replay index to find
- * relevant messages to resend.
+ * relevant messages to resend. Requests for recently sent messages can be served
+ * from a {@link ResendCache} instead, when one is configured.
+ *
+ * There can be several replayers, each with its own replay publication, see
+ * {@link uk.co.real_logic.artio.engine.EngineConfiguration#replayerCount(int)}. Each session's resend requests are
+ * always served by the same replayer, so its replayed messages are never reordered.
+ *
+ * Concurrent replays take turns, each sending up to a quantum of bytes per duty cycle, see
+ * {@link uk.co.real_logic.artio.engine.EngineConfiguration#replayQuantumBytes(int)}. The quantum is shared out of
+ * the space left in the replay publication, so replays slow down when the framer isn't draining them, and each
+ * replay can be paced to a maximum rate. The number of messages waiting to be replayed by each replayer is published
+ * as a counter, along with the sessions of the replays that have the most messages waiting, see
+ * {@link uk.co.real_logic.artio.engine.EngineConfiguration#replayBacklogTopSessions(int)}.
  */
 public class Replayer implements ProtocolHandler, Agent
 {
@@ -68,8 +82,10 @@ public class Replayer implements ProtocolHandler, Agent
     private final BufferClaim bufferClaim;
     private final ProtocolSubscription protocolSubscription = ProtocolSubscription.of(this);
     private final ArrayList<ReplayerSession> replayerSessions = new ArrayList<>();
+    private final ArrayList<ReplayerSession> freeReplayerSessions = new ArrayList<>();
 
     private final ReplayQuery replayQuery;
+    private final ResendCache resendCache;
     private final ExclusivePublication publication;
     private final IdleStrategy idleStrategy;
     private final ErrorHandler errorHandler;
@@ -80,6 +96,15 @@ public class Replayer implements ProtocolHandler, Agent
     private final EpochClock clock;
     private final ReplayHandler replayHandler;
     private final SenderSequenceNumbers senderSequenceNumbers;
+    private final int replayerIndex;
+    private final int replayerCount;
+    private final AtomicCounter queueDepth;
+    private final int replayQuantumBytes;
+    private final int replayMaxBytesPerSecond;
+    private final AtomicCounter replayBacklog;
+    private final AtomicCounter[] topReplayBacklogSessionIds;
+    private final AtomicCounter[] topReplayBacklogMessages;
+    private int publishedTopReplayBacklogs;
 
     public Replayer(
         final ReplayQuery replayQuery,
@@ -93,9 +118,18 @@ public class Replayer implements ProtocolHandler, Agent
         final EpochClock clock,
         final Set<String> gapfillOnReplayMessageTypes,
         final ReplayHandler replayHandler,
-        final SenderSequenceNumbers senderSequenceNumbers)
+        final SenderSequenceNumbers senderSequenceNumbers,
+        final ResendCache resendCache,
+        final int replayerIndex,
+        final int replayerCount,
+        final AtomicCounter queueDepth,
+        final int replayQuantumBytes,
+        final int replayMaxBytesPerSecond,
+        final int replayBacklogTopSessions,
+        final FixCounters fixCounters)
     {
         this.replayQuery = replayQuery;
+        this.resendCache = resendCache;
         this.publication = publication;
         this.bufferClaim = bufferClaim;
         this.idleStrategy = idleStrategy;
@@ -106,6 +140,21 @@ public class Replayer implements ProtocolHandler, Agent
         this.clock = clock;
         this.replayHandler = replayHandler;
         this.senderSequenceNumbers = senderSequenceNumbers;
+        this.replayerIndex = replayerIndex;
+        this.replayerCount = replayerCount;
+        this.queueDepth = queueDepth;
+        this.replayQuantumBytes = replayQuantumBytes;
+        this.replayMaxBytesPerSecond = replayMaxBytesPerSecond;
+
+        // Allocated up front so that a resend request never has to wait for the media driver to add a counter.
+        replayBacklog = fixCounters.replayBacklog(replayerIndex);
+        topReplayBacklogSessionIds = new AtomicCounter[replayBacklogTopSessions];
+        topReplayBacklogMessages = new AtomicCounter[replayBacklogTopSessions];
+        for (int rank = 0; rank < replayBacklogTopSessions; rank++)
+        {
+            topReplayBacklogSessionIds[rank] = fixCounters.replayBacklogTopSessionId(replayerIndex, rank + 1);
+            topReplayBacklogMessages[rank] = fixCounters.replayBacklogTopMessages(replayerIndex, rank + 1);
+        }
 
         gapFillMessageTypes = new IntHashSet();
         gapfillOnReplayMessageTypes.forEach(messageTypeAsString ->
@@ -126,7 +175,8 @@ public class Replayer implements ProtocolHandler, Agent
         final int sequenceNumber,
         final long position)
     {
-        if (messageType == ResendRequestDecoder.MESSAGE_TYPE && status == OK)
+        if (messageType == ResendRequestDecoder.MESSAGE_TYPE && status == OK &&
+            replayerIndex(sessionId, replayerCount) == replayerIndex)
         {
             final int limit = Math.min(length, srcBuffer.capacity() - srcOffset);
 
@@ -139,41 +189,35 @@ public class Replayer implements ProtocolHandler, Agent
 
             final int endSeqNo = resendRequest.endSeqNo();
             final boolean replayUpToMostRecent = endSeqNo == MOST_RECENT_MESSAGE;
-            final String message = asciiBuffer.getAscii(srcOffset, limit);
             // Validate endSeqNo
             if (!replayUpToMostRecent && endSeqNo < beginSeqNo)
             {
                 errorHandler.onError(new IllegalStateException(String.format(
                     "[%s] Error in resend request, endSeqNo (%d) < beginSeqNo (%d)",
-                    message,
+                    asciiBuffer.getAscii(srcOffset, limit),
                     endSeqNo,
                     beginSeqNo)));
                 return CONTINUE;
             }
 
-            final ReplayerSession replayerSession = new ReplayerSession(
-                bufferClaim,
-                idleStrategy,
-                replayHandler,
-                maxClaimAttempts,
-                gapFillMessageTypes,
-                senderSequenceNumbers,
-                publication,
-                clock,
+            final ReplayerSession replayerSession = newReplayerSession();
+            replayerSession.init(
                 beginSeqNo,
                 endSeqNo,
                 replayUpToMostRecent,
                 connectionId,
                 sessionId,
                 sequenceIndex,
-                replayQuery,
-                message,
-                errorHandler,
-                resendRequest.header());
+                srcBuffer,
+                srcOffset,
+                limit,
+                resendRequest.header(),
+                clock.time());
 
             replayerSession.query();
 
             replayerSessions.add(replayerSession);
+            queueDepth.setOrdered(replayerSessions.size());
 
             return COMMIT;
         }
@@ -190,6 +234,7 @@ public class Replayer implements ProtocolHandler, Agent
     {
         int work = senderSequenceNumbers.poll();
         work += pollReplayerSessions();
+        publishTopReplayBacklogs();
         return work + subscription.controlledPoll(protocolSubscription, POLL_LIMIT);
     }
 
@@ -197,18 +242,115 @@ public class Replayer implements ProtocolHandler, Agent
     {
         final ArrayList<ReplayerSession> replayerSessions = this.replayerSessions;
         final int size = replayerSessions.size();
+        if (size == 0)
+        {
+            return 0;
+        }
 
+        final long quantumBytes = quantumBytes(size);
+        final long timeInMs = clock.time();
         for (int lastIndex = size - 1, i = lastIndex; i >= 0; i--)
         {
             final ReplayerSession replayerSession = replayerSessions.get(i);
-            if (replayerSession.attempReplay())
+            if (replayerSession.attempReplay(quantumBytes, timeInMs))
             {
                 fastUnorderedRemove(replayerSessions, i, lastIndex--);
+                replayerSession.close();
+                freeReplayerSessions.add(replayerSession);
             }
         }
+
+        if (replayerSessions.size() != size)
+        {
+            queueDepth.setOrdered(replayerSessions.size());
+        }
+
         return size;
     }
 
+    // Selects the largest backlogs one rank at a time, as there are only a few ranks and this doesn't allocate.
+    // Replays are ordered by backlog and then by index, so that ties are each published once.
+    private void publishTopReplayBacklogs()
+    {
+        final ArrayList<ReplayerSession> replayerSessions = this.replayerSessions;
+        final int size = replayerSessions.size();
+        if (size == 0 && publishedTopReplayBacklogs == 0)
+        {
+            return;
+        }
+
+        final AtomicCounter[] topReplayBacklogSessionIds = this.topReplayBacklogSessionIds;
+        final AtomicCounter[] topReplayBacklogMessages = this.topReplayBacklogMessages;
+        int previousBacklog = Integer.MAX_VALUE;
+        int previousIndex = -1;
+        int rank = 0;
+        for (; rank < topReplayBacklogSessionIds.length; rank++)
+        {
+            int topIndex = -1;
+            int topBacklog = 0;
+            for (int i = 0; i < size; i++)
+            {
+                final int backlog = replayerSessions.get(i).backlogMessages();
+                final boolean afterPrevious =
+                    backlog < previousBacklog || (backlog == previousBacklog && i > previousIndex);
+                if (afterPrevious && backlog > topBacklog)
+                {
+                    topIndex = i;
+                    topBacklog = backlog;
+                }
+            }
+
+            if (topIndex == -1)
+            {
+                break;
+            }
+
+            topReplayBacklogSessionIds[rank].setOrdered(replayerSessions.get(topIndex).sessionId());
+            topReplayBacklogMessages[rank].setOrdered(topBacklog);
+            previousBacklog = topBacklog;
+            previousIndex = topIndex;
+        }
+
+        for (int i = rank; i < publishedTopReplayBacklogs; i++)
+        {
+            topReplayBacklogSessionIds[i].setOrdered(0);
+            topReplayBacklogMessages[i].setOrdered(0);
+        }
+        publishedTopReplayBacklogs = rank;
+    }
+
+    // Share out the space left in the replay publication, which is only used up when the framer falls behind.
+    private long quantumBytes(final int replayCount)
+    {
+        final long availableBytes = publication.positionLimit() - publication.position();
+        return Math.max(0, Math.min(replayQuantumBytes, availableBytes / replayCount));
+    }
+
+    private ReplayerSession newReplayerSession()
+    {
+        final ArrayList<ReplayerSession> freeReplayerSessions = this.freeReplayerSessions;
+        if (!freeReplayerSessions.isEmpty())
+        {
+            return freeReplayerSessions.remove(freeReplayerSessions.size() - 1);
+        }
+
+        return new ReplayerSession(
+            bufferClaim,
+            idleStrategy,
+            replayHandler,
+            maxClaimAttempts,
+            gapFillMessageTypes,
+            senderSequenceNumbers,
+            publication,
+            clock,
+            replayQuery,
+            resendCache,
+            errorHandler,
+            replayQuantumBytes,
+            replayMaxBytesPerSecond,
+            replayBacklog);
+    }
+
     public void onClose()
     {
         publication.close();
@@ -217,6 +359,18 @@ public class Replayer implements ProtocolHandler, Agent
 
     public String roleName()
     {
-        return agentNamePrefix + "Replayer";
+        return replayerCount == 1 ? agentNamePrefix + "Replayer" : agentNamePrefix + "Replayer" + replayerIndex;
+    }
+
+    /**
+     * Find the replayer that serves the resend requests of a session.
+     *
+     * @param sessionId the id of the session.
+     * @param replayerCount the number of replayers.
+     * @return the index of the replayer that serves the session.
+     */
+    public static int replayerIndex(final long sessionId, final int replayerCount)
+    {
+        return (Long.hashCode(sessionId) & Integer.MAX_VALUE) % replayerCount;
     }
 }
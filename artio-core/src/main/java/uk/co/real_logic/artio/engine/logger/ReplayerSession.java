@@ -21,10 +21,12 @@ import io.aeron.logbuffer.BufferClaim;
 import io.aeron.logbuffer.Header;
 import org.agrona.DirectBuffer;
 import org.agrona.ErrorHandler;
+import org.agrona.ExpandableArrayBuffer;
 import org.agrona.MutableDirectBuffer;
 import org.agrona.collections.IntHashSet;
 import org.agrona.concurrent.EpochClock;
 import org.agrona.concurrent.IdleStrategy;
+import org.agrona.concurrent.status.AtomicCounter;
 import uk.co.real_logic.artio.Pressure;
 import uk.co.real_logic.artio.builder.Encoder;
 import uk.co.real_logic.artio.decoder.HeaderDecoder;
@@ -36,11 +38,14 @@ import uk.co.real_logic.artio.messages.*;
 import uk.co.real_logic.artio.util.AsciiBuffer;
 import uk.co.real_logic.artio.util.MutableAsciiBuffer;
 
+import java.util.List;
+
 import static io.aeron.logbuffer.ControlledFragmentHandler.Action.ABORT;
 import static io.aeron.logbuffer.ControlledFragmentHandler.Action.CONTINUE;
 import static uk.co.real_logic.artio.engine.FixEngine.ENGINE_LIBRARY_ID;
 import static uk.co.real_logic.artio.engine.logger.Replayer.MESSAGE_FRAME_BLOCK_LENGTH;
 
+// Pooled by the Replayer, so initialised for each resend request rather than constructed.
 class ReplayerSession implements ControlledFragmentHandler
 {
     private static final int NONE = -1;
@@ -62,10 +67,10 @@ class ReplayerSession implements ControlledFragmentHandler
     private static final ReplayCompleteEncoder REPLAY_COMPLETE_ENCODER = new ReplayCompleteEncoder();
 
     private final GapFillEncoder gapFillEncoder = new GapFillEncoder();
+    private final ExpandableArrayBuffer messageBuffer = new ExpandableArrayBuffer();
 
     private final BufferClaim bufferClaim;
     private final PossDupEnabler possDupEnabler;
-    private final String message;
     private final IdleStrategy idleStrategy;
     private final ReplayHandler replayHandler;
     private final int maxClaimAttempts;
@@ -73,7 +78,10 @@ class ReplayerSession implements ControlledFragmentHandler
     private final SenderSequenceNumbers senderSequenceNumbers;
     private final ExclusivePublication publication;
     private final ReplayQuery replayQuery;
+    private final ResendCache resendCache;
     private final ErrorHandler errorHandler;
+    private final int quantumBytes;
+    private final int maxBytesPerSecond;
 
     private int beginSeqNo;
     private int endSeqNo;
@@ -82,11 +90,25 @@ class ReplayerSession implements ControlledFragmentHandler
     private long sessionId;
     private int sequenceIndex;
     private int lastSeqNo;
+    private int messageLength;
 
     private int beginGapFillSeqNum = NONE;
 
     private ReplayOperation replayOperation;
 
+    private int cacheReplaySeqNo = NONE;
+    private int cacheEndSeqNo;
+    private int cacheReplayedMessages;
+
+    // Shared between the replays of a replayer
+    private final AtomicCounter replayBacklog;
+    private int backlogMessages;
+
+    // Bytes that can still be sent in the current quantum, and within the pacing limit
+    private long quantumBytesRemaining;
+    private long pacingBytesRemaining;
+    private long lastPacingTimeInMs;
+
     private State state;
 
     ReplayerSession(
@@ -96,16 +118,14 @@ class ReplayerSession implements ControlledFragmentHandler
         final int maxClaimAttempts,
         final IntHashSet gapFillMessageTypes,
         final SenderSequenceNumbers senderSequenceNumbers,
-        final ExclusivePublication publication, final EpochClock clock, final int beginSeqNo,
-        final int endSeqNo,
-        final boolean upToMostRecent,
-        final long connectionId,
-        final long sessionId,
-        final int sequenceIndex,
+        final ExclusivePublication publication,
+        final EpochClock clock,
         final ReplayQuery replayQuery,
-        final String message,
+        final ResendCache resendCache,
         final ErrorHandler errorHandler,
-        final HeaderDecoder requestHeader)
+        final int quantumBytes,
+        final int maxBytesPerSecond,
+        final AtomicCounter replayBacklog)
     {
         this.bufferClaim = bufferClaim;
         this.idleStrategy = idleStrategy;
@@ -114,19 +134,12 @@ class ReplayerSession implements ControlledFragmentHandler
         this.gapFillMessageTypes = gapFillMessageTypes;
         this.senderSequenceNumbers = senderSequenceNumbers;
         this.publication = publication;
-        this.beginSeqNo = beginSeqNo;
-        this.endSeqNo = endSeqNo;
-        this.upToMostRecent = upToMostRecent;
-        this.connectionId = connectionId;
-        this.sessionId = sessionId;
-        this.sequenceIndex = sequenceIndex;
-        this.message = message;
         this.errorHandler = errorHandler;
         this.replayQuery = replayQuery;
-
-        lastSeqNo = beginSeqNo - 1;
-
-        gapFillEncoder.setupMessage(requestHeader);
+        this.resendCache = resendCache;
+        this.quantumBytes = quantumBytes;
+        this.maxBytesPerSecond = maxBytesPerSecond;
+        this.replayBacklog = replayBacklog;
 
         possDupEnabler = new PossDupEnabler(
             bufferClaim,
@@ -136,10 +149,75 @@ class ReplayerSession implements ControlledFragmentHandler
             this::onException,
             clock,
             publication.maxPayloadLength());
+    }
+
+    void init(
+        final int beginSeqNo,
+        final int endSeqNo,
+        final boolean upToMostRecent,
+        final long connectionId,
+        final long sessionId,
+        final int sequenceIndex,
+        final DirectBuffer messageBuffer,
+        final int messageOffset,
+        final int messageLength,
+        final HeaderDecoder requestHeader,
+        final long timeInMs)
+    {
+        this.beginSeqNo = beginSeqNo;
+        this.endSeqNo = endSeqNo;
+        this.upToMostRecent = upToMostRecent;
+        this.connectionId = connectionId;
+        this.sessionId = sessionId;
+        this.sequenceIndex = sequenceIndex;
+
+        // Only turned into a String if there's an error to report
+        this.messageBuffer.putBytes(0, messageBuffer, messageOffset, messageLength);
+        this.messageLength = messageLength;
+
+        lastSeqNo = beginSeqNo - 1;
+        beginGapFillSeqNum = NONE;
+        replayOperation = null;
+        cacheReplaySeqNo = NONE;
+        cacheEndSeqNo = 0;
+        cacheReplayedMessages = 0;
+
+        backlogMessages = 0;
+        quantumBytesRemaining = quantumBytes;
+        pacingBytesRemaining = maxBytesPerSecond;
+        lastPacingTimeInMs = timeInMs;
+
+        gapFillEncoder.setupMessage(requestHeader);
 
         state = State.REPLAYING;
     }
 
+    void close()
+    {
+        backlogMessages(0);
+
+        if (replayOperation != null)
+        {
+            replayQuery.release(replayOperation);
+            replayOperation = null;
+        }
+    }
+
+    long sessionId()
+    {
+        return sessionId;
+    }
+
+    int backlogMessages()
+    {
+        return backlogMessages;
+    }
+
+    private String message()
+    {
+        return messageBuffer.getStringWithoutLengthAscii(0, messageLength);
+    }
+
     private void onPreCommit(final MutableDirectBuffer buffer, final int offset)
     {
         final int frameOffset = offset + MessageHeaderEncoder.ENCODED_LENGTH;
@@ -150,7 +228,7 @@ class ReplayerSession implements ControlledFragmentHandler
 
     private void onException(final Throwable e)
     {
-        final String exMessage = String.format("[%s] Error replying to message", message);
+        final String exMessage = String.format("[%s] Error replying to message", message());
         errorHandler.onError(new IllegalArgumentException(exMessage, e));
     }
 
@@ -160,6 +238,22 @@ class ReplayerSession implements ControlledFragmentHandler
     }
 
     void query()
+    {
+        if (resendCache != null)
+        {
+            cacheEndSeqNo = resendCache.lookup(sessionId, sequenceIndex, beginSeqNo, endSeqNo);
+            if (cacheEndSeqNo != ResendCache.NOT_CACHED)
+            {
+                cacheReplaySeqNo = beginSeqNo;
+                backlogMessages(cacheEndSeqNo - beginSeqNo + 1);
+                return;
+            }
+        }
+
+        queryArchive(beginSeqNo, endSeqNo);
+    }
+
+    private void queryArchive(final int beginSeqNo, final int endSeqNo)
     {
         replayOperation = replayQuery.query(
             this,
@@ -168,12 +262,38 @@ class ReplayerSession implements ControlledFragmentHandler
             sequenceIndex,
             endSeqNo,
             sequenceIndex);
+
+        if (replayOperation != null)
+        {
+            final List<RecordingRange> ranges = replayOperation.ranges();
+            int messages = 0;
+            for (int i = 0, size = ranges.size(); i < size; i++)
+            {
+                messages += ranges.get(i).count;
+            }
+            backlogMessages(messages);
+        }
     }
 
-    // Callback for the ReplayQuery:
+    private void backlogMessages(final int backlogMessages)
+    {
+        if (backlogMessages != this.backlogMessages)
+        {
+            replayBacklog.getAndAddOrdered(backlogMessages - this.backlogMessages);
+            this.backlogMessages = backlogMessages;
+        }
+    }
+
+    // Callback for the ReplayQuery and ResendCache:
     public Action onFragment(
         final DirectBuffer srcBuffer, final int srcOffset, final int srcLength, final Header header)
     {
+        // Used up this replay's turn, resumes from this message on the next one
+        if (quantumBytesRemaining <= 0)
+        {
+            return ABORT;
+        }
+
         MESSAGE_HEADER.wrap(srcBuffer, srcOffset);
         final int actingBlockLength = MESSAGE_HEADER.blockLength();
         final int offset = srcOffset + MessageHeaderDecoder.ENCODED_LENGTH;
@@ -210,6 +330,7 @@ class ReplayerSession implements ControlledFragmentHandler
             }
 
             lastSeqNo = msgSeqNum;
+            backlogMessages(backlogMessages - 1);
             return CONTINUE;
         }
         else
@@ -228,6 +349,9 @@ class ReplayerSession implements ControlledFragmentHandler
             if (action != ABORT)
             {
                 lastSeqNo = msgSeqNum;
+                backlogMessages(backlogMessages - 1);
+                quantumBytesRemaining -= srcLength;
+                pacingBytesRemaining -= srcLength;
             }
 
             return action;
@@ -254,6 +378,7 @@ class ReplayerSession implements ControlledFragmentHandler
                 .connection(this.connectionId)
                 .timestamp(0)
                 .status(MessageStatus.OK)
+                .tagOffsetCount((short)0)
                 .putBody(gapFillEncoder.buffer(), gapFillOffset, gapFillLength);
 
             bufferClaim.commit();
@@ -291,12 +416,30 @@ class ReplayerSession implements ControlledFragmentHandler
         return false;
     }
 
-    boolean attempReplay()
+    boolean attempReplay(final long quantumBytes, final long timeInMs)
+    {
+        quantumBytesRemaining = quantumBytes;
+        if (maxBytesPerSecond > 0)
+        {
+            // Only moves the time on when it adds bytes, so that frequent attempts don't round the rate down to 0.
+            final long pacedBytes = (timeInMs - lastPacingTimeInMs) * maxBytesPerSecond / 1000;
+            if (pacedBytes > 0)
+            {
+                pacingBytesRemaining = Math.min(maxBytesPerSecond, pacingBytesRemaining + pacedBytes);
+                lastPacingTimeInMs = timeInMs;
+            }
+            quantumBytesRemaining = Math.min(quantumBytesRemaining, pacingBytesRemaining);
+        }
+
+        return attempReplay();
+    }
+
+    private boolean attempReplay()
     {
         switch (state)
         {
             case REPLAYING:
-                if (replayOperation.attemptReplay())
+                if (replayOperation != null ? replayOperation.attemptReplay() : attemptCacheReplay())
                 {
                     state = State.CHECK_REPLAY;
                     return attempReplay();
@@ -318,10 +461,26 @@ class ReplayerSession implements ControlledFragmentHandler
         }
     }
 
+    private boolean attemptCacheReplay()
+    {
+        final int replayed = resendCache.replay(this, sessionId, sequenceIndex, cacheReplaySeqNo, cacheEndSeqNo);
+        if (replayed == ResendCache.NOT_CACHED)
+        {
+            // Evicted whilst we were back-pressured, so the rest of the range has to come from the archive.
+            queryArchive(cacheReplaySeqNo, cacheEndSeqNo);
+            return false;
+        }
+
+        cacheReplaySeqNo += replayed;
+        cacheReplayedMessages += replayed;
+        return cacheReplaySeqNo > cacheEndSeqNo;
+    }
+
     private boolean completeReplay()
     {
         // Load state needed to complete the replay
-        final int replayedMessages = replayOperation.replayedMessages();
+        final int replayedMessages = cacheReplayedMessages +
+            (replayOperation != null ? replayOperation.replayedMessages() : 0);
 
         // If the last N messages were admin messages then we need to send a gapfill
         // after the replay query has run.
@@ -352,7 +511,7 @@ class ReplayerSession implements ControlledFragmentHandler
 
                     onIllegalState(
                         "[%s] Error in resend request, count(%d) < expectedCount (%d)",
-                        message, replayedMessages, expectedCount);
+                        message(), replayedMessages, expectedCount);
                 }
             }
         }
@@ -0,0 +1,291 @@
+/*
+ * Copyright 2015-2019 Real Logic Ltd, Adaptive Financial Consulting Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio.engine.logger;
+
+import io.aeron.logbuffer.ControlledFragmentHandler;
+import io.aeron.logbuffer.Header;
+import org.agrona.DirectBuffer;
+import org.agrona.collections.Long2ObjectHashMap;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.agrona.concurrent.status.AtomicCounter;
+import uk.co.real_logic.artio.decoder.HeaderDecoder;
+import uk.co.real_logic.artio.messages.FixMessageDecoder;
+import uk.co.real_logic.artio.messages.MessageHeaderDecoder;
+import uk.co.real_logic.artio.util.AsciiBuffer;
+import uk.co.real_logic.artio.util.MutableAsciiBuffer;
+
+import java.nio.ByteBuffer;
+import java.util.function.LongFunction;
+
+import static io.aeron.logbuffer.ControlledFragmentHandler.Action.ABORT;
+import static io.aeron.logbuffer.FrameDescriptor.BEGIN_FRAG_FLAG;
+import static io.aeron.logbuffer.FrameDescriptor.END_FRAG_FLAG;
+import static uk.co.real_logic.artio.engine.logger.Replayer.MOST_RECENT_MESSAGE;
+import static uk.co.real_logic.artio.messages.MessageStatus.OK;
+
+/**
+ * Caches the most recently sent messages of each session in memory so that the {@link Replayer} can serve
+ * resend requests for them without querying the archive.
+ *
+ * Each session's messages are copied into an off-heap buffer of a fixed size, allocated when the session first
+ * sends a message, and the oldest messages are evicted when either the buffer or the maximum number of messages
+ * is full. A session's cache only ever holds a contiguous range of sequence numbers within one sequence index:
+ * anything that would leave a gap, such as a fragmented message or a sequence reset, clears it.
+ *
+ * Indexes the outbound stream on the archiving agent and is queried by the replayer, which runs on the same thread.
+ */
+public class ResendCache implements Index
+{
+    static final int NOT_CACHED = -1;
+
+    private final MessageHeaderDecoder messageHeader = new MessageHeaderDecoder();
+    private final FixMessageDecoder messageFrame = new FixMessageDecoder();
+    private final HeaderDecoder fixHeader = new HeaderDecoder();
+    private final AsciiBuffer asciiBuffer = new MutableAsciiBuffer();
+    private final Long2ObjectHashMap<SessionCache> sessionIdToCache = new Long2ObjectHashMap<>();
+    private final LongFunction<SessionCache> newSessionCache = sessionId -> new SessionCache();
+
+    private final int requiredStreamId;
+    private final int maxMessages;
+    private final int maxBytes;
+    private final AtomicCounter hits;
+    private final AtomicCounter misses;
+
+    public ResendCache(
+        final int requiredStreamId,
+        final int maxMessages,
+        final int maxBytes,
+        final AtomicCounter hits,
+        final AtomicCounter misses)
+    {
+        this.requiredStreamId = requiredStreamId;
+        this.maxMessages = maxMessages;
+        this.maxBytes = maxBytes;
+        this.hits = hits;
+        this.misses = misses;
+    }
+
+    public void onFragment(final DirectBuffer buffer, final int offset, final int length, final Header header)
+    {
+        final byte flags = header.flags();
+        if (header.streamId() != requiredStreamId || (flags & BEGIN_FRAG_FLAG) != BEGIN_FRAG_FLAG)
+        {
+            return;
+        }
+
+        messageHeader.wrap(buffer, offset);
+        if (messageHeader.templateId() != FixMessageDecoder.TEMPLATE_ID)
+        {
+            return;
+        }
+
+        final int frameOffset = offset + MessageHeaderDecoder.ENCODED_LENGTH;
+        final int blockLength = messageHeader.blockLength();
+        messageFrame.wrap(buffer, frameOffset, blockLength, messageHeader.version());
+        if (messageFrame.status() != OK)
+        {
+            return;
+        }
+
+        final SessionCache cache = sessionIdToCache.computeIfAbsent(messageFrame.session(), newSessionCache);
+        if ((flags & END_FRAG_FLAG) != END_FRAG_FLAG || length > maxBytes)
+        {
+            cache.clear();
+            return;
+        }
+
+        final int sequenceIndex = messageFrame.sequenceIndex();
+        final int bodyOffset = frameOffset + blockLength + FixMessageDecoder.bodyHeaderLength();
+        final int bodyLength = messageFrame.bodyLength();
+
+        asciiBuffer.wrap(buffer);
+        fixHeader.decode(asciiBuffer, bodyOffset, bodyLength);
+
+        cache.add(sequenceIndex, fixHeader.msgSeqNum(), buffer, offset, length);
+    }
+
+    /**
+     * Looks up whether a range of a session's messages is entirely cached, counting a hit or a miss.
+     *
+     * @param sessionId the session whose messages are being resent.
+     * @param sequenceIndex the sequence index of the messages.
+     * @param beginSeqNo the first sequence number of the range.
+     * @param endSeqNo the last sequence number of the range, or {@link Replayer#MOST_RECENT_MESSAGE}.
+     * @return the last sequence number of the range, or {@link #NOT_CACHED} if it isn't entirely cached.
+     */
+    public int lookup(final long sessionId, final int sequenceIndex, final int beginSeqNo, final int endSeqNo)
+    {
+        final SessionCache cache = sessionIdToCache.get(sessionId);
+        if (cache != null)
+        {
+            final int lastSeqNo = endSeqNo == MOST_RECENT_MESSAGE ? cache.lastSeqNo() : endSeqNo;
+            if (cache.contains(sequenceIndex, beginSeqNo, lastSeqNo))
+            {
+                hits.increment();
+                return lastSeqNo;
+            }
+        }
+
+        misses.increment();
+        return NOT_CACHED;
+    }
+
+    /**
+     * Replays a range of a session's cached messages, in order, to a handler. Stops early if the handler aborts a
+     * message, in which case the replay can be resumed from that message. The handler is passed a null header.
+     *
+     * @param handler the handler that the messages are passed to.
+     * @param sessionId the session whose messages are being resent.
+     * @param sequenceIndex the sequence index of the messages.
+     * @param beginSeqNo the first sequence number of the range.
+     * @param endSeqNo the last sequence number of the range.
+     * @return the number of messages replayed, or {@link #NOT_CACHED} if the range is no longer entirely cached.
+     */
+    public int replay(
+        final ControlledFragmentHandler handler,
+        final long sessionId,
+        final int sequenceIndex,
+        final int beginSeqNo,
+        final int endSeqNo)
+    {
+        final SessionCache cache = sessionIdToCache.get(sessionId);
+        if (cache == null || !cache.contains(sequenceIndex, beginSeqNo, endSeqNo))
+        {
+            return NOT_CACHED;
+        }
+
+        return cache.replay(handler, beginSeqNo, endSeqNo);
+    }
+
+    public void close()
+    {
+        sessionIdToCache.clear();
+    }
+
+    public void readLastPosition(final IndexedPositionConsumer consumer)
+    {
+        // Nothing is persisted, so there's no position to catch up from.
+    }
+
+    // Messages are stored at increasing logical positions, wrapping around the buffer. A message that doesn't fit
+    // before the end of the buffer is stored from its start instead.
+    private final class SessionCache
+    {
+        private final long[] positions = new long[maxMessages];
+        private final int[] lengths = new int[maxMessages];
+
+        private UnsafeBuffer buffer;
+        private long tailPosition;
+        private int firstSlot;
+        private int count;
+        private int firstSeqNo;
+        private int sequenceIndex;
+
+        void add(
+            final int sequenceIndex,
+            final int seqNo,
+            final DirectBuffer srcBuffer,
+            final int srcOffset,
+            final int length)
+        {
+            if (count > 0 && (sequenceIndex != this.sequenceIndex || seqNo != lastSeqNo() + 1))
+            {
+                clear();
+            }
+
+            if (count == 0)
+            {
+                this.sequenceIndex = sequenceIndex;
+                firstSeqNo = seqNo;
+            }
+
+            if (buffer == null)
+            {
+                buffer = new UnsafeBuffer(ByteBuffer.allocateDirect(maxBytes));
+            }
+
+            long position = tailPosition;
+            final int bufferOffset = bufferOffset(position);
+            if (bufferOffset + length > maxBytes)
+            {
+                position += maxBytes - bufferOffset;
+            }
+
+            while (count > 0 && (count == maxMessages || position + length - positions[firstSlot] > maxBytes))
+            {
+                firstSlot = nextSlot(firstSlot);
+                firstSeqNo++;
+                count--;
+            }
+
+            final int slot = slot(count);
+            positions[slot] = position;
+            lengths[slot] = length;
+            buffer.putBytes(bufferOffset(position), srcBuffer, srcOffset, length);
+            tailPosition = position + length;
+            count++;
+        }
+
+        boolean contains(final int sequenceIndex, final int beginSeqNo, final int endSeqNo)
+        {
+            return count > 0 && sequenceIndex == this.sequenceIndex &&
+                beginSeqNo >= firstSeqNo && beginSeqNo <= endSeqNo && endSeqNo <= lastSeqNo();
+        }
+
+        int replay(final ControlledFragmentHandler handler, final int beginSeqNo, final int endSeqNo)
+        {
+            int replayed = 0;
+            for (int seqNo = beginSeqNo; seqNo <= endSeqNo; seqNo++)
+            {
+                final int slot = slot(seqNo - firstSeqNo);
+                if (handler.onFragment(buffer, bufferOffset(positions[slot]), lengths[slot], null) == ABORT)
+                {
+                    break;
+                }
+                replayed++;
+            }
+
+            return replayed;
+        }
+
+        int lastSeqNo()
+        {
+            return firstSeqNo + count - 1;
+        }
+
+        void clear()
+        {
+            count = 0;
+            firstSlot = 0;
+        }
+
+        private int bufferOffset(final long position)
+        {
+            return (int)(position % maxBytes);
+        }
+
+        private int slot(final int index)
+        {
+            final int slot = firstSlot + index;
+            return slot < maxMessages ? slot : slot - maxMessages;
+        }
+
+        private int nextSlot(final int slot)
+        {
+            return slot + 1 == maxMessages ? 0 : slot + 1;
+        }
+    }
+}
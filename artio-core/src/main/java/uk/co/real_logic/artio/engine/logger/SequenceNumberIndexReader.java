@@ -16,6 +16,7 @@
 package uk.co.real_logic.artio.engine.logger;
 
 import org.agrona.ErrorHandler;
+import org.agrona.collections.Long2LongHashMap;
 import org.agrona.concurrent.AtomicBuffer;
 import uk.co.real_logic.artio.engine.SectorFramer;
 import uk.co.real_logic.artio.messages.MessageHeaderDecoder;
@@ -28,14 +29,27 @@ import static uk.co.real_logic.artio.engine.logger.SequenceNumberIndexDescriptor
 import static uk.co.real_logic.artio.storage.messages.LastKnownSequenceNumberEncoder.BLOCK_LENGTH;
 import static uk.co.real_logic.artio.storage.messages.LastKnownSequenceNumberEncoder.SCHEMA_VERSION;
 
+/**
+ * Reads the last known sequence number of sessions from the index of a {@link SequenceNumberIndexWriter}.
+ *
+ * Records are appended by the writer and only move when the index is reset, so the reader caches the offset of each
+ * session's record and only scans records that have been appended since its last scan. The writer increments the
+ * reset epoch in the header of the index whenever it resets the index, in which case the reader starts over.
+ */
 public class SequenceNumberIndexReader
 {
+    private static final long MISSING_RECORD = -1L;
+
     private final MessageHeaderDecoder fileHeaderDecoder = new MessageHeaderDecoder();
     private final LastKnownSequenceNumberDecoder lastKnownDecoder = new LastKnownSequenceNumberDecoder();
     private final AtomicBuffer inMemoryBuffer;
     private final SectorFramer sectorFramer;
     private final IndexedPositionReader positions;
     private final ErrorHandler errorHandler;
+    private final Long2LongHashMap recordOffsets = new Long2LongHashMap(MISSING_RECORD);
+
+    private int scannedPosition = HEADER_SIZE;
+    private long resetEpoch;
 
     public SequenceNumberIndexReader(final AtomicBuffer inMemoryBuffer, final ErrorHandler errorHandler)
     {
@@ -49,7 +63,27 @@ public class SequenceNumberIndexReader
 
     public int lastKnownSequenceNumber(final long sessionId)
     {
-        int position = SequenceNumberIndexDescriptor.HEADER_SIZE;
+        final long resetEpoch = inMemoryBuffer.getLongVolatile(RESET_EPOCH_OFFSET);
+        if (resetEpoch != this.resetEpoch)
+        {
+            this.resetEpoch = resetEpoch;
+            recordOffsets.clear();
+            scannedPosition = HEADER_SIZE;
+        }
+
+        final int recordOffset = (int)recordOffsets.get(sessionId);
+        if (recordOffset != MISSING_RECORD)
+        {
+            lastKnownDecoder.wrap(inMemoryBuffer, recordOffset, BLOCK_LENGTH, SCHEMA_VERSION);
+            return lastKnownDecoder.sequenceNumber();
+        }
+
+        return scanNewRecords(sessionId);
+    }
+
+    private int scanNewRecords(final long sessionId)
+    {
+        int position = scannedPosition;
         while (true)
         {
             position = sectorFramer.claim(position, RECORD_SIZE);
@@ -60,12 +94,21 @@ public class SequenceNumberIndexReader
 
             lastKnownDecoder.wrap(inMemoryBuffer, position, BLOCK_LENGTH, SCHEMA_VERSION);
 
-            if (lastKnownDecoder.sessionId() == sessionId)
+            final long recordSessionId = lastKnownDecoder.sessionId();
+            if (recordSessionId == 0)
             {
-                return lastKnownDecoder.sequenceNumber();
+                scannedPosition = position;
+                return UNK_SESSION;
             }
 
+            recordOffsets.put(recordSessionId, position);
             position += RECORD_SIZE;
+
+            if (recordSessionId == sessionId)
+            {
+                scannedPosition = position;
+                return lastKnownDecoder.sequenceNumber();
+            }
         }
     }
 
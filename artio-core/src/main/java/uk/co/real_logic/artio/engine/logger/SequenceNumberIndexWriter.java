@@ -15,6 +15,7 @@
  */
 package uk.co.real_logic.artio.engine.logger;
 
+import io.aeron.logbuffer.FragmentHandler;
 import io.aeron.logbuffer.Header;
 import io.aeron.protocol.DataHeaderFlyweight;
 import org.agrona.CloseHelper;
@@ -23,16 +24,21 @@ import org.agrona.ErrorHandler;
 import org.agrona.collections.Long2LongHashMap;
 import org.agrona.concurrent.AtomicBuffer;
 import org.agrona.concurrent.EpochClock;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.agrona.concurrent.status.AtomicCounter;
 import uk.co.real_logic.artio.decoder.HeaderDecoder;
 import uk.co.real_logic.artio.engine.ChecksumFramer;
 import uk.co.real_logic.artio.engine.MappedFile;
 import uk.co.real_logic.artio.messages.*;
+import uk.co.real_logic.artio.protocol.FixMessageBatchReader;
+import uk.co.real_logic.artio.protocol.TagOffsetIndex;
 import uk.co.real_logic.artio.storage.messages.LastKnownSequenceNumberDecoder;
 import uk.co.real_logic.artio.storage.messages.LastKnownSequenceNumberEncoder;
 import uk.co.real_logic.artio.util.AsciiBuffer;
 import uk.co.real_logic.artio.util.MutableAsciiBuffer;
 
 import java.io.File;
+import java.util.BitSet;
 
 import static io.aeron.protocol.DataHeaderFlyweight.BEGIN_FLAG;
 import static uk.co.real_logic.artio.engine.SectorFramer.*;
@@ -42,6 +48,9 @@ import static uk.co.real_logic.artio.storage.messages.LastKnownSequenceNumberEnc
 /**
  * Writes updates into an in-memory buffer. This buffer is then flushed down to disk. A passing place
  * file is used to ensure that there's a recoverable option if it fails.
+ *
+ * Flushing alternates between two files, so only the sectors that have changed since the file being written was
+ * last flushed, that is during the last two flush periods, are checksummed and written.
  */
 public class SequenceNumberIndexWriter implements Index
 {
@@ -55,6 +64,9 @@ public class SequenceNumberIndexWriter implements Index
     private final FixMessageDecoder messageFrame = new FixMessageDecoder();
     private final ResetSequenceNumberDecoder resetSequenceNumber = new ResetSequenceNumberDecoder();
     private final HeaderDecoder fixHeader = new HeaderDecoder();
+    private final TagOffsetIndex tagOffsetIndex = new TagOffsetIndex();
+    private final FixMessageBatchReader batchReader = new FixMessageBatchReader();
+    private final FragmentHandler onBatchedMessage = this::onBatchedMessage;
 
     private final AsciiBuffer asciiBuffer = new MutableAsciiBuffer();
     private final MessageHeaderDecoder fileHeaderDecoder = new MessageHeaderDecoder();
@@ -74,6 +86,13 @@ public class SequenceNumberIndexWriter implements Index
     private final int streamId;
     private final int indexedPositionsOffset;
     private final IndexedPositionWriter positions;
+    private final int sectorCount;
+    private final AtomicCounter bytesFlushed;
+    private final AtomicCounter lastFlushTimeInNs;
+
+    // Sectors changed since the last flush, and those changed in the period before that.
+    private BitSet dirtySectors;
+    private BitSet previouslyDirtySectors;
 
     private MappedFile writableFile;
     private MappedFile indexFile;
@@ -91,7 +110,9 @@ public class SequenceNumberIndexWriter implements Index
         final int streamId,
         final RecordingIdLookup recordingIdLookup,
         final long indexFileStateFlushTimeoutInMs,
-        final EpochClock clock)
+        final EpochClock clock,
+        final AtomicCounter bytesFlushed,
+        final AtomicCounter lastFlushTimeInNs)
     {
         this.inMemoryBuffer = inMemoryBuffer;
         this.indexFile = indexFile;
@@ -101,6 +122,15 @@ public class SequenceNumberIndexWriter implements Index
         this.recordingIdLookup = recordingIdLookup;
         this.indexFileStateFlushTimeoutInMs = indexFileStateFlushTimeoutInMs;
         this.clock = clock;
+        this.bytesFlushed = bytesFlushed;
+        this.lastFlushTimeInNs = lastFlushTimeInNs;
+
+        // Nothing is known about the contents of the writable file, so everything is written on the first flushes.
+        sectorCount = (fileCapacity + SECTOR_SIZE - 1) / SECTOR_SIZE;
+        dirtySectors = new BitSet(sectorCount);
+        previouslyDirtySectors = new BitSet(sectorCount);
+        dirtySectors.set(0, sectorCount);
+        previouslyDirtySectors.set(0, sectorCount);
 
         final String indexFilePath = indexFile.file().getAbsolutePath();
         indexPath = indexFile.file();
@@ -160,22 +190,16 @@ public class SequenceNumberIndexWriter implements Index
         {
             case FixMessageEncoder.TEMPLATE_ID:
             {
-                messageFrame.wrap(buffer, offset, actingBlockLength, version);
-
-                if (messageFrame.status() != MessageStatus.OK)
+                if (!onFixMessage(buffer, offset, actingBlockLength, version, srcOffset + length))
                 {
                     return;
                 }
+                break;
+            }
 
-                offset += actingBlockLength + 2;
-
-                asciiBuffer.wrap(buffer);
-                fixHeader.decode(asciiBuffer, offset, messageFrame.bodyLength());
-
-                final int msgSeqNum = fixHeader.msgSeqNum();
-                final long sessionId = messageFrame.session();
-
-                saveRecord(msgSeqNum, sessionId);
+            case FixMessageBatchDecoder.TEMPLATE_ID:
+            {
+                batchReader.forEachMessage(buffer, srcOffset, header, onBatchedMessage);
                 break;
             }
 
@@ -198,6 +222,57 @@ public class SequenceNumberIndexWriter implements Index
         positions.indexedUpTo(aeronSessionId, recordingId, endPosition);
     }
 
+    private void onBatchedMessage(
+        final DirectBuffer buffer, final int offset, final int length, final Header header)
+    {
+        messageHeader.wrap(buffer, offset);
+        onFixMessage(
+            buffer,
+            offset + messageHeader.encodedLength(),
+            messageHeader.blockLength(),
+            messageHeader.version(),
+            offset + length);
+    }
+
+    // returns false if the message isn't valid and doesn't need indexing
+    private boolean onFixMessage(
+        final DirectBuffer buffer,
+        final int messageOffset,
+        final int actingBlockLength,
+        final int version,
+        final int frameEnd)
+    {
+        messageFrame.wrap(buffer, messageOffset, actingBlockLength, version);
+
+        if (messageFrame.status() != MessageStatus.OK)
+        {
+            return false;
+        }
+
+        final int offset = messageOffset + actingBlockLength + 2;
+        final int bodyLength = messageFrame.bodyLength();
+
+        final AsciiBuffer asciiBuffer = this.asciiBuffer;
+        asciiBuffer.wrap(buffer);
+
+        int msgSeqNum = TagOffsetIndex.MISSING_TAG;
+        if (tagOffsetIndex.wrap(messageFrame.tagOffsetCount(), buffer, offset, bodyLength, frameEnd))
+        {
+            msgSeqNum = tagOffsetIndex.msgSeqNum(asciiBuffer);
+        }
+
+        if (msgSeqNum == TagOffsetIndex.MISSING_TAG)
+        {
+            fixHeader.decode(asciiBuffer, offset, bodyLength);
+            msgSeqNum = fixHeader.msgSeqNum();
+        }
+
+        final long sessionId = messageFrame.session();
+
+        saveRecord(msgSeqNum, sessionId);
+        return true;
+    }
+
     @Override
     public int doWork()
     {
@@ -216,8 +291,13 @@ public class SequenceNumberIndexWriter implements Index
 
     void resetSequenceNumbers()
     {
+        final long resetEpoch = inMemoryBuffer.getLong(RESET_EPOCH_OFFSET);
+        recordOffsets.clear();
         inMemoryBuffer.setMemory(0, indexedPositionsOffset, (byte)0);
         initialiseBlankBuffer();
+        // Readers cache the offsets of records, so they're told that the records have been cleared.
+        inMemoryBuffer.putLongOrdered(RESET_EPOCH_OFFSET, resetEpoch + 1);
+        dirtySectors.set(0, sectorCount);
     }
 
     private void checkTermRoll(final DirectBuffer buffer, final int offset, final long endPosition, final int length)
@@ -237,18 +317,56 @@ public class SequenceNumberIndexWriter implements Index
 
     private void updateFile()
     {
-        checksumFramer.updateChecksums();
-        positions.updateChecksums();
+        final long startTimeInNs = System.nanoTime();
+
+        updateChecksums();
         saveFile();
         flipFiles();
         hasSavedRecordSinceFileUpdate = false;
         lastUpdatedFileTimeInMs = clock.time();
+
+        lastFlushTimeInNs.setOrdered(System.nanoTime() - startTimeInNs);
+    }
+
+    private void updateChecksums()
+    {
+        final BitSet dirtySectors = this.dirtySectors;
+        final int positionsEnd = indexedPositionsOffset + positions.recordsEnd();
+        dirtySectors.set(indexedPositionsOffset / SECTOR_SIZE, (positionsEnd - 1) / SECTOR_SIZE + 1);
+
+        // The sectors dirty in the previous period already had their checksums updated.
+        for (int sector = dirtySectors.nextSetBit(0); sector >= 0; sector = dirtySectors.nextSetBit(sector + 1))
+        {
+            final int sectorStart = sector * SECTOR_SIZE;
+            if (sectorStart < indexedPositionsOffset)
+            {
+                checksumFramer.updateChecksums(sectorStart, sectorStart + SECTOR_SIZE);
+            }
+        }
+        positions.updateChecksums();
     }
 
     private void saveFile()
     {
-        writableFile.buffer().putBytes(0, inMemoryBuffer, 0, fileCapacity);
+        final BitSet sectorsToWrite = previouslyDirtySectors;
+        sectorsToWrite.or(dirtySectors);
+
+        final AtomicBuffer fileBuffer = writableFile.buffer();
+        long bytesWritten = 0;
+        for (int sector = sectorsToWrite.nextSetBit(0); sector >= 0; sector = sectorsToWrite.nextSetBit(sector + 1))
+        {
+            final int sectorStart = sector * SECTOR_SIZE;
+            final int length = Math.min(SECTOR_SIZE, fileCapacity - sectorStart);
+            fileBuffer.putBytes(sectorStart, inMemoryBuffer, sectorStart, length);
+            bytesWritten += length;
+        }
         writableFile.force();
+        bytesFlushed.getAndAddOrdered(bytesWritten);
+
+        // After the flip the other file is written to, which lacks the changes of this period.
+        sectorsToWrite.clear();
+        previouslyDirtySectors = dirtySectors;
+        dirtySectors = sectorsToWrite;
     }
 
     private void flipFiles()
@@ -325,7 +443,7 @@ public class SequenceNumberIndexWriter implements Index
         int position = (int)recordOffsets.get(sessionId);
         if (position == MISSING_RECORD)
         {
-            position = SequenceNumberIndexDescriptor.HEADER_SIZE;
+            position = HEADER_SIZE;
             while (true)
             {
                 position = checksumFramer.claim(position, RECORD_SIZE);
@@ -445,6 +563,52 @@ public class SequenceNumberIndexWriter implements Index
     {
         loadBuffer(fileBuffer);
         checksumFramer.validateCheckSums();
+
+        fileHeaderDecoder.wrap(inMemoryBuffer, 0);
+        if (fileHeaderDecoder.schemaId() == lastKnownEncoder.sbeSchemaId() &&
+            fileHeaderDecoder.version() < RESET_EPOCH_SINCE_VERSION)
+        {
+            moveRecordsAfterResetEpoch();
+        }
+    }
+
+    // Inefficient, but only run once on startup when loading a file of an earlier version.
+    private void moveRecordsAfterResetEpoch()
+    {
+        final AtomicBuffer inMemoryBuffer = this.inMemoryBuffer;
+        final UnsafeBuffer oldRecords = new UnsafeBuffer(new byte[indexedPositionsOffset]);
+        oldRecords.putBytes(0, inMemoryBuffer, 0, indexedPositionsOffset);
+        inMemoryBuffer.setMemory(0, indexedPositionsOffset, (byte)0);
+        initialiseBlankBuffer();
+
+        int oldPosition = HEADER_SIZE_WITHOUT_RESET_EPOCH;
+        int newPosition = HEADER_SIZE;
+        while (true)
+        {
+            oldPosition = checksumFramer.claim(oldPosition, RECORD_SIZE);
+            if (oldPosition == OUT_OF_SPACE)
+            {
+                return;
+            }
+
+            lastKnownDecoder.wrap(oldRecords, oldPosition, RECORD_SIZE, SCHEMA_VERSION);
+            if (lastKnownDecoder.sessionId() == 0)
+            {
+                return;
+            }
+
+            newPosition = checksumFramer.claim(newPosition, RECORD_SIZE);
+            if (newPosition == OUT_OF_SPACE)
+            {
+                errorHandler.onError(new IllegalStateException(
+                    "Sequence Number Index out of space, can't move slot for " + lastKnownDecoder.sessionId()));
+                return;
+            }
+
+            inMemoryBuffer.putBytes(newPosition, oldRecords, oldPosition, RECORD_SIZE);
+            oldPosition += RECORD_SIZE;
+            newPosition += RECORD_SIZE;
+        }
     }
 
     private void loadBuffer(final AtomicBuffer fileBuffer)
@@ -457,5 +621,6 @@ public class SequenceNumberIndexWriter implements Index
         final int value)
     {
         inMemoryBuffer.putIntOrdered(recordOffset + SEQUENCE_NUMBER_OFFSET, value);
+        dirtySectors.set(recordOffset / SECTOR_SIZE);
     }
 }
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2015-2017 Real Logic Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio.engine.logger;
+
+import org.agrona.collections.LongHashSet;
+import uk.co.real_logic.artio.messages.FixMessageDecoder;
+
+/**
+ * Filters messages by their surrogate session id, and optionally by a further predicate. Knowing the sessions up
+ * front lets the {@link FixArchiveScanner} look up where their messages are in the replay index, rather than
+ * testing every message in the archive.
+ *
+ * Combining this predicate with others using {@link #and(FixMessagePredicate)} keeps the sessions known, as does
+ * combining it with another session predicate using {@link #or(FixMessagePredicate)}.
+ */
+final class SessionPredicate implements FixMessagePredicate
+{
+    private final LongHashSet sessionIds;
+    private final FixMessagePredicate otherPredicate;
+
+    SessionPredicate(final LongHashSet sessionIds, final FixMessagePredicate otherPredicate)
+    {
+        this.sessionIds = sessionIds;
+        this.otherPredicate = otherPredicate;
+    }
+
+    public boolean test(final FixMessageDecoder message)
+    {
+        return sessionIds.contains(message.session()) && (otherPredicate == null || otherPredicate.test(message));
+    }
+
+    public FixMessagePredicate and(final FixMessagePredicate other)
+    {
+        return new SessionPredicate(sessionIds, otherPredicate == null ? other : otherPredicate.and(other));
+    }
+
+    public FixMessagePredicate or(final FixMessagePredicate other)
+    {
+        if (other instanceof SessionPredicate)
+        {
+            final SessionPredicate otherSessions = (SessionPredicate)other;
+            if (otherPredicate == null && otherSessions.otherPredicate == null)
+            {
+                final LongHashSet unionSessionIds = new LongHashSet();
+                unionSessionIds.addAll(sessionIds);
+                unionSessionIds.addAll(otherSessions.sessionIds);
+                return new SessionPredicate(unionSessionIds, null);
+            }
+        }
+
+        return FixMessagePredicate.super.or(other);
+    }
+
+    LongHashSet sessionIds()
+    {
+        return sessionIds;
+    }
+}
@@ -21,6 +21,7 @@ import org.agrona.ErrorHandler;
 import org.agrona.IoUtil;
 import org.agrona.concurrent.IdleStrategy;
 import org.agrona.concurrent.SystemEpochClock;
+import org.agrona.concurrent.status.AtomicCounter;
 import uk.co.real_logic.artio.CommonConfiguration;
 import uk.co.real_logic.artio.FixGatewayException;
 import uk.co.real_logic.artio.GatewayProcess;
@@ -382,4 +383,14 @@ public class FixLibrary extends GatewayProcess
         return poller.currentAeronChannel();
     }
 
+    AtomicCounter sessionCount()
+    {
+        return poller.sessionCount();
+    }
+
+    ErrorHandler errorHandler()
+    {
+        return errorHandler;
+    }
+
 }
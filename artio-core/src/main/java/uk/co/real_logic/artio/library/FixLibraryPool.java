@@ -0,0 +1,441 @@
+/*
+ * Copyright 2015-2018 Real Logic Ltd, Adaptive Financial Consulting Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio.library;
+
+import org.agrona.CloseHelper;
+import org.agrona.concurrent.Agent;
+import org.agrona.concurrent.AgentRunner;
+import org.agrona.concurrent.ManyToOneConcurrentLinkedQueue;
+import org.agrona.concurrent.status.AtomicCounter;
+import uk.co.real_logic.artio.Reply;
+import uk.co.real_logic.artio.messages.SessionReplyStatus;
+import uk.co.real_logic.artio.session.Session;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.agrona.collections.ArrayListUtil.fastUnorderedRemove;
+import static uk.co.real_logic.artio.dictionary.generation.Exceptions.closeAll;
+import static uk.co.real_logic.artio.library.FixLibrary.NO_MESSAGE_REPLAY;
+import static uk.co.real_logic.artio.library.LibraryConfiguration.DEFAULT_SESSION_EXISTS_HANDLER;
+
+/**
+ * Runs a pool of {@link FixLibrary} instances, each polled on its own thread, and shards the sessions that the
+ * engine owns between them.
+ * <p>
+ * The pool replaces the {@link SessionExistsHandler} of each library's configuration. The first library places
+ * every session that the engine notifies it of using a {@link SessionPlacementPolicy}, and the chosen library then
+ * requests the session. Each library's {@link SessionAcquireHandler} and {@link SessionHandler}s are invoked on that
+ * library's thread, so sessions never need to be shared between threads.
+ * <p>
+ * Sessions can be moved between libraries with {@link #moveSession(long, int)}, which releases the session to the
+ * engine and requests it from the other library, or {@link #rebalance()}.
+ * <p>
+ * The methods of this class are thread safe, apart from {@link #library(int)}.
+ */
+public class FixLibraryPool implements AutoCloseable
+{
+    private static final int FRAGMENT_LIMIT = 10;
+
+    private final SessionPlacementPolicy placementPolicy;
+    private final PooledLibrary[] libraries;
+    private final AgentRunner[] runners;
+    // Written by the library that releases a session, before the release, and read by the first library when the
+    // engine notifies it that the session exists. Moves are rare, so boxing doesn't matter.
+    private final Map<Long, Integer> sessionIdToMovedLibraryIndex = new ConcurrentHashMap<>();
+
+    /**
+     * Connect a pool of libraries to an engine and start polling each of them on its own thread.
+     *
+     * @param placementPolicy the policy that chooses which library acquires each session.
+     * @param configurations the configuration of each library in the pool.
+     * @return the pool.
+     */
+    public static FixLibraryPool launch(
+        final SessionPlacementPolicy placementPolicy, final LibraryConfiguration... configurations)
+    {
+        return new FixLibraryPool(placementPolicy, configurations).start();
+    }
+
+    FixLibraryPool(final SessionPlacementPolicy placementPolicy, final LibraryConfiguration... configurations)
+    {
+        if (configurations.length == 0)
+        {
+            throw new IllegalArgumentException("A library pool needs at least one library");
+        }
+
+        this.placementPolicy = placementPolicy;
+        final int size = configurations.length;
+        libraries = new PooledLibrary[size];
+        runners = new AgentRunner[size];
+
+        try
+        {
+            for (int i = 0; i < size; i++)
+            {
+                final LibraryConfiguration configuration = configurations[i];
+                configuration.sessionExistsHandler(i == 0 ? this::onSessionExists : DEFAULT_SESSION_EXISTS_HANDLER);
+                libraries[i] = new PooledLibrary(FixLibrary.connect(configuration), configuration);
+                runners[i] = new AgentRunner(
+                    configuration.libraryIdleStrategy(), libraries[i].library.errorHandler(), null, libraries[i]);
+            }
+        }
+        catch (final RuntimeException e)
+        {
+            for (final PooledLibrary library : libraries)
+            {
+                if (library != null)
+                {
+                    CloseHelper.quietClose(library.library);
+                }
+            }
+            throw e;
+        }
+    }
+
+    private FixLibraryPool start()
+    {
+        for (final AgentRunner runner : runners)
+        {
+            AgentRunner.startOnThread(runner);
+        }
+        return this;
+    }
+
+    /**
+     * Get the number of libraries in the pool.
+     *
+     * @return the number of libraries in the pool.
+     */
+    public int size()
+    {
+        return libraries.length;
+    }
+
+    /**
+     * Get a library from the pool. It's polled on its own thread, so should only be used from that thread, for
+     * example from within its {@link SessionAcquireHandler} or {@link SessionHandler}s.
+     *
+     * @param libraryIndex the index of the library within the pool.
+     * @return the library.
+     */
+    public FixLibrary library(final int libraryIndex)
+    {
+        return libraries[libraryIndex].library;
+    }
+
+    /**
+     * Get the number of sessions owned by a library in the pool. This is read from the library's sessions counter.
+     *
+     * @param libraryIndex the index of the library within the pool.
+     * @return the number of sessions owned by the library.
+     */
+    public long sessionCount(final int libraryIndex)
+    {
+        return libraries[libraryIndex].sessionCount.get();
+    }
+
+    /**
+     * Get the load of a library in the pool: the sessions that it owns and those that it has been asked to
+     * acquire but hasn't yet.
+     *
+     * @param libraryIndex the index of the library within the pool.
+     * @return the load of the library.
+     */
+    public long load(final int libraryIndex)
+    {
+        final PooledLibrary library = libraries[libraryIndex];
+        return library.sessionCount.get() + library.sessionRequestsInFlight.get();
+    }
+
+    /**
+     * Move a session to another library in the pool. The library that owns the session releases it to the engine
+     * and the other library then requests it. This operation is asynchronous.
+     *
+     * @param surrogateSessionId the identifying number of the session.
+     * @param libraryIndex the index of the library to move the session to.
+     */
+    public void moveSession(final long surrogateSessionId, final int libraryIndex)
+    {
+        validateLibraryIndex(libraryIndex);
+
+        // Only the owning library finds the session
+        for (final PooledLibrary library : libraries)
+        {
+            library.commands.add(() -> library.moveSession(surrogateSessionId, libraryIndex));
+        }
+    }
+
+    /**
+     * Move a session from the most loaded library in the pool to the least loaded one, if their loads differ by
+     * more than one session. This operation is asynchronous, so the loads only change once the move completes.
+     *
+     * @return true if a session is being moved, false if the pool is balanced.
+     */
+    public boolean rebalance()
+    {
+        int mostLoadedIndex = 0;
+        int leastLoadedIndex = 0;
+        long mostLoad = Long.MIN_VALUE;
+        long leastLoad = Long.MAX_VALUE;
+        for (int i = 0, size = libraries.length; i < size; i++)
+        {
+            final long load = load(i);
+            if (load > mostLoad)
+            {
+                mostLoad = load;
+                mostLoadedIndex = i;
+            }
+            if (load < leastLoad)
+            {
+                leastLoad = load;
+                leastLoadedIndex = i;
+            }
+        }
+
+        if (mostLoad - leastLoad <= 1)
+        {
+            return false;
+        }
+
+        final PooledLibrary library = libraries[mostLoadedIndex];
+        final int toLibraryIndex = leastLoadedIndex;
+        library.commands.add(() -> library.moveAnySession(toLibraryIndex));
+        return true;
+    }
+
+    /**
+     * Stop the threads of the libraries in the pool and close the libraries.
+     */
+    public void close()
+    {
+        closeAll(runners);
+    }
+
+    // Only invoked on the first library's thread
+    private void onSessionExists(
+        final FixLibrary library,
+        final long surrogateSessionId,
+        final String localCompId,
+        final String localSubId,
+        final String localLocationId,
+        final String remoteCompId,
+        final String remoteSubId,
+        final String remoteLocationId)
+    {
+        final Integer movedLibraryIndex = sessionIdToMovedLibraryIndex.remove(surrogateSessionId);
+        final int libraryIndex;
+        if (movedLibraryIndex == null)
+        {
+            libraryIndex = placementPolicy.libraryIndex(
+                this,
+                surrogateSessionId,
+                localCompId,
+                localSubId,
+                localLocationId,
+                remoteCompId,
+                remoteSubId,
+                remoteLocationId);
+        }
+        else
+        {
+            libraryIndex = movedLibraryIndex;
+            placementPolicy.onSessionMoved(surrogateSessionId, libraryIndex);
+        }
+
+        if (libraryIndex < 0 || libraryIndex >= libraries.length)
+        {
+            library.errorHandler().onError(new IllegalStateException(String.format(
+                "Unable to place session %d on library %d of a pool of %d libraries",
+                surrogateSessionId,
+                libraryIndex,
+                libraries.length)));
+            return;
+        }
+
+        final PooledLibrary targetLibrary = libraries[libraryIndex];
+        targetLibrary.sessionRequestsInFlight.incrementAndGet();
+        targetLibrary.commands.add(() -> targetLibrary.requestSession(surrogateSessionId));
+    }
+
+    private void validateLibraryIndex(final int libraryIndex)
+    {
+        if (libraryIndex < 0 || libraryIndex >= libraries.length)
+        {
+            throw new IllegalArgumentException(String.format(
+                "Invalid library index %d for a pool of %d libraries", libraryIndex, libraries.length));
+        }
+    }
+
+    private final class PooledLibrary implements Agent
+    {
+        private final Queue<Runnable> commands = new ManyToOneConcurrentLinkedQueue<>();
+        private final AtomicInteger sessionRequestsInFlight = new AtomicInteger();
+        private final ArrayList<Reply<SessionReplyStatus>> sessionRequests = new ArrayList<>();
+        private final ArrayList<SessionRelease> sessionReleases = new ArrayList<>();
+
+        private final FixLibrary library;
+        private final AtomicCounter sessionCount;
+        private final long replyTimeoutInMs;
+        private final String roleName;
+
+        private PooledLibrary(final FixLibrary library, final LibraryConfiguration configuration)
+        {
+            this.library = library;
+            this.sessionCount = library.sessionCount();
+            this.replyTimeoutInMs = configuration.replyTimeoutInMs();
+            this.roleName = "[Library:" + configuration.libraryId() + ":pool]";
+        }
+
+        public int doWork()
+        {
+            int work = 0;
+
+            Runnable command;
+            while ((command = commands.poll()) != null)
+            {
+                command.run();
+                work++;
+            }
+
+            work += library.poll(FRAGMENT_LIMIT);
+            work += checkSessionRequests();
+            work += checkSessionReleases();
+
+            return work;
+        }
+
+        private int checkSessionRequests()
+        {
+            final ArrayList<Reply<SessionReplyStatus>> sessionRequests = this.sessionRequests;
+            int completed = 0;
+            for (int lastIndex = sessionRequests.size() - 1, i = lastIndex; i >= 0; i--)
+            {
+                final Reply<SessionReplyStatus> reply = sessionRequests.get(i);
+                if (!reply.isExecuting())
+                {
+                    fastUnorderedRemove(sessionRequests, i, lastIndex--);
+                    sessionRequestsInFlight.decrementAndGet();
+                    completed++;
+
+                    if (reply.hasErrored())
+                    {
+                        library.errorHandler().onError(reply.error());
+                    }
+                }
+            }
+            return completed;
+        }
+
+        // A session that fails to be released stays with this library, so the engine won't notify the first library
+        // of it, and the move mustn't be applied if it's later released for another reason.
+        private int checkSessionReleases()
+        {
+            final ArrayList<SessionRelease> sessionReleases = this.sessionReleases;
+            int completed = 0;
+            for (int lastIndex = sessionReleases.size() - 1, i = lastIndex; i >= 0; i--)
+            {
+                final SessionRelease release = sessionReleases.get(i);
+                final Reply<SessionReplyStatus> reply = release.reply;
+                if (!reply.isExecuting())
+                {
+                    fastUnorderedRemove(sessionReleases, i, lastIndex--);
+                    completed++;
+
+                    if (!reply.hasCompleted() || reply.resultIfPresent() != SessionReplyStatus.OK)
+                    {
+                        sessionIdToMovedLibraryIndex.remove(release.surrogateSessionId, release.toLibraryIndex);
+                    }
+
+                    if (reply.hasErrored())
+                    {
+                        library.errorHandler().onError(reply.error());
+                    }
+                }
+            }
+            return completed;
+        }
+
+        private void requestSession(final long surrogateSessionId)
+        {
+            sessionRequests.add(library.requestSession(
+                surrogateSessionId, NO_MESSAGE_REPLAY, NO_MESSAGE_REPLAY, replyTimeoutInMs));
+        }
+
+        private void moveSession(final long surrogateSessionId, final int toLibraryIndex)
+        {
+            final List<Session> sessions = library.sessions();
+            for (int i = 0, size = sessions.size(); i < size; i++)
+            {
+                final Session session = sessions.get(i);
+                if (session.id() == surrogateSessionId)
+                {
+                    release(session, toLibraryIndex);
+                    return;
+                }
+            }
+        }
+
+        private void moveAnySession(final int toLibraryIndex)
+        {
+            final List<Session> sessions = library.sessions();
+            if (!sessions.isEmpty())
+            {
+                release(sessions.get(sessions.size() - 1), toLibraryIndex);
+            }
+        }
+
+        private void release(final Session session, final int toLibraryIndex)
+        {
+            // The engine notifies every library once the session is released, so the move has to be recorded
+            // before then.
+            final long surrogateSessionId = session.id();
+            sessionIdToMovedLibraryIndex.put(surrogateSessionId, toLibraryIndex);
+
+            sessionReleases.add(new SessionRelease(
+                library.releaseToGateway(session, replyTimeoutInMs), surrogateSessionId, toLibraryIndex));
+        }
+
+        public void onClose()
+        {
+            library.close();
+        }
+
+        public String roleName()
+        {
+            return roleName;
+        }
+    }
+
+    private static final class SessionRelease
+    {
+        private final Reply<SessionReplyStatus> reply;
+        private final long surrogateSessionId;
+        private final int toLibraryIndex;
+
+        private SessionRelease(
+            final Reply<SessionReplyStatus> reply, final long surrogateSessionId, final int toLibraryIndex)
+        {
+            this.reply = reply;
+            this.surrogateSessionId = surrogateSessionId;
+            this.toLibraryIndex = toLibraryIndex;
+        }
+    }
+}
@@ -65,6 +65,8 @@ public final class LibraryConfiguration extends CommonConfiguration
 
     public static final SessionProxyFactory DEFAULT_SESSION_PROXY_FACTORY = DirectSessionProxy::new;
 
+    public static final int DEFAULT_CONCURRENT_SEND_QUEUE_CAPACITY = 256 * 1024;
+
     private final int libraryId;
 
     {
@@ -88,6 +90,8 @@ public final class LibraryConfiguration extends CommonConfiguration
     private LibraryScheduler scheduler = new DefaultLibraryScheduler();
     private String libraryName = "";
     private SessionProxyFactory sessionProxyFactory = DEFAULT_SESSION_PROXY_FACTORY;
+    private boolean engineHeartbeats = false;
+    private int concurrentSendQueueCapacity = DEFAULT_CONCURRENT_SEND_QUEUE_CAPACITY;
 
     /**
      * When a new session connects to the gateway you register a callback handler to find
@@ -239,6 +243,50 @@ public final class LibraryConfiguration extends CommonConfiguration
         return this;
     }
 
+    /**
+     * Sets whether the engine sends heartbeats on behalf of this library's sessions whilst they're idle, saving
+     * a round trip from the engine to the library for every heartbeat. The library still replies to TestRequests,
+     * checks for timeouts and sends a heartbeat itself if the engine hasn't.
+     *
+     * The library and engine must share a media driver, as the sent sequence number counter of each session is
+     * claimed by both of them. Messages sent with an explicit sequence number, using
+     * {@link uk.co.real_logic.artio.session.Session#send(org.agrona.DirectBuffer, int, int, int, int)}, aren't
+     * coordinated with the engine's heartbeats and shouldn't be used with this option.
+     *
+     * @param engineHeartbeats true if the engine should heartbeat idle sessions, false otherwise.
+     * @return this
+     */
+    public LibraryConfiguration engineHeartbeats(final boolean engineHeartbeats)
+    {
+        this.engineHeartbeats = engineHeartbeats;
+        return this;
+    }
+
+    public boolean engineHeartbeats()
+    {
+        return engineHeartbeats;
+    }
+
+    /**
+     * Sets the capacity in bytes of the queue of messages that other threads send on a session, see
+     * {@link uk.co.real_logic.artio.session.Session#newConcurrentSender()}. Each session that has concurrent senders
+     * has its own queue, which is allocated off heap. The capacity must be a power of two and the largest message
+     * that can be queued is an eighth of it.
+     *
+     * @param concurrentSendQueueCapacity the capacity in bytes of each session's queue.
+     * @return this
+     */
+    public LibraryConfiguration concurrentSendQueueCapacity(final int concurrentSendQueueCapacity)
+    {
+        this.concurrentSendQueueCapacity = concurrentSendQueueCapacity;
+        return this;
+    }
+
+    public int concurrentSendQueueCapacity()
+    {
+        return concurrentSendQueueCapacity;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -248,6 +296,15 @@ public final class LibraryConfiguration extends CommonConfiguration
         return this;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public LibraryConfiguration inboundPublicationPerLibrary(final boolean inboundPublicationPerLibrary)
+    {
+        super.inboundPublicationPerLibrary(inboundPublicationPerLibrary);
+        return this;
+    }
+
     void conclude()
     {
         super.conclude("library-" + libraryId());
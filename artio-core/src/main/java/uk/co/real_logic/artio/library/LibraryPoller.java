@@ -84,6 +84,10 @@ final class LibraryPoller implements LibraryEndPointHandler, ProtocolHandler, Au
 
     private final Long2ObjectHashMap<SessionSubscriber> connectionIdToSession = new Long2ObjectHashMap<>();
     private InternalSession[] sessions = new InternalSession[0];
+    // Polls the sessions in the sessions array only when they're due
+    private final SessionScheduler sessionScheduler;
+    // The length of the sessions array, readable from other threads
+    private final AtomicCounter sessionCount;
     private InternalSession[] pendingInitiatorSessions = new InternalSession[0];
 
     private final List<Session> unmodifiableSessions = new AbstractList<Session>()
@@ -161,6 +165,8 @@ final class LibraryPoller implements LibraryEndPointHandler, ProtocolHandler, Au
         this.sessionExistsHandler = configuration.sessionExistsHandler();
         this.sentPositionHandler = configuration.sentPositionHandler();
         this.clock = clock;
+        this.sessionScheduler = new SessionScheduler(clock.time(), configuration.concurrentSendQueueCapacity());
+        this.sessionCount = fixCounters.librarySessions(libraryId);
         this.enginesAreClustered = configuration.libraryAeronChannels().size() > 1;
     }
 
@@ -189,6 +195,11 @@ final class LibraryPoller implements LibraryEndPointHandler, ProtocolHandler, Au
         return unmodifiableSessions;
     }
 
+    AtomicCounter sessionCount()
+    {
+        return sessionCount;
+    }
+
     Reply<Session> initiate(final SessionConfiguration configuration)
     {
         requireNonNull(configuration, "configuration");
@@ -238,6 +249,8 @@ final class LibraryPoller implements LibraryEndPointHandler, ProtocolHandler, Au
     void disableSession(final InternalSession session)
     {
         sessions = ArrayUtil.remove(sessions, session);
+        sessionCount.setOrdered(sessions.length);
+        sessionScheduler.remove(session);
         session.disable();
     }
 
@@ -559,16 +572,7 @@ final class LibraryPoller implements LibraryEndPointHandler, ProtocolHandler, Au
 
     private int pollSessions(final long timeInMs)
     {
-        final InternalSession[] sessions = this.sessions;
-        int total = 0;
-
-        for (int i = 0, size = sessions.length; i < size; i++)
-        {
-            final InternalSession session = sessions[i];
-            total += session.poll(timeInMs);
-        }
-
-        return total;
+        return sessionScheduler.poll(timeInMs);
     }
 
     private int pollPendingInitiatorSessions(final long timeInMs)
@@ -585,6 +589,8 @@ final class LibraryPoller implements LibraryEndPointHandler, ProtocolHandler, Au
                 this.pendingInitiatorSessions = pendingSessions = ArrayUtil.remove(pendingSessions, i);
                 size--;
                 sessions = ArrayUtil.add(sessions, session);
+                sessionCount.setOrdered(sessions.length);
+                sessionScheduler.add(session);
             }
             else
             {
@@ -769,6 +775,8 @@ final class LibraryPoller implements LibraryEndPointHandler, ProtocolHandler, Au
         else
         {
             sessions = ArrayUtil.add(sessions, session);
+            sessionCount.setOrdered(sessions.length);
+            sessionScheduler.add(session);
         }
     }
 
@@ -832,6 +840,8 @@ final class LibraryPoller implements LibraryEndPointHandler, ProtocolHandler, Au
                     // session will be in either pendingInitiatorSessions or sessions
                     pendingInitiatorSessions = ArrayUtil.remove(pendingInitiatorSessions, session);
                     sessions = ArrayUtil.remove(sessions, session);
+                    sessionCount.setOrdered(sessions.length);
+                    sessionScheduler.remove(session);
                 }
 
                 return action;
@@ -970,6 +980,7 @@ final class LibraryPoller implements LibraryEndPointHandler, ProtocolHandler, Au
                     session.close();
                     // TODO(Nick): Maybe we shouldn't be creating a lot of arrays and batch this up?
                     sessions = ArrayUtil.remove(sessions, i);
+                    sessionScheduler.remove(session);
                     size--;
                 }
                 else
@@ -978,6 +989,7 @@ final class LibraryPoller implements LibraryEndPointHandler, ProtocolHandler, Au
                 }
             }
             this.sessions = sessions;
+            sessionCount.setOrdered(sessions.length);
 
             // sessions that the gateway thinks you have, that you don't
             if (!sessionIds.isEmpty())
@@ -1092,6 +1104,10 @@ final class LibraryPoller implements LibraryEndPointHandler, ProtocolHandler, Au
             enableLastMsgSeqNumProcessed);
 
         session.lastReceivedMsgSeqNum(initialReceivedSequenceNumber - 1);
+        if (configuration.engineHeartbeats())
+        {
+            session.delegateHeartbeatsToEngine();
+        }
 
         return session;
     }
@@ -1162,6 +1178,10 @@ final class LibraryPoller implements LibraryEndPointHandler, ProtocolHandler, Au
             asciiBuffer,
             enableLastMsgSeqNumProcessed);
         session.address(host, port);
+        if (configuration.engineHeartbeats())
+        {
+            session.delegateHeartbeatsToEngine();
+        }
         return session;
     }
 
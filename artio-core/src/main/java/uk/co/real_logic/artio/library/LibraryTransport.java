@@ -16,6 +16,7 @@
 package uk.co.real_logic.artio.library;
 
 import io.aeron.Aeron;
+import io.aeron.ChannelUri;
 import io.aeron.Subscription;
 import uk.co.real_logic.artio.Clock;
 import uk.co.real_logic.artio.DebugLogger;
@@ -67,9 +68,13 @@ class LibraryTransport
             outboundPublication.close();
         }
 
-        inboundSubscription = aeron.addSubscription(aeronChannel, configuration.inboundLibraryStream());
+        final int libraryId = configuration.libraryId();
+        // The engine publishes this library's messages with its library id as the Aeron session id.
+        final String inboundChannel = configuration.inboundPublicationPerLibrary() ?
+            ChannelUri.addSessionId(aeronChannel, libraryId) : aeronChannel;
+        inboundSubscription = aeron.addSubscription(inboundChannel, configuration.inboundLibraryStream());
         StreamInformation.print(
-            "library " + configuration.libraryId() + " inboundSubscription", inboundSubscription, configuration);
+            "library " + libraryId + " inboundSubscription", inboundSubscription, configuration);
         outboundPublication = outboundLibraryStreams.gatewayPublication(
             configuration.libraryIdleStrategy(), "outboundPublication");
     }
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2015-2018 Real Logic Ltd, Adaptive Financial Consulting Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio.library;
+
+import org.agrona.collections.Long2LongHashMap;
+
+/**
+ * Common {@link SessionPlacementPolicy} implementations.
+ */
+public final class SessionPlacementPolicies
+{
+    private static final long NO_LIBRARY = -1;
+
+    private SessionPlacementPolicies()
+    {
+    }
+
+    /**
+     * Place sessions by a hash of the fields that identify them, so a session is always placed on the same library
+     * of a pool of the same size.
+     *
+     * @return the placement policy.
+     */
+    public static SessionPlacementPolicy hashOfSessionKey()
+    {
+        return (pool, surrogateSessionId, localCompId, localSubId, localLocationId, remoteCompId, remoteSubId,
+            remoteLocationId) ->
+        {
+            int hash = localCompId.hashCode();
+            hash = 31 * hash + localSubId.hashCode();
+            hash = 31 * hash + localLocationId.hashCode();
+            hash = 31 * hash + remoteCompId.hashCode();
+            hash = 31 * hash + remoteSubId.hashCode();
+            hash = 31 * hash + remoteLocationId.hashCode();
+            return Math.floorMod(hash, pool.size());
+        };
+    }
+
+    /**
+     * Place each session on the library with the lowest {@link FixLibraryPool#load(int)}, the lowest index
+     * of those with the same load.
+     *
+     * @return the placement policy.
+     */
+    public static SessionPlacementPolicy leastLoaded()
+    {
+        return (pool, surrogateSessionId, localCompId, localSubId, localLocationId, remoteCompId, remoteSubId,
+            remoteLocationId) ->
+        {
+            int leastLoadedIndex = 0;
+            long leastLoad = Long.MAX_VALUE;
+            for (int i = 0, size = pool.size(); i < size; i++)
+            {
+                final long load = pool.load(i);
+                if (load < leastLoad)
+                {
+                    leastLoad = load;
+                    leastLoadedIndex = i;
+                }
+            }
+            return leastLoadedIndex;
+        };
+    }
+
+    /**
+     * Place a session on the same library as it was last placed on, for example when it reconnects, and use
+     * another policy to place sessions for the first time.
+     *
+     * @param firstPlacement the policy to place sessions that haven't been placed before.
+     * @return the placement policy.
+     */
+    public static SessionPlacementPolicy sticky(final SessionPlacementPolicy firstPlacement)
+    {
+        return new StickyPlacementPolicy(firstPlacement);
+    }
+
+    private static final class StickyPlacementPolicy implements SessionPlacementPolicy
+    {
+        private final Long2LongHashMap sessionIdToLibraryIndex = new Long2LongHashMap(NO_LIBRARY);
+        private final SessionPlacementPolicy firstPlacement;
+
+        StickyPlacementPolicy(final SessionPlacementPolicy firstPlacement)
+        {
+            this.firstPlacement = firstPlacement;
+        }
+
+        public int libraryIndex(
+            final FixLibraryPool pool,
+            final long surrogateSessionId,
+            final String localCompId,
+            final String localSubId,
+            final String localLocationId,
+            final String remoteCompId,
+            final String remoteSubId,
+            final String remoteLocationId)
+        {
+            final long lastLibraryIndex = sessionIdToLibraryIndex.get(surrogateSessionId);
+            if (lastLibraryIndex != NO_LIBRARY && lastLibraryIndex < pool.size())
+            {
+                return (int)lastLibraryIndex;
+            }
+
+            final int libraryIndex = firstPlacement.libraryIndex(
+                pool,
+                surrogateSessionId,
+                localCompId,
+                localSubId,
+                localLocationId,
+                remoteCompId,
+                remoteSubId,
+                remoteLocationId);
+            sessionIdToLibraryIndex.put(surrogateSessionId, libraryIndex);
+            return libraryIndex;
+        }
+
+        public void onSessionMoved(final long surrogateSessionId, final int libraryIndex)
+        {
+            sessionIdToLibraryIndex.put(surrogateSessionId, libraryIndex);
+            firstPlacement.onSessionMoved(surrogateSessionId, libraryIndex);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2015-2018 Real Logic Ltd, Adaptive Financial Consulting Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio.library;
+
+/**
+ * Chooses which library of a {@link FixLibraryPool} should acquire a session that the engine owns.
+ *
+ * Invoked on the thread of the first library in the pool, which places every session.
+ *
+ * @see SessionPlacementPolicies
+ */
+@FunctionalInterface
+public interface SessionPlacementPolicy
+{
+    /**
+     * Choose the library that should acquire a session. If either of the subId or locationId fields are not present
+     * in the logon message <code>""</code> will be passed as an argument.
+     *
+     * @param pool the pool that the library is chosen from, see {@link FixLibraryPool#load(int)}.
+     * @param surrogateSessionId the identifying number of the session.
+     * @param localCompId the compId for the local party in the logon message (eg targetCompId if acceptor).
+     * @param localSubId the subId for the local party in the logon message (eg targetSubId if acceptor).
+     * @param localLocationId the locationId for the local party in the logon message (eg targetLocationId if acceptor)
+     * @param remoteCompId the compId for the local party in the logon message (eg senderCompId if acceptor).
+     * @param remoteSubId the subId for the local party in the logon message (eg senderSubId if acceptor).
+     * @param remoteLocationId the locationId for the local party in the logon message (eg senderLocationId if acceptor)
+     * @return the index of the library within the pool, from 0 to {@link FixLibraryPool#size()} - 1.
+     */
+    int libraryIndex(
+        FixLibraryPool pool,
+        long surrogateSessionId,
+        String localCompId,
+        String localSubId,
+        String localLocationId,
+        String remoteCompId,
+        String remoteSubId,
+        String remoteLocationId);
+
+    /**
+     * Invoked when a session has been placed on a library by {@link FixLibraryPool#moveSession(long, int)} or
+     * {@link FixLibraryPool#rebalance()} rather than by this policy.
+     *
+     * @param surrogateSessionId the identifying number of the session.
+     * @param libraryIndex the index of the library that the session was moved to.
+     */
+    default void onSessionMoved(final long surrogateSessionId, final int libraryIndex)
+    {
+    }
+}
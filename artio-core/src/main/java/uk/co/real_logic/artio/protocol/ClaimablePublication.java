@@ -16,7 +16,9 @@
 package uk.co.real_logic.artio.protocol;
 
 import io.aeron.ExclusivePublication;
+import io.aeron.Publication;
 import io.aeron.logbuffer.BufferClaim;
+import org.agrona.DirectBuffer;
 import org.agrona.concurrent.IdleStrategy;
 import org.agrona.concurrent.status.AtomicCounter;
 import uk.co.real_logic.artio.messages.MessageHeaderEncoder;
@@ -35,7 +37,7 @@ class ClaimablePublication implements AutoCloseable
     private final AtomicCounter fails;
     protected final MessageHeaderEncoder header = new MessageHeaderEncoder();
     protected final BufferClaim bufferClaim = new BufferClaim();
-    protected final ExclusivePublication dataPublication;
+    protected final Publication dataPublication;
 
     protected final IdleStrategy idleStrategy;
 
@@ -43,7 +45,7 @@ class ClaimablePublication implements AutoCloseable
         final int maxClaimAttempts,
         final IdleStrategy idleStrategy,
         final AtomicCounter fails,
-        final ExclusivePublication dataPublication)
+        final Publication dataPublication)
     {
         this.maxClaimAttempts = maxClaimAttempts;
         this.idleStrategy = idleStrategy;
@@ -90,6 +92,70 @@ class ClaimablePublication implements AutoCloseable
         }
     }
 
+    /**
+     * Offer a message made up of two buffers, retrying in the same way as a claim. Unlike a sequence of claims
+     * a message offered to a shared publication is fragmented atomically, so its fragments are never interleaved
+     * with those of other threads.
+     *
+     * @param headerBuffer the buffer containing the start of the message.
+     * @param headerOffset the offset of the start of the message.
+     * @param headerLength the length of the start of the message.
+     * @param bodyBuffer the buffer containing the rest of the message.
+     * @param bodyOffset the offset of the rest of the message.
+     * @param bodyLength the length of the rest of the message.
+     * @return the new position of the publication, or a negative value if back pressured.
+     */
+    public long offer(
+        final DirectBuffer headerBuffer,
+        final int headerOffset,
+        final int headerLength,
+        final DirectBuffer bodyBuffer,
+        final int bodyOffset,
+        final int bodyLength)
+    {
+        long position;
+        long i = 0;
+        do
+        {
+            position = dataPublication.offer(
+                headerBuffer, headerOffset, headerLength, bodyBuffer, bodyOffset, bodyLength);
+
+            if (position > 0L)
+            {
+                return position;
+            }
+            else
+            {
+                idleStrategy.idle();
+            }
+
+            fails.increment();
+            i++;
+        }
+        while (i <= maxClaimAttempts);
+
+        idleStrategy.reset();
+
+        if (position == CLOSED || position == MAX_POSITION_EXCEEDED)
+        {
+            throw new NotConnectedException(position);
+        }
+        else
+        {
+            return position;
+        }
+    }
+
+    /**
+     * Check whether the underlying publication is exclusive to this object, or may be shared between threads.
+     *
+     * @return true if the underlying publication is exclusive, false otherwise.
+     */
+    public boolean isExclusive()
+    {
+        return dataPublication instanceof ExclusivePublication;
+    }
+
     public void close()
     {
         dataPublication.close();
@@ -56,6 +56,14 @@ public interface EngineEndPointHandler
 
     Action onRequestDisconnect(int libraryId, long connectionId, DisconnectReason reason);
 
+    Action onDelegateHeartbeats(
+        int libraryId,
+        long connectionId,
+        int sentSequenceNumberCounterId,
+        int lastSentSequenceNumber,
+        int sequenceIndex,
+        long heartbeatIntervalInMs);
+
     Action onApplicationHeartbeat(int libraryId, int aeronSessionId);
 
     Action onReleaseSession(
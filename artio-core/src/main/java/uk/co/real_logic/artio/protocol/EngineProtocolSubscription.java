@@ -36,6 +36,7 @@ public final class EngineProtocolSubscription implements ControlledFragmentHandl
     private final ReleaseSessionDecoder releaseSession = new ReleaseSessionDecoder();
     private final RequestSessionDecoder requestSession = new RequestSessionDecoder();
     private final FollowerSessionRequestDecoder followerSessionRequest = new FollowerSessionRequestDecoder();
+    private final DelegateHeartbeatsDecoder delegateHeartbeats = new DelegateHeartbeatsDecoder();
 
     private final EngineEndPointHandler handler;
 
@@ -94,6 +95,11 @@ public final class EngineProtocolSubscription implements ControlledFragmentHandl
             {
                 return onFollowerSessionRequest(buffer, offset, blockLength, version, header);
             }
+
+            case DelegateHeartbeatsDecoder.TEMPLATE_ID:
+            {
+                return onDelegateHeartbeats(buffer, offset, blockLength, version, header);
+            }
         }
 
         return CONTINUE;
@@ -181,6 +187,30 @@ public final class EngineProtocolSubscription implements ControlledFragmentHandl
             requestSession.sequenceIndex());
     }
 
+    private Action onDelegateHeartbeats(
+        final DirectBuffer buffer,
+        final int offset,
+        final int blockLength,
+        final int version,
+        final Header header)
+    {
+        delegateHeartbeats.wrap(buffer, offset, blockLength, version);
+        final int libraryId = delegateHeartbeats.libraryId();
+        final Action action = handler.onApplicationHeartbeat(libraryId, header.sessionId());
+        if (action != null)
+        {
+            return action; // Continue processing messages but not this message.
+        }
+
+        return handler.onDelegateHeartbeats(
+            libraryId,
+            delegateHeartbeats.connection(),
+            delegateHeartbeats.sentSequenceNumberCounterId(),
+            delegateHeartbeats.lastSentSequenceNumber(),
+            delegateHeartbeats.sequenceIndex(),
+            delegateHeartbeats.heartbeatIntervalInMs());
+    }
+
     private Action onInitiateConnection(
         final DirectBuffer buffer,
         final int offset,
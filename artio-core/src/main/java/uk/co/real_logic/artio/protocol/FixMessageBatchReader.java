@@ -0,0 +1,153 @@
+/*
+ * Copyright 2015-2019 Real Logic Ltd, Adaptive Financial Consulting Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio.protocol;
+
+import io.aeron.logbuffer.ControlledFragmentHandler;
+import io.aeron.logbuffer.ControlledFragmentHandler.Action;
+import io.aeron.logbuffer.FragmentHandler;
+import io.aeron.logbuffer.Header;
+import org.agrona.DirectBuffer;
+import org.agrona.collections.Int2IntHashMap;
+import org.agrona.collections.Long2LongHashMap;
+import uk.co.real_logic.artio.messages.FixMessageBatchDecoder;
+import uk.co.real_logic.artio.messages.FixMessageDecoder;
+import uk.co.real_logic.artio.messages.MessageHeaderDecoder;
+
+import static io.aeron.logbuffer.ControlledFragmentHandler.Action.*;
+
+/**
+ * Unpacks a FixMessageBatch fragment into the FixMessage frames that it contains, each of which is handed to a
+ * fragment handler as if it had been published on its own.
+ *
+ * A batch is never split into Aeron fragments, so the whole batch is always available to the reader. If a
+ * controlled handler aborts part way through a batch then the messages that were already handled aren't
+ * redelivered when the batch is polled again, even if batches from other images are handled in between.
+ */
+public final class FixMessageBatchReader
+{
+    public static final int BATCH_HEADER_LENGTH = MessageHeaderDecoder.ENCODED_LENGTH +
+        FixMessageBatchDecoder.BLOCK_LENGTH;
+
+    private static final long NO_ABORTED_POSITION = Long.MIN_VALUE;
+
+    private final MessageHeaderDecoder messageHeader = new MessageHeaderDecoder();
+    private final FixMessageBatchDecoder batch = new FixMessageBatchDecoder();
+    private final FixMessageDecoder fixMessage = new FixMessageDecoder();
+
+    // Keyed by the Aeron session id of the image that the aborted batch was read from.
+    private final Long2LongHashMap abortedPositions = new Long2LongHashMap(NO_ABORTED_POSITION);
+    private final Int2IntHashMap abortedMessageIndices = new Int2IntHashMap(0);
+
+    /**
+     * Hand each message of a batch to a handler.
+     *
+     * @param buffer the buffer containing the batch.
+     * @param offset the offset of the batch's message header within the buffer.
+     * @param header the header of the fragment containing the batch.
+     * @param handler the handler to give each framed message to.
+     * @return the number of messages in the batch.
+     */
+    public int forEachMessage(
+        final DirectBuffer buffer, final int offset, final Header header, final FragmentHandler handler)
+    {
+        final int messageCount = wrapBatch(buffer, offset);
+        int messageOffset = offset + MessageHeaderDecoder.ENCODED_LENGTH + messageHeader.blockLength();
+        for (int i = 0; i < messageCount; i++)
+        {
+            final int messageLength = messageLength(buffer, messageOffset);
+            handler.onFragment(buffer, messageOffset, messageLength, header);
+            messageOffset += messageLength;
+        }
+
+        return messageCount;
+    }
+
+    /**
+     * Hand each message of a batch to a controlled handler, resuming from the aborted message if the previous
+     * attempt to handle the same batch was aborted.
+     *
+     * @param buffer the buffer containing the batch.
+     * @param offset the offset of the batch's message header within the buffer.
+     * @param header the header of the fragment containing the batch.
+     * @param handler the handler to give each framed message to.
+     * @return {@link Action#ABORT} if any message was aborted, {@link Action#BREAK} or {@link Action#COMMIT} if
+     * any message requested those actions and {@link Action#CONTINUE} otherwise.
+     */
+    public Action forEachMessage(
+        final DirectBuffer buffer, final int offset, final Header header, final ControlledFragmentHandler handler)
+    {
+        final int messageCount = wrapBatch(buffer, offset);
+        final long position = header.position();
+        final int sessionId = header.sessionId();
+        int firstMessageIndex = 0;
+        if (!abortedPositions.isEmpty() && abortedPositions.remove(sessionId) == position)
+        {
+            firstMessageIndex = abortedMessageIndices.get(sessionId);
+        }
+
+        Action result = CONTINUE;
+        int messageOffset = offset + MessageHeaderDecoder.ENCODED_LENGTH + messageHeader.blockLength();
+        for (int i = 0; i < messageCount; i++)
+        {
+            final int messageLength = messageLength(buffer, messageOffset);
+            if (i >= firstMessageIndex)
+            {
+                final Action action = handler.onFragment(buffer, messageOffset, messageLength, header);
+                if (action == ABORT)
+                {
+                    abortedPositions.put(sessionId, position);
+                    abortedMessageIndices.put(sessionId, i);
+                    return ABORT;
+                }
+
+                if (action == BREAK || (action == COMMIT && result == CONTINUE))
+                {
+                    result = action;
+                }
+            }
+            messageOffset += messageLength;
+        }
+
+        return result;
+    }
+
+    /**
+     * Calculate the length of a FixMessage frame, including its message header.
+     *
+     * @param buffer the buffer containing the frame.
+     * @param offset the offset of the frame's message header within the buffer.
+     * @return the length of the frame in bytes.
+     */
+    public int messageLength(final DirectBuffer buffer, final int offset)
+    {
+        messageHeader.wrap(buffer, offset);
+        final int blockLength = messageHeader.blockLength();
+        fixMessage.wrap(buffer, offset + MessageHeaderDecoder.ENCODED_LENGTH, blockLength, messageHeader.version());
+        return MessageHeaderDecoder.ENCODED_LENGTH + blockLength + FixMessageDecoder.bodyHeaderLength() +
+            fixMessage.bodyLength();
+    }
+
+    private int wrapBatch(final DirectBuffer buffer, final int offset)
+    {
+        messageHeader.wrap(buffer, offset);
+        batch.wrap(
+            buffer,
+            offset + MessageHeaderDecoder.ENCODED_LENGTH,
+            messageHeader.blockLength(),
+            messageHeader.version());
+        return batch.messageCount();
+    }
+}
@@ -15,17 +15,20 @@
  */
 package uk.co.real_logic.artio.protocol;
 
-import io.aeron.ExclusivePublication;
+import io.aeron.Publication;
 import io.aeron.logbuffer.BufferClaim;
 import org.agrona.DirectBuffer;
 import org.agrona.MutableDirectBuffer;
 import org.agrona.concurrent.IdleStrategy;
+import org.agrona.concurrent.UnsafeBuffer;
 import org.agrona.concurrent.status.AtomicCounter;
 import uk.co.real_logic.artio.Clock;
 import uk.co.real_logic.artio.DebugLogger;
+import uk.co.real_logic.artio.builder.Encoder;
 import uk.co.real_logic.artio.engine.SessionInfo;
 import uk.co.real_logic.artio.messages.*;
 import uk.co.real_logic.artio.messages.ControlNotificationEncoder.SessionsEncoder;
+import uk.co.real_logic.artio.util.MutableAsciiBuffer;
 
 import java.util.List;
 
@@ -45,7 +48,14 @@ public class GatewayPublication extends ClaimablePublication
 {
     public static final int FRAME_SIZE = FixMessageEncoder.BLOCK_LENGTH + FixMessageDecoder.bodyHeaderLength();
 
+    /**
+     * Returned by {@link #encodeMessage} when the message can't be encoded into a single claim, in which case
+     * nothing has been published.
+     */
+    public static final long MESSAGE_DOES_NOT_FIT_CLAIM = -100;
+
     private static final int FRAMED_MESSAGE_SIZE = MessageHeaderEncoder.ENCODED_LENGTH + FRAME_SIZE;
+    private static final int TAG_OFFSETS_HEADER_LENGTH = FixMessageEncoder.tagOffsetsHeaderLength();
 
     private static final byte[] NO_BYTES = {};
 
@@ -80,8 +90,10 @@ public class GatewayPublication extends ClaimablePublication
     private final InitiateConnectionEncoder initiateConnection = new InitiateConnectionEncoder();
     private final RequestDisconnectEncoder requestDisconnect = new RequestDisconnectEncoder();
     private final MidConnectionDisconnectEncoder midConnectionDisconnect = new MidConnectionDisconnectEncoder();
+    private final DelegateHeartbeatsEncoder delegateHeartbeats = new DelegateHeartbeatsEncoder();
     private final DisconnectEncoder disconnect = new DisconnectEncoder();
     private final FixMessageEncoder fixMessage = new FixMessageEncoder();
+    private final FixMessageBatchEncoder fixMessageBatch = new FixMessageBatchEncoder();
     private final ErrorEncoder error = new ErrorEncoder();
     private final ApplicationHeartbeatEncoder applicationHeartbeat = new ApplicationHeartbeatEncoder();
     private final LibraryConnectEncoder libraryConnect = new LibraryConnectEncoder();
@@ -101,12 +113,19 @@ public class GatewayPublication extends ClaimablePublication
     private final FollowerSessionRequestEncoder followerSessionRequest = new FollowerSessionRequestEncoder();
     private final FollowerSessionReplyEncoder followerSessionReply = new FollowerSessionReplyEncoder();
 
+    private final UnsafeBuffer fragmentedMessageHeader = new UnsafeBuffer(new byte[FRAMED_MESSAGE_SIZE]);
+    private final MutableAsciiBuffer claimedAsciiBuffer = new MutableAsciiBuffer();
+
     private final Clock clock;
     private final int maxPayloadLength;
     private final int maxInitialBodyLength;
+    private final boolean exclusive;
+
+    // How far after the offset given to an encoder the last encoded message started.
+    private int encodedMessageGap;
 
     public GatewayPublication(
-        final ExclusivePublication dataPublication,
+        final Publication dataPublication,
         final AtomicCounter fails,
         final IdleStrategy idleStrategy,
         final Clock clock,
@@ -116,6 +135,7 @@ public class GatewayPublication extends ClaimablePublication
         this.clock = clock;
         this.maxPayloadLength = dataPublication.maxPayloadLength();
         this.maxInitialBodyLength = maxPayloadLength - FRAMED_MESSAGE_SIZE;
+        this.exclusive = isExclusive();
     }
 
     public long saveMessage(
@@ -129,12 +149,74 @@ public class GatewayPublication extends ClaimablePublication
         final long connectionId,
         final MessageStatus status,
         final int sequenceNumber)
+    {
+        return saveMessage(
+            srcBuffer,
+            srcOffset,
+            srcLength,
+            libraryId,
+            messageType,
+            sessionId,
+            sequenceIndex,
+            connectionId,
+            status,
+            sequenceNumber,
+            null);
+    }
+
+    /**
+     * Publish a FIX message, optionally followed by an index of the offsets of its tags. The index is only
+     * published if the framed message and index fit in a single fragment.
+     *
+     * @param srcBuffer the buffer containing the message.
+     * @param srcOffset the offset of the message within the buffer.
+     * @param srcLength the length of the message.
+     * @param libraryId the library that owns the session.
+     * @param messageType the packed message type of the message.
+     * @param sessionId the session that the message belongs to.
+     * @param sequenceIndex the current sequence index of the session.
+     * @param connectionId the connection that the message was received or sent on.
+     * @param status the status of the message.
+     * @param sequenceNumber the sequence number of the message, if known.
+     * @param tagOffsets the index of the message's tags, or null if it isn't to be indexed.
+     * @return the position of the message, or a negative value if back pressured.
+     */
+    public long saveMessage(
+        final DirectBuffer srcBuffer,
+        final int srcOffset,
+        final int srcLength,
+        final int libraryId,
+        final int messageType,
+        final long sessionId,
+        final int sequenceIndex,
+        final long connectionId,
+        final MessageStatus status,
+        final int sequenceNumber,
+        final TagOffsetIndex tagOffsets)
     {
         final BufferClaim bufferClaim = this.bufferClaim;
         final long timestamp = clock.time();
         final int framedLength = FRAMED_MESSAGE_SIZE + srcLength;
         final boolean fragmented = framedLength > maxPayloadLength;
-        final int claimLength = fragmented ? maxPayloadLength : framedLength;
+        if (fragmented && !exclusive)
+        {
+            return offerFragmentedMessage(
+                srcBuffer,
+                srcOffset,
+                srcLength,
+                libraryId,
+                messageType,
+                sessionId,
+                sequenceIndex,
+                connectionId,
+                status,
+                sequenceNumber,
+                timestamp);
+        }
+
+        final int tagOffsetsLength = tagOffsets == null ? 0 : TAG_OFFSETS_HEADER_LENGTH + tagOffsets.length();
+        final boolean indexed = tagOffsetsLength > 0 && framedLength + tagOffsetsLength <= maxPayloadLength;
+        final int claimLength = fragmented ? maxPayloadLength : framedLength + (indexed ? tagOffsetsLength : 0);
         int srcFragmentLength = fragmented ? maxInitialBodyLength : srcLength;
         int srcFragmentOffset = srcOffset;
 
@@ -164,8 +246,14 @@ public class GatewayPublication extends ClaimablePublication
             .timestamp(timestamp)
             .status(status)
             .sequenceNumber(sequenceNumber)
+            .tagOffsetCount((short)(indexed ? tagOffsets.entryCount() : 0))
             .putBody(srcBuffer, srcFragmentOffset, srcFragmentLength);
 
+        if (indexed)
+        {
+            fixMessage.putTagOffsets(tagOffsets.buffer(), 0, tagOffsets.length());
+        }
+
         if (!fragmented)
         {
             bufferClaim.commit();
@@ -201,6 +289,255 @@ public class GatewayPublication extends ClaimablePublication
         return position;
     }
 
+    /**
+     * Encode a FIX message directly into a claim on this publication, rather than encoding it into a separate
+     * buffer and copying it in. The claim is sized by the encoder's {@link Encoder#maxEncodedLength()}, so the
+     * encoder can't write past it. An Aeron claim can't be shrunk, so any of the claim that the message doesn't
+     * use is left as padding at the end of the fragment, after the <code>body</code> of the FixMessage.
+     *
+     * If the encoder's bound is longer than <code>maxLength</code>, or would need a fragmented message, then
+     * nothing is published and {@link #MESSAGE_DOES_NOT_FIT_CLAIM} is returned.
+     *
+     * @param encoder the encoder of the message, whose header has been completed.
+     * @param maxLength the most space that may be claimed for the encoded message.
+     * @param libraryId the library that's sending the message.
+     * @param messageType the packed message type of the message.
+     * @param sessionId the session sending the message.
+     * @param sequenceIndex the current sequence index of the session.
+     * @param connectionId the connection that the message is sent on.
+     * @param status the status of the message.
+     * @param sequenceNumber the sequence number of the message.
+     * @return the position of the message, a negative value if back pressured or
+     * {@link #MESSAGE_DOES_NOT_FIT_CLAIM}.
+     */
+    public long encodeMessage(
+        final Encoder encoder,
+        final int maxLength,
+        final int libraryId,
+        final int messageType,
+        final long sessionId,
+        final int sequenceIndex,
+        final long connectionId,
+        final MessageStatus status,
+        final int sequenceNumber)
+    {
+        final int maxEncodedLength = encoder.maxEncodedLength();
+        if (maxEncodedLength > maxLength || maxEncodedLength > maxPayloadLength - FRAMED_MESSAGE_SIZE)
+        {
+            return MESSAGE_DOES_NOT_FIT_CLAIM;
+        }
+
+        final int claimLength = FRAMED_MESSAGE_SIZE + maxEncodedLength;
+
+        final long timestamp = clock.time();
+        final long position = claim(claimLength);
+        if (position < 0)
+        {
+            return position;
+        }
+
+        final MutableDirectBuffer destBuffer = bufferClaim.buffer();
+        final int claimOffset = bufferClaim.offset();
+        final MutableAsciiBuffer claimedAsciiBuffer = this.claimedAsciiBuffer;
+        claimedAsciiBuffer.wrap(destBuffer, claimOffset, claimLength);
+
+        // Encoders leave a gap before the start of the message whose size depends on the number of digits in its
+        // body length, so the gap of the last message is used to predict where this one should be encoded. The
+        // encoder writes within maxEncodedLength of encodeOffset, so within the claim.
+        final int encodeOffset = Math.max(0, FRAMED_MESSAGE_SIZE - encodedMessageGap);
+        final int messageOffset;
+        final int messageLength;
+        try
+        {
+            final long result = encoder.encode(claimedAsciiBuffer, encodeOffset);
+            messageOffset = Encoder.offset(result);
+            messageLength = Encoder.length(result);
+            encodedMessageGap = messageOffset - encodeOffset;
+
+            if (messageOffset != FRAMED_MESSAGE_SIZE)
+            {
+                claimedAsciiBuffer.putBytes(FRAMED_MESSAGE_SIZE, claimedAsciiBuffer, messageOffset, messageLength);
+            }
+        }
+        catch (final RuntimeException ex)
+        {
+            bufferClaim.abort();
+            throw ex;
+        }
+
+        // The frame is written after the message, since encoding may have written over it.
+        header.wrap(destBuffer, claimOffset)
+            .blockLength(fixMessage.sbeBlockLength())
+            .templateId(fixMessage.sbeTemplateId())
+            .schemaId(fixMessage.sbeSchemaId())
+            .version(fixMessage.sbeSchemaVersion());
+
+        final int offset = claimOffset + header.encodedLength();
+
+        fixMessage.wrap(destBuffer, offset)
+            .libraryId(libraryId)
+            .messageType(messageType)
+            .session(sessionId)
+            .sequenceIndex(sequenceIndex)
+            .connection(connectionId)
+            .timestamp(timestamp)
+            .status(status)
+            .sequenceNumber(sequenceNumber)
+            .tagOffsetCount((short)0);
+
+        putBodyLength(messageLength, offset, destBuffer);
+
+        bufferClaim.commit();
+
+        DebugLogger.log(FIX_MESSAGE_FLOW, "Enqueued %s%n", claimedAsciiBuffer, FRAMED_MESSAGE_SIZE, messageLength);
+
+        return position;
+    }
+
+    // A shared publication can interleave claims from other threads, so a fragmented message is offered whole.
+    private long offerFragmentedMessage(
+        final DirectBuffer srcBuffer,
+        final int srcOffset,
+        final int srcLength,
+        final int libraryId,
+        final int messageType,
+        final long sessionId,
+        final int sequenceIndex,
+        final long connectionId,
+        final MessageStatus status,
+        final int sequenceNumber,
+        final long timestamp)
+    {
+        final UnsafeBuffer headerBuffer = this.fragmentedMessageHeader;
+
+        header.wrap(headerBuffer, 0)
+            .blockLength(fixMessage.sbeBlockLength())
+            .templateId(fixMessage.sbeTemplateId())
+            .schemaId(fixMessage.sbeSchemaId())
+            .version(fixMessage.sbeSchemaVersion());
+
+        final int offset = header.encodedLength();
+
+        fixMessage.wrap(headerBuffer, offset)
+            .libraryId(libraryId)
+            .messageType(messageType)
+            .session(sessionId)
+            .sequenceIndex(sequenceIndex)
+            .connection(connectionId)
+            .timestamp(timestamp)
+            .status(status)
+            .sequenceNumber(sequenceNumber)
+            .tagOffsetCount((short)0);
+
+        putBodyLength(srcLength, offset, headerBuffer);
+
+        final long position = offer(headerBuffer, 0, FRAMED_MESSAGE_SIZE, srcBuffer, srcOffset, srcLength);
+        if (position > 0)
+        {
+            DebugLogger.log(FIX_MESSAGE_FLOW, "Enqueued %s%n", srcBuffer, srcOffset, srcLength);
+        }
+
+        return position;
+    }
+
+    /**
+     * Publish several valid FIX messages from the same connection as a single FixMessageBatch fragment, so that
+     * they share a single claim and timestamp. The caller must ensure that the batch fits in a single fragment,
+     * see {@link #batchedMessageLength(int)} and {@link #maxPayloadLength()}.
+     *
+     * @param srcBuffer the buffer that the messages were framed in.
+     * @param srcOffsets the offsets of each message within the buffer.
+     * @param srcLengths the lengths of each message.
+     * @param messageTypes the packed message types of each message.
+     * @param messageCount the number of messages in the batch.
+     * @param batchLength the total length of the batch, including its header.
+     * @param libraryId the library that owns the connection.
+     * @param sessionId the session of the connection.
+     * @param sequenceIndex the current sequence index of the session.
+     * @param connectionId the connection that the messages were received on.
+     * @return the position of the batch, or a negative value if back pressured.
+     */
+    public long saveMessageBatch(
+        final DirectBuffer srcBuffer,
+        final int[] srcOffsets,
+        final int[] srcLengths,
+        final int[] messageTypes,
+        final int messageCount,
+        final int batchLength,
+        final int libraryId,
+        final long sessionId,
+        final int sequenceIndex,
+        final long connectionId)
+    {
+        final BufferClaim bufferClaim = this.bufferClaim;
+        final long timestamp = clock.time();
+
+        final long position = claim(batchLength);
+        if (position < 0)
+        {
+            return position;
+        }
+
+        int offset = bufferClaim.offset();
+        final MutableDirectBuffer destBuffer = bufferClaim.buffer();
+
+        header.wrap(destBuffer, offset)
+            .blockLength(fixMessageBatch.sbeBlockLength())
+            .templateId(fixMessageBatch.sbeTemplateId())
+            .schemaId(fixMessageBatch.sbeSchemaId())
+            .version(fixMessageBatch.sbeSchemaVersion());
+
+        offset += header.encodedLength();
+
+        fixMessageBatch
+            .wrap(destBuffer, offset)
+            .messageCount(messageCount);
+
+        offset += fixMessageBatch.encodedLength();
+
+        for (int i = 0; i < messageCount; i++)
+        {
+            final int srcLength = srcLengths[i];
+
+            header.wrap(destBuffer, offset)
+                .blockLength(fixMessage.sbeBlockLength())
+                .templateId(fixMessage.sbeTemplateId())
+                .schemaId(fixMessage.sbeSchemaId())
+                .version(fixMessage.sbeSchemaVersion());
+
+            fixMessage.wrap(destBuffer, offset + header.encodedLength())
+                .libraryId(libraryId)
+                .messageType(messageTypes[i])
+                .session(sessionId)
+                .sequenceIndex(sequenceIndex)
+                .connection(connectionId)
+                .timestamp(timestamp)
+                .status(MessageStatus.OK)
+                .sequenceNumber(0)
+                .tagOffsetCount((short)0)
+                .putBody(srcBuffer, srcOffsets[i], srcLength);
+
+            offset += batchedMessageLength(srcLength);
+        }
+
+        bufferClaim.commit();
+
+        DebugLogger.log(FIX_MESSAGE_FLOW, "Enqueued batch of %d messages%n", messageCount);
+
+        return position;
+    }
+
+    /**
+     * Calculate the space that a FIX message takes up within a FixMessageBatch.
+     *
+     * @param srcLength the length of the FIX message.
+     * @return the space that the framed message takes up.
+     */
+    public static int batchedMessageLength(final int srcLength)
+    {
+        return FRAMED_MESSAGE_SIZE + srcLength;
+    }
+
     private void putBodyLength(final int srcLength, final int offset, final MutableDirectBuffer destBuffer)
     {
         destBuffer.putShort(offset + FixMessageEncoder.BLOCK_LENGTH, (short)srcLength, LITTLE_ENDIAN);
@@ -427,6 +764,39 @@ public class GatewayPublication extends ClaimablePublication
         return position;
     }
 
+    public long saveDelegateHeartbeats(
+        final int libraryId,
+        final long connectionId,
+        final int sentSequenceNumberCounterId,
+        final int lastSentSequenceNumber,
+        final int sequenceIndex,
+        final long heartbeatIntervalInMs)
+    {
+        final long position = claim(header.encodedLength() + DelegateHeartbeatsEncoder.BLOCK_LENGTH);
+        if (position < 0)
+        {
+            return position;
+        }
+
+        final MutableDirectBuffer buffer = bufferClaim.buffer();
+        final int offset = bufferClaim.offset();
+
+        delegateHeartbeats
+            .wrapAndApplyHeader(buffer, offset, header)
+            .libraryId(libraryId)
+            .connection(connectionId)
+            .sentSequenceNumberCounterId(sentSequenceNumberCounterId)
+            .lastSentSequenceNumber(lastSentSequenceNumber)
+            .sequenceIndex(sequenceIndex)
+            .heartbeatIntervalInMs(heartbeatIntervalInMs);
+
+        bufferClaim.commit();
+
+        logSbeMessage(GATEWAY_MESSAGE, delegateHeartbeats);
+
+        return position;
+    }
+
     public long saveMidConnectionDisconnect(final int libraryId, final long correlationId)
     {
         final long position = claim(MID_CONNECTION_DISCONNECT_LENGTH);
@@ -890,6 +1260,11 @@ public class GatewayPublication extends ClaimablePublication
         return dataPublication.position();
     }
 
+    public boolean isConnected()
+    {
+        return dataPublication.isConnected();
+    }
+
     private byte[] bytes(final String host)
     {
         if (host == null)
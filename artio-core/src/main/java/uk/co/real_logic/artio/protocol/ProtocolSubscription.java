@@ -20,6 +20,7 @@ import io.aeron.logbuffer.Header;
 import org.agrona.DirectBuffer;
 import uk.co.real_logic.artio.DebugLogger;
 import uk.co.real_logic.artio.messages.DisconnectDecoder;
+import uk.co.real_logic.artio.messages.FixMessageBatchDecoder;
 import uk.co.real_logic.artio.messages.FixMessageDecoder;
 import uk.co.real_logic.artio.messages.MessageHeaderDecoder;
 
@@ -34,6 +35,7 @@ public final class ProtocolSubscription implements ControlledFragmentHandler
     private final MessageHeaderDecoder messageHeader = new MessageHeaderDecoder();
     private final DisconnectDecoder disconnect = new DisconnectDecoder();
     private final FixMessageDecoder messageFrame = new FixMessageDecoder();
+    private final FixMessageBatchReader batchReader = new FixMessageBatchReader();
 
     private final ProtocolHandler protocolHandler;
     private final Action defaultAction;
@@ -69,6 +71,12 @@ public final class ProtocolSubscription implements ControlledFragmentHandler
     public Action onFragment(
         final DirectBuffer buffer, final int offset, final int length, final Header header)
     {
+        messageHeader.wrap(buffer, offset);
+        if (messageHeader.templateId() == FixMessageBatchDecoder.TEMPLATE_ID)
+        {
+            return batchReader.forEachMessage(buffer, offset, header, this);
+        }
+
         return onFragment(buffer, offset, length, header.position());
     }
 
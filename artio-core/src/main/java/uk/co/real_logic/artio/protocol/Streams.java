@@ -16,7 +16,9 @@
 package uk.co.real_logic.artio.protocol;
 
 import io.aeron.Aeron;
+import io.aeron.ChannelUri;
 import io.aeron.ExclusivePublication;
+import io.aeron.Publication;
 import io.aeron.Subscription;
 import org.agrona.concurrent.IdleStrategy;
 import org.agrona.concurrent.status.AtomicCounter;
@@ -58,7 +60,7 @@ public final class Streams
     public GatewayPublication gatewayPublication(final IdleStrategy idleStrategy, final String name)
     {
         return new GatewayPublication(
-            dataPublication(name),
+            dataPublication(aeronChannel, name),
             failedPublications,
             idleStrategy,
             clock,
@@ -66,9 +68,60 @@ public final class Streams
         );
     }
 
-    private ExclusivePublication dataPublication(final String name)
+    /**
+     * Create a publication proxy for an exclusive publication with a given Aeron session id, so that subscribers
+     * can receive only its messages by subscribing with the same session id.
+     *
+     * @param idleStrategy the idle strategy to use when back pressured.
+     * @param name the name of the publication, used when printing stream identifiers.
+     * @param sessionId the Aeron session id of the publication.
+     * @return the publication proxy.
+     */
+    public GatewayPublication gatewayPublication(
+        final IdleStrategy idleStrategy, final String name, final int sessionId)
     {
-        final ExclusivePublication publication = aeron.addExclusivePublication(aeronChannel, streamId);
+        return new GatewayPublication(
+            dataPublication(ChannelUri.addSessionId(aeronChannel, sessionId), name),
+            failedPublications,
+            idleStrategy,
+            clock,
+            maxClaimAttempts
+        );
+    }
+
+    /**
+     * Create a publication proxy for a publication that is shared with every other caller of this method. Each
+     * thread should use its own proxy, but messages from all of them are published in a single total order.
+     *
+     * @param idleStrategy the idle strategy to use when back pressured.
+     * @param name the name of the publication, used when printing stream identifiers.
+     * @return the publication proxy.
+     */
+    public GatewayPublication sharedGatewayPublication(final IdleStrategy idleStrategy, final String name)
+    {
+        return new GatewayPublication(
+            sharedDataPublication(name),
+            failedPublications,
+            idleStrategy,
+            clock,
+            maxClaimAttempts
+        );
+    }
+
+    private Publication sharedDataPublication(final String name)
+    {
+        final Publication publication = aeron.addPublication(aeronChannel, streamId);
+        if (recordingCoordinator != null)
+        {
+            recordingCoordinator.track(publication);
+        }
+        StreamInformation.print(name, publication, printAeronStreamIdentifiers);
+        return publication;
+    }
+
+    private ExclusivePublication dataPublication(final String channel, final String name)
+    {
+        final ExclusivePublication publication = aeron.addExclusivePublication(channel, streamId);
         if (recordingCoordinator != null)
         {
             recordingCoordinator.track(publication);
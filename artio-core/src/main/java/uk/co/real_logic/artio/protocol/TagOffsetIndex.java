@@ -0,0 +1,322 @@
+/*
+ * Copyright 2015-2019 Real Logic Ltd, Adaptive Financial Consulting Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio.protocol;
+
+import org.agrona.DirectBuffer;
+import org.agrona.MutableDirectBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+import uk.co.real_logic.artio.messages.FixMessageDecoder;
+import uk.co.real_logic.artio.messages.MessageHeaderDecoder;
+import uk.co.real_logic.artio.util.AsciiBuffer;
+
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+import static uk.co.real_logic.artio.util.AsciiBuffer.SEPARATOR;
+import static uk.co.real_logic.artio.util.AsciiBuffer.UNKNOWN_INDEX;
+
+/**
+ * An index from the tags of a FIX message's standard header fields to the offsets of their values, so that
+ * consumers can read header fields without scanning the message.
+ *
+ * The index is carried in the tagOffsets field of a FixMessage frame, after the body, and the frame's tagOffsetCount
+ * field says how many entries it has. Each entry is an int32 tag followed by the uint16 offset of the value relative
+ * to the start of the body and the uint16 length of the value. Frames that don't carry an index, such as fragmented
+ * or batched messages, have a tagOffsetCount of 0, as do frames from before the index was added to the schema.
+ */
+public final class TagOffsetIndex
+{
+    public static final int MISSING_TAG = UNKNOWN_INDEX;
+
+    static final int ENTRY_LENGTH = 8;
+    static final int MAX_ENTRIES = 32;
+
+    private static final int MSG_SEQ_NUM_TAG = 34;
+    private static final int VALUE_OFFSET_OFFSET = 4;
+    private static final int VALUE_LENGTH_OFFSET = 6;
+
+    private final UnsafeBuffer indexBuffer = new UnsafeBuffer(new byte[MAX_ENTRIES * ENTRY_LENGTH]);
+    private final UnsafeBuffer entries = new UnsafeBuffer(0, 0);
+
+    private int bodyOffset;
+
+    /**
+     * Index the standard header fields of a FIX message, after which this index can be read or published. Indexing
+     * stops at the first field that isn't a standard header field, or at a data field.
+     *
+     * @param buffer the buffer containing the message.
+     * @param offset the offset of the message within the buffer.
+     * @param length the length of the message.
+     */
+    public void index(final AsciiBuffer buffer, final int offset, final int length)
+    {
+        final UnsafeBuffer indexBuffer = this.indexBuffer;
+        final int end = offset + length;
+        int position = offset;
+        int indexLength = 0;
+        while (position < end && indexLength < indexBuffer.capacity())
+        {
+            final int equalsPosition = buffer.scan(position, end - 1, '=');
+            if (equalsPosition == UNKNOWN_INDEX)
+            {
+                break;
+            }
+
+            final int tag = buffer.getNatural(position, equalsPosition);
+            if (!isStandardHeaderTag(tag))
+            {
+                break;
+            }
+
+            final int valueOffset = equalsPosition + 1;
+            final int endOfField = buffer.scan(valueOffset, end - 1, SEPARATOR);
+            if (endOfField == UNKNOWN_INDEX)
+            {
+                break;
+            }
+
+            indexBuffer.putInt(indexLength, tag, LITTLE_ENDIAN);
+            indexBuffer.putShort(indexLength + VALUE_OFFSET_OFFSET, (short)(valueOffset - offset), LITTLE_ENDIAN);
+            indexBuffer.putShort(indexLength + VALUE_LENGTH_OFFSET, (short)(endOfField - valueOffset), LITTLE_ENDIAN);
+            indexLength += ENTRY_LENGTH;
+
+            position = endOfField + 1;
+        }
+
+        bodyOffset = offset;
+        entries.wrap(indexBuffer, 0, indexLength);
+    }
+
+    /**
+     * Wrap the index carried by a FixMessage frame, if it has one.
+     *
+     * @param entryCount the tagOffsetCount of the frame.
+     * @param buffer the buffer containing the frame.
+     * @param bodyOffset the offset of the start of the FIX message within the buffer.
+     * @param bodyLength the length of the FIX message.
+     * @param frameEnd the end of the frame, or fragment, containing the message.
+     * @return true if the frame carries an index, false otherwise in which case the index is empty.
+     */
+    public boolean wrap(
+        final int entryCount, final DirectBuffer buffer, final int bodyOffset, final int bodyLength, final int frameEnd)
+    {
+        final int lengthOffset = bodyOffset + bodyLength;
+        final int indexOffset = lengthOffset + FixMessageDecoder.tagOffsetsHeaderLength();
+        final int indexLength = entryCount * ENTRY_LENGTH;
+        this.bodyOffset = bodyOffset;
+        if (entryCount == 0 || entryCount > MAX_ENTRIES || indexOffset + indexLength > frameEnd ||
+            (buffer.getShort(lengthOffset, LITTLE_ENDIAN) & 0xFFFF) != indexLength)
+        {
+            entries.wrap(indexBuffer, 0, 0);
+            return false;
+        }
+
+        entries.wrap(buffer, indexOffset, indexLength);
+        return true;
+    }
+
+    /**
+     * Wrap the index carried by a FixMessage frame whose header hasn't been decoded, if it has one.
+     *
+     * @param buffer the buffer containing the frame.
+     * @param frameOffset the offset of the frame's message header within the buffer.
+     * @param bodyOffset the offset of the start of the FIX message within the buffer.
+     * @param bodyLength the length of the FIX message.
+     * @param frameEnd the end of the frame, or fragment, containing the message.
+     * @return true if the frame carries an index, false otherwise in which case the index is empty.
+     */
+    public boolean wrapFrame(
+        final DirectBuffer buffer,
+        final int frameOffset,
+        final int bodyOffset,
+        final int bodyLength,
+        final int frameEnd)
+    {
+        return wrap(entryCount(buffer, frameOffset), buffer, bodyOffset, bodyLength, frameEnd);
+    }
+
+    /**
+     * Mark a FixMessage frame as not carrying an index, for example after its header has been changed.
+     *
+     * @param buffer the buffer containing the frame.
+     * @param frameOffset the offset of the frame's message header within the buffer.
+     */
+    public static void clear(final MutableDirectBuffer buffer, final int frameOffset)
+    {
+        if (version(buffer, frameOffset) >= FixMessageDecoder.tagOffsetCountSinceVersion())
+        {
+            buffer.putByte(entryCountOffset(frameOffset), (byte)0);
+        }
+    }
+
+    private static int entryCount(final DirectBuffer buffer, final int frameOffset)
+    {
+        if (version(buffer, frameOffset) < FixMessageDecoder.tagOffsetCountSinceVersion())
+        {
+            return 0;
+        }
+
+        return buffer.getByte(entryCountOffset(frameOffset)) & 0xFF;
+    }
+
+    private static int version(final DirectBuffer buffer, final int frameOffset)
+    {
+        final int versionOffset = frameOffset + MessageHeaderDecoder.versionEncodingOffset();
+        return buffer.getShort(versionOffset, LITTLE_ENDIAN) & 0xFFFF;
+    }
+
+    private static int entryCountOffset(final int frameOffset)
+    {
+        return frameOffset + MessageHeaderDecoder.ENCODED_LENGTH + FixMessageDecoder.tagOffsetCountEncodingOffset();
+    }
+
+    /**
+     * Find the offset of the value of a field within the buffer containing the message.
+     *
+     * @param tag the tag of the field.
+     * @return the offset of the field's value, or {@link #MISSING_TAG} if the field isn't in the index.
+     */
+    public int valueOffset(final int tag)
+    {
+        final int entryOffset = entryOffset(tag);
+        if (entryOffset == MISSING_TAG)
+        {
+            return MISSING_TAG;
+        }
+
+        return bodyOffset + (entries.getShort(entryOffset + VALUE_OFFSET_OFFSET, LITTLE_ENDIAN) & 0xFFFF);
+    }
+
+    /**
+     * Find the length of the value of a field.
+     *
+     * @param tag the tag of the field.
+     * @return the length of the field's value, or {@link #MISSING_TAG} if the field isn't in the index.
+     */
+    public int valueLength(final int tag)
+    {
+        final int entryOffset = entryOffset(tag);
+        if (entryOffset == MISSING_TAG)
+        {
+            return MISSING_TAG;
+        }
+
+        return entries.getShort(entryOffset + VALUE_LENGTH_OFFSET, LITTLE_ENDIAN) & 0xFFFF;
+    }
+
+    /**
+     * Read the MsgSeqNum of the indexed message.
+     *
+     * @param buffer the buffer containing the message.
+     * @return the MsgSeqNum of the message, or {@link #MISSING_TAG} if it isn't in the index.
+     */
+    public int msgSeqNum(final AsciiBuffer buffer)
+    {
+        final int valueOffset = valueOffset(MSG_SEQ_NUM_TAG);
+        if (valueOffset == MISSING_TAG)
+        {
+            return MISSING_TAG;
+        }
+
+        return buffer.getNatural(valueOffset, valueOffset + valueLength(MSG_SEQ_NUM_TAG));
+    }
+
+    /**
+     * Find the end of the last indexed field. Header fields that aren't indexed can follow it, as indexing stops at
+     * the first field that isn't one of the indexed standard header fields.
+     *
+     * @return the offset of the separator after the last indexed field, or the start of the message if the index is
+     * empty.
+     */
+    public int indexedEnd()
+    {
+        final int length = entries.capacity();
+        if (length == 0)
+        {
+            return bodyOffset;
+        }
+
+        final int lastEntryOffset = length - ENTRY_LENGTH;
+        return bodyOffset +
+            (entries.getShort(lastEntryOffset + VALUE_OFFSET_OFFSET, LITTLE_ENDIAN) & 0xFFFF) +
+            (entries.getShort(lastEntryOffset + VALUE_LENGTH_OFFSET, LITTLE_ENDIAN) & 0xFFFF);
+    }
+
+    public DirectBuffer buffer()
+    {
+        return entries;
+    }
+
+    public int length()
+    {
+        return entries.capacity();
+    }
+
+    public int entryCount()
+    {
+        return entries.capacity() / ENTRY_LENGTH;
+    }
+
+    private int entryOffset(final int tag)
+    {
+        final UnsafeBuffer entries = this.entries;
+        final int length = entries.capacity();
+        for (int entryOffset = 0; entryOffset < length; entryOffset += ENTRY_LENGTH)
+        {
+            if (entries.getInt(entryOffset, LITTLE_ENDIAN) == tag)
+            {
+                return entryOffset;
+            }
+        }
+
+        return MISSING_TAG;
+    }
+
+    // Excludes the data fields, which would have to be skipped by length since they can contain separators.
+    private static boolean isStandardHeaderTag(final int tag)
+    {
+        switch (tag)
+        {
+            case 8: // BeginString
+            case 9: // BodyLength
+            case 35: // MsgType
+            case 49: // SenderCompID
+            case 56: // TargetCompID
+            case 115: // OnBehalfOfCompID
+            case 128: // DeliverToCompID
+            case 34: // MsgSeqNum
+            case 50: // SenderSubID
+            case 142: // SenderLocationID
+            case 57: // TargetSubID
+            case 143: // TargetLocationID
+            case 116: // OnBehalfOfSubID
+            case 144: // OnBehalfOfLocationID
+            case 129: // DeliverToSubID
+            case 145: // DeliverToLocationID
+            case 43: // PossDupFlag
+            case 97: // PossResend
+            case 52: // SendingTime
+            case 122: // OrigSendingTime
+            case 347: // MessageEncoding
+            case 369: // LastMsgSeqNumProcessed
+            case 1128: // ApplVerID
+            case 1129: // CstmApplVerID
+            case 1156: // ApplExtID
+                return true;
+
+            default:
+                return false;
+        }
+    }
+}
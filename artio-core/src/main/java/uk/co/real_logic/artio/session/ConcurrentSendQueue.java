@@ -0,0 +1,227 @@
+/*
+ * Copyright 2015-2018 Real Logic Ltd, Adaptive Financial Consulting Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio.session;
+
+import org.agrona.MutableDirectBuffer;
+import org.agrona.concurrent.MessageHandler;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.agrona.concurrent.ringbuffer.ManyToOneRingBuffer;
+import org.agrona.concurrent.ringbuffer.RingBuffer;
+import uk.co.real_logic.artio.fields.UtcTimestampEncoder;
+import uk.co.real_logic.artio.util.MutableAsciiBuffer;
+
+import java.nio.ByteBuffer;
+
+import static org.agrona.BitUtil.SIZE_OF_INT;
+import static org.agrona.concurrent.ringbuffer.RingBufferDescriptor.TRAILER_LENGTH;
+import static uk.co.real_logic.artio.fields.UtcTimestampEncoder.LENGTH_WITHOUT_MILLISECONDS;
+
+/**
+ * Messages that other threads have encoded for a session, using {@link ConcurrentSessionSender}s, that are waiting
+ * for the library's thread to give them a sequence number and sending time and publish them.
+ *
+ * Each message is encoded with placeholders for its MsgSeqNum, SendingTime and, if enabled, LastMsgSeqNumProcessed
+ * fields. The producer records where the placeholders are in a header before the message, so that the library's
+ * thread can substitute the real values without parsing the message.
+ */
+final class ConcurrentSendQueue
+{
+    // Offsets of the header before each message, the values are relative to the start of the message.
+    static final int BODY_LENGTH_OFFSET = 0;
+    static final int BODY_OFFSET = BODY_LENGTH_OFFSET + SIZE_OF_INT;
+    static final int MSG_SEQ_NUM_OFFSET = BODY_OFFSET + SIZE_OF_INT;
+    static final int SENDING_TIME_OFFSET = MSG_SEQ_NUM_OFFSET + SIZE_OF_INT;
+    static final int LAST_MSG_SEQ_NUM_PROCESSED_OFFSET = SENDING_TIME_OFFSET + SIZE_OF_INT;
+    static final int HEADER_LENGTH = LAST_MSG_SEQ_NUM_PROCESSED_OFFSET + SIZE_OF_INT;
+
+    static final int NO_FIELD = -1;
+
+    // Each placeholder is a single digit, whilst a sequence number can be up to 10 digits.
+    static final int MAX_PLACEHOLDER_GROWTH = 2 * (MutableAsciiBuffer.lengthInAscii(Integer.MAX_VALUE) - 1);
+
+    private static final int DRAIN_LIMIT = 10;
+    private static final byte[] CHECKSUM_HEADER = "10=".getBytes();
+    private static final int CHECKSUM_LENGTH = "10=000\001".length();
+    private static final byte[] NO_MILLISECONDS = ".000".getBytes();
+
+    private final RingBuffer messages;
+    private final Session session;
+    private final MessageHandler onMessageFunc = this::onMessage;
+    private final UtcTimestampEncoder timestampEncoder = new UtcTimestampEncoder();
+
+    // A message that was read from the ring buffer whilst the publication was back pressured.
+    private final UnsafeBuffer pendingMessage;
+    private int pendingMessageType;
+    private int pendingLength;
+    private boolean backPressured;
+
+    ConcurrentSendQueue(final Session session, final int capacity)
+    {
+        this.session = session;
+        messages = new ManyToOneRingBuffer(new UnsafeBuffer(ByteBuffer.allocateDirect(capacity + TRAILER_LENGTH)));
+        pendingMessage = new UnsafeBuffer(new byte[messages.maxMsgLength()]);
+    }
+
+    RingBuffer messages()
+    {
+        return messages;
+    }
+
+    /**
+     * Publish the messages that have been encoded by other threads, called on the library's thread.
+     *
+     * @return the number of messages published.
+     */
+    int drain()
+    {
+        if (!session.canSendMessage())
+        {
+            return 0;
+        }
+
+        if (pendingLength > 0)
+        {
+            if (!send(pendingMessageType, pendingMessage, 0, pendingLength))
+            {
+                return 0;
+            }
+
+            pendingLength = 0;
+        }
+
+        // Messages are read one at a time, since a read consumes the whole batch even if one can't be published.
+        backPressured = false;
+        int count = 0;
+        while (count < DRAIN_LIMIT && !backPressured && messages.read(onMessageFunc, 1) > 0)
+        {
+            count++;
+        }
+
+        return count;
+    }
+
+    private void onMessage(final int msgTypeId, final MutableDirectBuffer buffer, final int index, final int length)
+    {
+        if (!send(msgTypeId, buffer, index, length))
+        {
+            pendingMessage.putBytes(0, buffer, index, length);
+            pendingMessageType = msgTypeId;
+            pendingLength = length;
+            backPressured = true;
+        }
+    }
+
+    private boolean send(final int messageType, final MutableDirectBuffer buffer, final int index, final int length)
+    {
+        final Session session = this.session;
+        final MutableAsciiBuffer asciiBuffer = session.asciiBuffer;
+
+        final int messageStart = index + HEADER_LENGTH;
+        final int bodyLengthStart = messageStart + buffer.getInt(index + BODY_LENGTH_OFFSET);
+        final int bodyStart = messageStart + buffer.getInt(index + BODY_OFFSET);
+        final int msgSeqNumStart = messageStart + buffer.getInt(index + MSG_SEQ_NUM_OFFSET);
+        final int sendingTimeStart = messageStart + buffer.getInt(index + SENDING_TIME_OFFSET);
+        final int lastMsgSeqNumProcessedOffset = buffer.getInt(index + LAST_MSG_SEQ_NUM_PROCESSED_OFFSET);
+        final int bodyEnd = index + length - CHECKSUM_LENGTH;
+
+        final int sentSeqNum = session.newSentSeqNum();
+        final int lastMsgSeqNumProcessed = session.lastMsgSeqNumProcessed();
+        final boolean hasLastMsgSeqNumProcessed = lastMsgSeqNumProcessedOffset != NO_FIELD;
+
+        // The placeholders are substituted in the order that they appear in the message.
+        int firstStart = msgSeqNumStart;
+        int firstValue = sentSeqNum;
+        int secondStart = hasLastMsgSeqNumProcessed ? messageStart + lastMsgSeqNumProcessedOffset : bodyEnd;
+        int secondValue = lastMsgSeqNumProcessed;
+        if (secondStart < firstStart)
+        {
+            firstStart = secondStart;
+            firstValue = lastMsgSeqNumProcessed;
+            secondStart = msgSeqNumStart;
+            secondValue = sentSeqNum;
+        }
+
+        final int firstGrowth = lengthInAscii(firstValue) - 1;
+        final int secondGrowth = hasLastMsgSeqNumProcessed ? lengthInAscii(secondValue) - 1 : 0;
+        final int bodyLength = bodyEnd - bodyStart + firstGrowth + secondGrowth;
+
+        int position = bodyLengthStart - messageStart;
+        asciiBuffer.putBytes(0, buffer, messageStart, position);
+        position += asciiBuffer.putNaturalIntAscii(position, bodyLength);
+        asciiBuffer.putSeparator(position);
+        position++;
+
+        final int bodyOutStart = position;
+        position = copy(asciiBuffer, position, buffer, bodyStart, firstStart);
+        position += asciiBuffer.putIntAscii(position, firstValue);
+        if (hasLastMsgSeqNumProcessed)
+        {
+            position = copy(asciiBuffer, position, buffer, firstStart + 1, secondStart);
+            position += asciiBuffer.putIntAscii(position, secondValue);
+            position = copy(asciiBuffer, position, buffer, secondStart + 1, bodyEnd);
+        }
+        else
+        {
+            position = copy(asciiBuffer, position, buffer, firstStart + 1, bodyEnd);
+        }
+
+        // The sending time placeholder has the length of a timestamp with milliseconds, so it's overwritten in place.
+        int sendingTimeOutStart = bodyOutStart + sendingTimeStart - bodyStart;
+        if (sendingTimeStart > firstStart)
+        {
+            sendingTimeOutStart += firstGrowth;
+        }
+        if (sendingTimeStart > secondStart)
+        {
+            sendingTimeOutStart += secondGrowth;
+        }
+        final UtcTimestampEncoder timestampEncoder = this.timestampEncoder;
+        final int sendingTimeLength = timestampEncoder.encode(session.time());
+        asciiBuffer.putBytes(sendingTimeOutStart, timestampEncoder.buffer(), 0, sendingTimeLength);
+        if (sendingTimeLength == LENGTH_WITHOUT_MILLISECONDS)
+        {
+            // Times on a whole second are encoded without milliseconds.
+            asciiBuffer.putBytes(sendingTimeOutStart + sendingTimeLength, NO_MILLISECONDS);
+        }
+
+        final int checksum = asciiBuffer.computeChecksum(0, position);
+        asciiBuffer.putBytes(position, CHECKSUM_HEADER);
+        position += CHECKSUM_HEADER.length;
+        asciiBuffer.putNaturalPaddedIntAscii(position, 3, checksum);
+        position += 3;
+        asciiBuffer.putSeparator(position);
+        position++;
+
+        return session.send(asciiBuffer, 0, position, sentSeqNum, messageType) > 0;
+    }
+
+    private static int copy(
+        final MutableAsciiBuffer asciiBuffer,
+        final int position,
+        final MutableDirectBuffer buffer,
+        final int start,
+        final int end)
+    {
+        final int length = end - start;
+        asciiBuffer.putBytes(position, buffer, start, length);
+        return position + length;
+    }
+
+    private static int lengthInAscii(final int value)
+    {
+        return value == 0 ? 1 : MutableAsciiBuffer.lengthInAscii(value);
+    }
+}
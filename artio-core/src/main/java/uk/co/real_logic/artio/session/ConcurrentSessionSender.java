@@ -0,0 +1,155 @@
+/*
+ * Copyright 2015-2018 Real Logic Ltd, Adaptive Financial Consulting Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio.session;
+
+import org.agrona.concurrent.ringbuffer.RingBuffer;
+import uk.co.real_logic.artio.builder.Encoder;
+import uk.co.real_logic.artio.builder.SessionHeaderEncoder;
+import uk.co.real_logic.artio.fields.UtcTimestampEncoder;
+import uk.co.real_logic.artio.util.MutableAsciiBuffer;
+
+import static uk.co.real_logic.artio.Constants.*;
+import static uk.co.real_logic.artio.dictionary.StandardFixConstants.START_OF_HEADER;
+import static uk.co.real_logic.artio.fields.UtcTimestampEncoder.LENGTH_WITH_MILLISECONDS;
+import static uk.co.real_logic.artio.session.ConcurrentSendQueue.*;
+
+/**
+ * Sends messages on a session from a thread other than the library's thread, see
+ * {@link Session#newConcurrentSender()}.
+ *
+ * Messages are encoded on the calling thread into a queue that's shared by all the session's senders. The library's
+ * thread gives them their MsgSeqNum and SendingTime as it publishes them, so messages are sent in the order that
+ * they were offered to the queue, with sending times that reflect when they were published.
+ *
+ * Not thread safe: each producing thread should have its own sender, and its own encoders.
+ */
+public final class ConcurrentSessionSender
+{
+    private static final int PLACEHOLDER = 0;
+
+    private final RingBuffer messages;
+    private final SessionIdStrategy sessionIdStrategy;
+    private final CompositeKey sessionKey;
+    private final boolean enableLastMsgSeqNumProcessed;
+    private final byte[] sendingTimePlaceholder;
+    private final MutableAsciiBuffer buffer;
+
+    ConcurrentSessionSender(
+        final RingBuffer messages,
+        final SessionIdStrategy sessionIdStrategy,
+        final CompositeKey sessionKey,
+        final boolean enableLastMsgSeqNumProcessed,
+        final int sessionBufferSize)
+    {
+        this.messages = messages;
+        this.sessionIdStrategy = sessionIdStrategy;
+        this.sessionKey = sessionKey;
+        this.enableLastMsgSeqNumProcessed = enableLastMsgSeqNumProcessed;
+
+        final UtcTimestampEncoder timestampEncoder = new UtcTimestampEncoder();
+        sendingTimePlaceholder = new byte[LENGTH_WITH_MILLISECONDS];
+        timestampEncoder.encode(1);
+        System.arraycopy(timestampEncoder.buffer(), 0, sendingTimePlaceholder, 0, LENGTH_WITH_MILLISECONDS);
+
+        // The library thread copies messages into the session's buffer, after substituting the placeholders.
+        buffer = new MutableAsciiBuffer(new byte[HEADER_LENGTH + sessionBufferSize - MAX_PLACEHOLDER_GROWTH]);
+    }
+
+    /**
+     * Offer a message to be sent on this session. The message's MsgSeqNum and SendingTime fields are set
+     * when it is sent.
+     *
+     * @param encoder the encoder of the message to be sent.
+     * @return true if the message was queued to be sent, false if the queue is full.
+     * @throws IndexOutOfBoundsException if the encoded message is too large, if this happens consider
+     *                                   increasing {@link uk.co.real_logic.artio.CommonConfiguration#sessionBufferSize(int)}
+     */
+    public boolean offer(final Encoder encoder)
+    {
+        final SessionHeaderEncoder header = encoder.header();
+        header
+            .msgSeqNum(PLACEHOLDER)
+            .sendingTime(sendingTimePlaceholder);
+
+        if (enableLastMsgSeqNumProcessed)
+        {
+            header.lastMsgSeqNumProcessed(PLACEHOLDER);
+        }
+
+        if (!header.hasSenderCompID())
+        {
+            sessionIdStrategy.setupSession(sessionKey, header);
+        }
+
+        final MutableAsciiBuffer buffer = this.buffer;
+        final long result = encoder.encode(buffer, HEADER_LENGTH);
+        final int offset = Encoder.offset(result);
+        final int length = Encoder.length(result);
+        final int headerOffset = offset - HEADER_LENGTH;
+
+        indexPlaceholders(headerOffset, offset, offset + length);
+
+        return messages.write(encoder.messageType(), buffer, headerOffset, HEADER_LENGTH + length);
+    }
+
+    private void indexPlaceholders(final int headerOffset, final int offset, final int end)
+    {
+        final MutableAsciiBuffer buffer = this.buffer;
+        int remainingFields = enableLastMsgSeqNumProcessed ? 4 : 3;
+        buffer.putInt(headerOffset + LAST_MSG_SEQ_NUM_PROCESSED_OFFSET, NO_FIELD);
+
+        int index = offset;
+        while (remainingFields > 0)
+        {
+            final int equals = buffer.scan(index, end - 1, '=');
+            final int tag = buffer.getNatural(index, equals);
+            final int valueOffset = equals + 1;
+            final int separator = buffer.scan(valueOffset, end - 1, START_OF_HEADER);
+
+            final int fieldOffset;
+            switch (tag)
+            {
+                case BODY_LENGTH:
+                    buffer.putInt(headerOffset + BODY_OFFSET, separator + 1 - offset);
+                    fieldOffset = BODY_LENGTH_OFFSET;
+                    break;
+
+                case MSG_SEQ_NUM:
+                    fieldOffset = MSG_SEQ_NUM_OFFSET;
+                    break;
+
+                case SENDING_TIME:
+                    fieldOffset = SENDING_TIME_OFFSET;
+                    break;
+
+                case LAST_MSG_SEQ_NUM_PROCESSED:
+                    fieldOffset = enableLastMsgSeqNumProcessed ? LAST_MSG_SEQ_NUM_PROCESSED_OFFSET : NO_FIELD;
+                    break;
+
+                default:
+                    fieldOffset = NO_FIELD;
+            }
+
+            if (fieldOffset != NO_FIELD)
+            {
+                buffer.putInt(headerOffset + fieldOffset, valueOffset - offset);
+                remainingFields--;
+            }
+
+            index = separator + 1;
+        }
+    }
+}
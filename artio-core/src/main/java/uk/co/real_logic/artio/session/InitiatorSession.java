@@ -99,4 +99,9 @@ public class InitiatorSession extends InternalSession
 
         return actions + super.poll(time);
     }
+
+    long nextDeadlineInMs()
+    {
+        return state() == SessionState.CONNECTED && id() != UNKNOWN ? Long.MIN_VALUE : super.nextDeadlineInMs();
+    }
 }
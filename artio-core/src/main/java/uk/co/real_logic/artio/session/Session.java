@@ -39,6 +39,7 @@ import static io.aeron.logbuffer.ControlledFragmentHandler.Action.CONTINUE;
 import static java.lang.Integer.MIN_VALUE;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.agrona.DeadlineTimerWheel.NULL_TIMER;
 import static uk.co.real_logic.artio.Constants.NEW_SEQ_NO;
 import static uk.co.real_logic.artio.Constants.VERSION_CHARS;
 import static uk.co.real_logic.artio.builder.Validation.CODEC_VALIDATION_DISABLED;
@@ -51,6 +52,7 @@ import static uk.co.real_logic.artio.library.SessionConfiguration.NO_RESEND_REQU
 import static uk.co.real_logic.artio.messages.DisconnectReason.*;
 import static uk.co.real_logic.artio.messages.MessageStatus.OK;
 import static uk.co.real_logic.artio.messages.SessionState.*;
+import static uk.co.real_logic.artio.protocol.GatewayPublication.MESSAGE_DOES_NOT_FIT_CLAIM;
 import static uk.co.real_logic.artio.session.DirectSessionProxy.NO_LAST_MSG_SEQ_NUM_PROCESSED;
 
 /**
@@ -104,6 +106,7 @@ public class Session implements AutoCloseable
     static final String TEST_REQ_ID = "TEST";
     private static final char[] TEST_REQ_ID_CHARS = TEST_REQ_ID.toCharArray();
     private static final int NO_LOGOUT_REJECT_REASON = -1;
+    private static final int NO_CLAIMED_SENT_SEQ_NUM = Integer.MIN_VALUE;
 
     private final UtcTimestampEncoder timestampEncoder = new UtcTimestampEncoder();
 
@@ -160,6 +163,19 @@ public class Session implements AutoCloseable
 
     private int logoutRejectReason = NO_LOGOUT_REJECT_REASON;
 
+    // When the engine heartbeats this session, sent sequence numbers are claimed from the sentMsgSeqNo counter.
+    private boolean engineHeartbeats;
+    private boolean heartbeatsDelegated;
+    private int claimedSentSeqNum = NO_CLAIMED_SENT_SEQ_NUM;
+
+    // State of the scheduler that polls this session, if any
+    SessionScheduler scheduler;
+    long timerId = NULL_TIMER;
+    boolean due;
+
+    // Messages sent from other threads, created on demand
+    ConcurrentSendQueue concurrentSendQueue;
+
     public Session(
         final int heartbeatIntervalInS,
         final long connectionId,
@@ -286,6 +302,7 @@ public class Session implements AutoCloseable
      */
     public int lastSentMsgSeqNum()
     {
+        adoptEngineSentSeqNum();
         return lastSentMsgSeqNum;
     }
 
@@ -456,6 +473,46 @@ public class Session implements AutoCloseable
     {
         validateCanSendMessage();
 
+        final int sentSeqNum = prepareHeader(encoder);
+
+        return encodeAndSend(encoder, sentSeqNum);
+    }
+
+    /**
+     * Send a message on this session, encoding it directly into the outbound stream rather than encoding it
+     * into this session's buffer and copying it onto the stream. Space for the encoder's
+     * {@link Encoder#maxEncodedLength()} is claimed on the stream, and any of it that the message doesn't use is
+     * left as padding.
+     * <p>
+     * If that bound is longer than <code>maxLength</code>, or the message would be fragmented on the stream,
+     * then it's sent in the same way as {@link #send(Encoder)}.
+     *
+     * @param encoder the encoder of the message to be sent
+     * @param maxLength the most space that may be claimed on the stream for the encoded message
+     * @return the position in the stream that corresponds to the end of this message or a negative
+     * number indicating an error status.
+     */
+    public long send(final Encoder encoder, final int maxLength)
+    {
+        validateCanSendMessage();
+
+        final int sentSeqNum = prepareHeader(encoder);
+
+        final long position = publication.encodeMessage(
+            encoder, maxLength, libraryId, encoder.messageType(), id(), sequenceIndex(), connectionId, OK, sentSeqNum);
+
+        if (position == MESSAGE_DOES_NOT_FIT_CLAIM)
+        {
+            return encodeAndSend(encoder, sentSeqNum);
+        }
+
+        lastSentMsgSeqNum(sentSeqNum, position);
+
+        return position;
+    }
+
+    private int prepareHeader(final Encoder encoder)
+    {
         final int sentSeqNum = newSentSeqNum();
         final SessionHeaderEncoder header = encoder.header();
         header
@@ -472,6 +529,11 @@ public class Session implements AutoCloseable
             sessionIdStrategy.setupSession(sessionKey, header);
         }
 
+        return sentSeqNum;
+    }
+
+    private long encodeAndSend(final Encoder encoder, final int sentSeqNum)
+    {
         final long result = encoder.encode(asciiBuffer, 0);
         final int length = Encoder.length(result);
         final int offset = Encoder.offset(result);
@@ -506,6 +568,40 @@ public class Session implements AutoCloseable
         return position;
     }
 
+    /**
+     * Create a sender that another thread can use to send messages on this session, without handing them over to
+     * the library's thread first. Messages from all of the session's senders are queued, then given their
+     * sequence number and sending time and published by the library's thread when it polls.
+     * <p>
+     * This must be called on the library's thread, once the session is active. Messages that are still queued
+     * when the session is released or disconnects aren't sent.
+     *
+     * @return a new sender for one other thread to use.
+     * @throws IllegalStateException if the session isn't active or isn't polled by a library.
+     */
+    public ConcurrentSessionSender newConcurrentSender()
+    {
+        validateCanSendMessage();
+
+        final SessionScheduler scheduler = this.scheduler;
+        if (scheduler == null)
+        {
+            throw new IllegalStateException("Session isn't polled by a library, so can't send from other threads");
+        }
+
+        if (concurrentSendQueue == null)
+        {
+            concurrentSendQueue = scheduler.newConcurrentSendQueue(this);
+        }
+
+        return new ConcurrentSessionSender(
+            concurrentSendQueue.messages(),
+            sessionIdStrategy,
+            sessionKey,
+            enableLastMsgSeqNumProcessed,
+            asciiBuffer.capacity());
+    }
+
     /**
      * Check if the session is in a state where it can send a message.
      *
@@ -533,7 +629,7 @@ public class Session implements AutoCloseable
     {
         nextSequenceIndex();
         final long position = proxy.sendSequenceReset(
-            lastSentMsgSeqNum, nextSentMessageSequenceNumber, sequenceIndex(), lastMsgSeqNumProcessed);
+            lastSentMsgSeqNum(), nextSentMessageSequenceNumber, sequenceIndex(), lastMsgSeqNumProcessed);
         lastSentMsgSeqNum(nextSentMessageSequenceNumber - 1, position);
 
         return position;
@@ -605,6 +701,18 @@ public class Session implements AutoCloseable
         return sequenceIndex;
     }
 
+    /**
+     * Let the engine heartbeat this session whilst it's idle, see
+     * {@link uk.co.real_logic.artio.library.LibraryConfiguration#engineHeartbeats(boolean)}.
+     * <p>
+     * API users should never have to call this method.
+     */
+    public void delegateHeartbeatsToEngine()
+    {
+        engineHeartbeats = true;
+        wakeUp();
+    }
+
     /**
      * Close the session object and release its resources.
      * <p>
@@ -1363,7 +1471,9 @@ public class Session implements AutoCloseable
 
     private void incNextHeartbeatTime()
     {
-        nextRequiredHeartbeatTimeInMs = time() + sendingHeartbeatIntervalInMs;
+        // Once delegated the engine sends heartbeats, and the library only heartbeats if the engine hasn't.
+        nextRequiredHeartbeatTimeInMs = time() +
+            (heartbeatsDelegated ? heartbeatIntervalInMs : sendingHeartbeatIntervalInMs);
     }
 
     private long sendLogout()
@@ -1390,14 +1500,26 @@ public class Session implements AutoCloseable
         incNextReceivedInboundMessageTime(time);
         sendingHeartbeatIntervalInMs = (long)(heartbeatIntervalInMs * HEARTBEAT_PAUSE_FACTOR);
         nextRequiredHeartbeatTimeInMs = time + sendingHeartbeatIntervalInMs;
+        heartbeatsDelegated = false;
+        wakeUp();
     }
 
     protected Session state(final SessionState state)
     {
         this.state = state;
+        wakeUp();
         return this;
     }
 
+    private void wakeUp()
+    {
+        final SessionScheduler scheduler = this.scheduler;
+        if (scheduler != null)
+        {
+            scheduler.wakeUp(this);
+        }
+    }
+
     public Session id(final long id)
     {
         this.id = id;
@@ -1436,13 +1558,59 @@ public class Session implements AutoCloseable
 
     int newSentSeqNum()
     {
+        if (engineHeartbeats)
+        {
+            return claimSentSeqNum();
+        }
+
         return lastSentMsgSeqNum + 1;
     }
 
+    // The same sequence number is claimed until it's sent, so that the engine doesn't heartbeat with it.
+    private int claimSentSeqNum()
+    {
+        if (claimedSentSeqNum == NO_CLAIMED_SENT_SEQ_NUM)
+        {
+            final AtomicCounter sentMsgSeqNo = this.sentMsgSeqNo;
+            long sentSeqNum;
+            do
+            {
+                sentSeqNum = sentMsgSeqNo.get();
+            }
+            while (!sentMsgSeqNo.compareAndSet(sentSeqNum, sentSeqNum + 1));
+
+            lastSentMsgSeqNum = (int)sentSeqNum;
+            claimedSentSeqNum = lastSentMsgSeqNum + 1;
+        }
+
+        return claimedSentSeqNum;
+    }
+
+    // Returns true if the engine has sent heartbeats since this session last sent a message.
+    private boolean adoptEngineSentSeqNum()
+    {
+        if (engineHeartbeats && claimedSentSeqNum == NO_CLAIMED_SENT_SEQ_NUM)
+        {
+            final int sentSeqNum = (int)sentMsgSeqNo.get();
+            if (sentSeqNum != lastSentMsgSeqNum)
+            {
+                lastSentMsgSeqNum = sentSeqNum;
+                return true;
+            }
+        }
+
+        return false;
+    }
+
     public int lastSentMsgSeqNum(final int lastSentMsgSeqNum)
     {
+        // A claimed sequence number is already in the counter, and the engine may have claimed the next one since.
+        if (lastSentMsgSeqNum != claimedSentSeqNum)
+        {
+            sentMsgSeqNo.setOrdered(lastSentMsgSeqNum);
+        }
         this.lastSentMsgSeqNum = lastSentMsgSeqNum;
-        sentMsgSeqNo.setOrdered(lastSentMsgSeqNum);
+        claimedSentSeqNum = NO_CLAIMED_SENT_SEQ_NUM;
         incNextHeartbeatTime();
 
         return lastSentMsgSeqNum;
@@ -1585,12 +1753,26 @@ public class Session implements AutoCloseable
             {
                 int actions = 0;
                 final boolean isActive = state == ACTIVE_VALUE;
+                if (isActive && engineHeartbeats && !heartbeatsDelegated)
+                {
+                    delegateHeartbeats();
+                    actions++;
+                }
+
                 if (isActive && time >= nextRequiredHeartbeatTimeInMs)
                 {
-                    // Drop when back pressured: retried on duty cycle
-                    final int sentSeqNum = newSentSeqNum();
-                    final long position = proxy.sendHeartbeat(sentSeqNum, sequenceIndex(), lastMsgSeqNumProcessed);
-                    lastSentMsgSeqNum(sentSeqNum, position);
+                    if (heartbeatsDelegated && adoptEngineSentSeqNum())
+                    {
+                        incNextHeartbeatTime();
+                    }
+                    else
+                    {
+                        // Drop when back pressured: retried on duty cycle
+                        final int sentSeqNum = newSentSeqNum();
+                        final long position = proxy.sendHeartbeat(
+                            sentSeqNum, sequenceIndex(), lastMsgSeqNumProcessed);
+                        lastSentMsgSeqNum(sentSeqNum, position);
+                    }
                     actions++;
                 }
 
@@ -1620,6 +1802,46 @@ public class Session implements AutoCloseable
         }
     }
 
+    private void delegateHeartbeats()
+    {
+        // Drop when back pressured: retried on duty cycle
+        adoptEngineSentSeqNum();
+        final long position = publication.saveDelegateHeartbeats(
+            libraryId,
+            connectionId,
+            sentMsgSeqNo.id(),
+            lastSentMsgSeqNum,
+            sequenceIndex(),
+            sendingHeartbeatIntervalInMs);
+        if (position >= 0)
+        {
+            heartbeatsDelegated = true;
+            incNextHeartbeatTime();
+        }
+    }
+
+    /**
+     * Get the time by which this session must next be polled, unless it's woken up before then.
+     *
+     * @return the time by which this session must next be polled.
+     */
+    long nextDeadlineInMs()
+    {
+        switch (state().value())
+        {
+            case DISCONNECTING_VALUE:
+            case LOGGING_OUT_VALUE:
+            case LOGGING_OUT_AND_DISCONNECTING_VALUE:
+                return Long.MIN_VALUE;
+
+            case ACTIVE_VALUE:
+                return Math.min(nextRequiredHeartbeatTimeInMs, nextRequiredInboundMessageTimeInMs);
+
+            default:
+                return nextRequiredInboundMessageTimeInMs;
+        }
+    }
+
     void libraryConnected(final boolean libraryConnected)
     {
         proxy.libraryConnected(libraryConnected);
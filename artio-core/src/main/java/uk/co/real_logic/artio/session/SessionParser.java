@@ -31,6 +31,7 @@ import uk.co.real_logic.artio.validation.MessageValidationStrategy;
 import java.util.stream.Stream;
 
 import static io.aeron.logbuffer.ControlledFragmentHandler.Action.CONTINUE;
+import static uk.co.real_logic.artio.CommonConfiguration.FLYWEIGHT_SESSION_HEADERS;
 import static uk.co.real_logic.artio.builder.Validation.CODEC_VALIDATION_ENABLED;
 import static uk.co.real_logic.artio.builder.Validation.isValidMsgType;
 import static uk.co.real_logic.artio.dictionary.generation.CodecUtil.MISSING_INT;
@@ -42,6 +43,7 @@ import static uk.co.real_logic.artio.session.Session.UNKNOWN;
 public class SessionParser
 {
     private static final boolean HAS_USER_NAME_AND_PASSWORD = detectUsernameAndPassword();
+    private static final boolean USE_FLYWEIGHT_HEADER = FLYWEIGHT_SESSION_HEADERS && !CODEC_VALIDATION_ENABLED;
 
     private final AsciiBuffer asciiBuffer = new MutableAsciiBuffer();
     private final UtcTimestampDecoder timestampDecoder = new UtcTimestampDecoder();
@@ -52,6 +54,9 @@ public class SessionParser
     private final HeaderDecoder header = new HeaderDecoder();
     private final SequenceResetDecoder sequenceReset = new SequenceResetDecoder();
     private final HeartbeatDecoder heartbeat = new HeartbeatDecoder();
+    // Only created when used, so the session codecs don't have to be generated with flyweights otherwise.
+    private final uk.co.real_logic.artio.decoder_flyweight.HeaderDecoder flyweightHeader =
+        USE_FLYWEIGHT_HEADER ? new uk.co.real_logic.artio.decoder_flyweight.HeaderDecoder() : null;
 
     private final Session session;
     private final MessageValidationStrategy validationStrategy;
@@ -180,6 +185,11 @@ public class SessionParser
 
     private Action onAnyOtherMessage(final int offset, final int length)
     {
+        if (USE_FLYWEIGHT_HEADER)
+        {
+            return onAnyOtherMessageWithFlyweightHeader(offset, length);
+        }
+
         final HeaderDecoder header = this.header;
         header.reset();
         header.decode(asciiBuffer, offset, length);
@@ -202,6 +212,25 @@ public class SessionParser
         return CONTINUE;
     }
 
+    // Without validation only the header fields that the session uses are parsed, and none of the timestamps.
+    private Action onAnyOtherMessageWithFlyweightHeader(final int offset, final int length)
+    {
+        final uk.co.real_logic.artio.decoder_flyweight.HeaderDecoder header = this.flyweightHeader;
+        header.reset();
+        header.decode(asciiBuffer, offset, length);
+
+        final boolean possDup = header.hasPossDupFlag() && header.possDupFlag();
+        final boolean possResend = header.hasPossResend() && header.possResend();
+        return session.onMessage(
+            header.msgSeqNum(),
+            header.msgType(),
+            header.msgTypeLength(),
+            MISSING_LONG,
+            header.hasOrigSendingTime() ? MISSING_LONG : UNKNOWN,
+            possDup || possResend,
+            possDup);
+    }
+
     private Action onMessage(final HeaderDecoder header)
     {
         final long origSendingTime = origSendingTime(header);
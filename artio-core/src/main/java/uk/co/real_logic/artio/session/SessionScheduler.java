@@ -0,0 +1,228 @@
+/*
+ * Copyright 2015-2018 Real Logic Ltd, Adaptive Financial Consulting Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio.session;
+
+import org.agrona.DeadlineTimerWheel;
+import org.agrona.collections.Long2ObjectHashMap;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.agrona.DeadlineTimerWheel.NULL_TIMER;
+import static uk.co.real_logic.artio.library.LibraryConfiguration.DEFAULT_CONCURRENT_SEND_QUEUE_CAPACITY;
+
+/**
+ * Polls sessions only when one of their deadlines, see {@link Session#nextDeadlineInMs()}, has expired or they have
+ * been woken up by a change of state, rather than on every duty cycle. Each session's next deadline is scheduled on a
+ * timer wheel, so mostly idle sessions cost nothing until they need to heartbeat or have timed out.
+ *
+ * A deadline that moves later, for example when a message is sent or received, isn't rescheduled: the session is
+ * polled at the earlier deadline and then scheduled again.
+ *
+ * Messages that other threads have queued for a session, see {@link Session#newConcurrentSender()}, are published
+ * on every duty cycle, regardless of the session's deadlines.
+ *
+ * Not thread safe, used on the library's thread.
+ */
+public final class SessionScheduler implements DeadlineTimerWheel.TimerHandler
+{
+    private static final int TICK_RESOLUTION_IN_MS = 8;
+    private static final int TICKS_PER_WHEEL = 1024;
+
+    private final DeadlineTimerWheel timerWheel;
+    private final Long2ObjectHashMap<Session> timerIdToSession = new Long2ObjectHashMap<>();
+
+    private ArrayList<Session> dueSessions = new ArrayList<>();
+    private ArrayList<Session> pollingSessions = new ArrayList<>();
+
+    private final int concurrentSendQueueCapacity;
+    private final ArrayList<Session> concurrentSendingSessions = new ArrayList<>();
+
+    public SessionScheduler(final long timeInMs)
+    {
+        this(timeInMs, DEFAULT_CONCURRENT_SEND_QUEUE_CAPACITY);
+    }
+
+    public SessionScheduler(final long timeInMs, final int concurrentSendQueueCapacity)
+    {
+        timerWheel = new DeadlineTimerWheel(TimeUnit.MILLISECONDS, timeInMs, TICK_RESOLUTION_IN_MS, TICKS_PER_WHEEL);
+        this.concurrentSendQueueCapacity = concurrentSendQueueCapacity;
+    }
+
+    /**
+     * Start scheduling a session, which is polled on the next duty cycle.
+     *
+     * @param session the session to schedule.
+     */
+    public void add(final Session session)
+    {
+        if (session.scheduler != this && session.concurrentSendQueue != null)
+        {
+            concurrentSendingSessions.add(session);
+        }
+        session.scheduler = this;
+        wakeUp(session);
+    }
+
+    /**
+     * Stop scheduling a session.
+     *
+     * @param session the session to stop scheduling.
+     */
+    public void remove(final Session session)
+    {
+        if (session.scheduler == this)
+        {
+            session.scheduler = null;
+            cancelTimer(session);
+            if (session.concurrentSendQueue != null)
+            {
+                concurrentSendingSessions.remove(session);
+            }
+        }
+    }
+
+    /**
+     * Poll the sessions that are due.
+     *
+     * @param timeInMs the current time.
+     * @return the number of actions performed by the polled sessions.
+     */
+    public int poll(final long timeInMs)
+    {
+        int actions = drainConcurrentSends();
+
+        final DeadlineTimerWheel timerWheel = this.timerWheel;
+        if (timerWheel.timerCount() == 0)
+        {
+            timerWheel.resetStartTime(timeInMs);
+        }
+        else
+        {
+            // Each poll of the wheel only expires the timers of its current tick before advancing it by one tick.
+            long tickTime;
+            do
+            {
+                tickTime = timerWheel.currentTickTime();
+                timerWheel.poll(timeInMs, this, Integer.MAX_VALUE);
+            }
+            while (tickTime != timerWheel.currentTickTime());
+        }
+
+        final ArrayList<Session> sessions = dueSessions;
+        if (sessions.isEmpty())
+        {
+            return actions;
+        }
+
+        // Sessions that are woken up whilst polling are due on the next duty cycle.
+        dueSessions = pollingSessions;
+        pollingSessions = sessions;
+
+        for (int i = 0, size = sessions.size(); i < size; i++)
+        {
+            final Session session = sessions.get(i);
+            if (session.scheduler == this)
+            {
+                session.due = false;
+                actions += session.poll(timeInMs);
+                if (session.scheduler == this && !session.due)
+                {
+                    schedule(session, timeInMs);
+                }
+            }
+            else
+            {
+                session.due = false;
+            }
+        }
+        sessions.clear();
+
+        return actions;
+    }
+
+    public boolean onTimerExpiry(final TimeUnit timeUnit, final long now, final long timerId)
+    {
+        final Session session = timerIdToSession.remove(timerId);
+        if (session != null)
+        {
+            session.timerId = NULL_TIMER;
+            addDue(session);
+        }
+
+        return true;
+    }
+
+    ConcurrentSendQueue newConcurrentSendQueue(final Session session)
+    {
+        concurrentSendingSessions.add(session);
+        return new ConcurrentSendQueue(session, concurrentSendQueueCapacity);
+    }
+
+    private int drainConcurrentSends()
+    {
+        final ArrayList<Session> sessions = concurrentSendingSessions;
+        int count = 0;
+        for (int i = 0, size = sessions.size(); i < size; i++)
+        {
+            count += sessions.get(i).concurrentSendQueue.drain();
+        }
+
+        return count;
+    }
+
+    // Called when a session's state changes, since that can need it to be polled before its next deadline.
+    void wakeUp(final Session session)
+    {
+        if (!session.due)
+        {
+            cancelTimer(session);
+            addDue(session);
+        }
+    }
+
+    private void schedule(final Session session, final long timeInMs)
+    {
+        final long deadlineInMs = session.nextDeadlineInMs();
+        if (deadlineInMs <= timeInMs)
+        {
+            addDue(session);
+        }
+        else
+        {
+            final long timerId = timerWheel.scheduleTimer(deadlineInMs);
+            session.timerId = timerId;
+            timerIdToSession.put(timerId, session);
+        }
+    }
+
+    private void addDue(final Session session)
+    {
+        session.due = true;
+        dueSessions.add(session);
+    }
+
+    private void cancelTimer(final Session session)
+    {
+        final long timerId = session.timerId;
+        if (timerId != NULL_TIMER)
+        {
+            timerWheel.cancelTimer(timerId);
+            timerIdToSession.remove(timerId);
+            session.timerId = NULL_TIMER;
+        }
+    }
+}
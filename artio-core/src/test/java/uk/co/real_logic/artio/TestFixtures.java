@@ -15,6 +15,7 @@
  */
 package uk.co.real_logic.artio;
 
+import io.aeron.Aeron;
 import io.aeron.archive.Archive;
 import io.aeron.archive.ArchiveThreadingMode;
 import io.aeron.archive.ArchivingMediaDriver;
@@ -115,4 +116,9 @@ public final class TestFixtures
 
         return new String(testReqIDChars);
     }
+
+    public static FixCounters newFixCounters(final Aeron aeron)
+    {
+        return new FixCounters(aeron);
+    }
 }
@@ -4,9 +4,14 @@ import org.agrona.concurrent.UnsafeBuffer;
 import org.junit.Test;
 import uk.co.real_logic.artio.dictionary.IntDictionary;
 import uk.co.real_logic.artio.otf.OtfParser;
+import uk.co.real_logic.artio.protocol.TagOffsetIndex;
+import uk.co.real_logic.artio.util.MutableAsciiBuffer;
 
 import static java.nio.charset.StandardCharsets.US_ASCII;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
 import static uk.co.real_logic.artio.engine.logger.ReplayerTest.MESSAGE_REQUIRING_LONGER_BODY_LENGTH;
 
 public class PossDupFinderTest
@@ -19,9 +24,27 @@ public class PossDupFinderTest
         ("8=FIX.4.4\0019=0065\00135=5\00149=initiator\00156=acceptor\00134=2\001" +
             "52=20161206-11:04:51.461\00143=Y\00110=088\001").getBytes(US_ASCII);
 
+    private static final byte[] SECURE_DATA_MESSAGE =
+        ("8=FIX.4.4\0019=0065\00135=5\00190=1\00191=\001\00134=2\001" +
+            "52=20161206-11:04:51.461\00143=Y\00110=088\001").getBytes(US_ASCII);
+
+    private static final byte[] POSS_DUP_AFTER_UNLISTED_HEADER_FIELD_MESSAGE =
+        ("8=FIX.4.4\0019=0070\00135=5\00149=initiator\00156=acceptor\00134=2\001" +
+            "52=20161206-11:04:51.461\001627=0\00143=Y\00110=088\001").getBytes(US_ASCII);
+
+    private static final byte[] ORIG_SENDING_TIME_AFTER_UNLISTED_HEADER_FIELD_MESSAGE =
+        ("8=FIX.4.4\0019=0096\00135=5\00149=initiator\00156=acceptor\00134=2\00143=Y\001" +
+            "52=20161206-11:04:51.461\001627=0\001122=20161206-11:04:51.461\00110=088\001").getBytes(US_ASCII);
+
+    private static final byte[] UNLISTED_HEADER_FIELD_MESSAGE =
+        ("8=FIX.4.4\0019=0070\00135=5\00149=initiator\00156=acceptor\00134=2\001" +
+            "52=20161206-11:04:51.461\001627=0\00158=143=Y\00110=088\001").getBytes(US_ASCII);
+
     private final PossDupFinder possDupFinder = new PossDupFinder();
+    private final TagOffsetIndex index = new TagOffsetIndex();
+    private final MutableAsciiBuffer asciiBuffer = new MutableAsciiBuffer();
     private final OtfParser parser = new OtfParser(possDupFinder, new IntDictionary());
-    private final UnsafeBuffer buffer = new UnsafeBuffer(new byte[FIRST_MESSAGE.length + SECOND_MESSAGE.length]);
+    private final UnsafeBuffer buffer = new UnsafeBuffer(new byte[256]);
 
     @Test
     public void shouldOnlyReturnPossDupAtLength()
@@ -44,4 +67,72 @@ public class PossDupFinderTest
         assertEquals(12, possDupFinder.bodyLengthOffset());
         assertEquals(2, possDupFinder.lengthOfBodyLength());
     }
+
+    @Test
+    public void shouldFindSameFieldsInIndexOfHeaderAsByParsing()
+    {
+        buffer.putBytes(0, SECOND_MESSAGE);
+        parser.onMessage(buffer, 0, SECOND_MESSAGE.length);
+        final int possDupOffset = possDupFinder.possDupOffset();
+        final int sendingTimeOffset = possDupFinder.sendingTimeOffset();
+        final int sendingTimeLength = possDupFinder.sendingTimeLength();
+        final int bodyLengthOffset = possDupFinder.bodyLengthOffset();
+        final int bodyLength = possDupFinder.bodyLength();
+
+        assertTrue(onHeader(SECOND_MESSAGE));
+
+        assertEquals(possDupOffset, possDupFinder.possDupOffset());
+        assertEquals(sendingTimeOffset, possDupFinder.sendingTimeOffset());
+        assertEquals(sendingTimeLength, possDupFinder.sendingTimeLength());
+        assertEquals(bodyLengthOffset, possDupFinder.bodyLengthOffset());
+        assertEquals(4, possDupFinder.lengthOfBodyLength());
+        assertEquals(bodyLength, possDupFinder.bodyLength());
+    }
+
+    @Test
+    public void shouldNotFindPossDupMissingFromIndexOfHeader()
+    {
+        assertTrue(onHeader(FIRST_MESSAGE));
+
+        assertEquals(PossDupFinder.NO_ENTRY, possDupFinder.possDupOffset());
+    }
+
+    @Test
+    public void shouldRequireParsingWhenSendingTimeIsntIndexed()
+    {
+        assertFalse(onHeader(SECURE_DATA_MESSAGE));
+    }
+
+    @Test
+    public void shouldRequireParsingWhenPossDupFollowsAnUnindexedHeaderField()
+    {
+        assertFalse(onHeader(POSS_DUP_AFTER_UNLISTED_HEADER_FIELD_MESSAGE));
+
+        parser.onMessage(buffer, 0, POSS_DUP_AFTER_UNLISTED_HEADER_FIELD_MESSAGE.length);
+
+        assertNotEquals(PossDupFinder.NO_ENTRY, possDupFinder.possDupOffset());
+    }
+
+    @Test
+    public void shouldRequireParsingWhenOrigSendingTimeFollowsAnUnindexedHeaderField()
+    {
+        assertFalse(onHeader(ORIG_SENDING_TIME_AFTER_UNLISTED_HEADER_FIELD_MESSAGE));
+    }
+
+    @Test
+    public void shouldNotFindPossDupMissingFromMessageWithUnindexedHeaderField()
+    {
+        assertTrue(onHeader(UNLISTED_HEADER_FIELD_MESSAGE));
+
+        assertEquals(PossDupFinder.NO_ENTRY, possDupFinder.possDupOffset());
+        assertEquals(PossDupFinder.NO_ENTRY, possDupFinder.origSendingTimeOffset());
+    }
+
+    private boolean onHeader(final byte[] message)
+    {
+        buffer.putBytes(0, message);
+        asciiBuffer.wrap(buffer);
+        index.index(asciiBuffer, 0, message.length);
+        return possDupFinder.onHeader(index, asciiBuffer, message.length);
+    }
 }
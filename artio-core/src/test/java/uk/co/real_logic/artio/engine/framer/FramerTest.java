@@ -23,6 +23,7 @@ import org.agrona.ErrorHandler;
 import org.agrona.LangUtil;
 import org.agrona.concurrent.AgentInvoker;
 import org.agrona.concurrent.QueuedPipe;
+import org.agrona.concurrent.status.CountersReader;
 import org.hamcrest.Matcher;
 import org.hamcrest.Matchers;
 import org.junit.After;
@@ -168,13 +169,22 @@ public class FramerTest
             mock(Timer.class),
             engineConfiguration,
             mockEndPointFactory,
+            new ReceiverEndPoints(),
             outboundLibrarySubscription,
             outboundSlowSubscription,
-            replayImage,
-            replaySlowImage,
+            new Image[]{ replayImage },
+            new Image[]{ replaySlowImage },
             replayQuery,
             mock(GatewayPublication.class),
             inboundPublication,
+            null,
+            null,
+            new DelegatedHeartbeats(
+                engineConfiguration.sessionBufferSize(),
+                mock(CountersReader.class),
+                mock(GatewayPublication.class),
+                mockSessionIdStrategy,
+                0),
             mock(QueuedPipe.class),
             mockSessionIdStrategy,
             sessionContexts,
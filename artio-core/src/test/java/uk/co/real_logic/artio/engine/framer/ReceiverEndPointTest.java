@@ -19,8 +19,10 @@ import org.agrona.ErrorHandler;
 import org.agrona.LangUtil;
 import org.agrona.concurrent.AtomicBuffer;
 import org.agrona.concurrent.status.AtomicCounter;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InOrder;
 import org.mockito.Mockito;
 import org.mockito.verification.VerificationMode;
@@ -29,7 +31,9 @@ import uk.co.real_logic.artio.engine.FixEngine;
 import uk.co.real_logic.artio.messages.DisconnectReason;
 import uk.co.real_logic.artio.messages.MessageStatus;
 import uk.co.real_logic.artio.messages.SessionState;
+import uk.co.real_logic.artio.protocol.FixMessageBatchReader;
 import uk.co.real_logic.artio.protocol.GatewayPublication;
+import uk.co.real_logic.artio.protocol.TagOffsetIndex;
 import uk.co.real_logic.artio.session.CompositeKey;
 import uk.co.real_logic.artio.session.Session;
 import uk.co.real_logic.artio.session.SessionIdStrategy;
@@ -42,6 +46,7 @@ import java.util.function.ToIntFunction;
 import static io.aeron.Publication.BACK_PRESSURED;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.*;
 import static uk.co.real_logic.artio.dictionary.ExampleDictionary.TAG_SPECIFIED_OUT_OF_REQUIRED_ORDER_MESSAGE_BYTES;
 import static uk.co.real_logic.artio.messages.DisconnectReason.DUPLICATE_SESSION;
@@ -60,6 +65,10 @@ public class ReceiverEndPointTest
     private static final int BUFFER_SIZE = 16 * 1024;
     private static final int SEQUENCE_INDEX = 0;
     private static final int LOGON_LEN = LOGON_MESSAGE.length;
+    private static final int MAX_PAYLOAD_LENGTH = 4096;
+    private static final int SHARD_LIBRARY_ID = 3;
+    private static final int MSG_SEQ_NUM_TAG = 34;
+    private static final int CL_ORD_ID_TAG = 11;
 
     private final AcceptorLogonResult pendingAuth = createSuccessfulPendingAuth();
     private final AcceptorLogonResult backpressuredPendingAuth = createBackpressuredPendingAuth();
@@ -72,6 +81,8 @@ public class ReceiverEndPointTest
     private GatewaySession gatewaySession = mock(GatewaySession.class);
     private Session session = mock(Session.class);
     private GatewaySessions mockGatewaySessions = mock(GatewaySessions.class);
+    private GatewayPublication shardPublication = mock(GatewayPublication.class);
+    private FramerShard framerShard;
     private CompositeKey sessionKey = SessionIdStrategy
         .senderAndTarget()
         .onInitiateLogon("ACCEPTOR", "", "", "INIATOR", "", "");
@@ -111,6 +122,15 @@ public class ReceiverEndPointTest
             }).when(framer).schedule(any(Continuation.class));
     }
 
+    @After
+    public void tearDown()
+    {
+        if (framerShard != null)
+        {
+            framerShard.onClose();
+        }
+    }
+
     private void givenLogonResult(final AcceptorLogonResult logonResult)
     {
         when(mockGatewaySessions.authenticate(
@@ -130,13 +150,30 @@ public class ReceiverEndPointTest
         givenReceiverEndPoint(SESSION_ID);
     }
 
+    private void givenABatchingReceiverEndPoint()
+    {
+        when(publication.maxPayloadLength()).thenReturn(MAX_PAYLOAD_LENGTH);
+        givenReceiverEndPoint(SESSION_ID, true, false);
+    }
+
+    private void givenAnIndexingReceiverEndPoint()
+    {
+        givenReceiverEndPoint(SESSION_ID, false, true);
+    }
+
     private void givenReceiverEndPoint(final long sessionId)
+    {
+        givenReceiverEndPoint(sessionId, false, false);
+    }
+
+    private void givenReceiverEndPoint(
+        final long sessionId, final boolean batchInboundMessages, final boolean indexTagOffsets)
     {
         endPoint = new ReceiverEndPoint(
             mockChannel, BUFFER_SIZE, publication,
             CONNECTION_ID, sessionId, SEQUENCE_INDEX, mockSessionContexts,
             messagesRead, framer, errorHandler, LIBRARY_ID,
-            mockGatewaySessions);
+            mockGatewaySessions, batchInboundMessages, indexTagOffsets);
         endPoint.gatewaySession(gatewaySession);
     }
 
@@ -185,6 +222,28 @@ public class ReceiverEndPointTest
         sessionReceivesOneMessage();
     }
 
+    @Test
+    public void shouldIndexHeaderTagOffsetsOfFramedMessagesWhenEnabled()
+    {
+        givenAnIndexingReceiverEndPoint();
+
+        theEndpointReceivesACompleteMessage();
+        polls(2 * MSG_LEN);
+
+        final ArgumentCaptor<AtomicBuffer> buffer = ArgumentCaptor.forClass(AtomicBuffer.class);
+        final ArgumentCaptor<TagOffsetIndex> tagOffsets = ArgumentCaptor.forClass(TagOffsetIndex.class);
+        verify(publication).saveMessage(
+            buffer.capture(), eq(0), eq(MSG_LEN), eq(LIBRARY_ID),
+            eq(MESSAGE_TYPE), eq(SESSION_ID), eq(SEQUENCE_INDEX), eq(CONNECTION_ID),
+            eq(OK), eq(0), tagOffsets.capture());
+
+        final TagOffsetIndex index = tagOffsets.getValue();
+        final int valueOffset = index.valueOffset(MSG_SEQ_NUM_TAG);
+        final int valueLength = index.valueLength(MSG_SEQ_NUM_TAG);
+        assertEquals("4", buffer.getValue().getStringWithoutLengthAscii(valueOffset, valueLength));
+        assertEquals(TagOffsetIndex.MISSING_TAG, index.valueOffset(CL_ORD_ID_TAG));
+    }
+
     @Test
     public void shouldFrameValidFixMessageWhenBackpressured()
     {
@@ -274,9 +333,43 @@ public class ReceiverEndPointTest
         theEndpointReceivesTheRestOfTheMessage();
         endPoint.poll();
 
-        savesFramedMessages(2, OK, MSG_LEN);
+        // The incomplete message isn't moved to the start of the buffer whilst there's room to read into.
+        savesTwoFramedMessages(1);
+
+        sessionReceivesTwoMessages();
+    }
+
+    @Test
+    public void shouldFrameMessageReceivedInSeveralParts()
+    {
+        theEndpointReceives(EG_MESSAGE, 0, 20);
+        endPoint.poll();
+
+        theEndpointReceives(EG_MESSAGE, 20, MSG_LEN - 28);
+        endPoint.poll();
+
+        theEndpointReceivesTheRestOfTheMessage();
+        endPoint.poll();
+
+        savesAFramedMessage();
 
-        sessionReceivesTwoMessageAtBufferStart();
+        sessionReceivesOneMessage();
+    }
+
+    @Test
+    public void shouldValidateChecksumOfMessageReceivedInSeveralParts()
+    {
+        theEndpointReceives(INVALID_CHECKSUM_MSG, 0, INVALID_CHECKSUM_LEN - 20);
+        endPoint.poll();
+
+        theEndpointReceives(INVALID_CHECKSUM_MSG, INVALID_CHECKSUM_LEN - 20, 10);
+        endPoint.poll();
+
+        theEndpointReceives(INVALID_CHECKSUM_MSG, INVALID_CHECKSUM_LEN - 10, 10);
+        endPoint.poll();
+
+        savesInvalidChecksumMessage(times(1));
+        nothingMoreSaved();
     }
 
     @Test
@@ -436,12 +529,174 @@ public class ReceiverEndPointTest
         savesFramedMessages(1, OK, LOGON_LEN, LogonDecoder.MESSAGE_TYPE);
     }
 
+    @Test
+    public void shouldBatchTwoCompleteFixMessagesInOnePacket()
+    {
+        givenABatchingReceiverEndPoint();
+
+        theEndpointReceivesTwoCompleteMessages();
+        endPoint.poll();
+
+        savesBatches(times(1), 2);
+        savesFramedMessages(0, OK, MSG_LEN);
+        sessionReceivesTwoMessages();
+    }
+
+    @Test
+    public void shouldBatchTwoCompleteFixMessagesInOnePacketWhenBackpressured()
+    {
+        givenABatchingReceiverEndPoint();
+        firstBatchSaveAttemptIsBackPressured();
+
+        theEndpointReceivesTwoCompleteMessages();
+        endPoint.poll();
+
+        sessionReceivesNoMessages();
+
+        pollWithNoData();
+
+        savesBatches(times(2), 2);
+        sessionReceivesTwoMessages();
+    }
+
+    @Test
+    public void shouldNotBatchASingleFixMessage()
+    {
+        givenABatchingReceiverEndPoint();
+
+        theEndpointReceivesACompleteAndAnIncompleteMessage();
+        endPoint.poll();
+
+        savesAFramedMessage();
+        savesBatches(never(), 2);
+        sessionReceivesOneMessage();
+    }
+
+    @Test
+    public void shouldSaveBatchBeforeInvalidChecksumMessage()
+    {
+        givenABatchingReceiverEndPoint();
+
+        endpointBufferUpdatedWith(
+            (buffer) ->
+            {
+                buffer.put(EG_MESSAGE).put(EG_MESSAGE).put(INVALID_CHECKSUM_MSG, 0, INVALID_CHECKSUM_LEN);
+                return 2 * MSG_LEN + INVALID_CHECKSUM_LEN;
+            });
+        endPoint.poll();
+
+        final InOrder inOrder = Mockito.inOrder(publication);
+        inOrder.verify(publication).saveMessageBatch(
+            anyBuffer(), any(), any(), any(), eq(2), anyInt(),
+            eq(LIBRARY_ID), eq(SESSION_ID), eq(SEQUENCE_INDEX), eq(CONNECTION_ID));
+        inOrder.verify(publication).saveMessage(
+            anyBuffer(), eq(2 * MSG_LEN), eq(INVALID_CHECKSUM_LEN), eq(LIBRARY_ID),
+            eq(MESSAGE_TYPE), anyLong(), anyInt(), eq(CONNECTION_ID),
+            eq(INVALID_CHECKSUM), eq(0));
+    }
+
+    @Test
+    public void shouldFrameMessagesOntoTheShardPublicationWhilstOnAShard()
+    {
+        givenTheEndPointIsOnAShard();
+
+        theEndpointReceivesACompleteMessage();
+        framerShard.doWork();
+
+        verify(shardPublication).saveMessage(
+            anyBuffer(), eq(0), eq(MSG_LEN), eq(SHARD_LIBRARY_ID), eq(MESSAGE_TYPE), eq(SESSION_ID),
+            eq(SEQUENCE_INDEX), eq(CONNECTION_ID), eq(OK), eq(0), any());
+        nothingMoreSaved();
+    }
+
+    @Test
+    public void shouldReclaimEndPointFromShardWhenPaused()
+    {
+        givenTheEndPointIsOnAShard();
+
+        endPoint.pause();
+
+        theEndpointReceivesACompleteMessage();
+        framerShard.doWork();
+
+        verify(shardPublication, never()).saveMessage(
+            anyBuffer(), anyInt(), anyInt(), anyInt(), anyInt(), anyLong(), anyInt(), anyLong(), any(), anyInt(),
+            any());
+        assertTrue(endPoint.isPolledByShard());
+
+        framerShard.pollReleasedEndPoints();
+
+        assertFalse(endPoint.isPolledByShard());
+    }
+
+    @Test
+    public void shouldDeferAChangeOfLibraryUntilTheShardHasReleasedTheEndPoint()
+    {
+        givenTheEndPointIsOnAShard();
+
+        endPoint.libraryId(LIBRARY_ID);
+
+        assertEquals(SHARD_LIBRARY_ID, endPoint.libraryId());
+
+        framerShard.doWork();
+        framerShard.pollReleasedEndPoints();
+
+        assertEquals(LIBRARY_ID, endPoint.libraryId());
+        assertFalse(endPoint.isPolledByShard());
+    }
+
+    @Test
+    public void shouldLeaveTheDisconnectOfAnEndPointOnAShardToTheFramer() throws IOException
+    {
+        givenTheEndPointIsOnAShard();
+        theChannelIsClosed();
+
+        framerShard.doWork();
+
+        verify(framer, never()).onDisconnect(anyInt(), anyLong(), any());
+        verifyNotDisconnected();
+
+        framerShard.pollReleasedEndPoints();
+
+        verify(publication).saveDisconnect(SHARD_LIBRARY_ID, CONNECTION_ID, REMOTE_DISCONNECT);
+        verify(framer).onDisconnect(SHARD_LIBRARY_ID, CONNECTION_ID, null);
+    }
+
+    private void givenTheEndPointIsOnAShard()
+    {
+        framerShard = new FramerShard(shardPublication, 1, "FramerShard");
+        endPoint.libraryId(SHARD_LIBRARY_ID);
+        endPoint.moveToShard(framerShard);
+        framerShard.doWork();
+    }
+
+    private void firstBatchSaveAttemptIsBackPressured()
+    {
+        when(publication
+            .saveMessageBatch(
+                anyBuffer(), any(), any(), any(), anyInt(), anyInt(), anyInt(), anyLong(), anyInt(), anyLong()))
+            .thenReturn(BACK_PRESSURED, POSITION);
+    }
+
+    private void savesBatches(final VerificationMode mode, final int messageCount)
+    {
+        verify(publication, mode).saveMessageBatch(
+            anyBuffer(), any(), any(), any(), eq(messageCount),
+            eq(2 * GatewayPublication.batchedMessageLength(MSG_LEN) + FixMessageBatchReader.BATCH_HEADER_LENGTH),
+            eq(LIBRARY_ID), eq(SESSION_ID), eq(SEQUENCE_INDEX), eq(CONNECTION_ID));
+    }
+
     private void firstSaveAttemptIsBackPressured()
     {
         when(publication
             .saveMessage(
                 anyBuffer(), anyInt(), anyInt(), anyInt(), anyInt(), anyLong(), anyInt(), anyLong(), any(), anyInt()))
             .thenReturn(BACK_PRESSURED, POSITION);
+        when(publication
+            .saveMessage(
+                anyBuffer(), anyInt(), anyInt(), anyInt(), anyInt(), anyLong(), anyInt(), anyLong(), any(), anyInt(),
+                any()))
+            .thenReturn(BACK_PRESSURED, POSITION);
     }
 
     private AtomicBuffer anyBuffer()
@@ -512,7 +767,7 @@ public class ReceiverEndPointTest
         return verify(publication, times(numberOfMessages)).saveMessage(
             anyBuffer(), eq(0), eq(msgLen), eq(LIBRARY_ID),
             eq(messageType), eq(SESSION_ID), eq(SEQUENCE_INDEX), eq(CONNECTION_ID),
-            eq(status), eq(0));
+            eq(status), eq(0), any());
     }
 
     private void savesTwoFramedMessages(final int firstMessageSaveAttempts)
@@ -528,7 +783,8 @@ public class ReceiverEndPointTest
             eq(SEQUENCE_INDEX),
             eq(CONNECTION_ID),
             eq(OK),
-            eq(0));
+            eq(0),
+            any());
 
         inOrder.verify(publication, times(1)).saveMessage(
             anyBuffer(),
@@ -540,7 +796,8 @@ public class ReceiverEndPointTest
             eq(SEQUENCE_INDEX),
             eq(CONNECTION_ID),
             eq(OK),
-            eq(0));
+            eq(0),
+            any());
 
         inOrder.verifyNoMoreInteractions();
     }
@@ -660,12 +917,6 @@ public class ReceiverEndPointTest
         sessionReceivedCountIs(2);
     }
 
-    private void sessionReceivesTwoMessageAtBufferStart()
-    {
-        sessionReceivesMessageAt(0, MSG_LEN, times(2));
-        sessionReceivedCountIs(2);
-    }
-
     private void sessionReceivedCountIs(final int numberOfMessages)
     {
         verify(gatewaySession, times(numberOfMessages))
@@ -51,6 +51,8 @@ public class SenderEndPointTest
     private static final int FRAGMENT_LENGTH = alignTerm(HEADER_LENGTH + FRAME_SIZE + BODY_LENGTH);
     private static final long BEGIN_POSITION = 8000;
     private static final int MAX_BYTES_IN_BUFFER = 3 * BODY_LENGTH;
+    private static final int MAX_GATHERED_BYTES = 1024;
+    private static final int MAX_GATHERED_MESSAGES = 4;
 
     private TcpChannel tcpChannel = mock(TcpChannel.class);
     private AtomicCounter bytesInBuffer = fakeCounter();
@@ -63,20 +65,7 @@ public class SenderEndPointTest
     private BlockablePosition replayBlockablePosition = mock(BlockablePosition.class);
     private SenderSequenceNumber senderSequenceNumber = mock(SenderSequenceNumber.class);
 
-    private SenderEndPoint endPoint = new SenderEndPoint(
-        CONNECTION_ID,
-        LIBRARY_ID,
-        libraryBlockablePosition,
-        replayBlockablePosition,
-        tcpChannel,
-        bytesInBuffer,
-        invalidLibraryAttempts,
-        errorHandler,
-        framer,
-        MAX_BYTES_IN_BUFFER,
-        DEFAULT_SLOW_CONSUMER_TIMEOUT_IN_MS,
-        0,
-        senderSequenceNumber);
+    private SenderEndPoint endPoint = newEndPoint(0);
 
     @Test
     public void shouldRetrySlowConsumerMessage()
@@ -416,6 +405,92 @@ public class SenderEndPointTest
         verifyNoMoreErrors();
     }
 
+    @Test
+    public void shouldGatherOutboundMessagesIntoASingleWrite() throws IOException
+    {
+        givenAGatheringEndPoint();
+        channelWillWriteAnyBuffer(2 * BODY_LENGTH);
+
+        onOutboundMessage(0, POSITION);
+        onOutboundMessage(0, POSITION + FRAGMENT_LENGTH);
+        verify(tcpChannel, never()).write(any(ByteBuffer.class));
+
+        endPoint.flushGatheredMessages();
+        verify(tcpChannel, times(1)).write(any(ByteBuffer.class));
+        assertBytesInBuffer(0);
+        verifyNoMoreErrors();
+    }
+
+    @Test
+    public void shouldWriteGatheredMessagesOnceMaxGatheredMessagesReached() throws IOException
+    {
+        givenAGatheringEndPoint();
+        channelWillWriteAnyBuffer(MAX_GATHERED_MESSAGES * BODY_LENGTH);
+
+        for (int i = 0; i < MAX_GATHERED_MESSAGES; i++)
+        {
+            onOutboundMessage(0, POSITION + i * FRAGMENT_LENGTH);
+        }
+
+        verify(tcpChannel, times(1)).write(any(ByteBuffer.class));
+        assertFalse(endPoint.hasGatheredMessages());
+    }
+
+    @Test
+    public void shouldBecomeSlowConsumerWhenGatheredMessagesArePartiallyWritten() throws IOException
+    {
+        final int firstWrites = 41;
+        final int remaining = BODY_LENGTH - firstWrites;
+        final long secondPosition = POSITION + FRAGMENT_LENGTH;
+
+        givenAGatheringEndPoint();
+        channelWillWriteAnyBuffer(BODY_LENGTH + firstWrites);
+
+        onOutboundMessage(0, POSITION);
+        onOutboundMessage(0, secondPosition);
+        onOutboundMessage(0, secondPosition + FRAGMENT_LENGTH);
+        endPoint.flushGatheredMessages();
+
+        assertBytesInBuffer(remaining + BODY_LENGTH);
+        verify(framer).slowStatus(LIBRARY_ID, CONNECTION_ID, true);
+
+        channelWillWriteAnyBuffer(remaining);
+        endPoint.onSlowOutboundMessage(
+            buffer, HEADER_LENGTH, LENGTH, secondPosition, BODY_LENGTH, LIBRARY_ID, 100);
+        assertBytesInBuffer(BODY_LENGTH);
+        verifyNoMoreErrors();
+    }
+
+    private void givenAGatheringEndPoint()
+    {
+        endPoint = newEndPoint(MAX_GATHERED_BYTES);
+    }
+
+    private SenderEndPoint newEndPoint(final int maxGatheredBytes)
+    {
+        return new SenderEndPoint(
+            CONNECTION_ID,
+            LIBRARY_ID,
+            libraryBlockablePosition,
+            new BlockablePosition[]{ replayBlockablePosition },
+            tcpChannel,
+            bytesInBuffer,
+            invalidLibraryAttempts,
+            errorHandler,
+            framer,
+            MAX_BYTES_IN_BUFFER,
+            DEFAULT_SLOW_CONSUMER_TIMEOUT_IN_MS,
+            0,
+            senderSequenceNumber,
+            maxGatheredBytes,
+            MAX_GATHERED_MESSAGES);
+    }
+
+    private void channelWillWriteAnyBuffer(final int length) throws IOException
+    {
+        when(tcpChannel.write(any(ByteBuffer.class))).thenReturn(length);
+    }
+
     private void byteBufferNotWritten()
     {
         byteBufferWritten(never());
@@ -0,0 +1,337 @@
+/*
+ * Copyright 2015-2019 Real Logic Ltd, Adaptive Financial Consulting Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio.engine.logger;
+
+import io.aeron.Aeron;
+import io.aeron.ExclusivePublication;
+import io.aeron.Subscription;
+import io.aeron.archive.ArchivingMediaDriver;
+import io.aeron.archive.client.AeronArchive;
+import io.aeron.archive.codecs.SourceLocation;
+import io.aeron.logbuffer.BufferClaim;
+import io.aeron.logbuffer.ControlledFragmentHandler;
+import io.aeron.logbuffer.FragmentHandler;
+import org.agrona.ErrorHandler;
+import org.agrona.IoUtil;
+import org.agrona.concurrent.NoOpIdleStrategy;
+import org.agrona.concurrent.SystemEpochClock;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.agrona.concurrent.YieldingIdleStrategy;
+import org.agrona.concurrent.status.AtomicCounter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import uk.co.real_logic.artio.FixCounters;
+import uk.co.real_logic.artio.TestFixtures;
+import uk.co.real_logic.artio.builder.Encoder;
+import uk.co.real_logic.artio.builder.ExampleMessageEncoder;
+import uk.co.real_logic.artio.builder.ResendRequestEncoder;
+import uk.co.real_logic.artio.decoder.ExampleMessageDecoder;
+import uk.co.real_logic.artio.decoder.ResendRequestDecoder;
+import uk.co.real_logic.artio.dictionary.generation.Exceptions;
+import uk.co.real_logic.artio.engine.SenderSequenceNumbers;
+import uk.co.real_logic.artio.fields.UtcTimestampEncoder;
+import uk.co.real_logic.artio.messages.FixMessageEncoder;
+import uk.co.real_logic.artio.messages.MessageHeaderEncoder;
+import uk.co.real_logic.artio.util.MutableAsciiBuffer;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static io.aeron.CommonContext.IPC_CHANNEL;
+import static io.aeron.logbuffer.ControlledFragmentHandler.Action.COMMIT;
+import static io.aeron.logbuffer.ControlledFragmentHandler.Action.CONTINUE;
+import static org.junit.Assert.assertEquals;
+import static uk.co.real_logic.artio.CommonConfiguration.DEFAULT_NAME_PREFIX;
+import static uk.co.real_logic.artio.CommonConfiguration.DEFAULT_OUTBOUND_LIBRARY_STREAM;
+import static uk.co.real_logic.artio.TestFixtures.cleanupMediaDriver;
+import static uk.co.real_logic.artio.engine.EngineConfiguration.*;
+import static uk.co.real_logic.artio.engine.logger.ReplayIndexDescriptor.REPLAY_POSITION_BUFFER_SIZE;
+import static uk.co.real_logic.artio.messages.MessageStatus.OK;
+
+/**
+ * Checks that the resend paths don't allocate once warmed up. Inline mocks instrument every instance of a class
+ * that has been mocked anywhere in the JVM, so this test uses no mocks and is run in its own JVM by the
+ * allocationTest task rather than alongside the other tests.
+ */
+public class ReplayAllocationTest
+{
+    private static final int STREAM_ID = DEFAULT_OUTBOUND_LIBRARY_STREAM;
+    private static final long SESSION_ID = 1;
+    private static final long CONNECTION_ID = 1;
+    private static final int LIBRARY_ID = 7;
+    private static final int SEQUENCE_NUMBER = 2;
+    private static final int SEQUENCE_INDEX = 1;
+    private static final String SENDER = "sender";
+    private static final String TARGET = "target";
+    private static final int MAX_CLAIM_ATTEMPTS = 100;
+    private static final int WARM_UP_OPERATIONS = 10_000;
+    private static final int MEASURED_OPERATIONS = 10_000;
+    // Small enough that the warm up rotates the terms of the replay publication many times.
+    private static final int TERM_BUFFER_LENGTH = 64 * 1024;
+
+    private final UnsafeBuffer buffer = new UnsafeBuffer(new byte[1024]);
+    private final MutableAsciiBuffer resendRequestBuffer = new MutableAsciiBuffer(new byte[1024]);
+    private final List<Throwable> errors = new ArrayList<>();
+    private final ErrorHandler errorHandler = errors::add;
+
+    private ArchivingMediaDriver mediaDriver;
+    private AeronArchive aeronArchive;
+    private FixCounters fixCounters;
+    private ExclusivePublication publication;
+    private Subscription subscription;
+    private ReplayQuery replayQuery;
+
+    @Before
+    public void setUp()
+    {
+        mediaDriver = TestFixtures.launchMediaDriver(TERM_BUFFER_LENGTH);
+        aeronArchive = AeronArchive.connect();
+        aeronArchive.startRecording(IPC_CHANNEL, STREAM_ID, SourceLocation.LOCAL);
+
+        final Aeron aeron = aeronArchive.context().aeron();
+        fixCounters = TestFixtures.newFixCounters(aeron);
+        publication = aeron.addExclusivePublication(IPC_CHANNEL, STREAM_ID);
+        subscription = aeron.addSubscription(IPC_CHANNEL, STREAM_ID);
+
+        IoUtil.ensureDirectoryExists(new File(DEFAULT_LOG_FILE_DIR), DEFAULT_LOG_FILE_DIR);
+        IoUtil.deleteIfExists(ReplayIndexDescriptor.replayIndexFile(DEFAULT_LOG_FILE_DIR, SESSION_ID, STREAM_ID));
+
+        replayQuery = new ReplayQuery(
+            DEFAULT_LOG_FILE_DIR,
+            DEFAULT_LOGGER_CACHE_NUM_SETS,
+            DEFAULT_LOGGER_CACHE_SET_SIZE,
+            LoggerUtil::mapExistingFile,
+            STREAM_ID,
+            aeronArchive,
+            errorHandler,
+            DEFAULT_ARCHIVE_REPLAY_STREAM);
+    }
+
+    @After
+    public void teardown()
+    {
+        Exceptions.closeAll(replayQuery, fixCounters, aeronArchive);
+        cleanupMediaDriver(mediaDriver);
+    }
+
+    @Test(timeout = 20_000L)
+    public void shouldNotAllocateWhenReplayingFromResendCacheInTheSteadyState()
+    {
+        // Not recorded, so that the archive can't back-pressure the replays.
+        final Aeron aeron = aeronArchive.context().aeron();
+        final ExclusivePublication replayPublication = aeron.addExclusivePublication(
+            IPC_CHANNEL, DEFAULT_OUTBOUND_REPLAY_STREAM);
+        final Subscription replayed = aeron.addSubscription(IPC_CHANNEL, DEFAULT_OUTBOUND_REPLAY_STREAM);
+
+        final AtomicCounter cacheHits = fixCounters.resendCacheHits();
+        final AtomicCounter cacheMisses = fixCounters.resendCacheMisses();
+        final ResendCache resendCache = new ResendCache(
+            DEFAULT_OUTBOUND_REPLAY_STREAM, 10, 64 * 1024, cacheHits, cacheMisses);
+        publish(replayPublication, exampleMessage(SEQUENCE_NUMBER));
+        while (replayed.poll(resendCache::onFragment, 1) == 0)
+        {
+            Thread.yield();
+        }
+
+        final NoOpIdleStrategy idleStrategy = new NoOpIdleStrategy();
+        final Replayer replayer = new Replayer(
+            replayQuery,
+            replayPublication,
+            new BufferClaim(),
+            idleStrategy,
+            errorHandler,
+            MAX_CLAIM_ATTEMPTS,
+            subscription,
+            DEFAULT_NAME_PREFIX,
+            new SystemEpochClock(),
+            DEFAULT_GAPFILL_ON_REPLAY_MESSAGE_TYPES,
+            (buffer, offset, length, libraryId, sessionId, sequenceIndex, messageType) -> {},
+            new SenderSequenceNumbers(idleStrategy),
+            resendCache,
+            0,
+            1,
+            fixCounters.replayerQueueDepth(0),
+            DEFAULT_REPLAY_QUANTUM_BYTES,
+            DEFAULT_REPLAY_MAX_BYTES_PER_SECOND,
+            DEFAULT_REPLAY_BACKLOG_TOP_SESSIONS,
+            fixCounters);
+        final long resendRequest = resendRequest();
+        final FragmentHandler drain = (buffer, offset, length, header) -> {};
+
+        for (int i = 0; i < WARM_UP_OPERATIONS; i++)
+        {
+            replayFromResendCache(replayer, resendRequest, replayed, drain);
+        }
+
+        final long allocatedBytes = allocatedBytes();
+        for (int i = 0; i < MEASURED_OPERATIONS; i++)
+        {
+            replayFromResendCache(replayer, resendRequest, replayed, drain);
+        }
+
+        final long allocatedBytesPerOperation = (allocatedBytes() - allocatedBytes) / MEASURED_OPERATIONS;
+        assertEquals(Collections.emptyList(), errors);
+        assertEquals(WARM_UP_OPERATIONS + MEASURED_OPERATIONS, cacheHits.get());
+        assertEquals(0, cacheMisses.get());
+        assertEquals(0, allocatedBytesPerOperation);
+    }
+
+    @Test(timeout = 20_000L)
+    public void shouldNotAllocateWhenQueryingInTheSteadyState()
+    {
+        final Aeron aeron = aeronArchive.context().aeron();
+        final RecordingIdLookup recordingIdLookup = new RecordingIdLookup(
+            new YieldingIdleStrategy(), aeron.countersReader());
+        try (ReplayIndex replayIndex = new ReplayIndex(
+            DEFAULT_LOG_FILE_DIR,
+            STREAM_ID,
+            DEFAULT_REPLAY_INDEX_FILE_SIZE,
+            DEFAULT_REPLAY_INDEX_MAX_SEGMENTS,
+            DEFAULT_REPLAY_INDEX_SHARED_FILE_SESSIONS,
+            DEFAULT_LOGGER_CACHE_NUM_SETS,
+            DEFAULT_LOGGER_CACHE_SET_SIZE,
+            LoggerUtil::map,
+            new UnsafeBuffer(new byte[REPLAY_POSITION_BUFFER_SIZE]),
+            errorHandler,
+            recordingIdLookup))
+        {
+            for (int sequenceNumber = SEQUENCE_NUMBER; sequenceNumber <= SEQUENCE_NUMBER + 1; sequenceNumber++)
+            {
+                publish(publication, exampleMessage(sequenceNumber));
+                while (subscription.poll(replayIndex, 1) == 0)
+                {
+                    Thread.yield();
+                }
+            }
+        }
+
+        final ControlledFragmentHandler handler = (buffer, offset, length, header) -> CONTINUE;
+        for (int i = 0; i < WARM_UP_OPERATIONS; i++)
+        {
+            queryAndRelease(handler);
+        }
+
+        final long allocatedBytes = allocatedBytes();
+        for (int i = 0; i < MEASURED_OPERATIONS; i++)
+        {
+            queryAndRelease(handler);
+        }
+
+        final long allocatedBytesPerOperation = (allocatedBytes() - allocatedBytes) / MEASURED_OPERATIONS;
+        assertEquals(Collections.emptyList(), errors);
+        assertEquals(0, allocatedBytesPerOperation);
+    }
+
+    private void replayFromResendCache(
+        final Replayer replayer, final long resendRequest, final Subscription replayed, final FragmentHandler drain)
+    {
+        assertEquals(COMMIT, replayer.onMessage(
+            resendRequestBuffer,
+            Encoder.offset(resendRequest),
+            Encoder.length(resendRequest),
+            LIBRARY_ID,
+            CONNECTION_ID,
+            SESSION_ID,
+            SEQUENCE_INDEX,
+            ResendRequestDecoder.MESSAGE_TYPE,
+            0L,
+            OK,
+            0,
+            0L));
+
+        do
+        {
+            replayed.poll(drain, 10);
+        }
+        while (replayer.doWork() > 0);
+    }
+
+    private void queryAndRelease(final ControlledFragmentHandler handler)
+    {
+        final ReplayOperation operation = replayQuery.query(
+            handler, SESSION_ID, SEQUENCE_NUMBER, SEQUENCE_INDEX, SEQUENCE_NUMBER + 1, SEQUENCE_INDEX);
+
+        assertEquals(1, operation.ranges().size());
+        replayQuery.release(operation);
+    }
+
+    private int exampleMessage(final int sequenceNumber)
+    {
+        final UtcTimestampEncoder timestampEncoder = new UtcTimestampEncoder();
+        final int timestampLength = timestampEncoder.encode(System.currentTimeMillis());
+        final ExampleMessageEncoder exampleMessage = new ExampleMessageEncoder();
+        exampleMessage.testReqID("abc");
+        exampleMessage
+            .header()
+            .possDupFlag(false)
+            .origSendingTime(timestampEncoder.buffer(), timestampLength)
+            .sendingTime(timestampEncoder.buffer(), timestampLength)
+            .senderCompID(SENDER)
+            .targetCompID(TARGET)
+            .msgSeqNum(sequenceNumber);
+
+        final MutableAsciiBuffer asciiBuffer = new MutableAsciiBuffer(new byte[buffer.capacity()]);
+        final long result = exampleMessage.encode(asciiBuffer, 0);
+
+        final FixMessageEncoder messageFrame = new FixMessageEncoder()
+            .wrapAndApplyHeader(buffer, 0, new MessageHeaderEncoder())
+            .messageType(ExampleMessageDecoder.MESSAGE_TYPE)
+            .session(SESSION_ID)
+            .connection(CONNECTION_ID)
+            .sequenceIndex(SEQUENCE_INDEX)
+            .libraryId(LIBRARY_ID)
+            .putBody(asciiBuffer, Encoder.offset(result), Encoder.length(result));
+
+        return messageFrame.limit();
+    }
+
+    private long resendRequest()
+    {
+        final UtcTimestampEncoder timestampEncoder = new UtcTimestampEncoder();
+        timestampEncoder.encode(System.currentTimeMillis());
+
+        final ResendRequestEncoder resendRequest = new ResendRequestEncoder();
+        resendRequest
+            .header()
+            .sendingTime(timestampEncoder.buffer())
+            .msgSeqNum(1)
+            .senderCompID(TARGET)
+            .targetCompID(SENDER);
+
+        return resendRequest
+            .beginSeqNo(SEQUENCE_NUMBER)
+            .endSeqNo(SEQUENCE_NUMBER)
+            .encode(resendRequestBuffer, 0);
+    }
+
+    private void publish(final ExclusivePublication exclusivePublication, final int length)
+    {
+        while (exclusivePublication.offer(buffer, 0, length) <= 0)
+        {
+            Thread.yield();
+        }
+    }
+
+    private static long allocatedBytes()
+    {
+        return ((com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean())
+            .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
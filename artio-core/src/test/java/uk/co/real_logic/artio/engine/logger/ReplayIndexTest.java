@@ -26,7 +26,6 @@ import io.aeron.logbuffer.ControlledFragmentHandler;
 import org.agrona.ErrorHandler;
 import org.agrona.IoUtil;
 import org.agrona.concurrent.IdleStrategy;
-import org.agrona.concurrent.NoOpIdleStrategy;
 import org.agrona.concurrent.UnsafeBuffer;
 import org.agrona.concurrent.YieldingIdleStrategy;
 import org.junit.After;
@@ -44,10 +43,13 @@ import java.nio.ByteBuffer;
 import java.util.stream.IntStream;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.*;
 import static uk.co.real_logic.artio.TestFixtures.cleanupMediaDriver;
 import static uk.co.real_logic.artio.TestFixtures.largeTestReqId;
 import static uk.co.real_logic.artio.engine.EngineConfiguration.*;
+import static uk.co.real_logic.artio.engine.logger.ReplayIndexDescriptor.INITIAL_RECORD_OFFSET;
 import static uk.co.real_logic.artio.engine.logger.ReplayIndexDescriptor.RECORD_LENGTH;
 import static uk.co.real_logic.artio.engine.logger.ReplayIndexDescriptor.REPLAY_POSITION_BUFFER_SIZE;
 import static uk.co.real_logic.artio.engine.logger.Replayer.MOST_RECENT_MESSAGE;
@@ -55,6 +57,9 @@ import static uk.co.real_logic.artio.engine.logger.Replayer.MOST_RECENT_MESSAGE;
 public class ReplayIndexTest extends AbstractLogTest
 {
     private static final String CHANNEL = CommonContext.IPC_CHANNEL;
+    private static final int SEGMENT_RECORDS = 16;
+    private static final int SEGMENT_CAPACITY = SEGMENT_RECORDS * RECORD_LENGTH;
+    private static final long SESSION_ID_3 = 3;
 
     private ByteBuffer indexBuffer = ByteBuffer.allocate(DEFAULT_REPLAY_INDEX_FILE_SIZE);
     private ExistingBufferFactory existingBufferFactory = mock(ExistingBufferFactory.class);
@@ -82,6 +87,8 @@ public class ReplayIndexTest extends AbstractLogTest
             DEFAULT_LOG_FILE_DIR,
             STREAM_ID,
             DEFAULT_REPLAY_INDEX_FILE_SIZE,
+            DEFAULT_REPLAY_INDEX_MAX_SEGMENTS,
+            DEFAULT_REPLAY_INDEX_SHARED_FILE_SESSIONS,
             DEFAULT_LOGGER_CACHE_NUM_SETS,
             DEFAULT_LOGGER_CACHE_SET_SIZE,
             newBufferFactory,
@@ -121,7 +128,6 @@ public class ReplayIndexTest extends AbstractLogTest
             DEFAULT_LOGGER_CACHE_SET_SIZE,
             existingBufferFactory,
             DEFAULT_OUTBOUND_LIBRARY_STREAM,
-            new NoOpIdleStrategy(),
             aeronArchive,
             errorHandler,
             DEFAULT_ARCHIVE_REPLAY_STREAM);
@@ -205,6 +211,33 @@ public class ReplayIndexTest extends AbstractLogTest
         }
     }
 
+    @Test(timeout = 20_000L)
+    public void shouldReadRecordsFromEitherSideOfARestart() throws IOException
+    {
+        indexExampleMessage();
+
+        // Fake restarting the gateway
+        final File logFile = logFile(SESSION_ID);
+        IoUtil.ensureDirectoryExists(new File(DEFAULT_LOG_FILE_DIR), DEFAULT_LOG_FILE_DIR);
+        logFile.createNewFile();
+        try
+        {
+            newReplayIndex();
+
+            final int endSequenceNumber = SEQUENCE_NUMBER + 1;
+            indexExampleMessage(SESSION_ID, endSequenceNumber, SEQUENCE_INDEX);
+
+            final int msgCount = query(SEQUENCE_NUMBER, SEQUENCE_INDEX, endSequenceNumber, SEQUENCE_INDEX);
+
+            verifyMessagesRead(2);
+            assertEquals(2, msgCount);
+        }
+        finally
+        {
+            IoUtil.delete(new File(DEFAULT_LOG_FILE_DIR), false);
+        }
+    }
+
     @Test(timeout = 20_000L)
     public void shouldReturnAllLogEntriesWhenMostResentMessageRequested()
     {
@@ -270,6 +303,35 @@ public class ReplayIndexTest extends AbstractLogTest
         assertEquals(2, msgCount);
     }
 
+    @Test(timeout = 20_000L)
+    public void shouldQueryAfterAGapInSequenceNumbers()
+    {
+        IntStream.rangeClosed(1, 3).forEach(
+            (seqNum) -> indexExampleMessage(SESSION_ID, seqNum, SEQUENCE_INDEX));
+        IntStream.rangeClosed(10, 12).forEach(
+            (seqNum) -> indexExampleMessage(SESSION_ID, seqNum, SEQUENCE_INDEX));
+
+        final int msgCount = query(11, SEQUENCE_INDEX, 12, SEQUENCE_INDEX);
+
+        assertEquals(2, msgCount);
+        verifyMessagesRead(2);
+    }
+
+    @Test(timeout = 20_000L)
+    public void shouldQueryWithinALaterSequenceIndex()
+    {
+        final int nextSequenceIndex = SEQUENCE_INDEX + 1;
+        IntStream.rangeClosed(1, 5).forEach(
+            (seqNum) -> indexExampleMessage(SESSION_ID, seqNum, SEQUENCE_INDEX));
+        IntStream.rangeClosed(1, 5).forEach(
+            (seqNum) -> indexExampleMessage(SESSION_ID, seqNum, nextSequenceIndex));
+
+        final int msgCount = query(2, nextSequenceIndex, 3, nextSequenceIndex);
+
+        assertEquals(2, msgCount);
+        verifyMessagesRead(2);
+    }
+
     @Test //(timeout = 20_000L)
     public void shouldNotStopIndexingWhenBufferFull()
     {
@@ -289,6 +351,117 @@ public class ReplayIndexTest extends AbstractLogTest
         verifyMessagesRead(expectedMessages);
     }
 
+    @Test(timeout = 20_000L)
+    public void shouldQueryRecordsSealedIntoSegments()
+    {
+        try
+        {
+            newSegmentedReplayIndex(2);
+            indexExampleMessages(1, 40);
+
+            final int msgCount = query(1, SEQUENCE_INDEX, 40, SEQUENCE_INDEX);
+
+            assertEquals(40, msgCount);
+            verifyMessagesRead(40);
+        }
+        finally
+        {
+            IoUtil.delete(new File(DEFAULT_LOG_FILE_DIR), false);
+        }
+    }
+
+    @Test(timeout = 20_000L)
+    public void shouldSearchForStartOfQueryWithinSegments()
+    {
+        try
+        {
+            newSegmentedReplayIndex(2);
+            indexExampleMessages(1, 40);
+
+            final int msgCount = query(5, SEQUENCE_INDEX, 10, SEQUENCE_INDEX);
+
+            assertEquals(6, msgCount);
+            verifyMessagesRead(6);
+        }
+        finally
+        {
+            IoUtil.delete(new File(DEFAULT_LOG_FILE_DIR), false);
+        }
+    }
+
+    @Test(timeout = 20_000L)
+    public void shouldRetireOldestSegments()
+    {
+        try
+        {
+            newSegmentedReplayIndex(1);
+            indexExampleMessages(1, 56);
+
+            assertFalse(segmentFile(0).exists());
+            assertFalse(segmentFile(SEGMENT_CAPACITY).exists());
+            assertTrue(segmentFile(2 * SEGMENT_CAPACITY).exists());
+
+            final int msgCount = query(1, SEQUENCE_INDEX, 56, SEQUENCE_INDEX);
+
+            assertEquals(24, msgCount);
+            verifyMessagesRead(24);
+        }
+        finally
+        {
+            IoUtil.delete(new File(DEFAULT_LOG_FILE_DIR), false);
+        }
+    }
+
+    @Test(timeout = 20_000L)
+    public void shouldQueryRecordsOfSessionsInSharedFiles()
+    {
+        try
+        {
+            newSharedReplayIndex(2);
+            indexExampleMessages(1, 3);
+            indexExampleMessage(SESSION_ID_2, 1, SEQUENCE_INDEX);
+            indexExampleMessage(SESSION_ID_3, 1, SEQUENCE_INDEX);
+            indexExampleMessage(SESSION_ID_3, 2, SEQUENCE_INDEX);
+
+            assertTrue(sharedFile(0).exists());
+            assertTrue(sharedFile(1).exists());
+            assertFalse(logFile(SESSION_ID).exists());
+
+            assertEquals(3, query(SESSION_ID, 1, SEQUENCE_INDEX, 3, SEQUENCE_INDEX));
+            assertEquals(1, query(SESSION_ID_2, 1, SEQUENCE_INDEX, 1, SEQUENCE_INDEX));
+            assertEquals(2, query(SESSION_ID_3, 1, SEQUENCE_INDEX, 2, SEQUENCE_INDEX));
+        }
+        finally
+        {
+            IoUtil.delete(new File(DEFAULT_LOG_FILE_DIR), false);
+        }
+    }
+
+    @Test(timeout = 20_000L)
+    public void shouldReadSharedFilesFromBeforeARestart()
+    {
+        try
+        {
+            newSharedReplayIndex(2);
+            indexExampleMessages(1, 2);
+            indexExampleMessage(SESSION_ID_2, 1, SEQUENCE_INDEX);
+
+            // Fake restarting the gateway
+            newSharedReplayIndex(2);
+            indexExampleMessages(3, 4);
+            indexExampleMessage(SESSION_ID_3, 1, SEQUENCE_INDEX);
+
+            assertFalse(sharedFile(2).exists());
+            assertEquals(4, query(SESSION_ID, 1, SEQUENCE_INDEX, 4, SEQUENCE_INDEX));
+            assertEquals(1, query(SESSION_ID_2, 1, SEQUENCE_INDEX, 1, SEQUENCE_INDEX));
+            assertEquals(1, query(SESSION_ID_3, 1, SEQUENCE_INDEX, 1, SEQUENCE_INDEX));
+        }
+        finally
+        {
+            IoUtil.delete(new File(DEFAULT_LOG_FILE_DIR), false);
+        }
+    }
+
     @Test(timeout = 20_000L)
     public void shouldUpdatePositionForIndexedRecord()
     {
@@ -324,6 +497,66 @@ public class ReplayIndexTest extends AbstractLogTest
         verifyMappedFile(SESSION_ID_2);
     }
 
+    private void newSegmentedReplayIndex(final int maxSegments)
+    {
+        final int indexFileSize = INITIAL_RECORD_OFFSET + SEGMENT_CAPACITY;
+        indexBuffer = ByteBuffer.allocate(indexFileSize);
+        when(newBufferFactory.map(any(), anyInt())).thenReturn(indexBuffer);
+        doAnswer((invocation) -> LoggerUtil.mapExistingFile(invocation.getArgument(0)))
+            .when(existingBufferFactory).map(any());
+        doReturn(indexBuffer).when(existingBufferFactory).map(logFile(SESSION_ID));
+        IoUtil.ensureDirectoryExists(new File(DEFAULT_LOG_FILE_DIR), DEFAULT_LOG_FILE_DIR);
+
+        replayIndex = new ReplayIndex(
+            DEFAULT_LOG_FILE_DIR,
+            STREAM_ID,
+            indexFileSize,
+            maxSegments,
+            DEFAULT_REPLAY_INDEX_SHARED_FILE_SESSIONS,
+            DEFAULT_LOGGER_CACHE_NUM_SETS,
+            DEFAULT_LOGGER_CACHE_SET_SIZE,
+            newBufferFactory,
+            replayPositionBuffer,
+            errorHandler,
+            recordingIdLookup);
+    }
+
+    private void newSharedReplayIndex(final int sharedFileSessions)
+    {
+        doAnswer((invocation) -> LoggerUtil.mapExistingFile(invocation.getArgument(0)))
+            .when(existingBufferFactory).map(any());
+        IoUtil.ensureDirectoryExists(new File(DEFAULT_LOG_FILE_DIR), DEFAULT_LOG_FILE_DIR);
+
+        replayIndex = new ReplayIndex(
+            DEFAULT_LOG_FILE_DIR,
+            STREAM_ID,
+            INITIAL_RECORD_OFFSET + SEGMENT_CAPACITY,
+            DEFAULT_REPLAY_INDEX_MAX_SEGMENTS,
+            sharedFileSessions,
+            DEFAULT_LOGGER_CACHE_NUM_SETS,
+            DEFAULT_LOGGER_CACHE_SET_SIZE,
+            LoggerUtil::map,
+            replayPositionBuffer,
+            errorHandler,
+            recordingIdLookup);
+    }
+
+    private File sharedFile(final int fileNumber)
+    {
+        return ReplayIndexDescriptor.sharedReplayIndexFile(DEFAULT_LOG_FILE_DIR, STREAM_ID, fileNumber);
+    }
+
+    private File segmentFile(final long startPosition)
+    {
+        return ReplayIndexDescriptor.replayIndexSegmentFile(DEFAULT_LOG_FILE_DIR, SESSION_ID, STREAM_ID, startPosition);
+    }
+
+    private void indexExampleMessages(final int fromSequenceNumber, final int toSequenceNumber)
+    {
+        IntStream.rangeClosed(fromSequenceNumber, toSequenceNumber).forEach(
+            (seqNum) -> indexExampleMessage(SESSION_ID, seqNum, SEQUENCE_INDEX));
+    }
+
     private void indexExampleMessage()
     {
         indexExampleMessage(SESSION_ID, SEQUENCE_NUMBER, SEQUENCE_INDEX);
@@ -23,8 +23,11 @@ import io.aeron.logbuffer.Header;
 import io.aeron.protocol.DataHeaderFlyweight;
 import org.agrona.DirectBuffer;
 import org.agrona.ErrorHandler;
+import org.agrona.concurrent.AtomicBuffer;
 import org.agrona.concurrent.EpochClock;
 import org.agrona.concurrent.IdleStrategy;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.agrona.concurrent.status.AtomicCounter;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -33,6 +36,7 @@ import org.mockito.stubbing.Answer;
 import org.mockito.stubbing.OngoingStubbing;
 import org.mockito.verification.VerificationMode;
 import uk.co.real_logic.artio.Constants;
+import uk.co.real_logic.artio.FixCounters;
 import uk.co.real_logic.artio.builder.Encoder;
 import uk.co.real_logic.artio.decoder.*;
 import uk.co.real_logic.artio.engine.EngineConfiguration;
@@ -45,12 +49,14 @@ import uk.co.real_logic.artio.messages.ReplayCompleteDecoder;
 import uk.co.real_logic.artio.util.AsciiBuffer;
 import uk.co.real_logic.artio.util.MutableAsciiBuffer;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import static io.aeron.logbuffer.ControlledFragmentHandler.Action.*;
 import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.agrona.concurrent.status.CountersReader.COUNTER_LENGTH;
 import static org.hamcrest.Matchers.containsString;
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
@@ -85,6 +91,12 @@ public class ReplayerTest extends AbstractLogTest
     private ReplayHandler replayHandler = mock(ReplayHandler.class);
     private SenderSequenceNumbers senderSequenceNumbers = mock(SenderSequenceNumbers.class);
     private ReplayOperation replayOperation = mock(ReplayOperation.class);
+    private AtomicCounter queueDepth = mock(AtomicCounter.class);
+    private AtomicCounter replayBacklog = mock(AtomicCounter.class);
+    private FixCounters fixCounters = mock(FixCounters.class);
+    private int replayQuantumBytes = EngineConfiguration.DEFAULT_REPLAY_QUANTUM_BYTES;
+    private int replayMaxBytesPerSecond = EngineConfiguration.DEFAULT_REPLAY_MAX_BYTES_PER_SECOND;
+    private int replayBacklogTopSessions = EngineConfiguration.DEFAULT_REPLAY_BACKLOG_TOP_SESSIONS;
 
     private Replayer replayer;
 
@@ -95,6 +107,10 @@ public class ReplayerTest extends AbstractLogTest
         when(clock.time()).thenReturn(DATE_TIME_EPOCH_MS);
         when(publication.tryClaim(anyInt(), any())).thenReturn(1L);
         when(publication.maxPayloadLength()).thenReturn(Configuration.mtuLength() - DataHeaderFlyweight.HEADER_LENGTH);
+        publicationHasSpace();
+        when(fixCounters.replayBacklog(anyInt())).thenReturn(replayBacklog);
+        when(fixCounters.replayBacklogTopSessionId(anyInt(), anyInt())).thenReturn(mock(AtomicCounter.class));
+        when(fixCounters.replayBacklogTopMessages(anyInt(), anyInt())).thenReturn(mock(AtomicCounter.class));
 
         when(replayQuery.query(handler.capture(), anyLong(), anyInt(), anyInt(), anyInt(), anyInt()))
             .thenReturn(replayOperation);
@@ -102,7 +118,17 @@ public class ReplayerTest extends AbstractLogTest
 
         setReplayedMessages(1);
 
-        replayer = new Replayer(
+        replayer = newReplayer(null);
+    }
+
+    private Replayer newReplayer(final ResendCache resendCache)
+    {
+        return newReplayer(resendCache, 0, 1);
+    }
+
+    private Replayer newReplayer(final ResendCache resendCache, final int replayerIndex, final int replayerCount)
+    {
+        return new Replayer(
             replayQuery,
             publication,
             claim,
@@ -114,7 +140,15 @@ public class ReplayerTest extends AbstractLogTest
             clock,
             EngineConfiguration.DEFAULT_GAPFILL_ON_REPLAY_MESSAGE_TYPES,
             replayHandler,
-            senderSequenceNumbers);
+            senderSequenceNumbers,
+            resendCache,
+            replayerIndex,
+            replayerCount,
+            queueDepth,
+            replayQuantumBytes,
+            replayMaxBytesPerSecond,
+            replayBacklogTopSessions,
+            fixCounters);
     }
 
     private void setReplayedMessages(final int replayedMessages)
@@ -195,6 +229,104 @@ public class ReplayerTest extends AbstractLogTest
         assertHasResentWithPossDupFlag(srcLength, times(2));
     }
 
+    @Test
+    public void shouldReuseReplayOnceComplete()
+    {
+        bufferContainsExampleMessage(true);
+        setupMessage(fragmentLength());
+        onReplay(END_SEQ_NO, inv -> true);
+        final ControlledFragmentHandler firstHandler = getHandler();
+
+        replayer.doWork();
+        replayer.doWork();
+
+        verifyReplayCompleteMessageSent();
+        verify(replayQuery).release(replayOperation);
+
+        onReplay(END_SEQ_NO, inv -> true);
+
+        assertSame(firstHandler, getHandler());
+    }
+
+    @Test
+    public void shouldReplayRecentlySentMessagesFromResendCache()
+    {
+        final AtomicCounter cacheHits = mock(AtomicCounter.class);
+        final ResendCache resendCache = new ResendCache(
+            STREAM_ID, 10, 64 * 1024, cacheHits, mock(AtomicCounter.class));
+        replayer = newReplayer(resendCache);
+
+        when(fragmentHeader.streamId()).thenReturn(STREAM_ID);
+        bufferContainsExampleMessage(true);
+        final int srcLength = fragmentLength();
+        resendCache.onFragment(buffer, START, srcLength, fragmentHeader);
+        setupMessage(srcLength);
+
+        final long result = bufferHasResendRequest(END_SEQ_NO);
+        onRequestResendMessage(result);
+        verify(replayBacklog).getAndAddOrdered(1);
+        replayer.doWork();
+
+        assertHasResentWithPossDupFlag(srcLength, times(1));
+        verify(replayBacklog).getAndAddOrdered(-1);
+        verify(cacheHits).increment();
+        verify(replayQuery, never()).query(any(), anyLong(), anyInt(), anyInt(), anyInt(), anyInt());
+
+        replayer.doWork();
+
+        verifyReplayCompleteMessageSent();
+    }
+
+    @Test
+    public void shouldPublishTheLargestReplayBacklogs()
+    {
+        final AtomicBuffer countersBuffer = new UnsafeBuffer(new byte[4 * COUNTER_LENGTH]);
+        final AtomicCounter firstSessionId = new AtomicCounter(countersBuffer, 0);
+        final AtomicCounter firstMessages = new AtomicCounter(countersBuffer, 1);
+        final AtomicCounter secondSessionId = new AtomicCounter(countersBuffer, 2);
+        final AtomicCounter secondMessages = new AtomicCounter(countersBuffer, 3);
+        when(fixCounters.replayBacklogTopSessionId(anyInt(), eq(1))).thenReturn(firstSessionId);
+        when(fixCounters.replayBacklogTopMessages(anyInt(), eq(1))).thenReturn(firstMessages);
+        when(fixCounters.replayBacklogTopSessionId(anyInt(), eq(2))).thenReturn(secondSessionId);
+        when(fixCounters.replayBacklogTopMessages(anyInt(), eq(2))).thenReturn(secondMessages);
+        replayBacklogTopSessions = 2;
+        replayer = newReplayer(null);
+
+        when(replayOperation.ranges()).thenReturn(recordingRanges(3), recordingRanges(5));
+        whenReplayQueried().thenReturn(false);
+        onRequestResendMessage(bufferHasResendRequest(END_SEQ_NO));
+        onMessageWithSession(
+            ResendRequestDecoder.MESSAGE_TYPE,
+            bufferHasResendRequest(END_SEQ_NO, RESEND_TARGET_2),
+            COMMIT,
+            SESSION_ID_2,
+            CONNECTION_ID_2);
+        replayer.doWork();
+
+        assertEquals(SESSION_ID_2, firstSessionId.get());
+        assertEquals(5, firstMessages.get());
+        assertEquals(SESSION_ID, secondSessionId.get());
+        assertEquals(3, secondMessages.get());
+
+        bufferContainsExampleMessage(true);
+        setupMessage(fragmentLength());
+        whenReplayQueried().thenReturn(true);
+        replayer.doWork();
+        replayer.doWork();
+
+        assertEquals(0, firstSessionId.get());
+        assertEquals(0, firstMessages.get());
+        assertEquals(0, secondSessionId.get());
+        assertEquals(0, secondMessages.get());
+    }
+
+    private static List<RecordingRange> recordingRanges(final int count)
+    {
+        final RecordingRange range = new RecordingRange();
+        range.count = count;
+        return Collections.singletonList(range);
+    }
+
     // TODO: queue replay requests by fix session
 
     @Test
@@ -392,9 +524,98 @@ public class ReplayerTest extends AbstractLogTest
         assertHasResentWithPossDupFlag(srcLength, times(1));
     }
 
+    @Test
+    public void shouldResumeReplayOnNextTurnOnceQuantumIsUsedUp()
+    {
+        replayQuantumBytes = 1;
+        replayer = newReplayer(null);
+        final int endSeqNo = endSeqNoForTwoMessages();
+
+        whenReplayQueried().then(inv ->
+        {
+            setupCapturingClaim();
+            onExampleMessage(BEGIN_SEQ_NO);
+            onExampleMessage(endSeqNo, ABORT);
+            return false;
+        });
+
+        final long result = bufferHasResendRequest(endSeqNo);
+        onMessage(ResendRequestDecoder.MESSAGE_TYPE, result, COMMIT);
+        replayer.doWork();
+        verifyCommit(times(1));
+
+        doAnswer(inv ->
+        {
+            onExampleMessage(endSeqNo);
+            return false;
+        }).when(replayOperation).attemptReplay();
+
+        replayer.doWork();
+        verifyCommit(times(2));
+    }
+
+    @Test
+    public void shouldPaceReplayToMaxBytesPerSecond()
+    {
+        bufferContainsExampleMessage(true);
+        replayMaxBytesPerSecond = fragmentLength();
+        replayer = newReplayer(null);
+        final int endSeqNo = endSeqNoForTwoMessages();
+
+        whenReplayQueried().then(inv ->
+        {
+            setupCapturingClaim();
+            onExampleMessage(BEGIN_SEQ_NO);
+            onExampleMessage(endSeqNo, ABORT);
+            return false;
+        });
+
+        final long result = bufferHasResendRequest(endSeqNo);
+        onMessage(ResendRequestDecoder.MESSAGE_TYPE, result, COMMIT);
+        replayer.doWork();
+        verifyCommit(times(1));
+
+        doAnswer(inv ->
+        {
+            onExampleMessage(endSeqNo, ABORT);
+            return false;
+        }).when(replayOperation).attemptReplay();
+
+        replayer.doWork();
+        verifyCommit(times(1));
+
+        doAnswer(inv ->
+        {
+            onExampleMessage(endSeqNo);
+            return false;
+        }).when(replayOperation).attemptReplay();
+
+        when(clock.time()).thenReturn(DATE_TIME_EPOCH_MS + 1000);
+        replayer.doWork();
+        verifyCommit(times(2));
+    }
+
+    @Test
+    public void shouldNotReplayWhenPublicationHasNoSpace()
+    {
+        when(publication.positionLimit()).thenReturn(0L);
+        whenReplayQueried().then(inv ->
+        {
+            onExampleMessage(BEGIN_SEQ_NO, ABORT);
+            return false;
+        });
+
+        final long result = bufferHasResendRequest(END_SEQ_NO);
+        onMessage(ResendRequestDecoder.MESSAGE_TYPE, result, COMMIT);
+        replayer.doWork();
+
+        verifyCommit(never());
+    }
+
     private void resetMocks()
     {
         reset(publication, claim, replayQuery, replayOperation);
+        publicationHasSpace();
     }
 
     @Test
@@ -580,6 +801,23 @@ public class ReplayerTest extends AbstractLogTest
         verifyNoMoreInteractions(replayQuery, publication);
     }
 
+    @Test
+    public void shouldOnlyReplaySessionsPartitionedToThisReplayer()
+    {
+        final int replayerCount = 2;
+        final int replayerIndex = Replayer.replayerIndex(SESSION_ID, replayerCount);
+        final long result = bufferHasResendRequest(END_SEQ_NO);
+
+        replayer = newReplayer(null, 1 - replayerIndex, replayerCount);
+        onMessage(ResendRequestDecoder.MESSAGE_TYPE, result, CONTINUE);
+        verifyNoMoreInteractions(replayQuery, queueDepth);
+
+        replayer = newReplayer(null, replayerIndex, replayerCount);
+        onRequestResendMessage(result);
+        verifyQueriedService(END_SEQ_NO);
+        verify(queueDepth).setOrdered(1);
+    }
+
     @Test
     public void shouldValidateResendRequestMessageSequenceNumbers()
     {
@@ -602,6 +840,12 @@ public class ReplayerTest extends AbstractLogTest
         verifyPublicationOnlyPayloadQueried();
         verifyNoMoreInteractions(claim);
         reset(publication);
+        publicationHasSpace();
+    }
+
+    private void publicationHasSpace()
+    {
+        when(publication.positionLimit()).thenReturn(Long.MAX_VALUE);
     }
 
     private void assertResentGapFillThenMessage(final int endSeqNo, final int offset, final int srcLength)
@@ -796,6 +1040,8 @@ public class ReplayerTest extends AbstractLogTest
     private void verifyPublicationOnlyPayloadQueried()
     {
         verify(publication).maxPayloadLength();
+        verify(publication, atLeast(0)).positionLimit();
+        verify(publication, atLeast(0)).position();
         verifyNoMoreInteractions(publication);
     }
 
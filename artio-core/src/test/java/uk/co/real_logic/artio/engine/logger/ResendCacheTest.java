@@ -0,0 +1,224 @@
+/*
+ * Copyright 2015-2019 Real Logic Ltd, Adaptive Financial Consulting Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio.engine.logger;
+
+import io.aeron.logbuffer.ControlledFragmentHandler;
+import io.aeron.logbuffer.ControlledFragmentHandler.Action;
+import io.aeron.logbuffer.Header;
+import org.agrona.concurrent.status.AtomicCounter;
+import org.junit.Before;
+import org.junit.Test;
+import uk.co.real_logic.artio.decoder.HeaderDecoder;
+import uk.co.real_logic.artio.util.MutableAsciiBuffer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static io.aeron.logbuffer.ControlledFragmentHandler.Action.ABORT;
+import static io.aeron.logbuffer.ControlledFragmentHandler.Action.CONTINUE;
+import static io.aeron.logbuffer.FrameDescriptor.BEGIN_FRAG_FLAG;
+import static io.aeron.logbuffer.FrameDescriptor.UNFRAGMENTED;
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.*;
+import static uk.co.real_logic.artio.engine.logger.Replayer.MOST_RECENT_MESSAGE;
+import static uk.co.real_logic.artio.engine.logger.ResendCache.NOT_CACHED;
+
+public class ResendCacheTest extends AbstractLogTest
+{
+    private static final int MAX_MESSAGES = 3;
+    private static final int MAX_BYTES = 64 * 1024;
+
+    private final Header fragmentHeader = mock(Header.class);
+    private final AtomicCounter hits = mock(AtomicCounter.class);
+    private final AtomicCounter misses = mock(AtomicCounter.class);
+    private final HeaderDecoder fixHeader = new HeaderDecoder();
+    private final List<Integer> replayedSeqNos = new ArrayList<>();
+
+    private ResendCache resendCache = new ResendCache(STREAM_ID, MAX_MESSAGES, MAX_BYTES, hits, misses);
+    private Action replayAction = CONTINUE;
+
+    @Before
+    public void setUp()
+    {
+        when(fragmentHeader.streamId()).thenReturn(STREAM_ID);
+        when(fragmentHeader.flags()).thenReturn(UNFRAGMENTED);
+    }
+
+    @Test
+    public void shouldReplayCachedRange()
+    {
+        sendMessages(2, 4);
+
+        assertEquals(3, resendCache.lookup(SESSION_ID, SEQUENCE_INDEX, 2, 3));
+        assertEquals(2, replay(2, 3));
+
+        assertEquals(asList(2, 3), replayedSeqNos);
+        verify(hits).increment();
+        verifyNoMoreInteractions(misses);
+    }
+
+    @Test
+    public void shouldResolveMostRecentMessage()
+    {
+        sendMessages(2, 4);
+
+        assertEquals(4, resendCache.lookup(SESSION_ID, SEQUENCE_INDEX, 3, MOST_RECENT_MESSAGE));
+    }
+
+    @Test
+    public void shouldMissRangeOfEvictedMessages()
+    {
+        sendMessages(2, 5);
+
+        assertNotCached(2, 5);
+        assertEquals(5, resendCache.lookup(SESSION_ID, SEQUENCE_INDEX, 3, 5));
+        assertEquals(3, replay(3, 5));
+
+        assertEquals(asList(3, 4, 5), replayedSeqNos);
+        verify(misses).increment();
+    }
+
+    @Test
+    public void shouldEvictMessagesToFitBuffer()
+    {
+        bufferContainsExampleMessage(false);
+        resendCache = new ResendCache(STREAM_ID, MAX_MESSAGES, fragmentLength() * 5 / 2, hits, misses);
+
+        sendMessages(2, 5);
+
+        assertNotCached(3, 5);
+        assertEquals(2, replay(4, 5));
+        assertEquals(asList(4, 5), replayedSeqNos);
+    }
+
+    @Test
+    public void shouldMissRangeOfOtherSessionOrSequenceIndex()
+    {
+        sendMessages(2, 4);
+
+        assertNotCached(SESSION_ID_2, SEQUENCE_INDEX, 2, 4);
+        assertNotCached(SESSION_ID, SEQUENCE_INDEX + 1, 2, 4);
+    }
+
+    @Test
+    public void shouldMissRangeAfterTheMostRecentMessage()
+    {
+        sendMessages(2, 4);
+
+        assertNotCached(3, 5);
+    }
+
+    @Test
+    public void shouldClearWhenSequenceNumbersHaveGap()
+    {
+        sendMessages(2, 3);
+        sendMessage(SEQUENCE_INDEX, 5);
+
+        assertNotCached(2, 3);
+        assertEquals(5, resendCache.lookup(SESSION_ID, SEQUENCE_INDEX, 5, 5));
+    }
+
+    @Test
+    public void shouldClearWhenSequenceIndexChanges()
+    {
+        sendMessages(2, 3);
+        sendMessage(SEQUENCE_INDEX + 1, 1);
+
+        assertNotCached(2, 3);
+        assertEquals(1, resendCache.lookup(SESSION_ID, SEQUENCE_INDEX + 1, 1, 1));
+    }
+
+    @Test
+    public void shouldClearWhenMessageIsFragmented()
+    {
+        sendMessages(2, 3);
+        bufferContainsExampleMessage(false, SESSION_ID, 4, SEQUENCE_INDEX);
+        when(fragmentHeader.flags()).thenReturn((byte)BEGIN_FRAG_FLAG);
+        resendCache.onFragment(buffer, START, fragmentLength(), fragmentHeader);
+
+        assertNotCached(2, 3);
+    }
+
+    @Test
+    public void shouldResumeReplayAfterHandlerAborts()
+    {
+        sendMessages(2, 4);
+        replayAction = ABORT;
+
+        assertEquals(0, replay(2, 4));
+
+        replayAction = CONTINUE;
+        assertEquals(3, replay(2, 4));
+        assertEquals(asList(2, 3, 4), replayedSeqNos);
+    }
+
+    @Test
+    public void shouldNotReplayRangeEvictedSinceLookup()
+    {
+        sendMessages(2, 3);
+        assertEquals(3, resendCache.lookup(SESSION_ID, SEQUENCE_INDEX, 2, 3));
+
+        sendMessages(4, 5);
+
+        assertEquals(NOT_CACHED, replay(2, 3));
+    }
+
+    private void sendMessages(final int fromSeqNo, final int toSeqNo)
+    {
+        for (int seqNo = fromSeqNo; seqNo <= toSeqNo; seqNo++)
+        {
+            sendMessage(SEQUENCE_INDEX, seqNo);
+        }
+    }
+
+    private void sendMessage(final int sequenceIndex, final int seqNo)
+    {
+        bufferContainsExampleMessage(false, SESSION_ID, seqNo, sequenceIndex);
+        resendCache.onFragment(buffer, START, fragmentLength(), fragmentHeader);
+    }
+
+    private int replay(final int beginSeqNo, final int endSeqNo)
+    {
+        final ControlledFragmentHandler handler = (buffer, offset, length, header) ->
+        {
+            if (replayAction == CONTINUE)
+            {
+                fixHeader.reset();
+                fixHeader.decode(
+                    new MutableAsciiBuffer(buffer, offset + PREFIX_LENGTH, length - PREFIX_LENGTH),
+                    0,
+                    length - PREFIX_LENGTH);
+                replayedSeqNos.add(fixHeader.msgSeqNum());
+            }
+
+            return replayAction;
+        };
+
+        return resendCache.replay(handler, SESSION_ID, SEQUENCE_INDEX, beginSeqNo, endSeqNo);
+    }
+
+    private void assertNotCached(final int beginSeqNo, final int endSeqNo)
+    {
+        assertNotCached(SESSION_ID, SEQUENCE_INDEX, beginSeqNo, endSeqNo);
+    }
+
+    private void assertNotCached(
+        final long sessionId, final int sequenceIndex, final int beginSeqNo, final int endSeqNo)
+    {
+        assertEquals(NOT_CACHED, resendCache.lookup(sessionId, sequenceIndex, beginSeqNo, endSeqNo));
+    }
+}
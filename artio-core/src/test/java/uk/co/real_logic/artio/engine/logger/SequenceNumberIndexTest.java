@@ -24,17 +24,21 @@ import org.agrona.ErrorHandler;
 import org.agrona.IoUtil;
 import org.agrona.concurrent.AtomicBuffer;
 import org.agrona.concurrent.UnsafeBuffer;
+import org.agrona.concurrent.status.AtomicCounter;
 import org.hamcrest.Matchers;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
 import uk.co.real_logic.artio.FileSystemCorruptionException;
+import uk.co.real_logic.artio.engine.ChecksumFramer;
 import uk.co.real_logic.artio.engine.MappedFile;
 import uk.co.real_logic.artio.engine.SessionInfo;
 import uk.co.real_logic.artio.engine.framer.FakeEpochClock;
+import uk.co.real_logic.artio.messages.MessageHeaderEncoder;
 
 import java.io.File;
+import java.util.Arrays;
 
 import static io.aeron.CommonContext.IPC_CHANNEL;
 import static org.agrona.IoUtil.deleteIfExists;
@@ -66,6 +70,7 @@ public class SequenceNumberIndexTest extends AbstractLogTest
     private SequenceNumberIndexReader reader;
     private RecordingIdLookup recordingIdLookup = mock(RecordingIdLookup.class);
     private FakeEpochClock clock = new FakeEpochClock();
+    private AtomicCounter bytesFlushed = mock(AtomicCounter.class);
 
     private MediaDriver mediaDriver = launchJustMediaDriver();
     private Aeron aeron;
@@ -192,6 +197,44 @@ public class SequenceNumberIndexTest extends AbstractLogTest
         }
     }
 
+    @Test
+    public void shouldOnlyFlushSectorsChangedSinceTheFileWasLastFlushed()
+    {
+        // Both files are initially flushed in full
+        indexFixMessage();
+        flushOnTimeout();
+        indexFixMessage();
+        flushOnTimeout();
+
+        final int lastSessionId = SECTOR_SIZE / RECORD_SIZE + 1;
+        for (int sessionId = 2; sessionId <= lastSessionId; sessionId++)
+        {
+            bufferContainsExampleMessage(true, sessionId, SEQUENCE_NUMBER, SEQUENCE_INDEX);
+            indexRecord();
+        }
+        flushOnTimeout();
+
+        final int updatedSequenceNumber = SEQUENCE_NUMBER + 1;
+        for (int i = 0; i < 2; i++)
+        {
+            bufferContainsExampleMessage(true, SESSION_ID, updatedSequenceNumber, SEQUENCE_INDEX);
+            indexRecord();
+            flushOnTimeout();
+        }
+
+        final ArgumentCaptor<Long> flushedBytes = ArgumentCaptor.forClass(Long.class);
+        verify(bytesFlushed, times(5)).getAndAddOrdered(flushedBytes.capture());
+        assertEquals(Arrays.asList(
+            (long)BUFFER_SIZE, (long)BUFFER_SIZE, 3L * SECTOR_SIZE, 3L * SECTOR_SIZE, 2L * SECTOR_SIZE),
+            flushedBytes.getAllValues());
+
+        writer.close();
+
+        final SequenceNumberIndexReader newReader = newInstanceAfterRestart();
+        assertLastKnownSequenceNumberIs(SESSION_ID, updatedSequenceNumber, newReader);
+        assertLastKnownSequenceNumberIs(lastSessionId, SEQUENCE_NUMBER, newReader);
+    }
+
     /**
      * Simulate scenario that you've crashed halfway through file flip.
      */
@@ -302,6 +345,84 @@ public class SequenceNumberIndexTest extends AbstractLogTest
         assertUnknownSession();
     }
 
+    @Test
+    public void shouldFindSessionsIndexedAfterEarlierLookups()
+    {
+        assertUnknownSession();
+
+        bufferContainsExampleMessage(true, SESSION_ID_2, SEQUENCE_NUMBER, SEQUENCE_INDEX);
+        indexRecord();
+        indexFixMessage();
+
+        assertLastKnownSequenceNumberIs(SESSION_ID, SEQUENCE_NUMBER);
+        assertLastKnownSequenceNumberIs(SESSION_ID_2, SEQUENCE_NUMBER);
+    }
+
+    @Test
+    public void shouldFindSessionsIndexedAfterReset()
+    {
+        indexFixMessage();
+        assertLastKnownSequenceNumberIs(SESSION_ID, SEQUENCE_NUMBER);
+
+        writer.resetSequenceNumbers();
+        bufferContainsExampleMessage(true, SESSION_ID_2, SEQUENCE_NUMBER, SEQUENCE_INDEX);
+        indexRecord();
+
+        assertLastKnownSequenceNumberIs(SESSION_ID_2, SEQUENCE_NUMBER);
+        assertUnknownSession();
+
+        indexFixMessage();
+
+        assertLastKnownSequenceNumberIs(SESSION_ID, SEQUENCE_NUMBER);
+    }
+
+    @Test
+    public void shouldFindSessionsRewrittenAfterResetInPlaceOfOthers()
+    {
+        final long sessionId3 = 3;
+
+        indexFixMessage();
+        bufferContainsExampleMessage(true, SESSION_ID_2, SEQUENCE_NUMBER, SEQUENCE_INDEX);
+        indexRecord();
+        assertLastKnownSequenceNumberIs(SESSION_ID, SEQUENCE_NUMBER);
+        assertLastKnownSequenceNumberIs(SESSION_ID_2, SEQUENCE_NUMBER);
+
+        writer.resetSequenceNumbers();
+        bufferContainsExampleMessage(true, sessionId3, SEQUENCE_NUMBER + 1, SEQUENCE_INDEX);
+        indexRecord();
+        bufferContainsExampleMessage(true, SESSION_ID_2, SEQUENCE_NUMBER + 2, SEQUENCE_INDEX);
+        indexRecord();
+
+        assertLastKnownSequenceNumberIs(sessionId3, SEQUENCE_NUMBER + 1);
+        assertLastKnownSequenceNumberIs(SESSION_ID_2, SEQUENCE_NUMBER + 2);
+        assertUnknownSession();
+    }
+
+    @Test
+    public void shouldReadFileWrittenBeforeTheResetEpoch()
+    {
+        indexFixMessage();
+        bufferContainsExampleMessage(true, SESSION_ID_2, SEQUENCE_NUMBER + 1, SEQUENCE_INDEX);
+        indexRecord();
+
+        writer.close();
+
+        try (MappedFile mappedFile = newIndexFile())
+        {
+            final AtomicBuffer fileBuffer = mappedFile.buffer();
+            fileBuffer.putBytes(
+                HEADER_SIZE_WITHOUT_RESET_EPOCH, fileBuffer, HEADER_SIZE, RECORD_SIZE * 2);
+            fileBuffer.setMemory(HEADER_SIZE_WITHOUT_RESET_EPOCH + RECORD_SIZE * 2, RECORD_SIZE, (byte)0);
+            new MessageHeaderEncoder().wrap(fileBuffer, 0).version(RESET_EPOCH_SINCE_VERSION - 1);
+            new ChecksumFramer(fileBuffer, positionTableOffset(BUFFER_SIZE), errorHandler, 0, "SequenceNumberIndex")
+                .updateChecksums();
+        }
+
+        final SequenceNumberIndexReader newReader = newInstanceAfterRestart();
+        assertLastKnownSequenceNumberIs(SESSION_ID, SEQUENCE_NUMBER, newReader);
+        assertLastKnownSequenceNumberIs(SESSION_ID_2, SEQUENCE_NUMBER + 1, newReader);
+    }
+
     @After
     public void verifyNoErrors()
     {
@@ -323,7 +444,7 @@ public class SequenceNumberIndexTest extends AbstractLogTest
     {
         final MappedFile indexFile = newIndexFile();
         return new SequenceNumberIndexWriter(inMemoryBuffer, indexFile, errorHandler, STREAM_ID, recordingIdLookup,
-            DEFAULT_INDEX_FILE_STATE_FLUSH_TIMEOUT_IN_MS, clock);
+            DEFAULT_INDEX_FILE_STATE_FLUSH_TIMEOUT_IN_MS, clock, bytesFlushed, mock(AtomicCounter.class));
     }
 
     private MappedFile newIndexFile()
@@ -336,6 +457,12 @@ public class SequenceNumberIndexTest extends AbstractLogTest
         return new UnsafeBuffer(new byte[BUFFER_SIZE]);
     }
 
+    private void flushOnTimeout()
+    {
+        clock.advanceMilliSeconds(DEFAULT_INDEX_FILE_STATE_FLUSH_TIMEOUT_IN_MS + 1);
+        assertEquals(1, writer.doWork());
+    }
+
     private void assertUnknownSession()
     {
         assertLastKnownSequenceNumberIs(SESSION_ID, SessionInfo.UNK_SESSION);
@@ -87,6 +87,7 @@ public class LibraryPollerTest
 
         when(counters.receivedMsgSeqNo(anyLong())).thenReturn(mock(AtomicCounter.class));
         when(counters.sentMsgSeqNo(anyLong())).thenReturn(mock(AtomicCounter.class));
+        when(counters.librarySessions(anyInt())).thenReturn(mock(AtomicCounter.class));
 
         when(sessionAcquireHandler.onSessionAcquired(session.capture(), anyBoolean())).thenReturn(sessionHandler);
     }
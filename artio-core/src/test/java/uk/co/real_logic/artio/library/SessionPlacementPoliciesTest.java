@@ -0,0 +1,101 @@
+/*
+ * Copyright 2015-2018 Real Logic Ltd, Adaptive Financial Consulting Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio.library;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class SessionPlacementPoliciesTest
+{
+    private static final int POOL_SIZE = 3;
+    private static final long SESSION_ID = 1;
+    private static final long OTHER_SESSION_ID = 2;
+
+    private final FixLibraryPool pool = mock(FixLibraryPool.class);
+
+    @Before
+    public void setUp()
+    {
+        when(pool.size()).thenReturn(POOL_SIZE);
+        loads(2, 1, 1);
+    }
+
+    @Test
+    public void shouldPlaceSameSessionKeyOnSameLibrary()
+    {
+        final SessionPlacementPolicy policy = SessionPlacementPolicies.hashOfSessionKey();
+
+        final int libraryIndex = place(policy, SESSION_ID, "initiator");
+
+        assertTrue(libraryIndex >= 0 && libraryIndex < POOL_SIZE);
+        assertEquals(libraryIndex, place(policy, OTHER_SESSION_ID, "initiator"));
+    }
+
+    @Test
+    public void shouldPlaceOnLeastLoadedLibrary()
+    {
+        final SessionPlacementPolicy policy = SessionPlacementPolicies.leastLoaded();
+
+        assertEquals(1, place(policy, SESSION_ID, "initiator"));
+
+        loads(2, 2, 1);
+
+        assertEquals(2, place(policy, SESSION_ID, "initiator"));
+    }
+
+    @Test
+    public void shouldPlaceSessionOnLibraryItWasLastPlacedOn()
+    {
+        final SessionPlacementPolicy policy = SessionPlacementPolicies.sticky(SessionPlacementPolicies.leastLoaded());
+
+        assertEquals(1, place(policy, SESSION_ID, "initiator"));
+
+        loads(2, 2, 1);
+
+        assertEquals(1, place(policy, SESSION_ID, "initiator"));
+        assertEquals(2, place(policy, OTHER_SESSION_ID, "initiator"));
+    }
+
+    @Test
+    public void shouldPlaceMovedSessionOnLibraryItWasMovedTo()
+    {
+        final SessionPlacementPolicy policy = SessionPlacementPolicies.sticky(SessionPlacementPolicies.leastLoaded());
+
+        assertEquals(1, place(policy, SESSION_ID, "initiator"));
+
+        policy.onSessionMoved(SESSION_ID, 0);
+
+        assertEquals(0, place(policy, SESSION_ID, "initiator"));
+    }
+
+    private int place(final SessionPlacementPolicy policy, final long sessionId, final String remoteCompId)
+    {
+        return policy.libraryIndex(pool, sessionId, "acceptor", "", "", remoteCompId, "", "");
+    }
+
+    private void loads(final long... loads)
+    {
+        for (int i = 0; i < loads.length; i++)
+        {
+            when(pool.load(i)).thenReturn(loads[i]);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2015-2019 Real Logic Ltd, Adaptive Financial Consulting Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio.protocol;
+
+import io.aeron.logbuffer.ControlledFragmentHandler;
+import io.aeron.logbuffer.FragmentHandler;
+import io.aeron.logbuffer.Header;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.junit.Before;
+import org.junit.Test;
+import uk.co.real_logic.artio.messages.FixMessageBatchEncoder;
+import uk.co.real_logic.artio.messages.FixMessageEncoder;
+import uk.co.real_logic.artio.messages.MessageHeaderEncoder;
+import uk.co.real_logic.artio.messages.MessageStatus;
+
+import static io.aeron.logbuffer.ControlledFragmentHandler.Action.*;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+import static uk.co.real_logic.artio.util.TestMessages.EG_MESSAGE;
+import static uk.co.real_logic.artio.util.TestMessages.MSG_LEN;
+
+public class FixMessageBatchReaderTest
+{
+    private static final int OFFSET = 8;
+    private static final int MESSAGE_COUNT = 3;
+    private static final long POSITION = 1024L;
+    private static final int FRAMED_LENGTH = GatewayPublication.batchedMessageLength(MSG_LEN);
+
+    private final UnsafeBuffer buffer = new UnsafeBuffer(new byte[8 * 1024]);
+    private final Header header = mock(Header.class);
+    private final FixMessageBatchReader reader = new FixMessageBatchReader();
+
+    @Before
+    public void setUp()
+    {
+        when(header.position()).thenReturn(POSITION);
+
+        final MessageHeaderEncoder messageHeader = new MessageHeaderEncoder();
+        final FixMessageBatchEncoder batch = new FixMessageBatchEncoder();
+        final FixMessageEncoder fixMessage = new FixMessageEncoder();
+
+        batch.wrapAndApplyHeader(buffer, OFFSET, messageHeader).messageCount(MESSAGE_COUNT);
+        int offset = OFFSET + FixMessageBatchReader.BATCH_HEADER_LENGTH;
+        for (int i = 0; i < MESSAGE_COUNT; i++)
+        {
+            fixMessage
+                .wrapAndApplyHeader(buffer, offset, messageHeader)
+                .session(i)
+                .status(MessageStatus.OK)
+                .putBody(EG_MESSAGE, 0, MSG_LEN);
+            offset += FRAMED_LENGTH;
+        }
+    }
+
+    @Test
+    public void shouldHandEachMessageToHandler()
+    {
+        final FragmentHandler handler = mock(FragmentHandler.class);
+
+        assertEquals(MESSAGE_COUNT, reader.forEachMessage(buffer, OFFSET, header, handler));
+
+        verifyMessagesHandled(handler, 0, MESSAGE_COUNT);
+        verifyNoMoreInteractions(handler);
+    }
+
+    @Test
+    public void shouldResumeFromAbortedMessage()
+    {
+        final ControlledFragmentHandler handler = mock(ControlledFragmentHandler.class);
+        when(handler.onFragment(any(), anyInt(), anyInt(), any())).thenReturn(CONTINUE, ABORT, CONTINUE);
+
+        assertEquals(ABORT, reader.forEachMessage(buffer, OFFSET, header, handler));
+        assertEquals(CONTINUE, reader.forEachMessage(buffer, OFFSET, header, handler));
+
+        verify(handler).onFragment(buffer, messageOffset(0), FRAMED_LENGTH, header);
+        verify(handler, times(2)).onFragment(buffer, messageOffset(1), FRAMED_LENGTH, header);
+        verify(handler).onFragment(buffer, messageOffset(2), FRAMED_LENGTH, header);
+        verifyNoMoreInteractions(handler);
+    }
+
+    @Test
+    public void shouldHandAllMessagesOfANewBatchAfterAnAbort()
+    {
+        final ControlledFragmentHandler handler = mock(ControlledFragmentHandler.class);
+        when(handler.onFragment(any(), anyInt(), anyInt(), any())).thenReturn(CONTINUE, ABORT, CONTINUE);
+
+        assertEquals(ABORT, reader.forEachMessage(buffer, OFFSET, header, handler));
+        when(header.position()).thenReturn(POSITION * 2);
+        assertEquals(CONTINUE, reader.forEachMessage(buffer, OFFSET, header, handler));
+
+        verify(handler, times(2)).onFragment(buffer, messageOffset(0), FRAMED_LENGTH, header);
+    }
+
+    @Test
+    public void shouldResumeFromAbortedMessageAfterABatchFromAnotherImage()
+    {
+        final ControlledFragmentHandler handler = mock(ControlledFragmentHandler.class);
+        when(handler.onFragment(any(), anyInt(), anyInt(), any())).thenReturn(CONTINUE, ABORT, CONTINUE);
+
+        assertEquals(ABORT, reader.forEachMessage(buffer, OFFSET, header, handler));
+
+        final Header otherHeader = mock(Header.class);
+        when(otherHeader.sessionId()).thenReturn(1);
+        when(otherHeader.position()).thenReturn(POSITION * 2);
+        assertEquals(CONTINUE, reader.forEachMessage(buffer, OFFSET, otherHeader, handler));
+
+        assertEquals(CONTINUE, reader.forEachMessage(buffer, OFFSET, header, handler));
+
+        verify(handler).onFragment(buffer, messageOffset(0), FRAMED_LENGTH, header);
+        verify(handler, times(2)).onFragment(buffer, messageOffset(1), FRAMED_LENGTH, header);
+        verify(handler).onFragment(buffer, messageOffset(2), FRAMED_LENGTH, header);
+    }
+
+    @Test
+    public void shouldBreakAfterHandlingTheWholeBatch()
+    {
+        final ControlledFragmentHandler handler = mock(ControlledFragmentHandler.class);
+        when(handler.onFragment(any(), anyInt(), anyInt(), any())).thenReturn(BREAK, CONTINUE);
+
+        assertEquals(BREAK, reader.forEachMessage(buffer, OFFSET, header, handler));
+
+        verify(handler, times(MESSAGE_COUNT)).onFragment(eq(buffer), anyInt(), eq(FRAMED_LENGTH), eq(header));
+    }
+
+    private void verifyMessagesHandled(final FragmentHandler handler, final int from, final int to)
+    {
+        for (int i = from; i < to; i++)
+        {
+            verify(handler).onFragment(buffer, messageOffset(i), FRAMED_LENGTH, header);
+        }
+    }
+
+    private int messageOffset(final int index)
+    {
+        return OFFSET + FixMessageBatchReader.BATCH_HEADER_LENGTH + index * FRAMED_LENGTH;
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2015-2019 Real Logic Ltd, Adaptive Financial Consulting Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio.protocol;
+
+import org.junit.Test;
+import uk.co.real_logic.artio.messages.FixMessageEncoder;
+import uk.co.real_logic.artio.messages.MessageHeaderEncoder;
+import uk.co.real_logic.artio.messages.MessageStatus;
+import uk.co.real_logic.artio.util.MutableAsciiBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static uk.co.real_logic.artio.protocol.TagOffsetIndex.MISSING_TAG;
+import static uk.co.real_logic.artio.util.AsciiBuffer.SEPARATOR;
+import static uk.co.real_logic.artio.util.TestMessages.EG_MESSAGE;
+import static uk.co.real_logic.artio.util.TestMessages.MSG_LEN;
+
+public class TagOffsetIndexTest
+{
+    private static final int OFFSET = 8;
+    private static final int SENDER_COMP_ID_TAG = 49;
+    private static final int ON_BEHALF_OF_COMP_ID_TAG = 115;
+    private static final int CL_ORD_ID_TAG = 11;
+
+    private final MutableAsciiBuffer messageBuffer = new MutableAsciiBuffer(EG_MESSAGE);
+    private final MutableAsciiBuffer frameBuffer = new MutableAsciiBuffer(new byte[8 * 1024]);
+    private final FixMessageEncoder fixMessage = new FixMessageEncoder();
+    private final TagOffsetIndex writtenIndex = new TagOffsetIndex();
+    private final TagOffsetIndex readIndex = new TagOffsetIndex();
+
+    @Test
+    public void shouldIndexStandardHeaderFields()
+    {
+        writtenIndex.index(messageBuffer, 0, MSG_LEN);
+
+        assertEquals(4, writtenIndex.msgSeqNum(messageBuffer));
+        assertValue(messageBuffer, writtenIndex, SENDER_COMP_ID_TAG, "ABC_DEFG01");
+        assertValue(messageBuffer, writtenIndex, ON_BEHALF_OF_COMP_ID_TAG, "XYZ");
+        assertEquals(MISSING_TAG, writtenIndex.valueOffset(CL_ORD_ID_TAG));
+    }
+
+    @Test
+    public void shouldReadIndexCarriedAfterTheBody()
+    {
+        writtenIndex.index(messageBuffer, 0, MSG_LEN);
+        final int frameEnd = putFrame(true, writtenIndex.entryCount());
+
+        assertTrue(readIndex.wrapFrame(frameBuffer, OFFSET, bodyOffset(), MSG_LEN, frameEnd));
+
+        assertEquals(4, readIndex.msgSeqNum(frameBuffer));
+        assertValue(frameBuffer, readIndex, SENDER_COMP_ID_TAG, "ABC_DEFG01");
+    }
+
+    @Test
+    public void shouldEndAtTheSeparatorOfTheLastIndexedField()
+    {
+        writtenIndex.index(messageBuffer, 0, MSG_LEN);
+        final int frameEnd = putFrame(true, writtenIndex.entryCount());
+        assertTrue(readIndex.wrapFrame(frameBuffer, OFFSET, bodyOffset(), MSG_LEN, frameEnd));
+
+        final int indexedEnd = writtenIndex.indexedEnd();
+        assertEquals(SEPARATOR, messageBuffer.getByte(indexedEnd));
+        assertEquals(indexedEnd, readIndex.indexedEnd() - bodyOffset());
+    }
+
+    @Test
+    public void shouldBeEmptyWhenFrameEndsAfterTheBody()
+    {
+        final int frameEnd = putFrame(false, 0);
+
+        assertFalse(readIndex.wrapFrame(frameBuffer, OFFSET, bodyOffset(), MSG_LEN, frameEnd));
+
+        assertEquals(MISSING_TAG, readIndex.msgSeqNum(frameBuffer));
+        assertEquals(0, readIndex.length());
+    }
+
+    @Test
+    public void shouldIgnoreBytesAfterTheBodyOfAFrameWithoutAnIndex()
+    {
+        writtenIndex.index(messageBuffer, 0, MSG_LEN);
+        final int frameEnd = putFrame(true, 0);
+
+        assertFalse(readIndex.wrapFrame(frameBuffer, OFFSET, bodyOffset(), MSG_LEN, frameEnd));
+
+        assertEquals(MISSING_TAG, readIndex.msgSeqNum(frameBuffer));
+    }
+
+    @Test
+    public void shouldIgnoreAnIndexWhoseLengthDoesNotMatchItsEntryCount()
+    {
+        writtenIndex.index(messageBuffer, 0, MSG_LEN);
+        final int frameEnd = putFrame(true, writtenIndex.entryCount() + 1);
+
+        assertFalse(readIndex.wrapFrame(frameBuffer, OFFSET, bodyOffset(), MSG_LEN, frameEnd));
+    }
+
+    @Test
+    public void shouldNotReadAnIndexOnceCleared()
+    {
+        writtenIndex.index(messageBuffer, 0, MSG_LEN);
+        final int frameEnd = putFrame(true, writtenIndex.entryCount());
+
+        TagOffsetIndex.clear(frameBuffer, OFFSET);
+
+        assertFalse(readIndex.wrapFrame(frameBuffer, OFFSET, bodyOffset(), MSG_LEN, frameEnd));
+    }
+
+    @Test
+    public void shouldNotReadAnIndexFromAFrameOfAnEarlierVersion()
+    {
+        writtenIndex.index(messageBuffer, 0, MSG_LEN);
+        final int frameEnd = putFrame(true, writtenIndex.entryCount());
+        new MessageHeaderEncoder().wrap(frameBuffer, OFFSET).version(0);
+
+        assertFalse(readIndex.wrapFrame(frameBuffer, OFFSET, bodyOffset(), MSG_LEN, frameEnd));
+    }
+
+    private int putFrame(final boolean withIndex, final int tagOffsetCount)
+    {
+        fixMessage
+            .wrapAndApplyHeader(frameBuffer, OFFSET, new MessageHeaderEncoder())
+            .status(MessageStatus.OK)
+            .tagOffsetCount((short)tagOffsetCount)
+            .putBody(EG_MESSAGE, 0, MSG_LEN);
+
+        if (withIndex)
+        {
+            fixMessage.putTagOffsets(writtenIndex.buffer(), 0, writtenIndex.length());
+        }
+
+        return fixMessage.limit();
+    }
+
+    private int bodyOffset()
+    {
+        return OFFSET + MessageHeaderEncoder.ENCODED_LENGTH + FixMessageEncoder.BLOCK_LENGTH +
+            FixMessageEncoder.bodyHeaderLength();
+    }
+
+    private void assertValue(
+        final MutableAsciiBuffer buffer, final TagOffsetIndex index, final int tag, final String value)
+    {
+        assertEquals(value, buffer.getStringWithoutLengthAscii(index.valueOffset(tag), index.valueLength(tag)));
+    }
+}
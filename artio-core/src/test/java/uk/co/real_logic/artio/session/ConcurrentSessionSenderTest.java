@@ -0,0 +1,210 @@
+/*
+ * Copyright 2015-2018 Real Logic Ltd, Adaptive Financial Consulting Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio.session;
+
+import org.agrona.DirectBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.agrona.concurrent.status.AtomicCounter;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import uk.co.real_logic.artio.builder.TestRequestEncoder;
+import uk.co.real_logic.artio.engine.framer.FakeEpochClock;
+import uk.co.real_logic.artio.fields.UtcTimestampEncoder;
+import uk.co.real_logic.artio.protocol.GatewayPublication;
+import uk.co.real_logic.artio.util.MutableAsciiBuffer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static io.aeron.Publication.BACK_PRESSURED;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+import static uk.co.real_logic.artio.CommonConfiguration.DEFAULT_SESSION_BUFFER_SIZE;
+import static uk.co.real_logic.artio.engine.EngineConfiguration.DEFAULT_REASONABLE_TRANSMISSION_TIME_IN_MS;
+import static uk.co.real_logic.artio.messages.SessionState.ACTIVE;
+
+public class ConcurrentSessionSenderTest
+{
+    private static final int HEARTBEAT_INTERVAL_IN_S = 2;
+    private static final long POSITION = 1024;
+    private static final long TIME = 1_500_000_000_123L;
+
+    private final GatewayPublication publication = mock(GatewayPublication.class);
+    private final AtomicCounter sentMsgSeqNo = new AtomicCounter(new UnsafeBuffer(new byte[64]), 0);
+    private final FakeEpochClock fakeClock = new FakeEpochClock();
+    private final SessionScheduler scheduler = new SessionScheduler(fakeClock.time(), 64 * 1024);
+    private final List<String> sentMessages = new ArrayList<>();
+    private final TestRequestEncoder testRequest = new TestRequestEncoder();
+
+    private Session session;
+
+    @Before
+    public void setUp()
+    {
+        fakeClock.advanceMilliSeconds(TIME);
+        when(publication.saveMessage(
+            any(), anyInt(), anyInt(), anyInt(), anyInt(), anyLong(), anyInt(), anyLong(), any(), anyInt()))
+            .then(this::recordMessage);
+    }
+
+    @Test
+    public void shouldSendMessagesFromEachSenderInOrder()
+    {
+        newSession(1, false);
+        final ConcurrentSessionSender firstSender = session.newConcurrentSender();
+        final ConcurrentSessionSender secondSender = session.newConcurrentSender();
+
+        assertTrue(firstSender.offer(testRequest.testReqID("first")));
+        assertTrue(secondSender.offer(testRequest.testReqID("second")));
+        assertEquals(0, sentMessages.size());
+
+        scheduler.poll(fakeClock.time());
+
+        assertEquals(2, sentMessages.size());
+        assertSent(0, 1, "first");
+        assertSent(1, 2, "second");
+        assertEquals(2, session.lastSentMsgSeqNum());
+    }
+
+    @Test
+    public void shouldSubstituteSequenceNumbersLongerThanPlaceholders()
+    {
+        newSession(12345, true);
+        final ConcurrentSessionSender sender = session.newConcurrentSender();
+
+        assertTrue(sender.offer(testRequest.testReqID("abc")));
+        scheduler.poll(fakeClock.time());
+
+        assertSent(0, 12345, "abc");
+        assertTrue(sentMessages.get(0), sentMessages.get(0).contains("\001369=0\001"));
+    }
+
+    @Test
+    public void shouldSendMillisecondsOfSendingTimeOnWholeSecond()
+    {
+        newSession(1, false);
+        final ConcurrentSessionSender sender = session.newConcurrentSender();
+        fakeClock.advanceMilliSeconds(1000 - TIME % 1000);
+
+        assertTrue(sender.offer(testRequest.testReqID("abc")));
+        scheduler.poll(fakeClock.time());
+
+        final String message = sentMessages.get(0);
+        assertTrue(message, message.contains("\00152=20170714-02:40:01.000\001112=abc\001"));
+    }
+
+    @Test
+    public void shouldRetryBackPressuredMessage()
+    {
+        newSession(1, false);
+        final ConcurrentSessionSender sender = session.newConcurrentSender();
+        doReturn(BACK_PRESSURED).doAnswer(this::recordMessage).when(publication).saveMessage(
+            any(), anyInt(), anyInt(), anyInt(), anyInt(), anyLong(), anyInt(), anyLong(), any(), anyInt());
+
+        assertTrue(sender.offer(testRequest.testReqID("first")));
+        assertTrue(sender.offer(testRequest.testReqID("second")));
+
+        scheduler.poll(fakeClock.time());
+        assertEquals(0, sentMessages.size());
+
+        scheduler.poll(fakeClock.time());
+        assertEquals(2, sentMessages.size());
+        assertSent(0, 1, "first");
+        assertSent(1, 2, "second");
+    }
+
+    @Test
+    public void shouldNotSendOnceSessionIsRemoved()
+    {
+        newSession(1, false);
+        final ConcurrentSessionSender sender = session.newConcurrentSender();
+
+        assertTrue(sender.offer(testRequest.testReqID("first")));
+        scheduler.remove(session);
+        scheduler.poll(fakeClock.time());
+
+        assertEquals(0, sentMessages.size());
+    }
+
+    private void newSession(final int initialSentSequenceNumber, final boolean enableLastMsgSeqNumProcessed)
+    {
+        final SessionIdStrategy sessionIdStrategy = SessionIdStrategy.senderAndTarget();
+        session = new AcceptorSession(
+            HEARTBEAT_INTERVAL_IN_S,
+            1L,
+            fakeClock,
+            mock(DirectSessionProxy.class),
+            publication,
+            sessionIdStrategy,
+            2000,
+            mock(AtomicCounter.class),
+            sentMsgSeqNo,
+            2,
+            initialSentSequenceNumber,
+            0,
+            ACTIVE,
+            DEFAULT_REASONABLE_TRANSMISSION_TIME_IN_MS,
+            new MutableAsciiBuffer(new byte[DEFAULT_SESSION_BUFFER_SIZE]),
+            enableLastMsgSeqNumProcessed);
+        session.setupSession(1L, sessionIdStrategy.onInitiateLogon("SENDER", null, null, "TARGET", null, null));
+        scheduler.add(session);
+        scheduler.poll(fakeClock.time());
+    }
+
+    private void assertSent(final int index, final int msgSeqNum, final String testReqId)
+    {
+        final String message = sentMessages.get(index);
+        final UtcTimestampEncoder timestampEncoder = new UtcTimestampEncoder();
+        final String sendingTime = new String(
+            timestampEncoder.buffer(), 0, timestampEncoder.encode(TIME), US_ASCII);
+
+        assertTrue(message, message.startsWith("8=FIX.4.4\0019="));
+        assertTrue(message, message.contains("\00135=1\00149=SENDER\00156=TARGET\00134=" + msgSeqNum + "\001"));
+        assertTrue(message, message.contains("\00152=" + sendingTime + "\001"));
+        assertTrue(message, message.contains("\001112=" + testReqId + "\001"));
+
+        final int bodyStart = message.indexOf('\001') + 1;
+        final int bodyLengthEnd = message.indexOf('\001', bodyStart);
+        final int checksumStart = message.lastIndexOf("10=");
+        final int bodyLength = Integer.parseInt(message.substring(bodyStart + "9=".length(), bodyLengthEnd));
+        assertEquals(message, checksumStart - (bodyLengthEnd + 1), bodyLength);
+
+        int checksum = 0;
+        for (int i = 0; i < checksumStart; i++)
+        {
+            checksum += message.charAt(i);
+        }
+        assertEquals(
+            message, String.format("%03d", checksum % 256), message.substring(checksumStart + 3, checksumStart + 6));
+    }
+
+    private long recordMessage(final InvocationOnMock invocation)
+    {
+        final DirectBuffer buffer = invocation.getArgument(0);
+        final int offset = invocation.getArgument(1);
+        final int length = invocation.getArgument(2);
+        final byte[] bytes = new byte[length];
+        buffer.getBytes(offset, bytes);
+        sentMessages.add(new String(bytes, US_ASCII));
+        return POSITION;
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2015-2018 Real Logic Ltd, Adaptive Financial Consulting Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio.session;
+
+import org.agrona.concurrent.UnsafeBuffer;
+import org.agrona.concurrent.status.AtomicCounter;
+import org.junit.Before;
+import org.junit.Test;
+import uk.co.real_logic.artio.engine.framer.FakeEpochClock;
+import uk.co.real_logic.artio.protocol.GatewayPublication;
+import uk.co.real_logic.artio.util.MutableAsciiBuffer;
+
+import static io.aeron.Publication.BACK_PRESSURED;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+import static uk.co.real_logic.artio.CommonConfiguration.DEFAULT_SESSION_BUFFER_SIZE;
+import static uk.co.real_logic.artio.engine.EngineConfiguration.DEFAULT_REASONABLE_TRANSMISSION_TIME_IN_MS;
+import static uk.co.real_logic.artio.library.SessionConfiguration.DEFAULT_ENABLE_LAST_MSG_SEQ_NUM_PROCESSED;
+import static uk.co.real_logic.artio.messages.SessionState.ACTIVE;
+
+public class SessionEngineHeartbeatsTest
+{
+    private static final int HEARTBEAT_INTERVAL_IN_S = 2;
+    private static final long HEARTBEAT_INTERVAL_IN_MS = 2000;
+    private static final long SENDING_HEARTBEAT_INTERVAL_IN_MS = 1600;
+    private static final long POSITION = 1024;
+
+    private final DirectSessionProxy sessionProxy = mock(DirectSessionProxy.class);
+    private final GatewayPublication publication = mock(GatewayPublication.class);
+    private final AtomicCounter sentMsgSeqNo = new AtomicCounter(new UnsafeBuffer(new byte[64]), 0);
+    private final FakeEpochClock fakeClock = new FakeEpochClock();
+    private final Session session = new AcceptorSession(
+        HEARTBEAT_INTERVAL_IN_S,
+        1L,
+        fakeClock,
+        sessionProxy,
+        publication,
+        mock(SessionIdStrategy.class),
+        2000,
+        mock(AtomicCounter.class),
+        sentMsgSeqNo,
+        2,
+        1,
+        0,
+        ACTIVE,
+        DEFAULT_REASONABLE_TRANSMISSION_TIME_IN_MS,
+        new MutableAsciiBuffer(new byte[DEFAULT_SESSION_BUFFER_SIZE]),
+        DEFAULT_ENABLE_LAST_MSG_SEQ_NUM_PROCESSED);
+
+    @Before
+    public void setUp()
+    {
+        when(sessionProxy.sendHeartbeat(anyInt(), anyInt(), anyInt())).thenReturn(POSITION);
+        when(publication.saveDelegateHeartbeats(anyInt(), anyLong(), anyInt(), anyInt(), anyInt(), anyLong()))
+            .thenReturn(POSITION);
+
+        session.delegateHeartbeatsToEngine();
+        poll();
+
+        verify(publication).saveDelegateHeartbeats(
+            eq(2), eq(1L), anyInt(), eq(0), eq(0), eq(SENDING_HEARTBEAT_INTERVAL_IN_MS));
+    }
+
+    @Test
+    public void shouldNotHeartbeatWhenEngineHasHeartbeated()
+    {
+        engineHeartbeat();
+
+        advanceAndPoll(HEARTBEAT_INTERVAL_IN_MS);
+
+        verify(sessionProxy, never()).sendHeartbeat(anyInt(), anyInt(), anyInt());
+        assertEquals(1, session.lastSentMsgSeqNum());
+    }
+
+    @Test
+    public void shouldHeartbeatWhenEngineHasNotHeartbeated()
+    {
+        advanceAndPoll(SENDING_HEARTBEAT_INTERVAL_IN_MS);
+        verify(sessionProxy, never()).sendHeartbeat(anyInt(), anyInt(), anyInt());
+
+        advanceAndPoll(HEARTBEAT_INTERVAL_IN_MS - SENDING_HEARTBEAT_INTERVAL_IN_MS);
+
+        verify(sessionProxy).sendHeartbeat(eq(1), anyInt(), anyInt());
+        assertEquals(1, sentMsgSeqNo.get());
+    }
+
+    @Test
+    public void shouldContinueSequenceAfterEngineHeartbeats()
+    {
+        engineHeartbeat();
+        engineHeartbeat();
+
+        advanceAndPoll(HEARTBEAT_INTERVAL_IN_MS);
+        advanceAndPoll(HEARTBEAT_INTERVAL_IN_MS);
+
+        verify(sessionProxy).sendHeartbeat(eq(3), anyInt(), anyInt());
+        assertEquals(3, sentMsgSeqNo.get());
+    }
+
+    @Test
+    public void shouldRetryBackPressuredMessageWithClaimedSequenceNumber()
+    {
+        when(sessionProxy.sendHeartbeat(anyInt(), anyInt(), anyInt())).thenReturn(BACK_PRESSURED, POSITION);
+
+        advanceAndPoll(HEARTBEAT_INTERVAL_IN_MS);
+        assertEquals("Sequence number not claimed", 1, sentMsgSeqNo.get());
+
+        // The engine can only heartbeat after the claimed sequence number.
+        engineHeartbeat();
+        poll();
+
+        verify(sessionProxy, times(2)).sendHeartbeat(eq(1), anyInt(), anyInt());
+        assertEquals("Engine heartbeat overwritten", 2, sentMsgSeqNo.get());
+    }
+
+    private void engineHeartbeat()
+    {
+        final long sentSeqNum = sentMsgSeqNo.get();
+        assertTrue(sentMsgSeqNo.compareAndSet(sentSeqNum, sentSeqNum + 1));
+    }
+
+    private void advanceAndPoll(final long durationInMs)
+    {
+        fakeClock.advanceMilliSeconds(durationInMs);
+        poll();
+    }
+
+    private int poll()
+    {
+        return session.poll(fakeClock.time());
+    }
+}
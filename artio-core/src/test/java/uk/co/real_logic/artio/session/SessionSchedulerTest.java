@@ -0,0 +1,134 @@
+/*
+ * Copyright 2015-2018 Real Logic Ltd, Adaptive Financial Consulting Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio.session;
+
+import org.agrona.concurrent.status.AtomicCounter;
+import org.junit.Before;
+import org.junit.Test;
+import uk.co.real_logic.artio.engine.framer.FakeEpochClock;
+import uk.co.real_logic.artio.protocol.GatewayPublication;
+import uk.co.real_logic.artio.util.MutableAsciiBuffer;
+
+import static io.aeron.Publication.BACK_PRESSURED;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+import static uk.co.real_logic.artio.CommonConfiguration.DEFAULT_SESSION_BUFFER_SIZE;
+import static uk.co.real_logic.artio.engine.EngineConfiguration.DEFAULT_REASONABLE_TRANSMISSION_TIME_IN_MS;
+import static uk.co.real_logic.artio.library.SessionConfiguration.DEFAULT_ENABLE_LAST_MSG_SEQ_NUM_PROCESSED;
+import static uk.co.real_logic.artio.messages.SessionState.ACTIVE;
+
+public class SessionSchedulerTest
+{
+    private static final int HEARTBEAT_INTERVAL_IN_S = 2;
+    private static final long SENDING_HEARTBEAT_INTERVAL_IN_MS = 1600;
+    private static final long POSITION = 1024;
+
+    private final DirectSessionProxy sessionProxy = mock(DirectSessionProxy.class);
+    private final FakeEpochClock fakeClock = new FakeEpochClock();
+    private final SessionScheduler scheduler = new SessionScheduler(fakeClock.time());
+    private final Session session = new AcceptorSession(
+        HEARTBEAT_INTERVAL_IN_S,
+        1L,
+        fakeClock,
+        sessionProxy,
+        mock(GatewayPublication.class),
+        mock(SessionIdStrategy.class),
+        2000,
+        mock(AtomicCounter.class),
+        mock(AtomicCounter.class),
+        2,
+        1,
+        0,
+        ACTIVE,
+        DEFAULT_REASONABLE_TRANSMISSION_TIME_IN_MS,
+        new MutableAsciiBuffer(new byte[DEFAULT_SESSION_BUFFER_SIZE]),
+        DEFAULT_ENABLE_LAST_MSG_SEQ_NUM_PROCESSED);
+
+    @Before
+    public void setUp()
+    {
+        when(sessionProxy.sendHeartbeat(anyInt(), anyInt(), anyInt())).thenReturn(POSITION);
+
+        scheduler.add(session);
+        poll();
+    }
+
+    @Test
+    public void shouldPollSessionWhenHeartbeatIsDue()
+    {
+        advanceAndPoll(SENDING_HEARTBEAT_INTERVAL_IN_MS - 1);
+        verify(sessionProxy, never()).sendHeartbeat(anyInt(), anyInt(), anyInt());
+
+        advanceAndPoll(1);
+        verify(sessionProxy).sendHeartbeat(anyInt(), anyInt(), anyInt());
+
+        advanceAndPoll(SENDING_HEARTBEAT_INTERVAL_IN_MS);
+        verify(sessionProxy, times(2)).sendHeartbeat(anyInt(), anyInt(), anyInt());
+    }
+
+    @Test
+    public void shouldCatchUpWhenPolledInfrequently()
+    {
+        advanceAndPoll(SENDING_HEARTBEAT_INTERVAL_IN_MS * 10);
+
+        verify(sessionProxy).sendHeartbeat(anyInt(), anyInt(), anyInt());
+    }
+
+    @Test
+    public void shouldPollSessionWokenUpByChangeOfState()
+    {
+        when(sessionProxy.sendLogout(anyInt(), anyInt(), anyInt())).thenReturn(BACK_PRESSURED, POSITION);
+
+        session.startLogout();
+        poll();
+
+        verify(sessionProxy, times(2)).sendLogout(anyInt(), anyInt(), anyInt());
+    }
+
+    @Test
+    public void shouldRetryBackPressuredHeartbeatOnNextDutyCycle()
+    {
+        when(sessionProxy.sendHeartbeat(anyInt(), anyInt(), anyInt())).thenReturn(BACK_PRESSURED, POSITION);
+
+        advanceAndPoll(SENDING_HEARTBEAT_INTERVAL_IN_MS);
+        poll();
+
+        verify(sessionProxy, times(2)).sendHeartbeat(anyInt(), anyInt(), anyInt());
+    }
+
+    @Test
+    public void shouldNotPollRemovedSession()
+    {
+        scheduler.remove(session);
+
+        advanceAndPoll(SENDING_HEARTBEAT_INTERVAL_IN_MS);
+
+        verify(sessionProxy, never()).sendHeartbeat(anyInt(), anyInt(), anyInt());
+        assertEquals(0, poll());
+    }
+
+    private void advanceAndPoll(final long durationInMs)
+    {
+        fakeClock.advanceMilliSeconds(durationInMs);
+        poll();
+    }
+
+    private int poll()
+    {
+        return scheduler.poll(fakeClock.time());
+    }
+}
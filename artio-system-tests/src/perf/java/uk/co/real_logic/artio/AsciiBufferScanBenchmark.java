@@ -0,0 +1,150 @@
+/*
+ * Copyright 2015-2019 Real Logic Ltd, Adaptive Financial Consulting Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import uk.co.real_logic.artio.util.MutableAsciiBuffer;
+
+import java.util.concurrent.TimeUnit;
+
+import static uk.co.real_logic.artio.util.AsciiBuffer.SEPARATOR;
+import static uk.co.real_logic.artio.util.AsciiBuffer.UNKNOWN_INDEX;
+
+/**
+ * Compares the word at a time scanning and checksum in {@link MutableAsciiBuffer} with the byte at a time loops
+ * that it replaced.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class AsciiBufferScanBenchmark
+{
+    private static final byte EQUALS = '=';
+
+    @Param({"NEW_ORDER_SINGLE", "MARKET_DATA_SNAPSHOT"})
+    String message;
+
+    private MutableAsciiBuffer buffer;
+    private int length;
+    private int checksumEnd;
+
+    @Setup
+    public void setup()
+    {
+        buffer = new MutableAsciiBuffer(
+            "NEW_ORDER_SINGLE".equals(message) ? TestData.NEW_ORDER_SINGLE : TestData.MARKET_DATA_SNAPSHOT);
+        length = buffer.capacity();
+        // The checksum covers everything up to the "10=" of the trailer.
+        checksumEnd = buffer.scanBack(length - 2, 0, SEPARATOR) + 1;
+    }
+
+    @Benchmark
+    public void scanFields(final Blackhole bh)
+    {
+        final MutableAsciiBuffer buffer = this.buffer;
+        final int end = length - 1;
+        int position = 0;
+        while (position < end)
+        {
+            final int equalsPosition = buffer.scan(position, end, EQUALS);
+            final int endOfField = buffer.scan(equalsPosition + 1, end, SEPARATOR);
+            bh.consume(equalsPosition);
+            position = endOfField + 1;
+        }
+    }
+
+    @Benchmark
+    public void scanFieldsByteAtATime(final Blackhole bh)
+    {
+        final MutableAsciiBuffer buffer = this.buffer;
+        final int end = length - 1;
+        int position = 0;
+        while (position < end)
+        {
+            final int equalsPosition = byteAtATimeScan(buffer, position, end, EQUALS);
+            final int endOfField = byteAtATimeScan(buffer, equalsPosition + 1, end, SEPARATOR);
+            bh.consume(equalsPosition);
+            position = endOfField + 1;
+        }
+    }
+
+    @Benchmark
+    public int scanBackForChecksum()
+    {
+        return buffer.scanBack(length - 2, 0, SEPARATOR);
+    }
+
+    @Benchmark
+    public int scanBackForChecksumByteAtATime()
+    {
+        return byteAtATimeScanBack(buffer, length - 2, 0, SEPARATOR);
+    }
+
+    @Benchmark
+    public int computeChecksum()
+    {
+        return buffer.computeChecksum(0, checksumEnd);
+    }
+
+    @Benchmark
+    public int computeChecksumByteAtATime()
+    {
+        return byteAtATimeChecksum(buffer, 0, checksumEnd);
+    }
+
+    private static int byteAtATimeScan(
+        final MutableAsciiBuffer buffer, final int startInclusive, final int endInclusive, final byte terminator)
+    {
+        for (int i = startInclusive; i <= endInclusive; i++)
+        {
+            if (buffer.getByte(i) == terminator)
+            {
+                return i;
+            }
+        }
+
+        return UNKNOWN_INDEX;
+    }
+
+    private static int byteAtATimeScanBack(
+        final MutableAsciiBuffer buffer, final int startInclusive, final int endExclusive, final byte terminator)
+    {
+        for (int index = startInclusive; index >= endExclusive; index--)
+        {
+            if (buffer.getByte(index) == terminator)
+            {
+                return index;
+            }
+        }
+
+        return UNKNOWN_INDEX;
+    }
+
+    private static int byteAtATimeChecksum(final MutableAsciiBuffer buffer, final int offset, final int end)
+    {
+        int total = 0;
+        for (int index = offset; index < end; index++)
+        {
+            total += (int)buffer.getByte(index);
+        }
+
+        return total % 256;
+    }
+}
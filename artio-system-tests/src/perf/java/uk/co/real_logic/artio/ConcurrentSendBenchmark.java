@@ -0,0 +1,251 @@
+/*
+ * Copyright 2015-2018 Real Logic Ltd, Adaptive Financial Consulting Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio;
+
+import io.aeron.Aeron;
+import io.aeron.Subscription;
+import io.aeron.driver.MediaDriver;
+import io.aeron.driver.ThreadingMode;
+import io.aeron.logbuffer.FragmentHandler;
+import org.agrona.CloseHelper;
+import org.agrona.MutableDirectBuffer;
+import org.agrona.concurrent.BusySpinIdleStrategy;
+import org.agrona.concurrent.EpochClock;
+import org.agrona.concurrent.MessageHandler;
+import org.agrona.concurrent.SystemEpochClock;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.agrona.concurrent.ringbuffer.ManyToOneRingBuffer;
+import org.agrona.concurrent.ringbuffer.RingBuffer;
+import org.agrona.concurrent.status.AtomicCounter;
+import org.agrona.concurrent.status.CountersReader;
+import org.agrona.hints.ThreadHints;
+import org.openjdk.jmh.annotations.*;
+import uk.co.real_logic.artio.builder.TestRequestEncoder;
+import uk.co.real_logic.artio.protocol.GatewayPublication;
+import uk.co.real_logic.artio.session.*;
+import uk.co.real_logic.artio.util.MutableAsciiBuffer;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import static org.agrona.concurrent.ringbuffer.RingBufferDescriptor.TRAILER_LENGTH;
+import static uk.co.real_logic.artio.library.LibraryConfiguration.DEFAULT_CONCURRENT_SEND_QUEUE_CAPACITY;
+import static uk.co.real_logic.artio.messages.SessionState.ACTIVE;
+
+/**
+ * Measures the latency of sending a message on a session from a thread other than the library's thread, from
+ * handing the message over until the library's thread has published it. Compares handing the fields of the message
+ * over through a ring buffer to the library's thread, which then encodes and sends the message, with encoding the
+ * message on the sending thread using a {@link ConcurrentSessionSender}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ConcurrentSendBenchmark
+{
+    private static final String CHANNEL = "aeron:ipc";
+    private static final int STREAM_ID = 1;
+    private static final int LIBRARY_ID = 2;
+    private static final long SESSION_ID = 3;
+    private static final long CONNECTION_ID = 4;
+    private static final int HEARTBEAT_INTERVAL_IN_S = 30;
+    private static final int FRAGMENT_LIMIT = 10;
+    private static final int TEST_REQ_ID_MSG_TYPE_ID = 1;
+
+    private final EpochClock clock = new SystemEpochClock();
+    private final TestRequestEncoder producerTestRequest = new TestRequestEncoder();
+    private final UnsafeBuffer producerBuffer = new UnsafeBuffer(new byte[64]);
+    private final RingBuffer handOverRing = new ManyToOneRingBuffer(
+        new UnsafeBuffer(ByteBuffer.allocateDirect(DEFAULT_CONCURRENT_SEND_QUEUE_CAPACITY + TRAILER_LENGTH)));
+
+    // deliberately not static/final
+    private byte[] testReqID = "test-request-id".getBytes();
+
+    private MediaDriver mediaDriver;
+    private Aeron aeron;
+    private Subscription subscription;
+    private GatewayPublication publication;
+    private AtomicCounter sentMsgSeqNo;
+    private InternalSession session;
+    private ConcurrentSessionSender sender;
+    private LibraryThread libraryThread;
+
+    @Setup
+    public void setup()
+    {
+        mediaDriver = MediaDriver.launchEmbedded(new MediaDriver.Context()
+            .threadingMode(ThreadingMode.SHARED)
+            .dirDeleteOnStart(true));
+        aeron = Aeron.connect(new Aeron.Context().aeronDirectoryName(mediaDriver.aeronDirectoryName()));
+        subscription = aeron.addSubscription(CHANNEL, STREAM_ID);
+        publication = new GatewayPublication(
+            aeron.addExclusivePublication(CHANNEL, STREAM_ID),
+            newCounter(),
+            new BusySpinIdleStrategy(),
+            Clock.systemNanoTime(),
+            1);
+
+        sentMsgSeqNo = newCounter();
+        session = newSession();
+
+        // The sender is created before the library's thread starts, so that it's created on the same thread that
+        // polls the session.
+        final SessionScheduler scheduler = new SessionScheduler(clock.time());
+        scheduler.add(session);
+        sender = session.newConcurrentSender();
+
+        libraryThread = new LibraryThread(scheduler);
+        libraryThread.start();
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException
+    {
+        libraryThread.running = false;
+        libraryThread.join();
+
+        CloseHelper.close(subscription);
+        CloseHelper.close(publication);
+        CloseHelper.close(aeron);
+        CloseHelper.close(mediaDriver);
+        mediaDriver.context().deleteAeronDirectory();
+    }
+
+    @Benchmark
+    public long handOverFieldsToLibraryThread()
+    {
+        final long sentSeqNum = sentMsgSeqNo.get() + 1;
+
+        final byte[] testReqID = this.testReqID;
+        producerBuffer.putBytes(0, testReqID);
+        while (!handOverRing.write(TEST_REQ_ID_MSG_TYPE_ID, producerBuffer, 0, testReqID.length))
+        {
+            Thread.yield();
+        }
+
+        return awaitSent(sentSeqNum);
+    }
+
+    @Benchmark
+    public long concurrentSender()
+    {
+        final long sentSeqNum = sentMsgSeqNo.get() + 1;
+
+        final TestRequestEncoder testRequest = producerTestRequest.testReqID(testReqID);
+        while (!sender.offer(testRequest))
+        {
+            Thread.yield();
+        }
+
+        return awaitSent(sentSeqNum);
+    }
+
+    private long awaitSent(final long sentSeqNum)
+    {
+        final AtomicCounter sentMsgSeqNo = this.sentMsgSeqNo;
+        long lastSentSeqNum;
+        while ((lastSentSeqNum = sentMsgSeqNo.get()) < sentSeqNum)
+        {
+            ThreadHints.onSpinWait();
+        }
+
+        return lastSentSeqNum;
+    }
+
+    private InternalSession newSession()
+    {
+        final SessionIdStrategy sessionIdStrategy = SessionIdStrategy.senderAndTarget();
+        final SessionProxy proxy = new DirectSessionProxy(
+            CommonConfiguration.DEFAULT_SESSION_BUFFER_SIZE,
+            publication,
+            sessionIdStrategy,
+            SessionCustomisationStrategy.none(),
+            clock,
+            CONNECTION_ID,
+            LIBRARY_ID);
+
+        final InternalSession session = new InternalSession(
+            HEARTBEAT_INTERVAL_IN_S,
+            CONNECTION_ID,
+            clock,
+            ACTIVE,
+            proxy,
+            publication,
+            sessionIdStrategy,
+            CommonConfiguration.DEFAULT_SENDING_TIME_WINDOW,
+            newCounter(),
+            sentMsgSeqNo,
+            LIBRARY_ID,
+            1,
+            0,
+            CommonConfiguration.DEFAULT_REASONABLE_TRANSMISSION_TIME_IN_MS,
+            new MutableAsciiBuffer(new byte[CommonConfiguration.DEFAULT_SESSION_BUFFER_SIZE]),
+            false);
+        session.setupSession(
+            SESSION_ID, sessionIdStrategy.onInitiateLogon("sender", null, null, "target", null, null));
+
+        return session;
+    }
+
+    private static AtomicCounter newCounter()
+    {
+        return new AtomicCounter(new UnsafeBuffer(new byte[CountersReader.COUNTER_LENGTH]), 0);
+    }
+
+    // Stands in for the library's duty cycle, also consuming the outbound publication.
+    private final class LibraryThread extends Thread
+    {
+        private final SessionScheduler scheduler;
+        private final TestRequestEncoder testRequest = new TestRequestEncoder();
+        private final byte[] testReqID = new byte[64];
+        private final MessageHandler onHandOverFunc = this::onHandOver;
+        private final FragmentHandler fragmentHandler = (buffer, offset, length, header) -> {};
+
+        private volatile boolean running = true;
+
+        private LibraryThread(final SessionScheduler scheduler)
+        {
+            super("library");
+            this.scheduler = scheduler;
+        }
+
+        public void run()
+        {
+            final SessionScheduler scheduler = this.scheduler;
+            while (running)
+            {
+                scheduler.poll(clock.time());
+                handOverRing.read(onHandOverFunc);
+                subscription.poll(fragmentHandler, FRAGMENT_LIMIT);
+            }
+        }
+
+        private void onHandOver(
+            final int msgTypeId, final MutableDirectBuffer buffer, final int index, final int length)
+        {
+            buffer.getBytes(index, testReqID, 0, length);
+            testRequest.testReqID(testReqID, length);
+
+            while (session.send(testRequest) < 0)
+            {
+                subscription.poll(fragmentHandler, FRAGMENT_LIMIT);
+            }
+        }
+    }
+}
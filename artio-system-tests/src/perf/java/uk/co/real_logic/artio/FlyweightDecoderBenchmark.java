@@ -0,0 +1,97 @@
+/*
+ * Copyright 2015-2019 Real Logic Ltd, Adaptive Financial Consulting Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import uk.co.real_logic.artio.builder.Validation;
+import uk.co.real_logic.artio.decoder.NewOrderSingleDecoder;
+import uk.co.real_logic.artio.util.AsciiBuffer;
+import uk.co.real_logic.artio.util.MutableAsciiBuffer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Routes a NewOrderSingle on four tags - SenderCompID, TargetCompID, Side and Symbol - comparing the copying
+ * decoders with the flyweight decoders.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class FlyweightDecoderBenchmark
+{
+    private static final int SYMBOL_TAG = 55;
+
+    private NewOrderSingleDecoder copyingDecoder = new NewOrderSingleDecoder();
+    private uk.co.real_logic.artio.decoder_flyweight.NewOrderSingleDecoder flyweightDecoder =
+        new uk.co.real_logic.artio.decoder_flyweight.NewOrderSingleDecoder();
+    private AsciiBuffer buffer = new MutableAsciiBuffer(TestData.NEW_ORDER_SINGLE);
+
+    @Setup
+    public void setup()
+    {
+        if (Validation.CODEC_VALIDATION_ENABLED)
+        {
+            throw new IllegalStateException(
+                "Benchmark cannot run with validation enabled, set -Dfix.codecs.no_validation=true");
+        }
+    }
+
+    @Benchmark
+    public void copyingRouteOnFourTags(final Blackhole bh)
+    {
+        final NewOrderSingleDecoder decoder = this.copyingDecoder;
+        decoder.reset();
+        bh.consume(decoder.decode(buffer, 0, buffer.capacity()));
+
+        bh.consume(decoder.header().senderCompID());
+        bh.consume(decoder.header().targetCompID());
+        bh.consume(decoder.side());
+        bh.consume(decoder.symbol());
+    }
+
+    @Benchmark
+    public void flyweightRouteOnFourTags(final Blackhole bh)
+    {
+        final uk.co.real_logic.artio.decoder_flyweight.NewOrderSingleDecoder decoder = this.flyweightDecoder;
+        decoder.reset();
+        bh.consume(decoder.decode(buffer, 0, buffer.capacity()));
+
+        routeOnFourTags(decoder, bh);
+    }
+
+    @Benchmark
+    public void flyweightRouteOnFourTagsUpToLastTagNeeded(final Blackhole bh)
+    {
+        final uk.co.real_logic.artio.decoder_flyweight.NewOrderSingleDecoder decoder = this.flyweightDecoder;
+        decoder.reset();
+        bh.consume(decoder.decode(buffer, 0, buffer.capacity(), SYMBOL_TAG));
+
+        routeOnFourTags(decoder, bh);
+    }
+
+    private void routeOnFourTags(
+        final uk.co.real_logic.artio.decoder_flyweight.NewOrderSingleDecoder decoder, final Blackhole bh)
+    {
+        bh.consume(decoder.header().senderCompID());
+        bh.consume(decoder.header().targetCompID());
+        bh.consume(decoder.side());
+        bh.consume(decoder.symbol());
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2015-2018 Real Logic Ltd, Adaptive Financial Consulting Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio;
+
+import io.aeron.Aeron;
+import io.aeron.driver.MediaDriver;
+import io.aeron.driver.ThreadingMode;
+import org.agrona.CloseHelper;
+import org.agrona.concurrent.BusySpinIdleStrategy;
+import org.agrona.concurrent.EpochClock;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.agrona.concurrent.status.AtomicCounter;
+import org.agrona.concurrent.status.CountersReader;
+import org.openjdk.jmh.annotations.*;
+import uk.co.real_logic.artio.protocol.GatewayPublication;
+import uk.co.real_logic.artio.session.*;
+import uk.co.real_logic.artio.util.MutableAsciiBuffer;
+
+import java.util.concurrent.TimeUnit;
+
+import static uk.co.real_logic.artio.messages.SessionState.ACTIVE;
+
+/**
+ * Compares polling every session of a library that holds many idle sessions on each duty cycle with only polling
+ * the sessions that the {@link SessionScheduler} finds are due. Time doesn't advance, so no session is ever due.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class IdleSessionPollingBenchmark
+{
+    private static final String CHANNEL = "aeron:ipc";
+    private static final int STREAM_ID = 1;
+    private static final int LIBRARY_ID = 2;
+    private static final int HEARTBEAT_INTERVAL_IN_S = 30;
+
+    @Param({"100", "5000"})
+    private int sessionCount;
+
+    private final long timeInMs = System.currentTimeMillis();
+    private final EpochClock clock = () -> timeInMs;
+
+    private MediaDriver mediaDriver;
+    private Aeron aeron;
+    private GatewayPublication publication;
+    private InternalSession[] sessions;
+    private SessionScheduler scheduler;
+
+    @Setup
+    public void setup()
+    {
+        mediaDriver = MediaDriver.launchEmbedded(new MediaDriver.Context()
+            .threadingMode(ThreadingMode.SHARED)
+            .dirDeleteOnStart(true));
+        aeron = Aeron.connect(new Aeron.Context().aeronDirectoryName(mediaDriver.aeronDirectoryName()));
+        publication = new GatewayPublication(
+            aeron.addExclusivePublication(CHANNEL, STREAM_ID),
+            newCounter(),
+            new BusySpinIdleStrategy(),
+            Clock.systemNanoTime(),
+            1);
+
+        scheduler = new SessionScheduler(timeInMs);
+        sessions = new InternalSession[sessionCount];
+        for (int i = 0; i < sessionCount; i++)
+        {
+            final InternalSession session = newSession(i);
+            sessions[i] = session;
+            scheduler.add(session);
+        }
+        scheduler.poll(timeInMs);
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        CloseHelper.close(publication);
+        CloseHelper.close(aeron);
+        CloseHelper.close(mediaDriver);
+        mediaDriver.context().deleteAeronDirectory();
+    }
+
+    @Benchmark
+    public int pollEverySession()
+    {
+        final InternalSession[] sessions = this.sessions;
+        final long timeInMs = this.timeInMs;
+        int total = 0;
+
+        for (int i = 0, size = sessions.length; i < size; i++)
+        {
+            total += sessions[i].poll(timeInMs);
+        }
+
+        return total;
+    }
+
+    @Benchmark
+    public int pollScheduledSessions()
+    {
+        return scheduler.poll(timeInMs);
+    }
+
+    private InternalSession newSession(final long connectionId)
+    {
+        final SessionIdStrategy sessionIdStrategy = SessionIdStrategy.senderAndTarget();
+        final SessionProxy proxy = new DirectSessionProxy(
+            CommonConfiguration.DEFAULT_SESSION_BUFFER_SIZE,
+            publication,
+            sessionIdStrategy,
+            SessionCustomisationStrategy.none(),
+            clock,
+            connectionId,
+            LIBRARY_ID);
+
+        return new InternalSession(
+            HEARTBEAT_INTERVAL_IN_S,
+            connectionId,
+            clock,
+            ACTIVE,
+            proxy,
+            publication,
+            sessionIdStrategy,
+            CommonConfiguration.DEFAULT_SENDING_TIME_WINDOW,
+            newCounter(),
+            newCounter(),
+            LIBRARY_ID,
+            1,
+            0,
+            CommonConfiguration.DEFAULT_REASONABLE_TRANSMISSION_TIME_IN_MS,
+            new MutableAsciiBuffer(new byte[CommonConfiguration.DEFAULT_SESSION_BUFFER_SIZE]),
+            false);
+    }
+
+    private static AtomicCounter newCounter()
+    {
+        return new AtomicCounter(new UnsafeBuffer(new byte[CountersReader.COUNTER_LENGTH]), 0);
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2015-2019 Real Logic Ltd, Adaptive Financial Consulting Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio;
+
+import io.aeron.Aeron;
+import io.aeron.Subscription;
+import io.aeron.driver.MediaDriver;
+import io.aeron.driver.ThreadingMode;
+import io.aeron.logbuffer.FragmentHandler;
+import org.agrona.CloseHelper;
+import org.agrona.concurrent.BusySpinIdleStrategy;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.agrona.concurrent.status.AtomicCounter;
+import org.agrona.concurrent.status.CountersReader;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import uk.co.real_logic.artio.builder.Encoder;
+import uk.co.real_logic.artio.builder.LogonEncoder;
+import uk.co.real_logic.artio.fields.UtcTimestampEncoder;
+import uk.co.real_logic.artio.protocol.GatewayPublication;
+import uk.co.real_logic.artio.util.MutableAsciiBuffer;
+
+import java.util.concurrent.TimeUnit;
+
+import static uk.co.real_logic.artio.messages.MessageStatus.OK;
+
+/**
+ * Compares sending a message by encoding it into a buffer and copying it onto the outbound publication with
+ * encoding it directly into a claim on the publication.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class SessionEncodingBenchmark
+{
+    private static final String CHANNEL = "aeron:ipc";
+    private static final int STREAM_ID = 1;
+    private static final int LIBRARY_ID = 2;
+    private static final long SESSION_ID = 3;
+    private static final long CONNECTION_ID = 4;
+    private static final int MAX_LENGTH = 256;
+
+    private final UtcTimestampEncoder timestampEncoder = new UtcTimestampEncoder();
+    private final LogonEncoder logonEncoder = new LogonEncoder();
+    private final MutableAsciiBuffer buffer = new MutableAsciiBuffer(new byte[8 * 1024]);
+    private final FragmentHandler fragmentHandler = (buffer, offset, length, header) -> {};
+
+    // deliberately not static/final
+    private int sequenceNumber = 10;
+    private char[] password = "password".toCharArray();
+    private char[] username = "username".toCharArray();
+
+    private MediaDriver mediaDriver;
+    private Aeron aeron;
+    private Subscription subscription;
+    private GatewayPublication publication;
+
+    @Setup
+    public void setup()
+    {
+        mediaDriver = MediaDriver.launchEmbedded(new MediaDriver.Context()
+            .threadingMode(ThreadingMode.SHARED)
+            .dirDeleteOnStart(true));
+        aeron = Aeron.connect(new Aeron.Context().aeronDirectoryName(mediaDriver.aeronDirectoryName()));
+        subscription = aeron.addSubscription(CHANNEL, STREAM_ID);
+        publication = new GatewayPublication(
+            aeron.addExclusivePublication(CHANNEL, STREAM_ID),
+            new AtomicCounter(new UnsafeBuffer(new byte[CountersReader.COUNTER_LENGTH]), 0),
+            new BusySpinIdleStrategy(),
+            Clock.systemNanoTime(),
+            1);
+
+        logonEncoder
+            .header()
+            .senderCompID("ABC_DEFG01")
+            .targetCompID("CCG");
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        CloseHelper.close(publication);
+        CloseHelper.close(subscription);
+        CloseHelper.close(aeron);
+        CloseHelper.close(mediaDriver);
+        mediaDriver.context().deleteAeronDirectory();
+    }
+
+    @Benchmark
+    public void encodeAndCopy(final Blackhole bh)
+    {
+        final LogonEncoder logonEncoder = prepareLogon();
+
+        final long result = logonEncoder.encode(buffer, 0);
+        bh.consume(publication.saveMessage(
+            buffer,
+            Encoder.offset(result),
+            Encoder.length(result),
+            LIBRARY_ID,
+            logonEncoder.messageType(),
+            SESSION_ID,
+            0,
+            CONNECTION_ID,
+            OK,
+            sequenceNumber));
+
+        bh.consume(subscription.poll(fragmentHandler, 1));
+    }
+
+    @Benchmark
+    public void encodeIntoClaim(final Blackhole bh)
+    {
+        final LogonEncoder logonEncoder = prepareLogon();
+
+        bh.consume(publication.encodeMessage(
+            logonEncoder,
+            MAX_LENGTH,
+            LIBRARY_ID,
+            logonEncoder.messageType(),
+            SESSION_ID,
+            0,
+            CONNECTION_ID,
+            OK,
+            sequenceNumber));
+
+        bh.consume(subscription.poll(fragmentHandler, 1));
+    }
+
+    private LogonEncoder prepareLogon()
+    {
+        final UtcTimestampEncoder timestampEncoder = this.timestampEncoder;
+
+        logonEncoder
+            .password(password)
+            .username(username)
+            .maxMessageSize(512)
+            .heartBtInt(10)
+            .header()
+            .msgSeqNum(sequenceNumber)
+            .sendingTime(timestampEncoder.buffer(), timestampEncoder.encode(System.currentTimeMillis()));
+
+        return logonEncoder;
+    }
+}
@@ -31,4 +31,16 @@ public final class TestData
         ("8=FIX.4.4\0019=0103\00135=A\00149=ABC_DEFG01\00156=CCG\00134=10\001" +
         "52=20150514-15:57:31.336\00198=0\001108=10\001383=512\001553=username" +
         "\001554=password\00110=243\001").getBytes(StandardCharsets.US_ASCII));
+
+    public static final UnsafeBuffer MARKET_DATA_SNAPSHOT = new UnsafeBuffer(
+        ("8=FIX.4.4\0019=692\00135=W\00134=1052\00149=MDSERVER\00152=20190612-08:30:00.125\00156=CLIENT01\001" +
+        "262=REQ42\00155=EUR/USD\001268=20\001269=0\001270=1.12005\001271=1000000\001269=0\001270=1.11995\001" +
+        "271=2000000\001269=0\001270=1.11985\001271=3000000\001269=0\001270=1.11975\001271=4000000\001" +
+        "269=0\001270=1.11965\001271=5000000\001269=0\001270=1.11955\001271=6000000\001269=0\001" +
+        "270=1.11945\001271=7000000\001269=0\001270=1.11935\001271=8000000\001269=0\001270=1.11925\001" +
+        "271=9000000\001269=0\001270=1.11915\001271=10000000\001269=1\001270=1.12015\001271=1000000\001" +
+        "269=1\001270=1.12025\001271=2000000\001269=1\001270=1.12035\001271=3000000\001269=1\001" +
+        "270=1.12045\001271=4000000\001269=1\001270=1.12055\001271=5000000\001269=1\001270=1.12065\001" +
+        "271=6000000\001269=1\001270=1.12075\001271=7000000\001269=1\001270=1.12085\001271=8000000\001" +
+        "269=1\001270=1.12095\001271=9000000\001269=1\001270=1.12105\001271=10000000\00110=173\001").getBytes(StandardCharsets.US_ASCII));
 }
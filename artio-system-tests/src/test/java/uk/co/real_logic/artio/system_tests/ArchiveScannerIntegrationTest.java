@@ -23,16 +23,21 @@ import uk.co.real_logic.artio.CommonConfiguration;
 import uk.co.real_logic.artio.engine.EngineConfiguration;
 import uk.co.real_logic.artio.engine.logger.FixArchiveScanner;
 import uk.co.real_logic.artio.engine.logger.FixMessageConsumer;
+import uk.co.real_logic.artio.engine.logger.FixMessagePredicate;
 import uk.co.real_logic.artio.library.LibraryConfiguration;
 
 import java.util.ArrayList;
 import java.util.List;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.hasItems;
+import static org.junit.Assert.assertEquals;
 import static uk.co.real_logic.artio.TestFixtures.largeTestReqId;
 import static uk.co.real_logic.artio.TestFixtures.launchMediaDriver;
 import static uk.co.real_logic.artio.engine.EngineConfiguration.DEFAULT_ARCHIVE_SCANNER_STREAM;
+import static uk.co.real_logic.artio.engine.logger.FixMessagePredicates.messageTypeOf;
+import static uk.co.real_logic.artio.engine.logger.FixMessagePredicates.sessionOf;
 import static uk.co.real_logic.artio.system_tests.SystemTestUtil.*;
 
 public class ArchiveScannerIntegrationTest extends AbstractGatewayToGatewaySystemTest
@@ -96,6 +101,41 @@ public class ArchiveScannerIntegrationTest extends AbstractGatewayToGatewaySyste
         assertArchiveContainsMessages("hi");
     }
 
+    @Test
+    public void canScanArchiveForSessionUsingReplayIndexInParallel()
+    {
+        acquireAcceptingSession();
+        setupAndExchangeMessages();
+
+        final List<String> messages = scanArchive(sessionOf(acceptingSession.id()), 2);
+        assertThat(messages.toString(), messages, hasItems(
+            Matchers.containsString("35=A\00149=acceptor\00156=initiator\00134=1")));
+
+        assertThat(scanArchive(sessionOf(acceptingSession.id() + 1), 2), empty());
+    }
+
+    @Test
+    public void canScanArchiveInParallelThroughASmallWorkerBuffer()
+    {
+        acquireAcceptingSession();
+
+        final List<String> testReqIds = new ArrayList<>();
+        for (int i = 0; i < 50; i++)
+        {
+            final String testReqID = "scanned" + i;
+            sendTestRequest(acceptingSession, testReqID);
+            assertReceivedSingleHeartbeat(testSystem, acceptingOtfAcceptor, testReqID);
+            testReqIds.add("\001112=" + testReqID + "\001");
+        }
+
+        final List<String> messages = scanArchive(messageTypeOf("1"), 2, 4096);
+        assertEquals(messages.toString(), testReqIds.size(), messages.size());
+        for (int i = 0; i < testReqIds.size(); i++)
+        {
+            assertThat(messages.get(i), Matchers.containsString(testReqIds.get(i)));
+        }
+    }
+
     private void setupAndExchangeMessages()
     {
         messagesCanBeExchanged();
@@ -103,6 +143,38 @@ public class ArchiveScannerIntegrationTest extends AbstractGatewayToGatewaySyste
         assertInitiatingSequenceIndexIs(0);
     }
 
+    private List<String> scanArchive(final FixMessagePredicate predicate, final int workerCount)
+    {
+        return scanArchive(predicate, workerCount, FixArchiveScanner.DEFAULT_WORKER_BUFFER_CAPACITY);
+    }
+
+    private List<String> scanArchive(
+        final FixMessagePredicate predicate, final int workerCount, final int workerBufferCapacity)
+    {
+        final List<String> messages = new ArrayList<>();
+        final EngineConfiguration configuration = acceptingEngine.configuration();
+
+        final FixArchiveScanner.Context context = new FixArchiveScanner.Context()
+            .aeronDirectoryName(configuration.aeronContext().aeronDirectoryName())
+            .idleStrategy(CommonConfiguration.backoffIdleStrategy())
+            .logFileDir(configuration.logFileDir())
+            .workerCount(workerCount)
+            .workerBufferCapacity(workerBufferCapacity);
+
+        try (FixArchiveScanner scanner = new FixArchiveScanner(context))
+        {
+            scanner.scan(
+                configuration.libraryAeronChannel(),
+                configuration.outboundLibraryStream(),
+                predicate,
+                (message, buffer, offset, length, header) -> messages.add(message.body()),
+                false,
+                DEFAULT_ARCHIVE_SCANNER_STREAM);
+        }
+
+        return messages;
+    }
+
     @SuppressWarnings("unchecked")
     private void assertArchiveContainsMessages(final String testReqIdPrefix)
     {
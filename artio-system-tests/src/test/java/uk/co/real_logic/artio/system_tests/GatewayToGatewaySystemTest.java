@@ -21,6 +21,7 @@ import uk.co.real_logic.artio.*;
 import uk.co.real_logic.artio.builder.ExampleMessageEncoder;
 import uk.co.real_logic.artio.builder.ExecutionReportEncoder;
 import uk.co.real_logic.artio.builder.ResendRequestEncoder;
+import uk.co.real_logic.artio.builder.TestRequestEncoder;
 import uk.co.real_logic.artio.engine.FixEngine;
 import uk.co.real_logic.artio.engine.SessionInfo;
 import uk.co.real_logic.artio.engine.framer.LibraryInfo;
@@ -28,6 +29,7 @@ import uk.co.real_logic.artio.library.FixLibrary;
 import uk.co.real_logic.artio.library.LibraryConfiguration;
 import uk.co.real_logic.artio.messages.SessionReplyStatus;
 import uk.co.real_logic.artio.session.CompositeKey;
+import uk.co.real_logic.artio.session.ConcurrentSessionSender;
 import uk.co.real_logic.artio.session.Session;
 
 import java.util.List;
@@ -79,6 +81,61 @@ public class GatewayToGatewaySystemTest extends AbstractGatewayToGatewaySystemTe
         assertInitiatingSequenceIndexIs(0);
     }
 
+    @Test
+    public void messagesCanBeEncodedDirectlyOntoTheOutboundStream()
+    {
+        messagesCanBeEncodedDirectly(testReqId(), 256);
+        messagesCanBeEncodedDirectly(testReqId(), 256);
+    }
+
+    @Test
+    public void messagesTooLargeToEncodeDirectlyAreCopied()
+    {
+        messagesCanBeEncodedDirectly(testReqId(), 16);
+        messagesCanBeEncodedDirectly(largeTestReqId(), 256);
+    }
+
+    @Test
+    public void messagesCanBeSentFromOtherThreads() throws InterruptedException
+    {
+        final String firstTestReqID = testReqId();
+        final String secondTestReqID = largeTestReqId();
+        final Thread firstProducer = newProducer(initiatingSession.newConcurrentSender(), firstTestReqID);
+        final Thread secondProducer = newProducer(initiatingSession.newConcurrentSender(), secondTestReqID);
+
+        firstProducer.start();
+        secondProducer.start();
+        firstProducer.join();
+        secondProducer.join();
+
+        assertReceivedSingleHeartbeat(testSystem, initiatingOtfAcceptor, firstTestReqID);
+        assertReceivedSingleHeartbeat(testSystem, initiatingOtfAcceptor, secondTestReqID);
+    }
+
+    private Thread newProducer(final ConcurrentSessionSender sender, final String testReqID)
+    {
+        return new Thread(() ->
+        {
+            final TestRequestEncoder testRequest = new TestRequestEncoder();
+            testRequest.testReqID(testReqID);
+
+            while (!sender.offer(testRequest))
+            {
+                Thread.yield();
+            }
+        });
+    }
+
+    private void messagesCanBeEncodedDirectly(final String testReqID, final int maxLength)
+    {
+        final TestRequestEncoder testRequest = new TestRequestEncoder();
+        testRequest.testReqID(testReqID);
+
+        assertThat(initiatingSession.send(testRequest, maxLength), greaterThan(0L));
+
+        assertReceivedSingleHeartbeat(testSystem, initiatingOtfAcceptor, testReqID);
+    }
+
     @Test
     public void messagesCanBeSentFromInitiatorToAcceptingLibrary()
     {
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2015-2018 Real Logic Ltd, Adaptive Financial Consulting Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio.system_tests;
+
+import org.junit.Before;
+import org.junit.Test;
+import uk.co.real_logic.artio.engine.FixEngine;
+import uk.co.real_logic.artio.library.FixLibrary;
+import uk.co.real_logic.artio.session.Session;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import static uk.co.real_logic.artio.Constants.TEST_REQUEST_MESSAGE_AS_STR;
+import static uk.co.real_logic.artio.TestFixtures.launchMediaDriver;
+import static uk.co.real_logic.artio.messages.SessionReplyStatus.OK;
+import static uk.co.real_logic.artio.system_tests.SystemTestUtil.*;
+
+public class InboundPublicationPerLibrarySystemTest extends AbstractGatewayToGatewaySystemTest
+{
+    @Before
+    public void launch()
+    {
+        delete(ACCEPTOR_LOGS);
+
+        mediaDriver = launchMediaDriver();
+
+        acceptingEngine = FixEngine.launch(
+            acceptingConfig(port, ACCEPTOR_ID, INITIATOR_ID).inboundPublicationPerLibrary(true));
+        delete(CLIENT_LOGS);
+        initiatingEngine = FixEngine.launch(initiatingConfig(libraryAeronPort).inboundPublicationPerLibrary(true));
+
+        acceptingLibrary = connect(acceptingLibraryConfig(acceptingHandler).inboundPublicationPerLibrary(true));
+        initiatingLibrary = connect(
+            initiatingLibraryConfig(libraryAeronPort, initiatingHandler).inboundPublicationPerLibrary(true));
+        testSystem = new TestSystem(acceptingLibrary, initiatingLibrary);
+
+        connectSessions();
+    }
+
+    @Test
+    public void messagesCanBeSentFromInitiatorToAcceptor()
+    {
+        acquireAcceptingSession();
+
+        messagesCanBeExchanged();
+
+        assertSequenceIndicesAre(0);
+    }
+
+    @Test
+    public void enginesShouldManageAcceptingSession()
+    {
+        acquireAcceptingSession();
+
+        engineShouldManageSession(
+            acceptingSession, acceptingLibrary, acceptingOtfAcceptor,
+            initiatingSession, initiatingOtfAcceptor);
+    }
+
+    @Test
+    public void sessionCanBeHandedOverBetweenLibraries()
+    {
+        acquireAcceptingSession();
+        messagesCanBeExchanged();
+
+        final FakeOtfAcceptor acceptingOtfAcceptor2 = new FakeOtfAcceptor();
+        final FakeHandler acceptingHandler2 = new FakeHandler(acceptingOtfAcceptor2);
+        try (FixLibrary acceptingLibrary2 = testSystem.add(
+            connect(acceptingLibraryConfig(acceptingHandler2).inboundPublicationPerLibrary(true))))
+        {
+            final long sessionId = acceptingSession.id();
+            assertEquals(OK, releaseToGateway(acceptingLibrary, acceptingSession, testSystem));
+
+            final Session acceptingSession2 = acquireSession(
+                acceptingHandler2, acceptingLibrary2, sessionId, testSystem);
+            final int acceptorMessageCount = acceptingOtfAcceptor.messages().size();
+
+            messagesCanBeExchanged(initiatingSession, initiatingOtfAcceptor);
+
+            assertEquals(sessionId, acceptingSession2.id());
+            assertEquals(1, acceptingOtfAcceptor2.hasReceivedMessage(TEST_REQUEST_MESSAGE_AS_STR).count());
+            assertThat(acceptingOtfAcceptor.messages(), hasSize(acceptorMessageCount));
+        }
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2015-2018 Real Logic Ltd, Adaptive Financial Consulting Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio.system_tests;
+
+import org.agrona.CloseHelper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import uk.co.real_logic.artio.library.FixLibrary;
+import uk.co.real_logic.artio.library.FixLibraryPool;
+import uk.co.real_logic.artio.library.LibraryConfiguration;
+import uk.co.real_logic.artio.library.LibraryConnectHandler;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertFalse;
+import static uk.co.real_logic.artio.TestFixtures.launchMediaDriver;
+import static uk.co.real_logic.artio.Timing.assertEventuallyTrue;
+import static uk.co.real_logic.artio.system_tests.SystemTestUtil.*;
+
+public class LibraryPoolSystemTest extends AbstractGatewayToGatewaySystemTest
+{
+    private static final long NO_SESSION_ID = -1;
+
+    private final AtomicInteger connectedLibraries = new AtomicInteger();
+    private final AtomicLong placedSessionId = new AtomicLong(NO_SESSION_ID);
+
+    private FixLibraryPool pool;
+
+    @Before
+    public void launch()
+    {
+        delete(ACCEPTOR_LOGS);
+
+        mediaDriver = launchMediaDriver();
+
+        launchAcceptingEngine();
+        initiatingEngine = launchInitiatingEngine(libraryAeronPort);
+        initiatingLibrary = newInitiatingLibrary(libraryAeronPort, initiatingHandler);
+        testSystem = new TestSystem(initiatingLibrary);
+
+        pool = FixLibraryPool.launch(
+            (pool, surrogateSessionId, localCompId, localSubId, localLocationId, remoteCompId, remoteSubId,
+            remoteLocationId) ->
+            {
+                placedSessionId.set(surrogateSessionId);
+                return 1;
+            },
+            poolLibraryConfig(),
+            poolLibraryConfig());
+
+        assertEventuallyTrue("Pool failed to connect", () -> connectedLibraries.get() == 2);
+
+        connectSessions();
+    }
+
+    @Test
+    public void shouldPlaceSessionOnLibraryChosenByPolicy()
+    {
+        awaitSessionCounts(0, 1);
+
+        assertFalse("Rebalanced a balanced pool", pool.rebalance());
+    }
+
+    @Test
+    public void shouldMoveSessionBetweenLibraries()
+    {
+        awaitSessionCounts(0, 1);
+
+        pool.moveSession(placedSessionId.get(), 0);
+
+        awaitSessionCounts(1, 0);
+        assertConnected(initiatingSession);
+    }
+
+    @After
+    public void closePool()
+    {
+        CloseHelper.close(pool);
+    }
+
+    private void awaitSessionCounts(final long firstLibrarySessions, final long secondLibrarySessions)
+    {
+        assertEventuallyTrue("Sessions not placed", () ->
+        {
+            testSystem.poll();
+
+            return pool.sessionCount(0) == firstLibrarySessions && pool.sessionCount(1) == secondLibrarySessions;
+        });
+    }
+
+    private LibraryConfiguration poolLibraryConfig()
+    {
+        return acceptingLibraryConfig(new FakeHandler(new FakeOtfAcceptor()))
+            .libraryConnectHandler(new LibraryConnectHandler()
+            {
+                public void onConnect(final FixLibrary library)
+                {
+                    connectedLibraries.incrementAndGet();
+                }
+
+                public void onDisconnect(final FixLibrary library)
+                {
+                }
+            });
+    }
+}